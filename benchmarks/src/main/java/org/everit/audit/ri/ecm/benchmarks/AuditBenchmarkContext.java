@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.everit.audit.AuditEventTypeManager;
+import org.everit.audit.LoggingService;
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.InternalLoggingService;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authorization.PermissionChecker;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+
+/**
+ * The OSGi services used by the benchmarks. JMH instantiates the benchmark classes itself, so the
+ * {@link AuditBenchmarkRunner} publishes the services through this holder before it starts JMH.
+ */
+public final class AuditBenchmarkContext {
+
+  private static final AtomicReference<AuditBenchmarkContext> INSTANCE = new AtomicReference<>();
+
+  public final Map<String, AuditApplication> auditApplicationCache;
+
+  public final AuditApplicationManager auditApplicationManager;
+
+  public final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache;
+
+  public final AuditEventTypeManager auditEventTypeManager;
+
+  public final AuthenticationPropagator authenticationPropagator;
+
+  public final String embeddedAuditApplicationName;
+
+  public final InternalLoggingService internalLoggingService;
+
+  public final LoggingService loggingService;
+
+  public final PermissionChecker permissionChecker;
+
+  public final QuerydslSupport querydslSupport;
+
+  /**
+   * Constructor.
+   */
+  public AuditBenchmarkContext(final Map<String, AuditApplication> auditApplicationCache,
+      final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache,
+      final AuditApplicationManager auditApplicationManager,
+      final AuditEventTypeManager auditEventTypeManager,
+      final LoggingService loggingService,
+      final InternalLoggingService internalLoggingService,
+      final AuthenticationPropagator authenticationPropagator,
+      final PermissionChecker permissionChecker,
+      final QuerydslSupport querydslSupport,
+      final String embeddedAuditApplicationName) {
+    this.auditApplicationCache = auditApplicationCache;
+    this.auditEventTypeCache = auditEventTypeCache;
+    this.auditApplicationManager = auditApplicationManager;
+    this.auditEventTypeManager = auditEventTypeManager;
+    this.loggingService = loggingService;
+    this.internalLoggingService = internalLoggingService;
+    this.authenticationPropagator = authenticationPropagator;
+    this.permissionChecker = permissionChecker;
+    this.querydslSupport = querydslSupport;
+    this.embeddedAuditApplicationName = embeddedAuditApplicationName;
+  }
+
+  static void clear() {
+    INSTANCE.set(null);
+  }
+
+  /**
+   * Returns the context published by the {@link AuditBenchmarkRunner}.
+   *
+   * @throws IllegalStateException
+   *           if the benchmarks are not started by the {@link AuditBenchmarkRunner}.
+   */
+  public static AuditBenchmarkContext get() {
+    AuditBenchmarkContext auditBenchmarkContext = INSTANCE.get();
+    if (auditBenchmarkContext == null) {
+      throw new IllegalStateException(
+          "the benchmarks must be started by " + AuditBenchmarkRunner.class.getName());
+    }
+    return auditBenchmarkContext;
+  }
+
+  /**
+   * Runs the action as the system resource.
+   */
+  public void runAsSystem(final Runnable action) {
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  static void set(final AuditBenchmarkContext auditBenchmarkContext) {
+    INSTANCE.set(Objects.requireNonNull(auditBenchmarkContext));
+  }
+
+}
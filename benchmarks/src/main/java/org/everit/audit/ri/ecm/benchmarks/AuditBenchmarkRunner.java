@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.everit.audit.AuditEventTypeManager;
+import org.everit.audit.LoggingService;
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.InternalLoggingService;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authorization.PermissionChecker;
+import org.everit.osgi.dev.testrunner.TestRunnerConstants;
+import org.everit.osgi.ecm.annotation.Component;
+import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
+import org.everit.osgi.ecm.annotation.Service;
+import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
+import org.everit.osgi.ecm.component.ServiceHolder;
+import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import aQute.bnd.annotation.headers.ProvideCapability;
+
+/**
+ * Runs the JMH benchmarks of this bundle inside the OSGi container against the H2 database. The
+ * benchmarks run in the container JVM because they need the audit services, so the JMH forks are
+ * disabled. The results are written in JSON format to the file set by the
+ * {@value #SYSTEM_PROPERTY_RESULT_FILE} system property.
+ */
+@Component(configurationPolicy = ConfigurationPolicy.OPTIONAL)
+@ProvideCapability(ns = ECMExtenderConstants.CAPABILITY_NS_COMPONENT,
+    value = ECMExtenderConstants.CAPABILITY_ATTR_CLASS + "=${@class}")
+@StringAttributes({
+    @StringAttribute(attributeId = TestRunnerConstants.SERVICE_PROPERTY_TESTRUNNER_ENGINE_TYPE,
+        defaultValue = "junit4"),
+    @StringAttribute(attributeId = TestRunnerConstants.SERVICE_PROPERTY_TEST_ID,
+        defaultValue = "AuditBenchmarks") })
+@Service(AuditBenchmarkRunner.class)
+public class AuditBenchmarkRunner {
+
+  private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  public static final String SYSTEM_PROPERTY_RESULT_FILE = "audit.benchmark.result";
+
+  private Map<String, AuditApplication> auditApplicationCache;
+
+  private AuditApplicationManager auditApplicationManager;
+
+  private Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache;
+
+  private AuditEventTypeManager auditEventTypeManager;
+
+  private AuthenticationPropagator authenticationPropagator;
+
+  private String embeddedAuditApplicationName;
+
+  private InternalLoggingService internalLoggingService;
+
+  private LoggingService loggingService;
+
+  private PermissionChecker permissionChecker;
+
+  private QuerydslSupport querydslSupport;
+
+  /**
+   * Runs every benchmark of this package.
+   */
+  @Test
+  public void runBenchmarks() {
+    AuditBenchmarkContext.set(new AuditBenchmarkContext(auditApplicationCache,
+        auditEventTypeCache, auditApplicationManager, auditEventTypeManager, loggingService,
+        internalLoggingService, authenticationPropagator, permissionChecker, querydslSupport,
+        embeddedAuditApplicationName));
+
+    Options options = new OptionsBuilder()
+        .include(Pattern.quote(AuditBenchmarkRunner.class.getPackage().getName()) + "\\..*")
+        .forks(0)
+        .shouldFailOnError(true)
+        .resultFormat(ResultFormatType.JSON)
+        .result(System.getProperty(SYSTEM_PROPERTY_RESULT_FILE, DEFAULT_RESULT_FILE))
+        .build();
+
+    // JMH loads the generated benchmark classes through the context class loader
+    Thread currentThread = Thread.currentThread();
+    ClassLoader originalContextClassLoader = currentThread.getContextClassLoader();
+    currentThread.setContextClassLoader(AuditBenchmarkRunner.class.getClassLoader());
+    try {
+      Collection<RunResult> runResults = new Runner(options).run();
+      Assert.assertFalse(runResults.isEmpty());
+    } catch (RunnerException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      currentThread.setContextClassLoader(originalContextClassLoader);
+      AuditBenchmarkContext.clear();
+    }
+  }
+
+  @ServiceRef(defaultValue = "(service.description=audit-application-cache)")
+  public void setAuditApplicationCache(final Map<String, AuditApplication> auditApplicationCache) {
+    this.auditApplicationCache = auditApplicationCache;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setAuditApplicationManager(final AuditApplicationManager auditApplicationManager) {
+    this.auditApplicationManager = auditApplicationManager;
+  }
+
+  @ServiceRef(defaultValue = "(service.description=audit-event-type-cache)")
+  public void setAuditEventTypeCache(
+      final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache) {
+    this.auditEventTypeCache = auditEventTypeCache;
+  }
+
+  /**
+   * Sets the {@link #auditEventTypeManager} and the {@link #embeddedAuditApplicationName}.
+   */
+  @ServiceRef(defaultValue = "")
+  public void setAuditEventTypeManager(
+      final ServiceHolder<AuditEventTypeManager> serviceHolder) {
+    auditEventTypeManager = serviceHolder.getService();
+    embeddedAuditApplicationName = (String) serviceHolder.getReference().getProperty(
+        AuditRiComponentConstants.ATTR_EMBEDDED_AUDIT_APPLICATION_NAME);
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setAuthenticationPropagator(final AuthenticationPropagator authenticationPropagator) {
+    this.authenticationPropagator = authenticationPropagator;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setInternalLoggingService(final InternalLoggingService internalLoggingService) {
+    this.internalLoggingService = internalLoggingService;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setLoggingService(final LoggingService loggingService) {
+    this.loggingService = loggingService;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setPermissionChecker(final PermissionChecker permissionChecker) {
+    this.permissionChecker = permissionChecker;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setQuerydslSupport(final QuerydslSupport querydslSupport) {
+    this.querydslSupport = querydslSupport;
+  }
+
+}
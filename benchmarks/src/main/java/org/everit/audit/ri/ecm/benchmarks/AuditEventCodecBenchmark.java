@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.EventData;
+import org.everit.audit.dto.EventDataType;
+import org.everit.audit.ri.ecm.AuditEventCodec;
+import org.everit.audit.ri.ecm.Utf8Slice;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding and decoding throughput of the {@link AuditEventCodec}, with and without a name
+ * dictionary, compared to JSON. The JSON documents are created and parsed by the org.json library
+ * that is deployed with the benchmarks. The {@link SizeCounters} report the number of the encoded
+ * bytes, so the size of the formats can be compared from the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AuditEventCodecBenchmark {
+
+  /**
+   * The number of the encoded bytes.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class SizeCounters {
+
+    public long encodedBytes;
+
+    /**
+     * Resets the counter before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+      encodedBytes = 0;
+    }
+
+  }
+
+  /**
+   * Passes the slices to the {@link Blackhole} without decoding them.
+   */
+  private static final class SliceConsumer implements AuditEventCodec.Visitor {
+
+    private final Blackhole blackhole;
+
+    SliceConsumer(final Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void visitEvent(final Utf8Slice eventTypeName, final Instant occuredAt) {
+      blackhole.consume(eventTypeName);
+      blackhole.consume(occuredAt);
+    }
+
+    @Override
+    public void visitNumberEventData(final Utf8Slice eventDataName, final double numberValue) {
+      blackhole.consume(eventDataName);
+      blackhole.consume(numberValue);
+    }
+
+    @Override
+    public void visitStringEventData(final Utf8Slice eventDataName,
+        final Utf8Slice stringValue) {
+      blackhole.consume(eventDataName);
+      blackhole.consume(stringValue);
+    }
+
+    @Override
+    public void visitTextEventData(final Utf8Slice eventDataName, final Utf8Slice textValue) {
+      blackhole.consume(eventDataName);
+      blackhole.consume(textValue);
+    }
+
+    @Override
+    public void visitTimestampEventData(final Utf8Slice eventDataName,
+        final Instant timestampValue) {
+      blackhole.consume(eventDataName);
+      blackhole.consume(timestampValue);
+    }
+
+  }
+
+  private static final String EVENT_TYPE_NAME = "codec-benchmark";
+
+  private static final double NUMBER_V = 10.75;
+
+  private static final String STRING_V = "user-42";
+
+  private static final String[] DICTIONARY =
+      new String[] { EVENT_TYPE_NAME, "userId", "payload", "amount", "createdAt" };
+
+  private AuditEvent auditEvent;
+
+  private final AuditEventCodec codec = new AuditEventCodec();
+
+  private final AuditEventCodec dictionaryCodec = new AuditEventCodec(DICTIONARY);
+
+  private byte[] encodedBinary;
+
+  private byte[] encodedBinaryWithDictionary;
+
+  private byte[] encodedJson;
+
+  @Param({ "256", "4096" })
+  public int payloadSize;
+
+  private static AuditEvent fromJson(final byte[] json) {
+    JSONObject jsonEvent = new JSONObject(new String(json, StandardCharsets.UTF_8));
+    AuditEvent.Builder builder = new AuditEvent.Builder()
+        .eventTypeName(jsonEvent.getString("eventTypeName"));
+    if (jsonEvent.has("occuredAt")) {
+      builder.occuredAt(Instant.parse(jsonEvent.getString("occuredAt")));
+    }
+    JSONArray jsonEventDataArray = jsonEvent.getJSONArray("eventData");
+    for (int i = 0; i < jsonEventDataArray.length(); i++) {
+      JSONObject jsonEventData = jsonEventDataArray.getJSONObject(i);
+      String eventDataName = jsonEventData.getString("name");
+      switch (EventDataType.valueOf(jsonEventData.getString("type"))) {
+        case STRING:
+          builder.addStringEventData(eventDataName, jsonEventData.getString("value"));
+          break;
+        case TEXT:
+          builder.addTextEventData(eventDataName, false, jsonEventData.getString("value"));
+          break;
+        case NUMBER:
+          builder.addNumberEventData(eventDataName, jsonEventData.getDouble("value"));
+          break;
+        case TIMESTAMP:
+          builder.addTimestampEventData(eventDataName,
+              Instant.parse(jsonEventData.getString("value")));
+          break;
+        default:
+          throw new IllegalArgumentException("unsupported eventDataType");
+      }
+    }
+    return builder.build();
+  }
+
+  private static byte[] toJson(final AuditEvent auditEvent) {
+    JSONObject jsonEvent = new JSONObject();
+    jsonEvent.put("eventTypeName", auditEvent.eventTypeName);
+    if (auditEvent.occuredAt != null) {
+      jsonEvent.put("occuredAt", auditEvent.occuredAt.toString());
+    }
+    JSONArray jsonEventDataArray = new JSONArray();
+    for (EventData eventData : auditEvent.eventDataArray) {
+      JSONObject jsonEventData = new JSONObject();
+      jsonEventData.put("name", eventData.eventDataName);
+      jsonEventData.put("type", eventData.eventDataType.name());
+      switch (eventData.eventDataType) {
+        case STRING:
+          jsonEventData.put("value", eventData.stringValue);
+          break;
+        case TEXT:
+          jsonEventData.put("value", eventData.textValue);
+          break;
+        case NUMBER:
+          jsonEventData.put("value", eventData.numberValue);
+          break;
+        case TIMESTAMP:
+          jsonEventData.put("value", eventData.timestampValue.toString());
+          break;
+        default:
+          throw new IllegalArgumentException("unsupported eventDataType");
+      }
+      jsonEventDataArray.put(jsonEventData);
+    }
+    jsonEvent.put("eventData", jsonEventDataArray);
+    return jsonEvent.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public AuditEvent decodeBinary() {
+    return codec.decode(ByteBuffer.wrap(encodedBinary));
+  }
+
+  /**
+   * Decodes the event without creating the strings, as a reader that filters or forwards the
+   * events does.
+   */
+  @Benchmark
+  public void decodeBinarySlices(final Blackhole blackhole) {
+    codec.decode(ByteBuffer.wrap(encodedBinary), new SliceConsumer(blackhole));
+  }
+
+  @Benchmark
+  public AuditEvent decodeBinaryWithDictionary() {
+    return dictionaryCodec.decode(ByteBuffer.wrap(encodedBinaryWithDictionary));
+  }
+
+  @Benchmark
+  public AuditEvent decodeJson() {
+    return fromJson(encodedJson);
+  }
+
+  /**
+   * Encodes the event into a new array.
+   */
+  @Benchmark
+  public byte[] encodeBinary(final SizeCounters sizeCounters) {
+    byte[] encoded = codec.encode(auditEvent);
+    sizeCounters.encodedBytes += encoded.length;
+    return encoded;
+  }
+
+  /**
+   * Encodes the event into a new array, with the names in the dictionary.
+   */
+  @Benchmark
+  public byte[] encodeBinaryWithDictionary(final SizeCounters sizeCounters) {
+    byte[] encoded = dictionaryCodec.encode(auditEvent);
+    sizeCounters.encodedBytes += encoded.length;
+    return encoded;
+  }
+
+  /**
+   * Creates the UTF-8 bytes of the JSON document of the event.
+   */
+  @Benchmark
+  public byte[] encodeJson(final SizeCounters sizeCounters) {
+    byte[] encoded = toJson(auditEvent);
+    sizeCounters.encodedBytes += encoded.length;
+    return encoded;
+  }
+
+  /**
+   * Creates the event with a TEXT payload of the given size and encodes it in every format.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    auditEvent = new AuditEvent.Builder().eventTypeName(EVENT_TYPE_NAME)
+        .occuredAt(Instant.now())
+        .addStringEventData("userId", STRING_V)
+        .addTextEventData("payload", false, BenchmarkEvents.createPayload(payloadSize))
+        .addNumberEventData("amount", NUMBER_V)
+        .addTimestampEventData("createdAt", Instant.now())
+        .build();
+    encodedBinary = codec.encode(auditEvent);
+    encodedBinaryWithDictionary = dictionaryCodec.encode(auditEvent);
+    encodedJson = toJson(auditEvent);
+  }
+
+}
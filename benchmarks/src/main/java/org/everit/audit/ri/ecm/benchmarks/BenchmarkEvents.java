@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.time.Instant;
+import java.util.Random;
+
+import org.everit.audit.dto.AuditEvent;
+
+/**
+ * Factory of the audit events logged by the benchmarks.
+ */
+public final class BenchmarkEvents {
+
+  private static final double NUMBER_V = 10.75;
+
+  private static final int PAYLOAD_CUSTOMER_COUNT = 1000;
+
+  private static final int PAYLOAD_MAX_AMOUNT = 100000;
+
+  private static final int PAYLOAD_RECORD_LENGTH = 200;
+
+  private static final String[] PAYLOAD_STATUSES =
+      new String[] { "CREATED", "PAID", "SHIPPED", "DELIVERED", "CANCELLED" };
+
+  private static final String STRING_V = "string-value";
+
+  private static final String TEXT_V = "text-value";
+
+  /**
+   * Creates an event with the four kinds of event data, like a typical audit event does.
+   */
+  public static AuditEvent createEvent(final String eventTypeName) {
+    return new AuditEvent.Builder().eventTypeName(eventTypeName)
+        .addStringEventData("string", STRING_V)
+        .addTextEventData("text", false, TEXT_V)
+        .addNumberEventData("number", NUMBER_V)
+        .addTimestampEventData("timestamp", Instant.now())
+        .build();
+  }
+
+  /**
+   * Creates a JSON document of about the given length that looks like a request or response
+   * payload: records with repeating field names and varying values. The content depends only on
+   * the length, so the runs are comparable.
+   */
+  public static String createPayload(final int length) {
+    Random random = new Random(length);
+    StringBuilder payload = new StringBuilder(length + PAYLOAD_RECORD_LENGTH).append('[');
+    while (payload.length() < length) {
+      payload.append("{\"orderId\":").append(random.nextInt(Integer.MAX_VALUE))
+          .append(",\"customer\":\"customer-").append(random.nextInt(PAYLOAD_CUSTOMER_COUNT))
+          .append("\",\"amount\":").append(random.nextInt(PAYLOAD_MAX_AMOUNT))
+          .append(",\"currency\":\"EUR\",\"status\":\"")
+          .append(PAYLOAD_STATUSES[random.nextInt(PAYLOAD_STATUSES.length)])
+          .append("\",\"createdAt\":\"").append(Instant.ofEpochSecond(random.nextInt()))
+          .append("\"},");
+    }
+    payload.setCharAt(payload.length() - 1, ']');
+    return payload.toString();
+  }
+
+  private BenchmarkEvents() {
+  }
+
+}
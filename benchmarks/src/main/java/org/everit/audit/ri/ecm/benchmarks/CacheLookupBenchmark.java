@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the cached lookup path: the raw auditApplicationCache and auditEventTypeCache
+ * lookups and an initAuditEventTypes call that is answered from the caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CacheLookupBenchmark {
+
+  private static final String EVENT_TYPE_NAME = "cache-lookup-benchmark";
+
+  private AuditBenchmarkContext context;
+
+  private CachedEventTypeKey eventTypeKey;
+
+  @Benchmark
+  public AuditApplication auditApplicationCacheGet() {
+    return context.auditApplicationCache.get(context.embeddedAuditApplicationName);
+  }
+
+  @Benchmark
+  public AuditEventType auditEventTypeCacheGet() {
+    return context.auditEventTypeCache.get(eventTypeKey);
+  }
+
+  @Benchmark
+  public void initCachedAuditEventType() {
+    context.auditEventTypeManager.initAuditEventTypes(EVENT_TYPE_NAME);
+  }
+
+  /**
+   * Fills the caches and picks the key of the cached event type.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    context = AuditBenchmarkContext.get();
+    context.auditApplicationCache.clear();
+    context.auditEventTypeCache.clear();
+    context.auditEventTypeManager.initAuditEventTypes(EVENT_TYPE_NAME);
+    eventTypeKey = context.auditEventTypeCache.keySet().iterator().next();
+  }
+
+}
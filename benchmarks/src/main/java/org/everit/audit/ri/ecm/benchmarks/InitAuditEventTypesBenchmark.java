@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.AuditEventTypeManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of {@link AuditEventTypeManager#initAuditEventTypes(String...)} registering new event types
+ * in one call at several sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class InitAuditEventTypesBenchmark {
+
+  private AuditBenchmarkContext context;
+
+  private String[] eventTypeNames;
+
+  private long invocationCounter;
+
+  @Param({ "100", "1000", "10000" })
+  public int size;
+
+  @Benchmark
+  public void initAuditEventTypes() {
+    context.auditEventTypeManager.initAuditEventTypes(eventTypeNames);
+  }
+
+  /**
+   * Generates event type names that are not registered yet.
+   */
+  @Setup(Level.Invocation)
+  public void prepareEventTypeNames() {
+    invocationCounter++;
+    eventTypeNames = new String[size];
+    for (int i = 0; i < size; i++) {
+      eventTypeNames[i] = "init-" + size + "-" + invocationCounter + "-" + i;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = AuditBenchmarkContext.get();
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.ri.InternalLoggingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link InternalLoggingService#logEvent(String, org.everit.audit.dto.AuditEvent)}
+ * called by an authorized resource.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InternalLoggingServiceBenchmark {
+
+  private static final String EVENT_TYPE_NAME = "internal-logging-service-benchmark";
+
+  private AuditBenchmarkContext context;
+
+  @Benchmark
+  public void logEvent() {
+    context.runAsSystem(() -> context.internalLoggingService.logEvent(
+        context.embeddedAuditApplicationName, BenchmarkEvents.createEvent(EVENT_TYPE_NAME)));
+  }
+
+  /**
+   * Creates the audit application and the event type.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    context = AuditBenchmarkContext.get();
+    context.auditEventTypeManager.initAuditEventTypes(EVENT_TYPE_NAME);
+  }
+
+}
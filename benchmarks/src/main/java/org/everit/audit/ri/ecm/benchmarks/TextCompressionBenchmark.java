@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.everit.audit.dto.EventDataType;
+import org.everit.audit.ri.ecm.CompressedText;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+/**
+ * Insert throughput of TEXT event data rows with compressed and with uncompressed payloads. The
+ * component configuration is fixed for the whole benchmark run, so the rows are inserted directly
+ * into the event_data table in the same form as the write path stores them. The
+ * {@link StorageCounters} report the number of the original and the stored characters, so the
+ * storage savings can be read from the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TextCompressionBenchmark {
+
+  /**
+   * The number of the original and the stored characters of the inserted TEXT values.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StorageCounters {
+
+    public long originalChars;
+
+    public long storedChars;
+
+    /**
+     * Resets the counters before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+      originalChars = 0;
+      storedChars = 0;
+    }
+
+  }
+
+  private static final String EVENT_DATA_NAME = "payload";
+
+  private static final String EVENT_TYPE_NAME = "text-compression-benchmark";
+
+  /**
+   * The first identifier of the inserted event data rows. It is far above the identifiers
+   * generated by the database or allocated by the component, so the rows can be deleted after the
+   * benchmark.
+   */
+  private static final long FIRST_EVENT_DATA_ID = Long.MAX_VALUE / 2;
+
+  private String compressedPayload;
+
+  private AuditBenchmarkContext context;
+
+  private long eventId;
+
+  private final AtomicLong nextEventDataId = new AtomicLong(FIRST_EVENT_DATA_ID);
+
+  private String payload;
+
+  @Param({ "4096", "32768" })
+  public int payloadSize;
+
+  /**
+   * Deletes the inserted rows and the event they belong to.
+   */
+  @TearDown(Level.Trial)
+  public void cleanup() {
+    QEvent qEvent = QEvent.event;
+    QEventData qEventData = QEventData.eventData;
+    context.querydslSupport.execute((connection, configuration) -> {
+      new SQLDeleteClause(connection, configuration, qEventData)
+          .where(qEventData.eventId.eq(eventId))
+          .execute();
+      return new SQLDeleteClause(connection, configuration, qEvent)
+          .where(qEvent.eventId.eq(eventId))
+          .execute();
+    });
+  }
+
+  @Benchmark
+  public String decompress() {
+    return CompressedText.decompress(compressedPayload);
+  }
+
+  private void insert(final String storedValue) {
+    QEventData qEventData = QEventData.eventData;
+    context.querydslSupport.execute((connection, configuration) -> new SQLInsertClause(
+        connection, configuration, qEventData)
+            .set(qEventData.eventDataId, nextEventDataId.getAndIncrement())
+            .set(qEventData.eventId, eventId)
+            .set(qEventData.eventDataName, EVENT_DATA_NAME)
+            .set(qEventData.eventDataType, EventDataType.TEXT.name())
+            .set(qEventData.textValue, storedValue)
+            .execute());
+  }
+
+  /**
+   * Compresses the payload and inserts it, as the write path does with a threshold below the
+   * payload size.
+   */
+  @Benchmark
+  public void insertCompressed(final StorageCounters storageCounters) {
+    String storedValue = CompressedText.compress(payload);
+    insert(storedValue);
+    storageCounters.originalChars += payload.length();
+    storageCounters.storedChars += storedValue.length();
+  }
+
+  /**
+   * Inserts the payload as it is, as the write path does when the compression is disabled.
+   */
+  @Benchmark
+  public void insertUncompressed(final StorageCounters storageCounters) {
+    insert(payload);
+    storageCounters.originalChars += payload.length();
+    storageCounters.storedChars += payload.length();
+  }
+
+  /**
+   * Creates the payload and the event the inserted rows belong to.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    context = AuditBenchmarkContext.get();
+    payload = BenchmarkEvents.createPayload(payloadSize);
+    compressedPayload = CompressedText.compress(payload);
+
+    context.auditEventTypeManager.initAuditEventTypes(EVENT_TYPE_NAME);
+    context.runAsSystem(() -> context.internalLoggingService.logEvent(
+        context.embeddedAuditApplicationName, BenchmarkEvents.createEvent(EVENT_TYPE_NAME)));
+    QEvent qEvent = QEvent.event;
+    eventId = context.querydslSupport.execute((connection, configuration) -> new SQLQuery<Long>(
+        connection, configuration)
+            .select(qEvent.eventId.max())
+            .from(qEvent)
+            .fetchOne());
+  }
+
+}
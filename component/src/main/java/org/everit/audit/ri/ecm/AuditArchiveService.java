@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.function.Consumer;
+
+/**
+ * Reads the audit events that are moved from the database to the archive segment files. The
+ * archived events are not returned by the {@link AuditEventQueryService}.
+ */
+public interface AuditArchiveService {
+
+  /**
+   * Streams the archived events that match the query to the consumer. The segments whose footer
+   * shows that they cannot contain a matching event are skipped without decompressing them. The
+   * events of a segment are passed in the order of their occurrence time, the segments in the
+   * order they were archived.
+   *
+   * @return the number of events passed to the consumer.
+   * @throws NullPointerException
+   *           if the query or the consumer is <code>null</code>.
+   * @throws java.io.UncheckedIOException
+   *           if a segment file cannot be read.
+   * @throws org.everit.authnr.permissionchecker.UnauthorizedException
+   *           if the authenticated resource does not have permission to read the audit
+   *           application.
+   */
+  long streamArchivedEvents(AuditEventQuery query, Consumer<StoredAuditEvent> consumer);
+
+}
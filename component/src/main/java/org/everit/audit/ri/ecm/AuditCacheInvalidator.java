@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+/**
+ * Invalidates the cached audit applications and event types on all the nodes that share the
+ * audit database. The audit applications created through the AuditApplicationManager are
+ * invalidated automatically, this service must be called when an audit application or its event
+ * types are deleted or changed directly in the database.
+ */
+public interface AuditCacheInvalidator {
+
+  /**
+   * Evicts the audit application and its event types from the caches of this node and records
+   * the change, so the other nodes evict them at their next poll. The change is recorded in the
+   * current transaction if there is one.
+   *
+   * @throws NullPointerException
+   *           if the applicationName is <code>null</code>.
+   */
+  void invalidateAuditApplication(String applicationName);
+
+}
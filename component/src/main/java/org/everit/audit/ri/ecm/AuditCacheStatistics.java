@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+/**
+ * Statistics of a cache registered by the audit cache component. The counters are cumulative
+ * since the activation of the component.
+ */
+public interface AuditCacheStatistics {
+
+  /**
+   * The number of entries removed because they were not accessed recently or frequently enough
+   * to stay within the size bound.
+   */
+  long getEvictionCount();
+
+  /**
+   * The number of entries removed because their expire-after-write time elapsed.
+   */
+  long getExpirationCount();
+
+  /**
+   * The number of lookups that found a live entry.
+   */
+  long getHitCount();
+
+  /**
+   * The number of lookups that did not find a live entry.
+   */
+  long getMissCount();
+
+  /**
+   * The number of entries currently held by the cache.
+   */
+  int getSize();
+
+}
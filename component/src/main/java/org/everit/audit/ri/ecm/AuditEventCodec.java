@@ -0,0 +1,597 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.EventData;
+import org.everit.audit.dto.EventDataType;
+
+/**
+ * Versioned binary format of the {@link AuditEvent}s, used to move the events between processes
+ * and to store them in files. The lengths and the integers are written as unsigned LEB128
+ * varints, the seconds of the instants are zigzag encoded and the strings are written in UTF-8.
+ * The event type names and the event data names that are in the dictionary of the codec are
+ * written as an index of the dictionary. An event that references the dictionary can only be
+ * decoded by a codec with the same dictionary, so the encoded event contains the hash of the
+ * dictionary.
+ *
+ * <p>
+ * Format version 1:
+ *
+ * <pre>
+ * event        = version:byte flags:byte [dictionaryHash:int32] eventTypeName:name
+ *                [occuredAt:instant] eventDataCount:varint eventData*
+ * eventData    = type:byte eventDataName:name value
+ * value        = string (STRING, TEXT) | float64 (NUMBER) | instant (TIMESTAMP)
+ * name         = varint: 0 for null, 2 * index + 1 for a dictionary entry or
+ *                2 * (length + 1) followed by the UTF-8 bytes
+ * string       = varint: 0 for null or length + 1 followed by the UTF-8 bytes
+ * instant      = epochSecond:zigzag-varint nano:varint
+ * </pre>
+ *
+ * <p>
+ * The fixed-width numbers are big-endian regardless of the byte order of the buffer. The codec is
+ * immutable and thread-safe.
+ */
+public final class AuditEventCodec {
+
+  /**
+   * Receives the parts of an encoded event from
+   * {@link AuditEventCodec#decode(ByteBuffer, Visitor)}. The names and the string values are
+   * slices of the buffer of the encoded event or of the dictionary, so no string is created unless
+   * the visitor asks for it.
+   */
+  public interface Visitor {
+
+    void visitEvent(Utf8Slice eventTypeName, Instant occuredAt);
+
+    void visitNumberEventData(Utf8Slice eventDataName, double numberValue);
+
+    void visitStringEventData(Utf8Slice eventDataName, Utf8Slice stringValue);
+
+    void visitTextEventData(Utf8Slice eventDataName, Utf8Slice textValue);
+
+    void visitTimestampEventData(Utf8Slice eventDataName, Instant timestampValue);
+
+  }
+
+  /**
+   * Builds the {@link AuditEvent} from the visited parts.
+   */
+  private static final class AuditEventBuilder implements Visitor {
+
+    private final AuditEvent.Builder builder = new AuditEvent.Builder();
+
+    @Override
+    public void visitEvent(final Utf8Slice eventTypeName, final Instant occuredAt) {
+      builder.eventTypeName(asString(eventTypeName));
+      if (occuredAt != null) {
+        builder.occuredAt(occuredAt);
+      }
+    }
+
+    @Override
+    public void visitNumberEventData(final Utf8Slice eventDataName, final double numberValue) {
+      builder.addNumberEventData(asString(eventDataName), numberValue);
+    }
+
+    @Override
+    public void visitStringEventData(final Utf8Slice eventDataName,
+        final Utf8Slice stringValue) {
+      builder.addStringEventData(asString(eventDataName), asString(stringValue));
+    }
+
+    @Override
+    public void visitTextEventData(final Utf8Slice eventDataName, final Utf8Slice textValue) {
+      builder.addTextEventData(asString(eventDataName), false, asString(textValue));
+    }
+
+    @Override
+    public void visitTimestampEventData(final Utf8Slice eventDataName,
+        final Instant timestampValue) {
+      builder.addTimestampEventData(asString(eventDataName), timestampValue);
+    }
+
+  }
+
+  private static final int FLAG_DICTIONARY = 2;
+
+  private static final int FLAG_OCCURED_AT = 1;
+
+  /**
+   * The version of the format written by the codec.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  private static final int MAX_VARINT_LENGTH = 5;
+
+  private static final int MAX_VARLONG_LENGTH = 10;
+
+  private static final int NULL_REFERENCE = 0;
+
+  private static final int TYPE_NUMBER = 3;
+
+  private static final int TYPE_STRING = 1;
+
+  private static final int TYPE_TEXT = 2;
+
+  private static final int TYPE_TIMESTAMP = 4;
+
+  private final int dictionaryHash;
+
+  private final Map<String, Integer> dictionaryIndexes;
+
+  private final Utf8Slice[] dictionarySlices;
+
+  /**
+   * Creates a codec with an optional name dictionary. The events encoded with a dictionary can
+   * only be decoded by a codec with the same names in the same order.
+   *
+   * @param dictionary
+   *          the frequent event type names and event data names.
+   */
+  public AuditEventCodec(final String... dictionary) {
+    Objects.requireNonNull(dictionary, "dictionary cannot be null");
+    dictionaryIndexes = new HashMap<>();
+    dictionarySlices = new Utf8Slice[dictionary.length];
+    for (int i = 0; i < dictionary.length; i++) {
+      String name = Objects.requireNonNull(dictionary[i], "dictionary cannot contain null");
+      if (dictionaryIndexes.putIfAbsent(name, i) != null) {
+        throw new IllegalArgumentException("duplicate dictionary entry [" + name + "]");
+      }
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      dictionarySlices[i] = new Utf8Slice(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+    // the hash of String is specified, so it is the same in every process
+    dictionaryHash = Arrays.hashCode(dictionary);
+  }
+
+  private static String asString(final Utf8Slice slice) {
+    return slice == null ? null : slice.toString();
+  }
+
+  private static int instantLength(final Instant instant) {
+    return varLongLength(zigzag(instant.getEpochSecond())) + varIntLength(instant.getNano());
+  }
+
+  static boolean isSurrogatePair(final String value, final int index) {
+    return Character.isHighSurrogate(value.charAt(index)) && index + 1 < value.length()
+        && Character.isLowSurrogate(value.charAt(index + 1));
+  }
+
+  private static int readFixed32(final ByteBuffer source) {
+    int value = 0;
+    for (int i = 0; i < Integer.BYTES; i++) {
+      value = value << Byte.SIZE | source.get() & 0xFF;
+    }
+    return value;
+  }
+
+  private static long readFixed64(final ByteBuffer source) {
+    long high = readFixed32(source);
+    return high << Integer.SIZE | readFixed32(source) & 0xFFFFFFFFL;
+  }
+
+  private static Instant readInstant(final ByteBuffer source) {
+    long epochSecond = unzigzag(readVarLong(source));
+    int nano = readVarInt(source);
+    try {
+      return Instant.ofEpochSecond(epochSecond, nano);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("invalid instant in the encoded audit event", e);
+    }
+  }
+
+  private static Utf8Slice readSlice(final ByteBuffer source, final int length) {
+    if (length < 0 || length > source.remaining()) {
+      throw new IllegalArgumentException("invalid string length in the encoded audit event");
+    }
+    int offset = source.position();
+    source.position(offset + length);
+    return new Utf8Slice(source, offset, length);
+  }
+
+  private static Utf8Slice readString(final ByteBuffer source) {
+    int reference = readVarInt(source);
+    if (reference == NULL_REFERENCE) {
+      return null;
+    }
+    return readSlice(source, reference - 1);
+  }
+
+  private static int readVarInt(final ByteBuffer source) {
+    int value = 0;
+    for (int i = 0; i < MAX_VARINT_LENGTH; i++) {
+      byte b = source.get();
+      value |= (b & 0x7F) << 7 * i;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("malformed varint in the encoded audit event");
+  }
+
+  private static long readVarLong(final ByteBuffer source) {
+    long value = 0;
+    for (int i = 0; i < MAX_VARLONG_LENGTH; i++) {
+      byte b = source.get();
+      value |= (long) (b & 0x7F) << 7 * i;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("malformed varint in the encoded audit event");
+  }
+
+  private static int stringLength(final String value) {
+    if (value == null) {
+      return 1;
+    }
+    int length = utf8Length(value);
+    return varIntLength(length + 1) + length;
+  }
+
+  private static int typeOf(final EventDataType eventDataType) {
+    switch (eventDataType) {
+      case STRING:
+        return TYPE_STRING;
+      case TEXT:
+        return TYPE_TEXT;
+      case NUMBER:
+        return TYPE_NUMBER;
+      case TIMESTAMP:
+        return TYPE_TIMESTAMP;
+      default:
+        throw new IllegalArgumentException("unsupported eventDataType [" + eventDataType + "]");
+    }
+  }
+
+  private static long unzigzag(final long value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  /**
+   * Returns the length of the UTF-8 form of the string. The unpaired surrogates are replaced by
+   * '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+   */
+  static int utf8Length(final String value) {
+    int length = 0;
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (!Character.isSurrogate(c)) {
+        length += 3;
+      } else if (isSurrogatePair(value, i)) {
+        length += 4;
+        i++;
+      } else {
+        length++;
+      }
+    }
+    return length;
+  }
+
+  static int utf8SequenceLength(final int codePoint) {
+    if (codePoint < 0x80) {
+      return 1;
+    } else if (codePoint < 0x800) {
+      return 2;
+    } else if (codePoint < 0x10000) {
+      return 3;
+    }
+    return 4;
+  }
+
+  private static int varIntLength(final int value) {
+    int length = 1;
+    for (int rest = value >>> 7; rest != 0; rest >>>= 7) {
+      length++;
+    }
+    return length;
+  }
+
+  private static int varLongLength(final long value) {
+    int length = 1;
+    for (long rest = value >>> 7; rest != 0; rest >>>= 7) {
+      length++;
+    }
+    return length;
+  }
+
+  private static void writeFixed32(final ByteBuffer target, final int value) {
+    target.put((byte) (value >>> 24));
+    target.put((byte) (value >>> 16));
+    target.put((byte) (value >>> 8));
+    target.put((byte) value);
+  }
+
+  private static void writeFixed64(final ByteBuffer target, final long value) {
+    writeFixed32(target, (int) (value >>> 32));
+    writeFixed32(target, (int) value);
+  }
+
+  private static void writeInstant(final ByteBuffer target, final Instant instant) {
+    writeVarLong(target, zigzag(instant.getEpochSecond()));
+    writeVarInt(target, instant.getNano());
+  }
+
+  private static void writeString(final ByteBuffer target, final String value) {
+    if (value == null) {
+      writeVarInt(target, NULL_REFERENCE);
+      return;
+    }
+    writeVarInt(target, utf8Length(value) + 1);
+    writeUtf8(target, value);
+  }
+
+  /**
+   * Writes the UTF-8 form of the string directly into the buffer, without creating a temporary
+   * byte array.
+   */
+  private static void writeUtf8(final ByteBuffer target, final String value) {
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        target.put((byte) c);
+      } else if (c < 0x800) {
+        target.put((byte) (0xC0 | c >> 6));
+        target.put((byte) (0x80 | c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        target.put((byte) (0xE0 | c >> 12));
+        target.put((byte) (0x80 | c >> 6 & 0x3F));
+        target.put((byte) (0x80 | c & 0x3F));
+      } else if (isSurrogatePair(value, i)) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        target.put((byte) (0xF0 | codePoint >> 18));
+        target.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+        target.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+        target.put((byte) (0x80 | codePoint & 0x3F));
+      } else {
+        target.put((byte) '?');
+      }
+    }
+  }
+
+  private static void writeVarInt(final ByteBuffer target, final int value) {
+    int rest = value;
+    while ((rest & ~0x7F) != 0) {
+      target.put((byte) (rest & 0x7F | 0x80));
+      rest >>>= 7;
+    }
+    target.put((byte) rest);
+  }
+
+  private static void writeVarLong(final ByteBuffer target, final long value) {
+    long rest = value;
+    while ((rest & ~0x7FL) != 0) {
+      target.put((byte) (rest & 0x7F | 0x80));
+      rest >>>= 7;
+    }
+    target.put((byte) rest);
+  }
+
+  private static long zigzag(final long value) {
+    return value << 1 ^ value >> (Long.SIZE - 1);
+  }
+
+  /**
+   * Decodes the event that starts at the position of the buffer and moves the position after the
+   * event.
+   *
+   * @throws IllegalArgumentException
+   *           if the buffer does not contain a valid encoded event of a supported version.
+   */
+  public AuditEvent decode(final ByteBuffer source) {
+    AuditEventBuilder auditEventBuilder = new AuditEventBuilder();
+    decode(source, auditEventBuilder);
+    return auditEventBuilder.builder.build();
+  }
+
+  /**
+   * Passes the parts of the event that starts at the position of the buffer to the visitor and
+   * moves the position after the event. The strings are not decoded, the visitor receives slices
+   * of the buffer.
+   *
+   * @throws IllegalArgumentException
+   *           if the buffer does not contain a valid encoded event of a supported version.
+   */
+  public void decode(final ByteBuffer source, final Visitor visitor) {
+    Objects.requireNonNull(visitor, "visitor cannot be null");
+    try {
+      int formatVersion = source.get() & 0xFF;
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IllegalArgumentException(
+            "unsupported audit event format version [" + formatVersion + "]");
+      }
+      int flags = source.get();
+      boolean dictionaryUsed = (flags & FLAG_DICTIONARY) != 0;
+      if (dictionaryUsed && readFixed32(source) != dictionaryHash) {
+        throw new IllegalArgumentException(
+            "the audit event is encoded with a different dictionary");
+      }
+      Utf8Slice eventTypeName = readName(source, dictionaryUsed);
+      Instant occuredAt = (flags & FLAG_OCCURED_AT) != 0 ? readInstant(source) : null;
+      visitor.visitEvent(eventTypeName, occuredAt);
+
+      int eventDataCount = readVarInt(source);
+      for (int i = 0; i < eventDataCount; i++) {
+        int type = source.get();
+        Utf8Slice eventDataName = readName(source, dictionaryUsed);
+        switch (type) {
+          case TYPE_STRING:
+            visitor.visitStringEventData(eventDataName, readString(source));
+            break;
+          case TYPE_TEXT:
+            visitor.visitTextEventData(eventDataName, readString(source));
+            break;
+          case TYPE_NUMBER:
+            visitor.visitNumberEventData(eventDataName,
+                Double.longBitsToDouble(readFixed64(source)));
+            break;
+          case TYPE_TIMESTAMP:
+            visitor.visitTimestampEventData(eventDataName, readInstant(source));
+            break;
+          default:
+            throw new IllegalArgumentException("unsupported event data type [" + type + "]");
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("truncated audit event", e);
+    }
+  }
+
+  /**
+   * Encodes the event into a new array.
+   */
+  public byte[] encode(final AuditEvent auditEvent) {
+    byte[] bytes = new byte[encodedLength(auditEvent)];
+    encode(auditEvent, ByteBuffer.wrap(bytes));
+    return bytes;
+  }
+
+  /**
+   * Encodes the event into the buffer from its position and moves the position after the event.
+   *
+   * @throws java.nio.BufferOverflowException
+   *           if the remaining space of the buffer is less than the
+   *           {@link #encodedLength(AuditEvent)} of the event.
+   */
+  public void encode(final AuditEvent auditEvent, final ByteBuffer target) {
+    target.put((byte) FORMAT_VERSION);
+    int flags = auditEvent.occuredAt != null ? FLAG_OCCURED_AT : 0;
+    if (dictionarySlices.length > 0) {
+      flags |= FLAG_DICTIONARY;
+    }
+    target.put((byte) flags);
+    if (dictionarySlices.length > 0) {
+      writeFixed32(target, dictionaryHash);
+    }
+    writeName(target, auditEvent.eventTypeName);
+    if (auditEvent.occuredAt != null) {
+      writeInstant(target, auditEvent.occuredAt);
+    }
+    writeVarInt(target, auditEvent.eventDataArray.length);
+    for (EventData eventData : auditEvent.eventDataArray) {
+      target.put((byte) typeOf(eventData.eventDataType));
+      writeName(target, eventData.eventDataName);
+      switch (eventData.eventDataType) {
+        case STRING:
+          writeString(target, eventData.stringValue);
+          break;
+        case TEXT:
+          writeString(target, eventData.textValue);
+          break;
+        case NUMBER:
+          writeFixed64(target, Double.doubleToRawLongBits(eventData.numberValue));
+          break;
+        case TIMESTAMP:
+          writeInstant(target, eventData.timestampValue);
+          break;
+        default:
+          throw new IllegalArgumentException(
+              "unsupported eventDataType [" + eventData.eventDataType + "]");
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes the event is encoded into.
+   */
+  public int encodedLength(final AuditEvent auditEvent) {
+    int length = 2;
+    if (dictionarySlices.length > 0) {
+      length += Integer.BYTES;
+    }
+    length += nameLength(auditEvent.eventTypeName);
+    if (auditEvent.occuredAt != null) {
+      length += instantLength(auditEvent.occuredAt);
+    }
+    length += varIntLength(auditEvent.eventDataArray.length);
+    for (EventData eventData : auditEvent.eventDataArray) {
+      length += 1 + nameLength(eventData.eventDataName);
+      switch (eventData.eventDataType) {
+        case STRING:
+          length += stringLength(eventData.stringValue);
+          break;
+        case TEXT:
+          length += stringLength(eventData.textValue);
+          break;
+        case NUMBER:
+          length += Long.BYTES;
+          break;
+        case TIMESTAMP:
+          length += instantLength(eventData.timestampValue);
+          break;
+        default:
+          throw new IllegalArgumentException(
+              "unsupported eventDataType [" + eventData.eventDataType + "]");
+      }
+    }
+    return length;
+  }
+
+  private int nameLength(final String name) {
+    int reference = nameReference(name);
+    if (reference == NULL_REFERENCE || (reference & 1) != 0) {
+      return varIntLength(reference);
+    }
+    return varIntLength(reference) + (reference >>> 1) - 1;
+  }
+
+  private int nameReference(final String name) {
+    if (name == null) {
+      return NULL_REFERENCE;
+    }
+    Integer index = dictionaryIndexes.get(name);
+    return index == null ? (utf8Length(name) + 1) << 1 : index << 1 | 1;
+  }
+
+  private Utf8Slice readName(final ByteBuffer source, final boolean dictionaryUsed) {
+    int reference = readVarInt(source);
+    if (reference == NULL_REFERENCE) {
+      return null;
+    }
+    if ((reference & 1) == 0) {
+      return readSlice(source, (reference >>> 1) - 1);
+    }
+    int index = reference >>> 1;
+    if (!dictionaryUsed || index >= dictionarySlices.length) {
+      throw new IllegalArgumentException("invalid dictionary index [" + index + "]");
+    }
+    return dictionarySlices[index];
+  }
+
+  private void writeName(final ByteBuffer target, final String name) {
+    int reference = nameReference(name);
+    writeVarInt(target, reference);
+    if (reference != NULL_REFERENCE && (reference & 1) == 0) {
+      writeUtf8(target, name);
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of audit events returned by {@link AuditEventQueryService#findEvents(AuditEventQuery,
+ * String, int)}.
+ */
+public final class AuditEventPage {
+
+  /**
+   * The events of the page in the order of their occurrence time and identifier.
+   */
+  public final List<StoredAuditEvent> events;
+
+  /**
+   * The opaque token that requests the next page, or <code>null</code> if this is the last page.
+   */
+  public final String nextContinuationToken;
+
+  /**
+   * Constructor.
+   */
+  public AuditEventPage(final List<StoredAuditEvent> events,
+      final String nextContinuationToken) {
+    this.events = Collections.unmodifiableList(events);
+    this.nextContinuationToken = nextContinuationToken;
+  }
+
+}
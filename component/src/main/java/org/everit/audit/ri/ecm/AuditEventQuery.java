@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The criteria of an audit event query. Use the {@link Builder} to create an instance.
+ */
+public final class AuditEventQuery {
+
+  /**
+   * Builder of {@link AuditEventQuery}.
+   */
+  public static class Builder {
+
+    private String applicationName;
+
+    private String[] eventTypeNames = new String[0];
+
+    private Instant occuredAtFrom;
+
+    private Instant occuredAtTo;
+
+    private String stringEventDataName;
+
+    private String stringEventDataValue;
+
+    /**
+     * The name of the audit application the events are logged to. Mandatory.
+     */
+    public Builder applicationName(final String applicationName) {
+      this.applicationName = applicationName;
+      return this;
+    }
+
+    /**
+     * Creates the query.
+     *
+     * @throws NullPointerException
+     *           if the application name is not set.
+     */
+    public AuditEventQuery build() {
+      return new AuditEventQuery(this);
+    }
+
+    /**
+     * The names of the event types of the events. All event types are queried if not set.
+     */
+    public Builder eventTypeNames(final String... eventTypeNames) {
+      Objects.requireNonNull(eventTypeNames, "eventTypeNames cannot be null");
+      for (String eventTypeName : eventTypeNames) {
+        Objects.requireNonNull(eventTypeName, "eventTypeNames cannot contain null value");
+      }
+      this.eventTypeNames = eventTypeNames.clone();
+      return this;
+    }
+
+    /**
+     * The inclusive lower bound of the time the events occured at.
+     */
+    public Builder occuredAtFrom(final Instant occuredAtFrom) {
+      this.occuredAtFrom = occuredAtFrom;
+      return this;
+    }
+
+    /**
+     * The exclusive upper bound of the time the events occured at.
+     */
+    public Builder occuredAtTo(final Instant occuredAtTo) {
+      this.occuredAtTo = occuredAtTo;
+      return this;
+    }
+
+    /**
+     * The name and the value of a STRING event data the events have. The events are looked up
+     * through the event data index, so the name must be one of the indexed event data names of
+     * the audit component.
+     *
+     * @throws NullPointerException
+     *           if the name or the value is <code>null</code>.
+     */
+    public Builder stringEventData(final String eventDataName, final String stringValue) {
+      this.stringEventDataName = Objects.requireNonNull(eventDataName,
+          "eventDataName cannot be null");
+      this.stringEventDataValue = Objects.requireNonNull(stringValue,
+          "stringValue cannot be null");
+      return this;
+    }
+
+  }
+
+  public final String applicationName;
+
+  private final String[] eventTypeNames;
+
+  public final Instant occuredAtFrom;
+
+  public final Instant occuredAtTo;
+
+  /**
+   * The name of the STRING event data the events have, or <code>null</code> if the events are not
+   * filtered by event data.
+   */
+  public final String stringEventDataName;
+
+  public final String stringEventDataValue;
+
+  private AuditEventQuery(final Builder builder) {
+    applicationName = Objects.requireNonNull(builder.applicationName,
+        "applicationName cannot be null");
+    eventTypeNames = builder.eventTypeNames;
+    occuredAtFrom = builder.occuredAtFrom;
+    occuredAtTo = builder.occuredAtTo;
+    stringEventDataName = builder.stringEventDataName;
+    stringEventDataValue = builder.stringEventDataValue;
+  }
+
+  /**
+   * The names of the queried event types. Empty if all event types are queried.
+   */
+  public String[] getEventTypeNames() {
+    return eventTypeNames.clone();
+  }
+
+  @Override
+  public String toString() {
+    return "AuditEventQuery [applicationName=" + applicationName + ", eventTypeNames="
+        + Arrays.toString(eventTypeNames) + ", occuredAtFrom=" + occuredAtFrom
+        + ", occuredAtTo=" + occuredAtTo + ", stringEventDataName=" + stringEventDataName
+        + ", stringEventDataValue=" + stringEventDataValue + "]";
+  }
+
+}
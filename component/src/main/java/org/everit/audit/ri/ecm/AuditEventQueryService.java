@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.function.Consumer;
+
+import org.everit.audit.ri.UnknownAuditApplicationException;
+
+/**
+ * Reads the audit events back from the database. The events are ordered by the time they occured
+ * at and by their identifiers. If the query filters by a STRING event data, the identifiers of
+ * the matching events are resolved through the event data index first.
+ */
+public interface AuditEventQueryService {
+
+  /**
+   * Returns a page of the events that match the query. The pages are addressed by the position of
+   * the last event of the previous page (keyset pagination) instead of an offset, so every page
+   * costs the same independently of how deep it is.
+   *
+   * @param query
+   *          the query. The same query must be passed with every continuation token of a
+   *          listing.
+   * @param continuationToken
+   *          the {@link AuditEventPage#nextContinuationToken} of the previous page, or
+   *          <code>null</code> to request the first page.
+   * @param pageSize
+   *          the maximum number of events on the page.
+   * @return the page, never <code>null</code>.
+   * @throws NullPointerException
+   *           if the query is <code>null</code>.
+   * @throws IllegalArgumentException
+   *           if the continuation token is malformed, the page size is not positive or the event
+   *           data of the query is not indexed.
+   * @throws UnknownAuditApplicationException
+   *           if the audit application of the query does not exist.
+   * @throws org.everit.authnr.permissionchecker.UnauthorizedException
+   *           if the authenticated resource does not have permission to read the audit
+   *           application.
+   */
+  AuditEventPage findEvents(AuditEventQuery query, String continuationToken, int pageSize);
+
+  /**
+   * Streams the events that match the query to the consumer. The rows are read through a JDBC
+   * cursor and every event is passed to the consumer as soon as its last event data row arrives, so
+   * the memory usage does not depend on the number of events. The consumer is called in the
+   * transaction of the query, it must not keep a reference to the events it does not need.
+   *
+   * @return the number of events passed to the consumer.
+   * @throws NullPointerException
+   *           if the query or the consumer is <code>null</code>.
+   * @throws IllegalArgumentException
+   *           if the event data of the query is not indexed.
+   * @throws UnknownAuditApplicationException
+   *           if the audit application of the query does not exist.
+   * @throws org.everit.authnr.permissionchecker.UnauthorizedException
+   *           if the authenticated resource does not have permission to read the audit
+   *           application.
+   */
+  long streamEvents(AuditEventQuery query, Consumer<StoredAuditEvent> consumer);
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.Map;
+
+/**
+ * Latency, throughput and error metrics of the services registered by an audit component. The
+ * counters are cumulative since the activation of the component or the last {@link #reset()}.
+ */
+public interface AuditMetrics {
+
+  /**
+   * The statistics of the caches used by the component by the name of the cache reference. Caches
+   * that do not provide statistics are not included.
+   */
+  Map<String, AuditCacheStatistics> getCacheStatistics();
+
+  /**
+   * Snapshots of the metrics of every operation invoked since the last reset by the operation
+   * name. The name of an operation is the simple name of the interface that declares the method
+   * and the name of the method separated by a dot, e.g. <code>LoggingService.logEvent</code>.
+   */
+  Map<String, OperationMetrics> getOperationMetrics();
+
+  /**
+   * Clears the operation metrics.
+   */
+  void reset();
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.time.Instant;
+
+/**
+ * Progress of the retention component that deletes the expired audit events. The counters are
+ * cumulative since the activation of the component.
+ */
+public interface AuditRetentionStatistics {
+
+  /**
+   * The number of retention runs that visited every audit application.
+   */
+  long getCompletedRunCount();
+
+  /**
+   * The name of the audit application whose expired events are being deleted, or
+   * <code>null</code> if no run is in progress.
+   */
+  String getCurrentApplicationName();
+
+  /**
+   * The number of chunks deleted, each in its own transaction.
+   */
+  long getDeletedChunkCount();
+
+  /**
+   * The number of deleted expired events.
+   */
+  long getDeletedEventCount();
+
+  /**
+   * The time the last completed run finished at, or <code>null</code> if no run is completed
+   * yet.
+   */
+  Instant getLastRunFinishedAt();
+
+}
@@ -20,49 +20,288 @@ package org.everit.audit.ri.ecm;
  */
 public final class AuditRiComponentConstants {
 
+  public static final String ARCHIVE_DEFAULT_SERVICE_DESCRIPTION =
+      "Default Audit Archive Component";
+
+  public static final String ARCHIVE_SERVICE_FACTORY_PID =
+      "org.everit.audit.ri.ecm.AuditArchiveComponent";
+
+  public static final String ASYNC_DEFAULT_SERVICE_DESCRIPTION =
+      "Default Async Logging Component";
+
+  public static final String ASYNC_SERVICE_FACTORY_PID =
+      "org.everit.audit.ri.ecm.AsyncLoggingComponent";
+
+  public static final String ATTR_APPLICATION_MAX_AGES = "applicationMaxAges";
+
+  public static final String ATTR_ARCHIVE_DIRECTORY = "archiveDirectory";
+
+  public static final String ATTR_ARCHIVE_INTERVAL = "archiveInterval";
+
+  public static final String ATTR_ARCHIVE_MAX_AGE = "archiveMaxAge";
+
   public static final String ATTR_AUDIT_APPLICATION_CACHE = "auditApplicationCache.target";
 
   public static final String ATTR_AUDIT_APPLICATION_MANAGER = "auditApplicationManager.target";
 
   public static final String ATTR_AUDIT_EVENT_TYPE_CACHE = "auditEventTypeCache.target";
 
+  public static final String ATTR_AUTHENTICATION_CONTEXT = "authenticationContext.target";
+
   public static final String ATTR_AUTHENTICATION_PROPAGATOR = "authenticationPropagator.target";
 
   public static final String ATTR_AUTHNR_PERMISSION_CHECKER = "authnrPermissionChecker.target";
 
   public static final String ATTR_AUTHORIZATION_MANAGER = "authorizationManager.target";
 
+  public static final String ATTR_BATCH_SIZE = "batchSize";
+
+  public static final String ATTR_CACHE_INVALIDATION_INTERVAL = "cacheInvalidationInterval";
+
+  public static final String ATTR_CACHE_WARM_UP = "cacheWarmUp";
+
+  public static final String ATTR_CACHE_WARM_UP_LIMIT = "cacheWarmUpLimit";
+
+  public static final String ATTR_CHUNK_DELAY = "chunkDelay";
+
+  public static final String ATTR_CHUNK_SIZE = "chunkSize";
+
   public static final String ATTR_EMBEDDED_AUDIT_APPLICATION_NAME = "embeddedAuditApplicationName";
 
+  public static final String ATTR_EVENT_DATA_NAME_DICTIONARY = "eventDataNameDictionary";
+
+  public static final String ATTR_EVICTION_POLICY = "evictionPolicy";
+
+  public static final String ATTR_EXPIRE_AFTER_WRITE = "expireAfterWrite";
+
+  public static final String ATTR_FORCE_ON_WRITE = "forceOnWrite";
+
+  public static final String ATTR_GROUP_COMMIT_MAX_EVENTS = "groupCommitMaxEvents";
+
+  public static final String ATTR_GROUP_COMMIT_MAX_WAIT = "groupCommitMaxWait";
+
+  public static final String ATTR_ID_BLOCK_SIZE = "idBlockSize";
+
+  public static final String ATTR_INDEXED_EVENT_DATA_NAMES = "indexedEventDataNames";
+
   public static final String ATTR_INTERNAL_AUDIT_EVENT_TYPE_MANAGER =
       "internalAuditEventTypeManager.target";
 
+  public static final String ATTR_INTERNAL_BULK_LOGGING_SERVICE =
+      "internalBulkLoggingService.target";
+
   public static final String ATTR_INTERNAL_LOGGING_SERVICE = "internalLoggingService.target";
 
+  public static final String ATTR_LOG_SERVICE = "logService.target";
+
+  public static final String ATTR_MAXIMUM_SIZE = "maximumSize";
+
+  public static final String ATTR_MAX_DISK_USAGE = "maxDiskUsage";
+
+  public static final String ATTR_MAX_LINGER_TIME = "maxLingerTime";
+
+  public static final String ATTR_METRICS_ENABLED = "metricsEnabled";
+
+  public static final String ATTR_OFF_HEAP_QUEUE_CAPACITY = "offHeapQueueCapacity";
+
+  public static final String ATTR_PARTITIONED_APPLICATIONS = "partitionedApplications";
+
+  public static final String ATTR_PARTITION_APPLICATION_MAX_AGES = "partitionApplicationMaxAges";
+
+  public static final String ATTR_PARTITION_MAINTENANCE_INTERVAL = "partitionMaintenanceInterval";
+
+  public static final String ATTR_PARTITION_MAX_AGE = "partitionMaxAge";
+
+  public static final String ATTR_PARTITION_PERIOD = "partitionPeriod";
+
+  public static final String ATTR_PARTITION_PRECREATE_COUNT = "partitionPrecreateCount";
+
   public static final String ATTR_PERMISSION_CHECKER = "permissionChecker.target";
 
+  public static final String ATTR_PERMISSION_DECISION_CACHE_SIZE = "permissionDecisionCacheSize";
+
+  public static final String ATTR_PERMISSION_DECISION_CACHE_TTL = "permissionDecisionCacheTtl";
+
   public static final String ATTR_PROPERTY_MANAGER = "propertyManager.target";
 
   public static final String ATTR_QUERYDSL_SUPPORT = "querydslSupport.target";
 
+  public static final String ATTR_QUERY_FETCH_SIZE = "queryFetchSize";
+
+  public static final String ATTR_QUEUE_CAPACITY = "queueCapacity";
+
   public static final String ATTR_RESOURCE_SERVICE = "resourceService.target";
 
+  public static final String ATTR_RETENTION_INTERVAL = "retentionInterval";
+
+  public static final String ATTR_RETENTION_MAX_AGE = "retentionMaxAge";
+
+  public static final String ATTR_RETRY_INTERVAL = "retryInterval";
+
+  public static final String ATTR_SEGMENT_EVENT_COUNT = "segmentEventCount";
+
+  public static final String ATTR_SEGMENT_SIZE = "segmentSize";
+
+  public static final String ATTR_SPOOL_DIRECTORY = "spoolDirectory";
+
+  public static final String ATTR_TEXT_COMPRESSION_THRESHOLD = "textCompressionThreshold";
+
+  public static final String ATTR_TRANSACTION_SYNCHRONIZATION_REGISTRY =
+      "transactionSynchronizationRegistry.target";
+
   public static final String ATTR_TRASACTION_PROPAGATOR = "transactionPropagator.target";
 
+  public static final String ATTR_UNKNOWN_APPLICATION_CACHE_SIZE =
+      "unknownApplicationCacheSize";
+
+  public static final String ATTR_UNKNOWN_APPLICATION_CACHE_TTL = "unknownApplicationCacheTtl";
+
+  public static final String ATTR_WRITER_THREAD_COUNT = "writerThreadCount";
+
+  public static final String CACHE_DEFAULT_SERVICE_DESCRIPTION = "Default Audit Cache";
+
+  public static final String CACHE_SERVICE_FACTORY_PID =
+      "org.everit.audit.ri.ecm.AuditCacheComponent";
+
+  public static final String DEFAULT_APPLICATION_MAX_AGES = "";
+
+  public static final String DEFAULT_ARCHIVE_DIRECTORY = "audit-archive";
+
+  public static final long DEFAULT_ARCHIVE_INTERVAL = 3600000;
+
+  public static final long DEFAULT_ARCHIVE_MAX_AGE = 7776000000L;
+
+  public static final String DEFAULT_AUDIT_APPLICATION_CACHE_TARGET =
+      "(service.description=audit-application-cache)";
+
+  public static final String DEFAULT_AUDIT_EVENT_TYPE_CACHE_TARGET =
+      "(service.description=audit-event-type-cache)";
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  public static final long DEFAULT_CACHE_INVALIDATION_INTERVAL = 0;
+
   public static final String DEFAULT_CACHE_TARGET = "(MUST_BE_SET=TO_SOMETHING)";
 
+  public static final boolean DEFAULT_CACHE_WARM_UP = false;
+
+  public static final int DEFAULT_CACHE_WARM_UP_LIMIT = 0;
+
+  public static final long DEFAULT_CHUNK_DELAY = 100;
+
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+  public static final boolean DEFAULT_EVENT_DATA_NAME_DICTIONARY = false;
+
+  public static final String DEFAULT_EVICTION_POLICY = "LRU";
+
+  public static final long DEFAULT_EXPIRE_AFTER_WRITE = 0;
+
+  public static final boolean DEFAULT_FORCE_ON_WRITE = false;
+
+  public static final int DEFAULT_GROUP_COMMIT_MAX_EVENTS = 0;
+
+  public static final long DEFAULT_GROUP_COMMIT_MAX_WAIT = 2;
+
+  public static final int DEFAULT_ID_BLOCK_SIZE = 0;
+
+  public static final String DEFAULT_INDEXED_EVENT_DATA_NAMES = "";
+
+  public static final String DEFAULT_INTERNAL_SERVICE_TARGET =
+      "(service.factoryPid=org.everit.audit.ri.ecm.InternalAuditComponent)";
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+  public static final long DEFAULT_MAX_DISK_USAGE = 1073741824L;
+
+  public static final long DEFAULT_MAX_LINGER_TIME = 50;
+
+  public static final boolean DEFAULT_METRICS_ENABLED = false;
+
+  public static final long DEFAULT_OFF_HEAP_QUEUE_CAPACITY = 0;
+
+  public static final String DEFAULT_PARTITIONED_APPLICATIONS = "*";
+
+  public static final String DEFAULT_PARTITION_APPLICATION_MAX_AGES = "";
+
+  public static final long DEFAULT_PARTITION_MAINTENANCE_INTERVAL = 3600000;
+
+  public static final long DEFAULT_PARTITION_MAX_AGE = 0;
+
+  public static final String DEFAULT_PARTITION_PERIOD = "NONE";
+
+  public static final int DEFAULT_PARTITION_PRECREATE_COUNT = 2;
+
+  public static final int DEFAULT_PERMISSION_DECISION_CACHE_SIZE = 0;
+
+  public static final long DEFAULT_PERMISSION_DECISION_CACHE_TTL = 60000;
+
+  public static final int DEFAULT_QUERY_FETCH_SIZE = 1000;
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+  public static final long DEFAULT_RETENTION_INTERVAL = 3600000;
+
+  public static final long DEFAULT_RETENTION_MAX_AGE = 0;
+
+  public static final long DEFAULT_RETRY_INTERVAL = 1000;
+
+  public static final int DEFAULT_SEGMENT_EVENT_COUNT = 100000;
+
+  public static final int DEFAULT_SEGMENT_SIZE = 16777216;
+
+  public static final String DEFAULT_SPOOL_DIRECTORY = "audit-spool";
+
+  public static final int DEFAULT_TEXT_COMPRESSION_THRESHOLD = 0;
+
+  public static final int DEFAULT_UNKNOWN_APPLICATION_CACHE_SIZE = 1000;
+
+  public static final long DEFAULT_UNKNOWN_APPLICATION_CACHE_TTL = 5000;
+
+  public static final int DEFAULT_WRITER_THREAD_COUNT = 1;
+
   public static final String EMBEDDED_DEFAULT_SERVICE_DESCRIPTION =
       "Default Embedded Audit Component";
 
   public static final String EMBEDDED_SERVICE_FACTORY_PID =
       "org.everit.audit.ri.ecm.EmbeddedAuditComponent";
 
+  public static final String EVICTION_POLICY_LFU = "LFU";
+
+  public static final String EVICTION_POLICY_LRU = "LRU";
+
   public static final String INTERNAL_DEFAULT_SERVICE_DESCRIPTION =
       "Default Internal Audit Component";
 
   public static final String INTERNAL_SERVICE_FACTORY_PID =
       "org.everit.audit.ri.ecm.InternalAuditComponent";
 
+  public static final String METRICS_JMX_DOMAIN = "org.everit.audit.ri.ecm";
+
+  public static final String PARTITIONED_APPLICATIONS_ALL = "*";
+
+  public static final String PARTITION_PERIOD_DAY = "DAY";
+
+  public static final String PARTITION_PERIOD_MONTH = "MONTH";
+
+  public static final String PARTITION_PERIOD_NONE = "NONE";
+
+  public static final String PERMISSION_DECISION_CACHE_NAME = "permission-decision-cache";
+
+  public static final String RETENTION_DEFAULT_SERVICE_DESCRIPTION =
+      "Default Audit Retention Component";
+
+  public static final String RETENTION_SERVICE_FACTORY_PID =
+      "org.everit.audit.ri.ecm.AuditRetentionComponent";
+
+  public static final String SPOOL_DEFAULT_SERVICE_DESCRIPTION =
+      "Default Spool Logging Component";
+
+  public static final String SPOOL_SERVICE_FACTORY_PID =
+      "org.everit.audit.ri.ecm.SpoolLoggingComponent";
+
+  public static final String UNKNOWN_APPLICATION_CACHE_NAME = "unknown-application-cache";
+
   private AuditRiComponentConstants() {
   }
 
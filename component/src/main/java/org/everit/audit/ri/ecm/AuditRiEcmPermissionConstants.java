@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+/**
+ * Permission actions of the services provided by the audit ECM components in addition to the
+ * actions of the audit RI.
+ */
+public final class AuditRiEcmPermissionConstants {
+
+  /**
+   * Permission to read the audit events of an audit application. The target of the permission is
+   * the resource of the audit application.
+   */
+  public static final String READ_AUDIT_APPLICATION = "readAuditApplication";
+
+  private AuditRiEcmPermissionConstants() {
+  }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.Collection;
+
+import org.everit.audit.LoggingService;
+import org.everit.audit.dto.AuditEvent;
+
+/**
+ * Bulk extension of the {@link LoggingService} for callers that produce many audit events in one
+ * unit of work.
+ */
+public interface BulkLoggingService {
+
+  /**
+   * Logs the audit events in one transaction. The authorization is checked once, the unknown event
+   * types are created and the events with their event data are written with JDBC batch inserts.
+   *
+   * @param auditEvents
+   *          the events to log.
+   * @throws NullPointerException
+   *           if the auditEvents collection is <code>null</code> or contains <code>null</code>.
+   */
+  void logEvents(Collection<AuditEvent> auditEvents);
+
+}
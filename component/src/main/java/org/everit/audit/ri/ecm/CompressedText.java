@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The format of the compressed TEXT event data values. A compressed value is the {@link #MARKER}
+ * followed by the Base64 encoded Deflate stream of the UTF-8 bytes of the text, so it can be
+ * stored in the TEXT column like any other value. Readers that access the event_data table
+ * directly must pass the stored values to {@link #decompress(String)}.
+ */
+public final class CompressedText {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * The prefix of the compressed values. It is not a character of the Base64 alphabet.
+   */
+  public static final String MARKER = "{deflate}";
+
+  /**
+   * Compresses the text. The result is not necessarily shorter than the text.
+   *
+   * @throws NullPointerException
+   *           if the text is <code>null</code>.
+   */
+  public static String compress(final String text) {
+    byte[] input = text.getBytes(StandardCharsets.UTF_8);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 1);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!deflater.finished()) {
+        int length = deflater.deflate(buffer);
+        output.write(buffer, 0, length);
+      }
+      return MARKER + Base64.getEncoder().encodeToString(output.toByteArray());
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Returns the original text of a stored value. The values that are not compressed are returned
+   * unchanged.
+   *
+   * @throws IllegalArgumentException
+   *           if the value starts with the {@link #MARKER} but it is not a valid compressed value.
+   */
+  public static String decompress(final String storedValue) {
+    if (!isCompressed(storedValue)) {
+      return storedValue;
+    }
+    byte[] input;
+    try {
+      input = Base64.getDecoder().decode(storedValue.substring(MARKER.length()));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("invalid compressed text", e);
+    }
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalArgumentException("invalid compressed text: truncated stream");
+        }
+        output.write(buffer, 0, length);
+      }
+      return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("invalid compressed text", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Returns whether the stored value is compressed.
+   */
+  public static boolean isCompressed(final String storedValue) {
+    return storedValue != null && storedValue.startsWith(MARKER);
+  }
+
+  private CompressedText() {
+  }
+
+}
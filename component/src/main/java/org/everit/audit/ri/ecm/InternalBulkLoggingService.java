@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.Collection;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.InternalLoggingService;
+
+/**
+ * Bulk extension of the {@link InternalLoggingService} for callers that produce many audit events
+ * in one unit of work.
+ */
+public interface InternalBulkLoggingService {
+
+  /**
+   * Logs the audit events to the given audit application in one transaction. The permission to log
+   * to the application is checked once, the event types are resolved with one query, the unknown
+   * ones are created and the events with their event data are written with JDBC batch inserts.
+   *
+   * @param applicationName
+   *          the name of the audit application.
+   * @param auditEvents
+   *          the events to log.
+   * @throws NullPointerException
+   *           if one of the parameters is <code>null</code> or the auditEvents collection contains
+   *           <code>null</code>.
+   * @throws org.everit.audit.ri.UnknownAuditApplicationException
+   *           if the audit application does not exist.
+   * @throws org.everit.authnr.permissionchecker.UnauthorizedException
+   *           if the current resource has no permission to log to the audit application.
+   */
+  void logEvents(String applicationName, Collection<AuditEvent> auditEvents);
+
+}
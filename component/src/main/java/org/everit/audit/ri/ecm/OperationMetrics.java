@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the metrics of an operation. The latency histogram has exponential buckets: bucket
+ * zero counts the invocations that took less than one microsecond, bucket <code>i</code> counts
+ * the invocations that took at least <code>2^(i-1)</code> and less than <code>2^i</code>
+ * microseconds, the last bucket counts all the longer ones.
+ */
+public final class OperationMetrics {
+
+  /**
+   * The number of buckets of the latency histogram.
+   */
+  public static final int LATENCY_BUCKET_COUNT = 40;
+
+  /**
+   * The time elapsed since the counters of the operation were started in nanoseconds.
+   */
+  public final long elapsedTime;
+
+  /**
+   * The number of invocations that threw an exception.
+   */
+  public final long errorCount;
+
+  /**
+   * The number of invocations.
+   */
+  public final long invocationCount;
+
+  /**
+   * The number of invocations by latency histogram bucket.
+   */
+  private final long[] latencyHistogram;
+
+  /**
+   * The longest invocation in nanoseconds.
+   */
+  public final long maxTime;
+
+  /**
+   * The name of the operation in the form of <code>InterfaceName.methodName</code>.
+   */
+  public final String operationName;
+
+  /**
+   * The sum of the durations of the invocations in nanoseconds.
+   */
+  public final long totalTime;
+
+  /**
+   * Constructor.
+   */
+  public OperationMetrics(final String operationName, final long invocationCount,
+      final long errorCount, final long totalTime, final long maxTime, final long elapsedTime,
+      final long[] latencyHistogram) {
+    this.operationName = operationName;
+    this.invocationCount = invocationCount;
+    this.errorCount = errorCount;
+    this.totalTime = totalTime;
+    this.maxTime = maxTime;
+    this.elapsedTime = elapsedTime;
+    this.latencyHistogram = Arrays.copyOf(latencyHistogram, LATENCY_BUCKET_COUNT);
+  }
+
+  /**
+   * Returns the index of the latency histogram bucket of the duration.
+   */
+  public static int bucketIndexOf(final long durationNanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+    int bucketIndex = Long.SIZE - Long.numberOfLeadingZeros(micros);
+    return Math.min(bucketIndex, LATENCY_BUCKET_COUNT - 1);
+  }
+
+  /**
+   * Returns the exclusive upper bound of the latency histogram bucket in nanoseconds.
+   * {@link Long#MAX_VALUE} for the last bucket.
+   */
+  public static long bucketUpperBoundNanos(final int bucketIndex) {
+    if (bucketIndex >= LATENCY_BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return TimeUnit.MICROSECONDS.toNanos(1L << bucketIndex);
+  }
+
+  /**
+   * The number of invocations by latency histogram bucket.
+   */
+  public long[] getLatencyHistogram() {
+    return latencyHistogram.clone();
+  }
+
+  /**
+   * Returns the upper bound of the latency histogram bucket that contains the given percentile in
+   * nanoseconds, or zero if there was no invocation.
+   *
+   * @param percentile
+   *          a value between 0 and 100.
+   */
+  public long getLatencyPercentile(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    long histogramCount = 0;
+    for (long bucketCount : latencyHistogram) {
+      histogramCount += bucketCount;
+    }
+    if (histogramCount == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(histogramCount * percentile / 100);
+    long cumulativeCount = 0;
+    for (int i = 0; i < LATENCY_BUCKET_COUNT; i++) {
+      cumulativeCount += latencyHistogram[i];
+      if (cumulativeCount >= rank && cumulativeCount > 0) {
+        return Math.min(bucketUpperBoundNanos(i), maxTime);
+      }
+    }
+    return maxTime;
+  }
+
+  /**
+   * The mean duration of the invocations in nanoseconds, or zero if there was no invocation.
+   */
+  public double getMeanTime() {
+    return invocationCount == 0 ? 0 : (double) totalTime / invocationCount;
+  }
+
+  /**
+   * The number of invocations per second.
+   */
+  public double getThroughput() {
+    return elapsedTime <= 0 ? 0 : invocationCount * (double) TimeUnit.SECONDS.toNanos(1)
+        / elapsedTime;
+  }
+
+  @Override
+  public String toString() {
+    return "OperationMetrics [operationName=" + operationName + ", invocationCount="
+        + invocationCount + ", errorCount=" + errorCount + ", totalTime=" + totalTime
+        + ", maxTime=" + maxTime + ", elapsedTime=" + elapsedTime + "]";
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.everit.audit.dto.AuditEvent;
+
+/**
+ * An audit event read back from the database together with its identifier. The event data is
+ * converted to an {@link AuditEvent} only when {@link #getAuditEvent()} is called first, so the
+ * compressed TEXT values are not decompressed for the readers that do not need them.
+ */
+public final class StoredAuditEvent {
+
+  public final String applicationName;
+
+  private AuditEvent auditEvent;
+
+  private Supplier<AuditEvent> auditEventSupplier;
+
+  public final long eventId;
+
+  public final String eventTypeName;
+
+  public final Instant occuredAt;
+
+  /**
+   * Constructor.
+   *
+   * @param auditEventSupplier
+   *          creates the audit event when it is requested first.
+   */
+  public StoredAuditEvent(final long eventId, final String applicationName,
+      final String eventTypeName, final Instant occuredAt,
+      final Supplier<AuditEvent> auditEventSupplier) {
+    this.eventId = eventId;
+    this.applicationName = applicationName;
+    this.eventTypeName = eventTypeName;
+    this.occuredAt = occuredAt;
+    this.auditEventSupplier = Objects.requireNonNull(auditEventSupplier,
+        "auditEventSupplier cannot be null");
+  }
+
+  /**
+   * Returns the audit event with its event data. The TEXT values are decompressed at the first
+   * call.
+   */
+  public synchronized AuditEvent getAuditEvent() {
+    if (auditEvent == null) {
+      auditEvent = auditEventSupplier.get();
+      auditEventSupplier = null;
+    }
+    return auditEvent;
+  }
+
+}
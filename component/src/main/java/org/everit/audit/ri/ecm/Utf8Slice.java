@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The UTF-8 bytes of a string in a {@link ByteBuffer}, passed by the {@link AuditEventCodec} to
+ * the {@link AuditEventCodec.Visitor} without copying or decoding them. The slice refers to the
+ * content of the buffer, so it is valid only until the content of the buffer changes.
+ */
+public final class Utf8Slice {
+
+  private final ByteBuffer buffer;
+
+  private final int byteLength;
+
+  private final int offset;
+
+  Utf8Slice(final ByteBuffer buffer, final int offset, final int byteLength) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.byteLength = byteLength;
+  }
+
+  /**
+   * Returns a read-only buffer of the bytes of the slice that shares the content with the buffer
+   * of the encoded event.
+   */
+  public ByteBuffer asByteBuffer() {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(offset + byteLength);
+    view.position(offset);
+    return view.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Compares the slice to the UTF-8 form of the value without decoding the slice.
+   */
+  public boolean contentEquals(final String value) {
+    if (AuditEventCodec.utf8Length(value) != byteLength) {
+      return false;
+    }
+    int position = offset;
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char c = value.charAt(i);
+      int codePoint = c;
+      if (AuditEventCodec.isSurrogatePair(value, i)) {
+        codePoint = Character.toCodePoint(c, value.charAt(++i));
+      } else if (Character.isSurrogate(c)) {
+        codePoint = '?';
+      }
+      int sequenceLength = AuditEventCodec.utf8SequenceLength(codePoint);
+      if (!matches(position, codePoint, sequenceLength)) {
+        return false;
+      }
+      position += sequenceLength;
+    }
+    return true;
+  }
+
+  public int getByteLength() {
+    return byteLength;
+  }
+
+  private boolean matches(final int position, final int codePoint, final int sequenceLength) {
+    if (sequenceLength == 1) {
+      return buffer.get(position) == (byte) codePoint;
+    }
+    int leadingByte = (0xF00 >> sequenceLength & 0xFF) | codePoint >> 6 * (sequenceLength - 1);
+    if (buffer.get(position) != (byte) leadingByte) {
+      return false;
+    }
+    for (int i = 1; i < sequenceLength; i++) {
+      int continuationByte = 0x80 | codePoint >> 6 * (sequenceLength - 1 - i) & 0x3F;
+      if (buffer.get(position + i) != (byte) continuationByte) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes the slice into a new string.
+   */
+  @Override
+  public String toString() {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + offset, byteLength,
+          StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[byteLength];
+    for (int i = 0; i < byteLength; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
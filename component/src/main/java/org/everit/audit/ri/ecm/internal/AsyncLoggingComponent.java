@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.everit.audit.LoggingService;
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authorization.PermissionChecker;
+import org.everit.osgi.ecm.annotation.Activate;
+import org.everit.osgi.ecm.annotation.Component;
+import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
+import org.everit.osgi.ecm.annotation.Deactivate;
+import org.everit.osgi.ecm.annotation.ManualService;
+import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.IntegerAttribute;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
+import org.everit.osgi.ecm.component.ComponentContext;
+import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.log.LogService;
+
+import aQute.bnd.annotation.headers.ProvideCapability;
+
+/**
+ * The asynchronous implementation of the {@link LoggingService}. The events are queued in memory
+ * and persisted in batches by writer threads through the {@link InternalBulkLoggingService}. The
+ * queue is bounded by the number of events or, in off-heap mode, by the size of the serialized
+ * events.
+ */
+@Component(componentId = AuditRiComponentConstants.ASYNC_SERVICE_FACTORY_PID,
+    configurationPolicy = ConfigurationPolicy.FACTORY,
+    label = "Everit Audit (Async Logging) RI",
+    description = "Component for asynchronous, batched audit logging for embedded components.")
+@ProvideCapability(ns = ECMExtenderConstants.CAPABILITY_NS_COMPONENT,
+    value = ECMExtenderConstants.CAPABILITY_ATTR_CLASS + "=${@class}")
+@StringAttributes({
+    @StringAttribute(
+        attributeId = Constants.SERVICE_DESCRIPTION,
+        defaultValue = AuditRiComponentConstants.ASYNC_DEFAULT_SERVICE_DESCRIPTION,
+        priority = AsyncLoggingComponentAttrPriority.P01_SERVICE_DESCRIPTION,
+        label = "Service Description",
+        description = "The description of this component configuration. It is used to easily "
+            + "identify the service registered by this component.") })
+@ManualService(LoggingService.class)
+public class AsyncLoggingComponent {
+
+  private AsyncLoggingService asyncLoggingService;
+
+  private AuditApplicationManager auditApplicationManager;
+
+  private AuthenticationPropagator authenticationPropagator;
+
+  private int batchSize;
+
+  private String embeddedAuditApplicationName;
+
+  private InternalBulkLoggingService internalBulkLoggingService;
+
+  private LogService logService;
+
+  private long maxLingerTime;
+
+  private long offHeapQueueCapacity;
+
+  private PermissionChecker permissionChecker;
+
+  private int queueCapacity;
+
+  private ServiceRegistration<?> serviceRegistration;
+
+  private TransactionPropagator transactionPropagator;
+
+  private int writerThreadCount;
+
+  /**
+   * Starts the writer threads and registers the OSGi service.
+   */
+  @Activate
+  public void activate(final ComponentContext<AsyncLoggingComponent> componentContext) {
+
+    Dictionary<String, Object> serviceProperties =
+        new Hashtable<>(componentContext.getProperties());
+
+    AsyncLoggingConfiguration asyncLoggingConfiguration = new AsyncLoggingConfiguration(
+        embeddedAuditApplicationName, queueCapacity, offHeapQueueCapacity, batchSize,
+        maxLingerTime, writerThreadCount);
+    AsyncLoggingRequiredServices asyncLoggingRequiredServices = new AsyncLoggingRequiredServices(
+        auditApplicationManager, internalBulkLoggingService, authenticationPropagator,
+        permissionChecker, transactionPropagator, logService);
+
+    asyncLoggingService =
+        new AsyncLoggingService(asyncLoggingConfiguration, asyncLoggingRequiredServices);
+    serviceRegistration =
+        componentContext.registerService(
+            new String[] { LoggingService.class.getName() },
+            asyncLoggingService,
+            serviceProperties);
+  }
+
+  /**
+   * Unregisters the registered OSGi service and flushes the queued events.
+   */
+  @Deactivate
+  public void deactivate() {
+    if (serviceRegistration != null) {
+      serviceRegistration.unregister();
+    }
+    if (asyncLoggingService != null) {
+      asyncLoggingService.close();
+    }
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_AUDIT_APPLICATION_MANAGER,
+      defaultValue = "",
+      attributePriority = AsyncLoggingComponentAttrPriority.P07_AUDIT_APPLICATION_MANAGER,
+      label = "Audit Application Manager",
+      description = "OSGi service filter to identify the AuditApplicationManager service.")
+  public void setAuditApplicationManager(final AuditApplicationManager auditApplicationManager) {
+    this.auditApplicationManager = auditApplicationManager;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_AUTHENTICATION_PROPAGATOR,
+      defaultValue = "",
+      attributePriority = AsyncLoggingComponentAttrPriority.P09_AUTHENTICATION_PROPAGATOR,
+      label = "Authentication Propagator",
+      description = "OSGi service filter to identify the AuthenticationPropagator service.")
+  public void setAuthenticationPropagator(final AuthenticationPropagator authenticationPropagator) {
+    this.authenticationPropagator = authenticationPropagator;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_BATCH_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_BATCH_SIZE,
+      priority = AsyncLoggingComponentAttrPriority.P04_BATCH_SIZE,
+      label = "Batch Size",
+      description = "The maximum number of events persisted by a writer thread in one "
+          + "transaction.")
+  public void setBatchSize(final int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_EMBEDDED_AUDIT_APPLICATION_NAME,
+      defaultValue = "",
+      priority = AsyncLoggingComponentAttrPriority.P02_EMBEDDED_AUDIT_APPLICATION_NAME,
+      label = "Embedded Audit Application Name",
+      description = "The name of the Audit Application that will be used by embedded components.")
+  public void setEmbeddedAuditApplicationName(final String embeddedAuditApplicationName) {
+    this.embeddedAuditApplicationName = embeddedAuditApplicationName;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_INTERNAL_BULK_LOGGING_SERVICE,
+      defaultValue = "",
+      attributePriority = AsyncLoggingComponentAttrPriority.P08_INTERNAL_BULK_LOGGING_SERVICE,
+      label = "Internal Bulk Logging Service",
+      description = "OSGi service filter to identify the InternalBulkLoggingService service.")
+  public void setInternalBulkLoggingService(
+      final InternalBulkLoggingService internalBulkLoggingService) {
+    this.internalBulkLoggingService = internalBulkLoggingService;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_LOG_SERVICE,
+      defaultValue = "",
+      attributePriority = AsyncLoggingComponentAttrPriority.P12_LOG_SERVICE,
+      label = "Log Service",
+      description = "OSGi service filter to identify the LogService service that receives the "
+          + "errors of the writer threads.")
+  public void setLogService(final LogService logService) {
+    this.logService = logService;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_MAX_LINGER_TIME,
+      defaultValue = AuditRiComponentConstants.DEFAULT_MAX_LINGER_TIME,
+      priority = AsyncLoggingComponentAttrPriority.P05_MAX_LINGER_TIME,
+      label = "Max Linger Time",
+      description = "The maximum time in milliseconds a writer thread waits for more events "
+          + "before it persists a batch that is not full.")
+  public void setMaxLingerTime(final long maxLingerTime) {
+    this.maxLingerTime = maxLingerTime;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_OFF_HEAP_QUEUE_CAPACITY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_OFF_HEAP_QUEUE_CAPACITY,
+      priority = AsyncLoggingComponentAttrPriority.P13_OFF_HEAP_QUEUE_CAPACITY,
+      label = "Off-heap Queue Capacity",
+      description = "The size in bytes of the direct memory the queued events are serialized "
+          + "into. If positive, the events are queued off-heap and the Queue Capacity is "
+          + "ignored. Zero means that the event objects are queued on the heap.")
+  public void setOffHeapQueueCapacity(final long offHeapQueueCapacity) {
+    this.offHeapQueueCapacity = offHeapQueueCapacity;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_PERMISSION_CHECKER,
+      defaultValue = "",
+      attributePriority = AsyncLoggingComponentAttrPriority.P10_PERMISSION_CHECKER,
+      label = "Permission Checker",
+      description = "OSGi service filter to identify the PermissionChecker service.")
+  public void setPermissionChecker(final PermissionChecker permissionChecker) {
+    this.permissionChecker = permissionChecker;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_QUEUE_CAPACITY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_QUEUE_CAPACITY,
+      priority = AsyncLoggingComponentAttrPriority.P03_QUEUE_CAPACITY,
+      label = "Queue Capacity",
+      description = "The maximum number of events waiting to be persisted. The callers of "
+          + "logEvent block while the queue is full.")
+  public void setQueueCapacity(final int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_TRASACTION_PROPAGATOR,
+      defaultValue = "",
+      attributePriority = AsyncLoggingComponentAttrPriority.P11_TRASACTION_PROPAGATOR,
+      label = "Transaction Helper",
+      description = "OSGi service filter to identify the TransacitonHelper service.")
+  public void setTransactionPropagator(final TransactionPropagator transactionPropagator) {
+    this.transactionPropagator = transactionPropagator;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_WRITER_THREAD_COUNT,
+      defaultValue = AuditRiComponentConstants.DEFAULT_WRITER_THREAD_COUNT,
+      priority = AsyncLoggingComponentAttrPriority.P06_WRITER_THREAD_COUNT,
+      label = "Writer Thread Count",
+      description = "The number of threads that persist the queued events.")
+  public void setWriterThreadCount(final int writerThreadCount) {
+    this.writerThreadCount = writerThreadCount;
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+/**
+ * Constants for component attribute priorities.
+ */
+public final class AsyncLoggingComponentAttrPriority {
+
+  public static final int P01_SERVICE_DESCRIPTION = 1;
+
+  public static final int P02_EMBEDDED_AUDIT_APPLICATION_NAME = 2;
+
+  public static final int P03_QUEUE_CAPACITY = 3;
+
+  public static final int P04_BATCH_SIZE = 4;
+
+  public static final int P05_MAX_LINGER_TIME = 5;
+
+  public static final int P06_WRITER_THREAD_COUNT = 6;
+
+  public static final int P07_AUDIT_APPLICATION_MANAGER = 7;
+
+  public static final int P08_INTERNAL_BULK_LOGGING_SERVICE = 8;
+
+  public static final int P09_AUTHENTICATION_PROPAGATOR = 9;
+
+  public static final int P10_PERMISSION_CHECKER = 10;
+
+  public static final int P11_TRASACTION_PROPAGATOR = 11;
+
+  public static final int P12_LOG_SERVICE = 12;
+
+  public static final int P13_OFF_HEAP_QUEUE_CAPACITY = 13;
+
+  private AsyncLoggingComponentAttrPriority() {
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+/**
+ * The configuration of the queue and the writer threads of the {@link AsyncLoggingService}.
+ */
+public class AsyncLoggingConfiguration {
+
+  public final int batchSize;
+
+  public final String embeddedAuditApplicationName;
+
+  public final long maxLingerTime;
+
+  public final long offHeapQueueCapacity;
+
+  public final int queueCapacity;
+
+  public final int writerThreadCount;
+
+  /**
+   * Constructor.
+   *
+   * @param embeddedAuditApplicationName
+   *          the name of the audit application the events are logged to.
+   * @param queueCapacity
+   *          the maximum number of events waiting in the queue.
+   * @param offHeapQueueCapacity
+   *          the size in bytes of the off-heap queue or zero if the events are queued on the heap.
+   * @param batchSize
+   *          the maximum number of events persisted in one transaction.
+   * @param maxLingerTime
+   *          the maximum time in milliseconds a writer waits for a batch to fill up.
+   * @param writerThreadCount
+   *          the number of writer threads.
+   */
+  public AsyncLoggingConfiguration(final String embeddedAuditApplicationName,
+      final int queueCapacity, final long offHeapQueueCapacity, final int batchSize,
+      final long maxLingerTime, final int writerThreadCount) {
+    this.embeddedAuditApplicationName = embeddedAuditApplicationName;
+    this.queueCapacity = queueCapacity;
+    this.offHeapQueueCapacity = offHeapQueueCapacity;
+    this.batchSize = batchSize;
+    this.maxLingerTime = maxLingerTime;
+    this.writerThreadCount = writerThreadCount;
+  }
+
+}
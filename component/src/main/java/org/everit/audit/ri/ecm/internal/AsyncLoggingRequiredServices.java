@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Objects;
+
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authorization.PermissionChecker;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.service.log.LogService;
+
+/**
+ * Services required by the {@link AsyncLoggingService}.
+ */
+public class AsyncLoggingRequiredServices {
+
+  public final AuditApplicationManager auditApplicationManager;
+
+  public final AuthenticationPropagator authenticationPropagator;
+
+  public final InternalBulkLoggingService internalBulkLoggingService;
+
+  public final LogService logService;
+
+  public final PermissionChecker permissionChecker;
+
+  public final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   */
+  public AsyncLoggingRequiredServices(final AuditApplicationManager auditApplicationManager,
+      final InternalBulkLoggingService internalBulkLoggingService,
+      final AuthenticationPropagator authenticationPropagator,
+      final PermissionChecker permissionChecker,
+      final TransactionPropagator transactionPropagator,
+      final LogService logService) {
+    this.auditApplicationManager = Objects.requireNonNull(auditApplicationManager,
+        "auditApplicationManager cannot be null");
+    this.internalBulkLoggingService = Objects.requireNonNull(internalBulkLoggingService,
+        "internalBulkLoggingService cannot be null");
+    this.authenticationPropagator = Objects.requireNonNull(authenticationPropagator,
+        "authenticationPropagator cannot be null");
+    this.permissionChecker = Objects.requireNonNull(permissionChecker,
+        "permissionChecker cannot be null");
+    this.transactionPropagator = Objects.requireNonNull(transactionPropagator,
+        "transactionPropagator cannot be null");
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+  }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.everit.audit.LoggingService;
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authorization.PermissionChecker;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.service.log.LogService;
+
+/**
+ * {@link LoggingService} that puts the audit events into a bounded in-memory queue and persists
+ * them in batches on a pool of writer threads through the {@link InternalBulkLoggingService}. The
+ * caller of {@link #logEvent(AuditEvent)} blocks only if the queue is full. The queue holds the
+ * event objects on the heap or, if an off-heap capacity is configured, the serialized events in
+ * direct memory.
+ *
+ * <p>
+ * A batch that cannot be persisted is retried a few times with a growing delay. If it still
+ * fails, its events are persisted one by one, so only the failing events are lost and logged. An
+ * unexpected failure of a writer thread is logged and the thread continues with the next batch.
+ */
+public class AsyncLoggingService implements LoggingService {
+
+  /**
+   * The maximum time in milliseconds a writer thread waits for the first event of a batch before
+   * it checks whether the service is closed.
+   */
+  private static final long IDLE_POLL_TIMEOUT = 100;
+
+  /**
+   * The number of the attempts to persist a batch before its events are persisted one by one.
+   */
+  private static final int MAX_BATCH_ATTEMPTS = 3;
+
+  /**
+   * The delay in milliseconds before the second attempt to persist a batch. The delay is doubled
+   * before every further attempt.
+   */
+  private static final long RETRY_DELAY = 500;
+
+  private final AuditApplicationManager auditApplicationManager;
+
+  private final AuthenticationPropagator authenticationPropagator;
+
+  private final int batchSize;
+
+  private volatile boolean closed;
+
+  /**
+   * The callers of {@link #logEvent(AuditEvent)} check the closed flag and put the event into the
+   * queue holding the read lock, {@link #close()} sets the flag holding the write lock, so an
+   * accepted event is always in the queue before the writers drain it for the last time.
+   */
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+  private final String embeddedAuditApplicationName;
+
+  private final InternalBulkLoggingService internalBulkLoggingService;
+
+  private final LogService logService;
+
+  private final long maxLingerTime;
+
+  private final PermissionChecker permissionChecker;
+
+  private final AuditEventQueue queue;
+
+  private final TransactionPropagator transactionPropagator;
+
+  private final ExecutorService writerExecutor;
+
+  /**
+   * Constructor.
+   *
+   * @param asyncLoggingConfiguration
+   *          the configuration of the queue and the writer threads.
+   * @param requiredServices
+   *          the services used to persist the events.
+   */
+  public AsyncLoggingService(final AsyncLoggingConfiguration asyncLoggingConfiguration,
+      final AsyncLoggingRequiredServices requiredServices) {
+    embeddedAuditApplicationName = Objects.requireNonNull(
+        asyncLoggingConfiguration.embeddedAuditApplicationName,
+        "embeddedAuditApplicationName cannot be null");
+    if (asyncLoggingConfiguration.offHeapQueueCapacity < 0) {
+      throw new IllegalArgumentException("offHeapQueueCapacity cannot be negative");
+    }
+    if (asyncLoggingConfiguration.offHeapQueueCapacity == 0
+        && asyncLoggingConfiguration.queueCapacity <= 0) {
+      throw new IllegalArgumentException("queueCapacity must be positive");
+    }
+    if (asyncLoggingConfiguration.batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    if (asyncLoggingConfiguration.maxLingerTime < 0) {
+      throw new IllegalArgumentException("maxLingerTime cannot be negative");
+    }
+    if (asyncLoggingConfiguration.writerThreadCount <= 0) {
+      throw new IllegalArgumentException("writerThreadCount must be positive");
+    }
+
+    auditApplicationManager = requiredServices.auditApplicationManager;
+    authenticationPropagator = requiredServices.authenticationPropagator;
+    internalBulkLoggingService = requiredServices.internalBulkLoggingService;
+    logService = requiredServices.logService;
+    permissionChecker = requiredServices.permissionChecker;
+    transactionPropagator = requiredServices.transactionPropagator;
+
+    batchSize = asyncLoggingConfiguration.batchSize;
+    maxLingerTime = asyncLoggingConfiguration.maxLingerTime;
+    if (asyncLoggingConfiguration.offHeapQueueCapacity > 0) {
+      queue = new OffHeapAuditEventQueue(asyncLoggingConfiguration.offHeapQueueCapacity);
+    } else {
+      queue = new HeapAuditEventQueue(asyncLoggingConfiguration.queueCapacity);
+    }
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    writerExecutor = Executors.newFixedThreadPool(asyncLoggingConfiguration.writerThreadCount,
+        (runnable) -> {
+          Thread thread = new Thread(runnable,
+              "audit-async-writer-" + embeddedAuditApplicationName + "-"
+                  + threadCounter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    for (int i = 0; i < asyncLoggingConfiguration.writerThreadCount; i++) {
+      writerExecutor.execute(this::runWriter);
+    }
+  }
+
+  /**
+   * Stops accepting new events, persists all the queued events and stops the writer threads. The
+   * method returns when every queued event is persisted.
+   */
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    writerExecutor.shutdown();
+    boolean interrupted = false;
+    try {
+      while (!writerExecutor.isTerminated()) {
+        try {
+          writerExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private List<AuditEvent> collectBatch() throws InterruptedException {
+    AuditEvent first = queue.poll(IDLE_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return null;
+    }
+
+    List<AuditEvent> batch = new ArrayList<>(batchSize);
+    batch.add(first);
+    queue.drainTo(batch, batchSize - batch.size());
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerTime);
+    long idlePollTimeout = TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_TIMEOUT);
+    while (batch.size() < batchSize && !closed) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        break;
+      }
+      // a long linger is cut short when the service is closed
+      AuditEvent next = queue.poll(Math.min(remaining, idlePollTimeout), TimeUnit.NANOSECONDS);
+      if (next != null) {
+        batch.add(next);
+        queue.drainTo(batch, batchSize - batch.size());
+      }
+    }
+    return batch;
+  }
+
+  @Override
+  public void logEvent(final AuditEvent auditEvent) {
+    Objects.requireNonNull(auditEvent, "auditEvent cannot be null");
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("the asynchronous logging service is closed");
+      }
+      queue.put(auditEvent);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for free space in the queue", e);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  private void logFailedEvent(final AuditEvent auditEvent, final RuntimeException e) {
+    logService.log(LogService.LOG_ERROR, "failed to persist an audit event of type ["
+        + auditEvent.eventTypeName + "] to audit application [" + embeddedAuditApplicationName
+        + "]", e);
+  }
+
+  /**
+   * Persists the batch, retrying it a few times. If the batch still fails, its events are
+   * persisted one by one and the failing events are logged.
+   */
+  private void persist(final List<AuditEvent> batch) throws InterruptedException {
+    RuntimeException failure = null;
+    long retryDelay = RETRY_DELAY;
+    for (int attempt = 0; attempt < MAX_BATCH_ATTEMPTS; attempt++) {
+      if (attempt > 0) {
+        try {
+          Thread.sleep(retryDelay);
+        } catch (InterruptedException e) {
+          logService.log(LogService.LOG_WARNING, "audit writer thread interrupted, a batch of "
+              + batch.size() + " audit events is not persisted", failure);
+          throw e;
+        }
+        retryDelay *= 2;
+      }
+      try {
+        persistBatch(batch);
+        return;
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+
+    if (batch.size() == 1) {
+      logFailedEvent(batch.get(0), failure);
+      return;
+    }
+    logService.log(LogService.LOG_WARNING, "failed to persist a batch of " + batch.size()
+        + " audit events to audit application [" + embeddedAuditApplicationName
+        + "], persisting the events one by one", failure);
+    for (AuditEvent auditEvent : batch) {
+      try {
+        persistBatch(Collections.singletonList(auditEvent));
+      } catch (RuntimeException e) {
+        logFailedEvent(auditEvent, e);
+      }
+    }
+  }
+
+  private void persistBatch(final List<AuditEvent> batch) {
+    // the unknown event types are created by the bulk logging in the same transaction
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+        () -> transactionPropagator.required(() -> {
+          auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+          internalBulkLoggingService.logEvents(embeddedAuditApplicationName, batch);
+          return null;
+        }));
+  }
+
+  private void runWriter() {
+    try {
+      while (!closed || !queue.isEmpty()) {
+        try {
+          List<AuditEvent> batch = collectBatch();
+          if (batch != null) {
+            persist(batch);
+          }
+        } catch (RuntimeException e) {
+          // the writer must not die, otherwise the queue is never drained again
+          logService.log(LogService.LOG_ERROR, "unexpected failure of an audit writer thread of "
+              + "audit application [" + embeddedAuditApplicationName + "]", e);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logService.log(LogService.LOG_WARNING, "audit writer thread interrupted, "
+          + queue.size() + " queued audit events are not persisted");
+    }
+  }
+
+}
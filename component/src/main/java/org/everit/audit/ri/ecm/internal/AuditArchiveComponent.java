@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.everit.audit.ri.ecm.AuditArchiveService;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.internal.archive.AuditEventArchiver;
+import org.everit.audit.ri.ecm.internal.archive.SegmentAuditArchiveService;
+import org.everit.authnr.permissionchecker.AuthnrPermissionChecker;
+import org.everit.osgi.ecm.annotation.Activate;
+import org.everit.osgi.ecm.annotation.Component;
+import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
+import org.everit.osgi.ecm.annotation.Deactivate;
+import org.everit.osgi.ecm.annotation.ManualService;
+import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.IntegerAttribute;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
+import org.everit.osgi.ecm.component.ComponentContext;
+import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.log.LogService;
+
+import aQute.bnd.annotation.headers.ProvideCapability;
+
+/**
+ * Archives the aged audit events. A background thread moves the events older than the maximum age
+ * from the database to compressed, columnar segment files on the local disk, and the
+ * {@link AuditArchiveService} reads them back through memory-mapped I/O.
+ */
+@Component(componentId = AuditRiComponentConstants.ARCHIVE_SERVICE_FACTORY_PID,
+    configurationPolicy = ConfigurationPolicy.FACTORY,
+    label = "Everit Audit (Archive) RI",
+    description = "Component that moves the aged audit events from the database to archive "
+        + "files on the local disk and reads them back.")
+@ProvideCapability(ns = ECMExtenderConstants.CAPABILITY_NS_COMPONENT,
+    value = ECMExtenderConstants.CAPABILITY_ATTR_CLASS + "=${@class}")
+@StringAttributes({
+    @StringAttribute(
+        attributeId = Constants.SERVICE_DESCRIPTION,
+        defaultValue = AuditRiComponentConstants.ARCHIVE_DEFAULT_SERVICE_DESCRIPTION,
+        priority = AuditArchiveComponentAttrPriority.P01_SERVICE_DESCRIPTION,
+        label = "Service Description",
+        description = "The description of this component configuration. It is used to easily "
+            + "identify the service registered by this component.") })
+@ManualService(AuditArchiveService.class)
+public class AuditArchiveComponent {
+
+  private String archiveDirectory;
+
+  private long archiveInterval;
+
+  private long archiveMaxAge;
+
+  private AuditEventArchiver archiver;
+
+  private Thread archiverThread;
+
+  private AuthnrPermissionChecker authnrPermissionChecker;
+
+  private LogService logService;
+
+  private QuerydslSupport querydslSupport;
+
+  private int segmentEventCount;
+
+  private ServiceRegistration<?> serviceRegistration;
+
+  private TransactionPropagator transactionPropagator;
+
+  /**
+   * Starts the archiver and registers the OSGi service.
+   */
+  @Activate
+  public void activate(final ComponentContext<AuditArchiveComponent> componentContext) {
+    Path archivePath = Paths.get(archiveDirectory);
+    archiver = new AuditEventArchiver(archivePath, archiveMaxAge, archiveInterval,
+        segmentEventCount, querydslSupport, transactionPropagator, logService);
+    archiverThread = new Thread(archiver, "audit-event-archiver");
+    archiverThread.setDaemon(true);
+    archiverThread.start();
+
+    Dictionary<String, Object> serviceProperties =
+        new Hashtable<>(componentContext.getProperties());
+
+    serviceRegistration =
+        componentContext.registerService(
+            new String[] { AuditArchiveService.class.getName() },
+            new SegmentAuditArchiveService(archivePath, authnrPermissionChecker),
+            serviceProperties);
+  }
+
+  /**
+   * Unregisters the registered OSGi service and stops the archiver after its current segment.
+   */
+  @Deactivate
+  public void deactivate() {
+    if (serviceRegistration != null) {
+      serviceRegistration.unregister();
+    }
+    if (archiver != null) {
+      archiver.stop();
+      try {
+        archiverThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_ARCHIVE_DIRECTORY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_ARCHIVE_DIRECTORY,
+      priority = AuditArchiveComponentAttrPriority.P02_ARCHIVE_DIRECTORY,
+      label = "Archive Directory",
+      description = "The directory of the segment files. Every component configuration must "
+          + "have its own directory.")
+  public void setArchiveDirectory(final String archiveDirectory) {
+    this.archiveDirectory = archiveDirectory;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_ARCHIVE_INTERVAL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_ARCHIVE_INTERVAL,
+      priority = AuditArchiveComponentAttrPriority.P04_ARCHIVE_INTERVAL,
+      label = "Archive Interval",
+      description = "The time in milliseconds between two archive runs.")
+  public void setArchiveInterval(final long archiveInterval) {
+    this.archiveInterval = archiveInterval;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_ARCHIVE_MAX_AGE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_ARCHIVE_MAX_AGE,
+      priority = AuditArchiveComponentAttrPriority.P03_ARCHIVE_MAX_AGE,
+      label = "Archive Max Age",
+      description = "The time in milliseconds after the events are moved from the database to "
+          + "the archive, measured from the time they occured at.")
+  public void setArchiveMaxAge(final long archiveMaxAge) {
+    this.archiveMaxAge = archiveMaxAge;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_AUTHNR_PERMISSION_CHECKER,
+      defaultValue = "",
+      attributePriority = AuditArchiveComponentAttrPriority.P08_AUTHNR_PERMISSION_CHECKER,
+      label = "Authnr Permission Checker",
+      description = "OSGi service filter to identify the AuthnrPermissionChecker service that "
+          + "checks the permission to read the archived events.")
+  public void setAuthnrPermissionChecker(final AuthnrPermissionChecker authnrPermissionChecker) {
+    this.authnrPermissionChecker = authnrPermissionChecker;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_LOG_SERVICE,
+      defaultValue = "",
+      attributePriority = AuditArchiveComponentAttrPriority.P09_LOG_SERVICE,
+      label = "Log Service",
+      description = "OSGi service filter to identify the LogService service that receives the "
+          + "reports and the errors of the archiver.")
+  public void setLogService(final LogService logService) {
+    this.logService = logService;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_QUERYDSL_SUPPORT,
+      defaultValue = "",
+      attributePriority = AuditArchiveComponentAttrPriority.P06_QUERYDSL_SUPPORT,
+      label = "Querydsl Support",
+      description = "OSGi service filter to identify the QuerydslSupport service.")
+  public void setQuerydslSupport(final QuerydslSupport querydslSupport) {
+    this.querydslSupport = querydslSupport;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_SEGMENT_EVENT_COUNT,
+      defaultValue = AuditRiComponentConstants.DEFAULT_SEGMENT_EVENT_COUNT,
+      priority = AuditArchiveComponentAttrPriority.P05_SEGMENT_EVENT_COUNT,
+      label = "Segment Event Count",
+      description = "The maximum number of events in one segment file. The events of a segment "
+          + "are kept in memory while the segment is written.")
+  public void setSegmentEventCount(final int segmentEventCount) {
+    this.segmentEventCount = segmentEventCount;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_TRASACTION_PROPAGATOR,
+      defaultValue = "",
+      attributePriority = AuditArchiveComponentAttrPriority.P07_TRASACTION_PROPAGATOR,
+      label = "Transaction Propagator",
+      description = "OSGi service filter to identify the TransactionPropagator service.")
+  public void setTransactionPropagator(final TransactionPropagator transactionPropagator) {
+    this.transactionPropagator = transactionPropagator;
+  }
+
+}
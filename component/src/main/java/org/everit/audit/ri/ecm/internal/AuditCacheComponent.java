@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.everit.audit.ri.ecm.AuditCacheStatistics;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.internal.cache.BoundedCache;
+import org.everit.audit.ri.ecm.internal.cache.EvictionPolicy;
+import org.everit.osgi.ecm.annotation.Activate;
+import org.everit.osgi.ecm.annotation.Component;
+import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
+import org.everit.osgi.ecm.annotation.Deactivate;
+import org.everit.osgi.ecm.annotation.ManualService;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
+import org.everit.osgi.ecm.component.ComponentContext;
+import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+import aQute.bnd.annotation.headers.ProvideCapability;
+
+/**
+ * Bounded cache for the audit application and event type caches of the
+ * {@link InternalAuditComponent}. The cache is registered as a {@link Map}, a
+ * {@link ConcurrentMap} and an {@link AuditCacheStatistics} service.
+ */
+@Component(componentId = AuditRiComponentConstants.CACHE_SERVICE_FACTORY_PID,
+    configurationPolicy = ConfigurationPolicy.FACTORY,
+    label = "Everit Audit (Cache) RI",
+    description = "Bounded cache with LRU or LFU eviction and optional expiration for the audit "
+        + "application and event type caches.")
+@ProvideCapability(ns = ECMExtenderConstants.CAPABILITY_NS_COMPONENT,
+    value = ECMExtenderConstants.CAPABILITY_ATTR_CLASS + "=${@class}")
+@StringAttributes({
+    @StringAttribute(
+        attributeId = Constants.SERVICE_DESCRIPTION,
+        defaultValue = AuditRiComponentConstants.CACHE_DEFAULT_SERVICE_DESCRIPTION,
+        priority = AuditCacheComponentAttrPriority.P01_SERVICE_DESCRIPTION,
+        label = "Service Description",
+        description = "The description of this component configuration. It is used to easily "
+            + "identify the service registered by this component. The Internal Audit Component "
+            + "binds the caches with the 'audit-application-cache' and 'audit-event-type-cache' "
+            + "descriptions by default.") })
+@ManualService({ Map.class, ConcurrentMap.class, AuditCacheStatistics.class })
+public class AuditCacheComponent {
+
+  private BoundedCache<Object, Object> cache;
+
+  private String evictionPolicy;
+
+  private long expireAfterWrite;
+
+  private long maximumSize;
+
+  private ServiceRegistration<?> serviceRegistration;
+
+  /**
+   * Registers the OSGi services.
+   */
+  @Activate
+  public void activate(final ComponentContext<AuditCacheComponent> componentContext) {
+
+    Dictionary<String, Object> serviceProperties =
+        new Hashtable<>(componentContext.getProperties());
+
+    cache = new BoundedCache<>(maximumSize, EvictionPolicy.fromName(evictionPolicy),
+        expireAfterWrite);
+    serviceRegistration =
+        componentContext.registerService(
+            new String[] {
+                Map.class.getName(),
+                ConcurrentMap.class.getName(),
+                AuditCacheStatistics.class.getName() },
+            cache,
+            serviceProperties);
+  }
+
+  /**
+   * Unregisters the registered OSGi services and drops the cached entries.
+   */
+  @Deactivate
+  public void deactivate() {
+    if (serviceRegistration != null) {
+      serviceRegistration.unregister();
+    }
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_EVICTION_POLICY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_EVICTION_POLICY,
+      priority = AuditCacheComponentAttrPriority.P03_EVICTION_POLICY,
+      label = "Eviction Policy",
+      description = "The policy that selects the entry to be evicted when the cache is full. "
+          + "LRU evicts the least recently used, LFU the least frequently used entry.")
+  public void setEvictionPolicy(final String evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_EXPIRE_AFTER_WRITE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_EXPIRE_AFTER_WRITE,
+      priority = AuditCacheComponentAttrPriority.P04_EXPIRE_AFTER_WRITE,
+      label = "Expire After Write",
+      description = "The time in milliseconds after an entry expires from its last write. Zero "
+          + "means that the entries never expire.")
+  public void setExpireAfterWrite(final long expireAfterWrite) {
+    this.expireAfterWrite = expireAfterWrite;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_MAXIMUM_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_MAXIMUM_SIZE,
+      priority = AuditCacheComponentAttrPriority.P02_MAXIMUM_SIZE,
+      label = "Maximum Size",
+      description = "The maximum number of entries held by the cache.")
+  public void setMaximumSize(final long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEvent;
+
+/**
+ * The queue of the audit events waiting to be persisted by the writer threads of the
+ * {@link AsyncLoggingService}.
+ */
+public interface AuditEventQueue {
+
+  /**
+   * Removes at most the given number of available events from the queue and adds them to the
+   * collection.
+   *
+   * @return the number of events moved.
+   */
+  int drainTo(Collection<? super AuditEvent> collection, int maxElements);
+
+  /**
+   * Returns whether the queue is empty. The events that are being added are already counted.
+   */
+  boolean isEmpty();
+
+  /**
+   * Removes the first event of the queue, waiting up to the timeout for an event to become
+   * available.
+   *
+   * @return the event or <code>null</code> if the timeout elapsed.
+   */
+  AuditEvent poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+  /**
+   * Adds the event to the queue, waiting for free space if necessary.
+   */
+  void put(AuditEvent auditEvent) throws InterruptedException;
+
+  /**
+   * Returns the number of events in the queue.
+   */
+  int size();
+
+}
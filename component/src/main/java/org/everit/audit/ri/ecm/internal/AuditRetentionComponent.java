@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.everit.audit.ri.ecm.AuditRetentionStatistics;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.internal.retention.AuditEventPurger;
+import org.everit.osgi.ecm.annotation.Activate;
+import org.everit.osgi.ecm.annotation.Component;
+import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
+import org.everit.osgi.ecm.annotation.Deactivate;
+import org.everit.osgi.ecm.annotation.ManualService;
+import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.IntegerAttribute;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
+import org.everit.osgi.ecm.component.ComponentContext;
+import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.log.LogService;
+
+import aQute.bnd.annotation.headers.ProvideCapability;
+
+/**
+ * Deletes the expired audit events. A background thread deletes the events older than the max
+ * age of their audit application in small chunks, so the deletion does not hold long locks on the
+ * event tables, and registers the {@link AuditRetentionStatistics} of the deletion. Only one
+ * configuration should run against a database.
+ */
+@Component(componentId = AuditRiComponentConstants.RETENTION_SERVICE_FACTORY_PID,
+    configurationPolicy = ConfigurationPolicy.FACTORY,
+    label = "Everit Audit (Retention) RI",
+    description = "Component that deletes the expired audit events in small chunks.")
+@ProvideCapability(ns = ECMExtenderConstants.CAPABILITY_NS_COMPONENT,
+    value = ECMExtenderConstants.CAPABILITY_ATTR_CLASS + "=${@class}")
+@StringAttributes({
+    @StringAttribute(
+        attributeId = Constants.SERVICE_DESCRIPTION,
+        defaultValue = AuditRiComponentConstants.RETENTION_DEFAULT_SERVICE_DESCRIPTION,
+        priority = AuditRetentionComponentAttrPriority.P01_SERVICE_DESCRIPTION,
+        label = "Service Description",
+        description = "The description of this component configuration. It is used to easily "
+            + "identify the service registered by this component.") })
+@ManualService(AuditRetentionStatistics.class)
+public class AuditRetentionComponent {
+
+  private String applicationMaxAges;
+
+  private long chunkDelay;
+
+  private int chunkSize;
+
+  private LogService logService;
+
+  private AuditEventPurger purger;
+
+  private Thread purgerThread;
+
+  private QuerydslSupport querydslSupport;
+
+  private long retentionInterval;
+
+  private long retentionMaxAge;
+
+  private ServiceRegistration<?> serviceRegistration;
+
+  private TransactionPropagator transactionPropagator;
+
+  /**
+   * Starts the purger and registers the OSGi service.
+   */
+  @Activate
+  public void activate(final ComponentContext<AuditRetentionComponent> componentContext) {
+    purger = new AuditEventPurger(AuditEventPurger.parseApplicationMaxAges(applicationMaxAges),
+        retentionMaxAge, retentionInterval, chunkSize, chunkDelay, querydslSupport,
+        transactionPropagator, logService);
+    purgerThread = new Thread(purger, "audit-event-purger");
+    purgerThread.setDaemon(true);
+    purgerThread.start();
+
+    Dictionary<String, Object> serviceProperties =
+        new Hashtable<>(componentContext.getProperties());
+
+    serviceRegistration =
+        componentContext.registerService(
+            new String[] { AuditRetentionStatistics.class.getName() },
+            purger,
+            serviceProperties);
+  }
+
+  /**
+   * Unregisters the registered OSGi service and stops the purger after its current chunk.
+   */
+  @Deactivate
+  public void deactivate() {
+    if (serviceRegistration != null) {
+      serviceRegistration.unregister();
+    }
+    if (purger != null) {
+      purger.stop();
+      try {
+        purgerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_APPLICATION_MAX_AGES,
+      defaultValue = AuditRiComponentConstants.DEFAULT_APPLICATION_MAX_AGES,
+      priority = AuditRetentionComponentAttrPriority.P02_APPLICATION_MAX_AGES,
+      label = "Application Max Ages",
+      description = "The time in milliseconds after the events of an audit application expire, "
+          + "in the applicationName=maxAge form, separated by commas. Zero keeps the events of "
+          + "the application forever.")
+  public void setApplicationMaxAges(final String applicationMaxAges) {
+    this.applicationMaxAges = applicationMaxAges;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_CHUNK_DELAY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_CHUNK_DELAY,
+      priority = AuditRetentionComponentAttrPriority.P06_CHUNK_DELAY,
+      label = "Chunk Delay",
+      description = "The time in milliseconds to wait between two chunks, to leave database "
+          + "capacity for the writers.")
+  public void setChunkDelay(final long chunkDelay) {
+    this.chunkDelay = chunkDelay;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_CHUNK_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_CHUNK_SIZE,
+      priority = AuditRetentionComponentAttrPriority.P05_CHUNK_SIZE,
+      label = "Chunk Size",
+      description = "The maximum number of events deleted in one transaction.")
+  public void setChunkSize(final int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_LOG_SERVICE,
+      defaultValue = "",
+      attributePriority = AuditRetentionComponentAttrPriority.P09_LOG_SERVICE,
+      label = "Log Service",
+      description = "OSGi service filter to identify the LogService service that receives the "
+          + "reports and the errors of the purger.")
+  public void setLogService(final LogService logService) {
+    this.logService = logService;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_QUERYDSL_SUPPORT,
+      defaultValue = "",
+      attributePriority = AuditRetentionComponentAttrPriority.P07_QUERYDSL_SUPPORT,
+      label = "Querydsl Support",
+      description = "OSGi service filter to identify the QuerydslSupport service.")
+  public void setQuerydslSupport(final QuerydslSupport querydslSupport) {
+    this.querydslSupport = querydslSupport;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_RETENTION_INTERVAL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_RETENTION_INTERVAL,
+      priority = AuditRetentionComponentAttrPriority.P04_RETENTION_INTERVAL,
+      label = "Retention Interval",
+      description = "The time in milliseconds between two retention runs.")
+  public void setRetentionInterval(final long retentionInterval) {
+    this.retentionInterval = retentionInterval;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_RETENTION_MAX_AGE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_RETENTION_MAX_AGE,
+      priority = AuditRetentionComponentAttrPriority.P03_RETENTION_MAX_AGE,
+      label = "Retention Max Age",
+      description = "The time in milliseconds after the events of the audit applications not "
+          + "listed in the application max ages expire, measured from the time they occured "
+          + "at. Zero keeps the events forever.")
+  public void setRetentionMaxAge(final long retentionMaxAge) {
+    this.retentionMaxAge = retentionMaxAge;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_TRASACTION_PROPAGATOR,
+      defaultValue = "",
+      attributePriority = AuditRetentionComponentAttrPriority.P08_TRASACTION_PROPAGATOR,
+      label = "Transaction Propagator",
+      description = "OSGi service filter to identify the TransactionPropagator service.")
+  public void setTransactionPropagator(final TransactionPropagator transactionPropagator) {
+    this.transactionPropagator = transactionPropagator;
+  }
+
+}
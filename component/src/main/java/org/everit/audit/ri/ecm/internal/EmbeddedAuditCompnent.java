@@ -24,7 +24,13 @@ import org.everit.audit.ri.AuditApplicationManager;
 import org.everit.audit.ri.EmbeddedAuditService;
 import org.everit.audit.ri.InternalAuditEventTypeManager;
 import org.everit.audit.ri.InternalLoggingService;
+import org.everit.audit.ri.ecm.AuditMetrics;
 import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.BulkLoggingService;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.audit.ri.ecm.internal.metrics.AuditMetricsRecorder;
+import org.everit.audit.ri.ecm.internal.metrics.AuditMetricsRegistration;
+import org.everit.audit.ri.ecm.internal.metrics.MetricsInvocationHandler;
 import org.everit.authentication.context.AuthenticationPropagator;
 import org.everit.authorization.PermissionChecker;
 import org.everit.osgi.ecm.annotation.Activate;
@@ -33,17 +39,28 @@ import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
 import org.everit.osgi.ecm.annotation.Deactivate;
 import org.everit.osgi.ecm.annotation.ManualService;
 import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.BooleanAttribute;
+import org.everit.osgi.ecm.annotation.attribute.IntegerAttribute;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
 import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
 import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
 import org.everit.osgi.ecm.component.ComponentContext;
 import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.everit.transaction.propagator.TransactionPropagator;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 
 import aQute.bnd.annotation.headers.ProvideCapability;
 
 /**
- * The embedded implementation of the {@link AuditEventTypeManager} and the {@link LoggingService}.
+ * The embedded implementation of the {@link AuditEventTypeManager}, the {@link LoggingService} and
+ * the {@link BulkLoggingService}.
+ *
+ * <p>
+ * The permissions are checked by the referenced internal services. If the internal component
+ * caches the permission decisions, a permission revoked through the general AuthorizationManager
+ * or by a change of a group membership stays granted for the TTL of the permission decision
+ * cache.
  */
 @Component(componentId = AuditRiComponentConstants.EMBEDDED_SERVICE_FACTORY_PID,
     configurationPolicy = ConfigurationPolicy.FACTORY,
@@ -59,23 +76,40 @@ import aQute.bnd.annotation.headers.ProvideCapability;
         label = "Service Description",
         description = "The description of this component configuration. It is used to easily "
             + "identify the service registered by this component.") })
-@ManualService({ AuditEventTypeManager.class, LoggingService.class })
+@ManualService({ AuditEventTypeManager.class, LoggingService.class,
+    BulkLoggingService.class, AuditMetrics.class })
 public class EmbeddedAuditCompnent {
 
   private AuditApplicationManager auditApplicationManager;
 
   private AuthenticationPropagator authenticationPropagator;
 
+  private ServiceRegistration<?> bulkServiceRegistration;
+
   private String embeddedAuditApplicationName;
 
+  private GroupCommitLoggingService groupCommitLoggingService;
+
+  private int groupCommitMaxEvents;
+
+  private long groupCommitMaxWait;
+
   private InternalAuditEventTypeManager internalAuditEventTypeManager;
 
+  private InternalBulkLoggingService internalBulkLoggingService;
+
   private InternalLoggingService internalLoggingService;
 
+  private boolean metricsEnabled;
+
+  private AuditMetricsRegistration metricsRegistration;
+
   private PermissionChecker permissionChecker;
 
   private ServiceRegistration<?> serviceRegistration;
 
+  private TransactionPropagator transactionPropagator;
+
   /**
    * Registers the OSGi services.
    */
@@ -85,23 +119,70 @@ public class EmbeddedAuditCompnent {
     Dictionary<String, Object> serviceProperties =
         new Hashtable<>(componentContext.getProperties());
 
+    AuditMetricsRecorder metricsRecorder = metricsEnabled ? new AuditMetricsRecorder() : null;
+
     EmbeddedAuditService embeddedAuditService = new EmbeddedAuditService(auditApplicationManager,
         internalAuditEventTypeManager, internalLoggingService, authenticationPropagator,
         permissionChecker, embeddedAuditApplicationName);
-    serviceRegistration =
-        componentContext.registerService(
-            new String[] { AuditEventTypeManager.class.getName(), LoggingService.class.getName() },
-            embeddedAuditService,
-            serviceProperties);
+    EmbeddedBulkAuditService embeddedBulkAuditService = new EmbeddedBulkAuditService(
+        embeddedAuditApplicationName, auditApplicationManager, authenticationPropagator,
+        internalBulkLoggingService, permissionChecker, transactionPropagator);
+
+    Object loggingService = embeddedAuditService;
+    if (groupCommitMaxEvents > 0) {
+      groupCommitLoggingService = new GroupCommitLoggingService(embeddedAuditService,
+          embeddedBulkAuditService, groupCommitMaxEvents, groupCommitMaxWait,
+          "audit-group-commit-" + embeddedAuditApplicationName);
+      loggingService = groupCommitLoggingService;
+    }
+    try {
+      serviceRegistration =
+          componentContext.registerService(
+              new String[] { AuditEventTypeManager.class.getName(),
+                  LoggingService.class.getName() },
+              MetricsInvocationHandler.instrument(loggingService, metricsRecorder,
+                  AuditEventTypeManager.class, LoggingService.class),
+              serviceProperties);
+
+      bulkServiceRegistration =
+          componentContext.registerService(
+              new String[] { BulkLoggingService.class.getName() },
+              MetricsInvocationHandler.instrument(embeddedBulkAuditService, metricsRecorder,
+                  BulkLoggingService.class),
+              serviceProperties);
+
+      if (metricsRecorder != null) {
+        metricsRegistration = AuditMetricsRegistration.register(componentContext,
+            metricsRecorder, serviceProperties);
+      }
+    } catch (RuntimeException | Error e) {
+      // the committer thread and the services registered so far must not outlive the failed
+      // activation
+      deactivate();
+      throw e;
+    }
   }
 
   /**
-   * Unregisters the registered OSGi service.
+   * Unregisters the registered OSGi services.
    */
   @Deactivate
   public void deactivate() {
+    if (metricsRegistration != null) {
+      metricsRegistration.unregister();
+      metricsRegistration = null;
+    }
+    if (bulkServiceRegistration != null) {
+      bulkServiceRegistration.unregister();
+      bulkServiceRegistration = null;
+    }
     if (serviceRegistration != null) {
       serviceRegistration.unregister();
+      serviceRegistration = null;
+    }
+    if (groupCommitLoggingService != null) {
+      groupCommitLoggingService.close();
+      groupCommitLoggingService = null;
     }
   }
 
@@ -132,6 +213,28 @@ public class EmbeddedAuditCompnent {
     this.embeddedAuditApplicationName = embeddedAuditApplicationName;
   }
 
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_GROUP_COMMIT_MAX_EVENTS,
+      defaultValue = AuditRiComponentConstants.DEFAULT_GROUP_COMMIT_MAX_EVENTS,
+      priority = EmbeddedAuditCompnentAttrPriority.P10_GROUP_COMMIT_MAX_EVENTS,
+      label = "Group Commit Max Events",
+      description = "The maximum number of events of concurrent LoggingService.logEvent calls "
+          + "committed in one transaction. Each call returns when the transaction of its group "
+          + "is committed, but the events are not part of the transaction of the caller. If it "
+          + "is zero, every call is persisted in the transaction of the caller.")
+  public void setGroupCommitMaxEvents(final int groupCommitMaxEvents) {
+    this.groupCommitMaxEvents = groupCommitMaxEvents;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_GROUP_COMMIT_MAX_WAIT,
+      defaultValue = AuditRiComponentConstants.DEFAULT_GROUP_COMMIT_MAX_WAIT,
+      priority = EmbeddedAuditCompnentAttrPriority.P11_GROUP_COMMIT_MAX_WAIT,
+      label = "Group Commit Max Wait",
+      description = "The maximum time in milliseconds the first event of a group waits for the "
+          + "events of other callers before the group is committed.")
+  public void setGroupCommitMaxWait(final long groupCommitMaxWait) {
+    this.groupCommitMaxWait = groupCommitMaxWait;
+  }
+
   @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_INTERNAL_AUDIT_EVENT_TYPE_MANAGER,
       defaultValue = "",
       attributePriority = EmbeddedAuditCompnentAttrPriority.P04_INTERNAL_AUDIT_EVENT_TYPE_MANAGER,
@@ -142,6 +245,16 @@ public class EmbeddedAuditCompnent {
     this.internalAuditEventTypeManager = internalAuditEventTypeManager;
   }
 
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_INTERNAL_BULK_LOGGING_SERVICE,
+      defaultValue = "",
+      attributePriority = EmbeddedAuditCompnentAttrPriority.P08_INTERNAL_BULK_LOGGING_SERVICE,
+      label = "Internal Bulk Logging Service",
+      description = "OSGi service filter to identify the InternalBulkLoggingService service.")
+  public void setInternalBulkLoggingService(
+      final InternalBulkLoggingService internalBulkLoggingService) {
+    this.internalBulkLoggingService = internalBulkLoggingService;
+  }
+
   @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_INTERNAL_LOGGING_SERVICE,
       defaultValue = "",
       attributePriority = EmbeddedAuditCompnentAttrPriority.P05_INTERNAL_LOGGING_SERVICE,
@@ -151,6 +264,16 @@ public class EmbeddedAuditCompnent {
     this.internalLoggingService = internalLoggingService;
   }
 
+  @BooleanAttribute(attributeId = AuditRiComponentConstants.ATTR_METRICS_ENABLED,
+      defaultValue = AuditRiComponentConstants.DEFAULT_METRICS_ENABLED,
+      priority = EmbeddedAuditCompnentAttrPriority.P09_METRICS_ENABLED,
+      label = "Metrics Enabled",
+      description = "Whether the latency, throughput and error metrics of the services are "
+          + "recorded and registered as an AuditMetrics service and a JMX MBean.")
+  public void setMetricsEnabled(final boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
   @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_PERMISSION_CHECKER,
       defaultValue = "",
       attributePriority = EmbeddedAuditCompnentAttrPriority.P07_PERMISSION_CHECKER,
@@ -160,4 +283,13 @@ public class EmbeddedAuditCompnent {
     this.permissionChecker = permissionChecker;
   }
 
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_TRASACTION_PROPAGATOR,
+      defaultValue = "",
+      attributePriority = EmbeddedAuditCompnentAttrPriority.P12_TRASACTION_PROPAGATOR,
+      label = "Transaction Propagator",
+      description = "OSGi service filter to identify the TransactionPropagator service.")
+  public void setTransactionPropagator(final TransactionPropagator transactionPropagator) {
+    this.transactionPropagator = transactionPropagator;
+  }
+
 }
@@ -34,6 +34,16 @@ public final class EmbeddedAuditCompnentAttrPriority {
 
   public static final int P07_PERMISSION_CHECKER = 7;
 
+  public static final int P08_INTERNAL_BULK_LOGGING_SERVICE = 8;
+
+  public static final int P09_METRICS_ENABLED = 9;
+
+  public static final int P10_GROUP_COMMIT_MAX_EVENTS = 10;
+
+  public static final int P11_GROUP_COMMIT_MAX_WAIT = 11;
+
+  public static final int P12_TRASACTION_PROPAGATOR = 12;
+
   private EmbeddedAuditCompnentAttrPriority() {
   }
 
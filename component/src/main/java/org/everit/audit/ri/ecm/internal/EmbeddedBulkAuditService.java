@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.ecm.BulkLoggingService;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authorization.PermissionChecker;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+/**
+ * {@link BulkLoggingService} that logs the audit events to the embedded audit application. The
+ * audit application is created on demand in the same transaction in which the audit events are
+ * persisted.
+ */
+public class EmbeddedBulkAuditService implements BulkLoggingService {
+
+  private final AuditApplicationManager auditApplicationManager;
+
+  private final AuthenticationPropagator authenticationPropagator;
+
+  private final String embeddedAuditApplicationName;
+
+  private final InternalBulkLoggingService internalBulkLoggingService;
+
+  private final PermissionChecker permissionChecker;
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   */
+  public EmbeddedBulkAuditService(final String embeddedAuditApplicationName,
+      final AuditApplicationManager auditApplicationManager,
+      final AuthenticationPropagator authenticationPropagator,
+      final InternalBulkLoggingService internalBulkLoggingService,
+      final PermissionChecker permissionChecker,
+      final TransactionPropagator transactionPropagator) {
+    this.embeddedAuditApplicationName = Objects.requireNonNull(embeddedAuditApplicationName,
+        "embeddedAuditApplicationName cannot be null");
+    this.auditApplicationManager = auditApplicationManager;
+    this.authenticationPropagator = authenticationPropagator;
+    this.internalBulkLoggingService = internalBulkLoggingService;
+    this.permissionChecker = permissionChecker;
+    this.transactionPropagator = transactionPropagator;
+  }
+
+  @Override
+  public void logEvents(final Collection<AuditEvent> auditEvents) {
+    Objects.requireNonNull(auditEvents, "auditEvents cannot be null");
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+        () -> transactionPropagator.required(() -> {
+          auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+          internalBulkLoggingService.logEvents(embeddedAuditApplicationName, auditEvents);
+          return null;
+        }));
+  }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.AuditEventTypeManager;
+import org.everit.audit.LoggingService;
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.ecm.BulkLoggingService;
+
+/**
+ * {@link LoggingService} that persists the audit events of concurrent callers in one transaction.
+ * The events are collected by a committer thread until the group is full or the maximum wait time
+ * after the first event of the group is elapsed, and the group is written by one
+ * {@link BulkLoggingService#logEvents(java.util.Collection)} call. The caller of
+ * {@link #logEvent(AuditEvent)} returns only when the transaction of its group is committed, so
+ * an event that is logged successfully is as durable as without grouping. The events are not part
+ * of the transaction of the caller.
+ *
+ * <p>
+ * If a group cannot be persisted, its events are retried one by one, so only the callers of the
+ * failing events get the exception. If committing a group fails with an {@link Error}, every
+ * caller of the group whose event is not committed yet gets the error, and the committer thread
+ * goes on with the next group.
+ */
+public class GroupCommitLoggingService implements AuditEventTypeManager, LoggingService {
+
+  /**
+   * The maximum time in milliseconds the committer thread waits for the first event of a group
+   * before it checks whether the service is closed.
+   */
+  private static final long IDLE_POLL_TIMEOUT = 100;
+
+  /**
+   * An audit event waiting for the commit of its group.
+   */
+  private static final class PendingEvent {
+
+    final AuditEvent auditEvent;
+
+    final CompletableFuture<Void> commit = new CompletableFuture<>();
+
+    PendingEvent(final AuditEvent auditEvent) {
+      this.auditEvent = auditEvent;
+    }
+
+  }
+
+  private final AuditEventTypeManager auditEventTypeManager;
+
+  private final BulkLoggingService bulkLoggingService;
+
+  private boolean closed;
+
+  private final Thread committerThread;
+
+  private final int maxGroupSize;
+
+  private final long maxWaitTime;
+
+  private final BlockingQueue<PendingEvent> queue = new LinkedBlockingQueue<>();
+
+  /**
+   * Constructor.
+   *
+   * @param auditEventTypeManager
+   *          initializes the event types.
+   * @param bulkLoggingService
+   *          persists a group of events in one transaction.
+   * @param maxGroupSize
+   *          the maximum number of events committed in one transaction.
+   * @param maxWaitTime
+   *          the maximum time in milliseconds the first event of a group waits for further
+   *          events.
+   * @param committerThreadName
+   *          the name of the committer thread.
+   */
+  public GroupCommitLoggingService(final AuditEventTypeManager auditEventTypeManager,
+      final BulkLoggingService bulkLoggingService, final int maxGroupSize,
+      final long maxWaitTime, final String committerThreadName) {
+    if (maxGroupSize <= 0) {
+      throw new IllegalArgumentException("maxGroupSize must be positive");
+    }
+    if (maxWaitTime < 0) {
+      throw new IllegalArgumentException("maxWaitTime cannot be negative");
+    }
+    this.auditEventTypeManager = Objects.requireNonNull(auditEventTypeManager,
+        "auditEventTypeManager cannot be null");
+    this.bulkLoggingService = Objects.requireNonNull(bulkLoggingService,
+        "bulkLoggingService cannot be null");
+    this.maxGroupSize = maxGroupSize;
+    this.maxWaitTime = maxWaitTime;
+
+    committerThread = new Thread(this::runCommitter, committerThreadName);
+    committerThread.setDaemon(true);
+    committerThread.start();
+  }
+
+  /**
+   * Stops accepting new events, commits the waiting events and stops the committer thread. The
+   * method returns when every waiting event is committed.
+   */
+  public void close() {
+    synchronized (queue) {
+      closed = true;
+    }
+    boolean interrupted = false;
+    try {
+      while (committerThread.isAlive()) {
+        try {
+          committerThread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private List<PendingEvent> collectGroup() throws InterruptedException {
+    PendingEvent first = queue.poll(IDLE_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return null;
+    }
+
+    List<PendingEvent> group = new ArrayList<>(maxGroupSize);
+    group.add(first);
+    queue.drainTo(group, maxGroupSize - group.size());
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitTime);
+    while (group.size() < maxGroupSize && !isClosed()) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        break;
+      }
+      PendingEvent next;
+      try {
+        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        // the collected events are committed, the interruption is reported by the next poll
+        Thread.currentThread().interrupt();
+        break;
+      }
+      if (next == null) {
+        break;
+      }
+      group.add(next);
+      queue.drainTo(group, maxGroupSize - group.size());
+    }
+    return group;
+  }
+
+  private void commitGroup(final List<PendingEvent> group) {
+    List<AuditEvent> auditEvents = new ArrayList<>(group.size());
+    for (PendingEvent pendingEvent : group) {
+      auditEvents.add(pendingEvent.auditEvent);
+    }
+    try {
+      bulkLoggingService.logEvents(auditEvents);
+    } catch (RuntimeException e) {
+      if (group.size() == 1) {
+        group.get(0).commit.completeExceptionally(e);
+        return;
+      }
+      // find the failing events
+      for (PendingEvent pendingEvent : group) {
+        try {
+          bulkLoggingService.logEvents(Collections.singletonList(pendingEvent.auditEvent));
+          pendingEvent.commit.complete(null);
+        } catch (RuntimeException singleEventException) {
+          pendingEvent.commit.completeExceptionally(singleEventException);
+        }
+      }
+      return;
+    }
+    for (PendingEvent pendingEvent : group) {
+      pendingEvent.commit.complete(null);
+    }
+  }
+
+  @Override
+  public void initAuditEventTypes(final String... eventTypeNames) {
+    auditEventTypeManager.initAuditEventTypes(eventTypeNames);
+  }
+
+  private boolean isClosed() {
+    synchronized (queue) {
+      return closed;
+    }
+  }
+
+  @Override
+  public void logEvent(final AuditEvent auditEvent) {
+    Objects.requireNonNull(auditEvent, "auditEvent cannot be null");
+    PendingEvent pendingEvent = new PendingEvent(auditEvent);
+    // the closed flag is checked under the same lock as the committer checks it, so an accepted
+    // event is always committed
+    synchronized (queue) {
+      if (closed) {
+        throw new IllegalStateException("the group commit logging service is closed");
+      }
+      queue.add(pendingEvent);
+    }
+
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          pendingEvent.commit.get();
+          return;
+        } catch (InterruptedException e) {
+          // the event is committed anyway, the caller must not return before it
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void runCommitter() {
+    boolean interrupted = false;
+    while (!isClosed() || !queue.isEmpty()) {
+      List<PendingEvent> group = null;
+      try {
+        group = collectGroup();
+        if (group != null) {
+          commitGroup(group);
+        }
+      } catch (InterruptedException e) {
+        // the waiting callers must be served, the committer stops only when it is closed
+        interrupted = true;
+      } catch (Throwable e) {
+        // the callers of the group must not wait forever and the committer must serve the next
+        // groups, so even errors are reported to the callers instead of ending the thread
+        if (group != null) {
+          for (PendingEvent pendingEvent : group) {
+            pendingEvent.commit.completeExceptionally(e);
+          }
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
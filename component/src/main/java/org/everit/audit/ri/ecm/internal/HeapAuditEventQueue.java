@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEvent;
+
+/**
+ * {@link AuditEventQueue} that holds the event objects in a bounded {@link BlockingQueue}.
+ */
+public class HeapAuditEventQueue implements AuditEventQueue {
+
+  private final BlockingQueue<AuditEvent> queue;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity
+   *          the maximum number of events in the queue.
+   */
+  public HeapAuditEventQueue(final int capacity) {
+    queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  @Override
+  public int drainTo(final Collection<? super AuditEvent> collection, final int maxElements) {
+    return queue.drainTo(collection, maxElements);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  @Override
+  public AuditEvent poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    return queue.poll(timeout, unit);
+  }
+
+  @Override
+  public void put(final AuditEvent auditEvent) throws InterruptedException {
+    queue.put(auditEvent);
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+
+}
@@ -18,6 +18,9 @@ package org.everit.audit.ri.ecm.internal;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.everit.audit.dto.AuditEventType;
 import org.everit.audit.ri.AuditApplicationManager;
@@ -29,7 +32,34 @@ import org.everit.audit.ri.InternalLoggingService;
 import org.everit.audit.ri.authorization.AuditRiAuthorizationManager;
 import org.everit.audit.ri.authorization.AuditRiPermissionChecker;
 import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.AuditCacheInvalidator;
+import org.everit.audit.ri.ecm.AuditEventQueryService;
+import org.everit.audit.ri.ecm.AuditMetrics;
 import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.audit.ri.ecm.internal.authorization.PermissionChangeInvocationHandler;
+import org.everit.audit.ri.ecm.internal.authorization.PermissionDecisionCache;
+import org.everit.audit.ri.ecm.internal.authorization.PermissionDecisionCachingHandler;
+import org.everit.audit.ri.ecm.internal.metrics.AuditMetricsRecorder;
+import org.everit.audit.ri.ecm.internal.metrics.AuditMetricsRegistration;
+import org.everit.audit.ri.ecm.internal.metrics.MetricsInvocationHandler;
+import org.everit.audit.ri.ecm.internal.partition.AuditPartitionManager;
+import org.everit.audit.ri.ecm.internal.partition.PartitionPeriod;
+import org.everit.audit.ri.ecm.internal.persistence.ApplicationCreationInvocationHandler;
+import org.everit.audit.ri.ecm.internal.persistence.AuditCacheInvalidation;
+import org.everit.audit.ri.ecm.internal.persistence.AuditCacheWarmUp;
+import org.everit.audit.ri.ecm.internal.persistence.AuditEntityResolver;
+import org.everit.audit.ri.ecm.internal.persistence.AuditEventWriter;
+import org.everit.audit.ri.ecm.internal.persistence.EventDataIndex;
+import org.everit.audit.ri.ecm.internal.persistence.EventDataNameDictionary;
+import org.everit.audit.ri.ecm.internal.persistence.EventTypeUsageRecorder;
+import org.everit.audit.ri.ecm.internal.persistence.IdBlockAllocator;
+import org.everit.audit.ri.ecm.internal.persistence.TextValueCompressor;
+import org.everit.audit.ri.ecm.internal.persistence.TransactionCompletionRunner;
+import org.everit.audit.ri.ecm.internal.persistence.UnknownApplicationCache;
+import org.everit.audit.ri.ecm.internal.query.QuerydslAuditEventQueryService;
+import org.everit.audit.ri.ecm.internal.retention.AuditEventPurger;
+import org.everit.authentication.context.AuthenticationContext;
 import org.everit.authnr.permissionchecker.AuthnrPermissionChecker;
 import org.everit.authorization.AuthorizationManager;
 import org.everit.osgi.ecm.annotation.Activate;
@@ -38,6 +68,9 @@ import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
 import org.everit.osgi.ecm.annotation.Deactivate;
 import org.everit.osgi.ecm.annotation.ManualService;
 import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.BooleanAttribute;
+import org.everit.osgi.ecm.annotation.attribute.IntegerAttribute;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
 import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
 import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
 import org.everit.osgi.ecm.component.ComponentContext;
@@ -48,6 +81,7 @@ import org.everit.resource.ResourceService;
 import org.everit.transaction.propagator.TransactionPropagator;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.log.LogService;
 
 import aQute.bnd.annotation.headers.ProvideCapability;
 
@@ -72,17 +106,77 @@ import aQute.bnd.annotation.headers.ProvideCapability;
     InternalAuditEventTypeManager.class,
     InternalLoggingService.class,
     AuditRiAuthorizationManager.class,
-    AuditRiPermissionChecker.class })
+    AuditRiPermissionChecker.class,
+    InternalBulkLoggingService.class,
+    AuditMetrics.class,
+    AuditEventQueryService.class,
+    AuditCacheInvalidator.class })
 public class InternalAuditComponent {
 
   private Map<String, AuditApplication> auditApplicationCache;
 
   private Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache;
 
+  private AuthenticationContext authenticationContext;
+
   private AuthnrPermissionChecker authnrPermissionChecker;
 
   private AuthorizationManager authorizationManager;
 
+  private AuditCacheInvalidation cacheInvalidation;
+
+  private long cacheInvalidationInterval;
+
+  private ServiceRegistration<?> cacheInvalidationRegistration;
+
+  private Thread cacheInvalidationThread;
+
+  private boolean cacheWarmUp;
+
+  private AuditCacheWarmUp cacheWarmUpJob;
+
+  private int cacheWarmUpLimit;
+
+  private Thread cacheWarmUpThread;
+
+  private boolean eventDataNameDictionary;
+
+  private int idBlockSize;
+
+  private String indexedEventDataNames;
+
+  private ServiceRegistration<?> loggingServiceRegistration;
+
+  private LogService logService;
+
+  private boolean metricsEnabled;
+
+  private int queryFetchSize;
+
+  private ServiceRegistration<?> queryServiceRegistration;
+
+  private AuditMetricsRegistration metricsRegistration;
+
+  private String partitionApplicationMaxAges;
+
+  private String partitionedApplications;
+
+  private long partitionMaintenanceInterval;
+
+  private Thread partitionMaintenanceThread;
+
+  private AuditPartitionManager partitionManager;
+
+  private long partitionMaxAge;
+
+  private String partitionPeriod;
+
+  private int partitionPrecreateCount;
+
+  private int permissionDecisionCacheSize;
+
+  private long permissionDecisionCacheTtl;
+
   private PropertyManager propertyManager;
 
   private QuerydslSupport querydslSupport;
@@ -91,32 +185,199 @@ public class InternalAuditComponent {
 
   private ServiceRegistration<?> serviceRegistration;
 
+  private int textCompressionThreshold;
+
   private TransactionPropagator transactionPropagator;
 
+  private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+  private int unknownApplicationCacheSize;
+
+  private long unknownApplicationCacheTtl;
+
   /**
    * Registers the OSGi services.
    */
   @Activate
   public void activate(final ComponentContext<InternalAuditComponent> componentContext) {
+    if (logService == null) {
+      // the LogService reference is optional
+      logService = StandardErrorLogService.INSTANCE;
+    }
+    PermissionDecisionCache permissionDecisionCache = null;
+    if (permissionDecisionCacheSize > 0) {
+      permissionDecisionCache =
+          new PermissionDecisionCache(permissionDecisionCacheSize, permissionDecisionCacheTtl);
+    }
+    UnknownApplicationCache unknownApplicationCache = null;
+    if (unknownApplicationCacheSize > 0) {
+      unknownApplicationCache =
+          new UnknownApplicationCache(unknownApplicationCacheSize, unknownApplicationCacheTtl);
+    }
+    TransactionCompletionRunner transactionCompletionRunner = TransactionCompletionRunner.IMMEDIATE;
+    if (transactionSynchronizationRegistry != null) {
+      transactionCompletionRunner =
+          new TransactionCompletionRunner(transactionSynchronizationRegistry);
+    }
+    cacheInvalidation = new AuditCacheInvalidation(auditApplicationCache, auditEventTypeCache,
+        unknownApplicationCache, cacheInvalidationInterval, querydslSupport,
+        transactionPropagator, logService);
+
+    AuditMetricsRecorder metricsRecorder = null;
+    if (metricsEnabled) {
+      metricsRecorder = new AuditMetricsRecorder();
+      metricsRecorder.addCache(AuditRiComponentConstants.ATTR_AUDIT_APPLICATION_CACHE,
+          auditApplicationCache);
+      metricsRecorder.addCache(AuditRiComponentConstants.ATTR_AUDIT_EVENT_TYPE_CACHE,
+          auditEventTypeCache);
+      if (permissionDecisionCache != null) {
+        metricsRecorder.addCache(AuditRiComponentConstants.PERMISSION_DECISION_CACHE_NAME,
+            permissionDecisionCache.getGrantedDecisions());
+      }
+      if (unknownApplicationCache != null) {
+        metricsRecorder.addCache(AuditRiComponentConstants.UNKNOWN_APPLICATION_CACHE_NAME,
+            unknownApplicationCache.getUnknownApplications());
+      }
+    }
+
+    // the permission checks are recorded as the operations of the permission checker
+    AuthnrPermissionChecker instrumentedPermissionChecker =
+        (AuthnrPermissionChecker) MetricsInvocationHandler.instrument(
+            PermissionDecisionCachingHandler.cache(authnrPermissionChecker,
+                authenticationContext, permissionDecisionCache),
+            metricsRecorder, AuthnrPermissionChecker.class);
+
     AuditRequiredServices auditRequiredServices = new AuditRequiredServices(
-        authnrPermissionChecker, authorizationManager, propertyManager, resourceService,
+        instrumentedPermissionChecker, authorizationManager, propertyManager, resourceService,
         querydslSupport, transactionPropagator);
     InternalAuditService internalAuditService = new InternalAuditService(
         auditApplicationCache, auditEventTypeCache, auditRequiredServices);
 
-    Dictionary<String, Object> serviceProperties =
-        new Hashtable<>(componentContext.getProperties());
+    AuditEntityResolver auditEntityResolver =
+        new AuditEntityResolver(auditApplicationCache, auditEventTypeCache,
+            unknownApplicationCache, querydslSupport, transactionPropagator);
+    IdBlockAllocator idBlockAllocator = null;
+    if (idBlockSize > 0) {
+      idBlockAllocator = new IdBlockAllocator(idBlockSize, querydslSupport, transactionPropagator);
+    }
+    EventDataIndex eventDataIndex = null;
+    if (!indexedEventDataNames.trim().isEmpty()) {
+      eventDataIndex = new EventDataIndex(indexedEventDataNames);
+    }
+    EventDataNameDictionary nameDictionary = null;
+    if (eventDataNameDictionary) {
+      nameDictionary = new EventDataNameDictionary(querydslSupport, transactionPropagator);
+    }
+    AuditPartitionManager auditPartitionManager = null;
+    if (!AuditRiComponentConstants.PARTITION_PERIOD_NONE.equalsIgnoreCase(partitionPeriod)) {
+      auditPartitionManager = new AuditPartitionManager(PartitionPeriod.fromName(partitionPeriod),
+          partitionedApplications, partitionPrecreateCount,
+          AuditEventPurger.parseApplicationMaxAges(partitionApplicationMaxAges), partitionMaxAge,
+          partitionMaintenanceInterval, querydslSupport, transactionPropagator, logService);
+    }
+    AuditEventWriter auditEventWriter = new AuditEventWriter(eventDataIndex, nameDictionary,
+        idBlockAllocator, auditPartitionManager, new TextValueCompressor(textCompressionThreshold));
+    InternalBulkAuditService internalBulkAuditService = new InternalBulkAuditService(
+        auditEntityResolver, auditEventWriter, instrumentedPermissionChecker,
+        new EventTypeUsageRecorder(querydslSupport, transactionPropagator), querydslSupport,
+        transactionPropagator);
+    QuerydslAuditEventQueryService auditEventQueryService = new QuerydslAuditEventQueryService(
+        auditEntityResolver, instrumentedPermissionChecker, eventDataIndex,
+        auditPartitionManager, querydslSupport, transactionPropagator, queryFetchSize);
+
+    // the services are registered after every part is built, so a failed construction does
+    // not leave a registered service behind
+    try {
+      Dictionary<String, Object> serviceProperties =
+          new Hashtable<>(componentContext.getProperties());
+
+      Class<?>[] auditServiceInterfaces = new Class<?>[] {
+          AuditApplicationManager.class,
+          AuditRiAuthorizationManager.class,
+          AuditRiPermissionChecker.class };
+      serviceRegistration =
+          componentContext.registerService(
+              toClassNames(auditServiceInterfaces),
+              MetricsInvocationHandler.instrument(
+                  PermissionChangeInvocationHandler.invalidateOnChange(
+                      ApplicationCreationInvocationHandler.notifyOnCreation(
+                          internalAuditService, auditApplicationCache,
+                          createApplicationCreationListener(unknownApplicationCache,
+                              transactionCompletionRunner),
+                          auditServiceInterfaces),
+                      permissionDecisionCache, transactionCompletionRunner,
+                      auditServiceInterfaces),
+                  metricsRecorder, auditServiceInterfaces),
+              serviceProperties);
+
+      Class<?>[] loggingServiceInterfaces = new Class<?>[] {
+          InternalAuditEventTypeManager.class,
+          InternalLoggingService.class,
+          InternalBulkLoggingService.class };
+      loggingServiceRegistration =
+          componentContext.registerService(
+              toClassNames(loggingServiceInterfaces),
+              MetricsInvocationHandler.instrument(internalBulkAuditService, metricsRecorder,
+                  loggingServiceInterfaces),
+              serviceProperties);
 
-    serviceRegistration =
-        componentContext.registerService(
-            new String[] {
-                AuditApplicationManager.class.getName(),
-                InternalAuditEventTypeManager.class.getName(),
-                InternalLoggingService.class.getName(),
-                AuditRiAuthorizationManager.class.getName(),
-                AuditRiPermissionChecker.class.getName() },
-            internalAuditService,
-            serviceProperties);
+      queryServiceRegistration =
+          componentContext.registerService(
+              new String[] { AuditEventQueryService.class.getName() },
+              MetricsInvocationHandler.instrument(auditEventQueryService, metricsRecorder,
+                  AuditEventQueryService.class),
+              serviceProperties);
+
+      cacheInvalidationRegistration =
+          componentContext.registerService(
+              new String[] { AuditCacheInvalidator.class.getName() },
+              cacheInvalidation, serviceProperties);
+
+      if (metricsRecorder != null) {
+        metricsRegistration =
+            AuditMetricsRegistration.register(componentContext, metricsRecorder, serviceProperties);
+      }
+
+      if (cacheWarmUp) {
+        startCacheWarmUp();
+      }
+      if (cacheInvalidationInterval > 0) {
+        cacheInvalidationThread = new Thread(cacheInvalidation, "audit-cache-invalidation");
+        cacheInvalidationThread.setDaemon(true);
+        cacheInvalidationThread.start();
+      }
+      if (auditPartitionManager != null) {
+        partitionManager = auditPartitionManager;
+        partitionMaintenanceThread = new Thread(partitionManager, "audit-partition-maintenance");
+        partitionMaintenanceThread.setDaemon(true);
+        partitionMaintenanceThread.start();
+      }
+    } catch (RuntimeException | Error e) {
+      // the threads and the services registered so far must not outlive the failed activation
+      deactivate();
+      throw e;
+    }
+  }
+
+  /**
+   * Creates the listener of the audit applications created through the AuditApplicationManager,
+   * or returns <code>null</code> if the creations need not be observed.
+   */
+  private Consumer<String> createApplicationCreationListener(
+      final UnknownApplicationCache unknownApplicationCache,
+      final TransactionCompletionRunner transactionCompletionRunner) {
+    if (unknownApplicationCache == null && cacheInvalidationInterval == 0) {
+      return null;
+    }
+    AuditCacheInvalidation currentCacheInvalidation = cacheInvalidation;
+    return (applicationName) -> {
+      if (unknownApplicationCache != null) {
+        // a concurrent lookup does not see the application until the creation is committed
+        transactionCompletionRunner.runNowAndAfterCompletion(
+            () -> unknownApplicationCache.invalidate(applicationName));
+      }
+      currentCacheInvalidation.recordChange(applicationName);
+    };
   }
 
   /**
@@ -124,32 +385,67 @@ public class InternalAuditComponent {
    */
   @Deactivate
   public void deactivate() {
+    stopCacheWarmUp();
+    stopCacheInvalidation();
+    stopPartitionMaintenance();
+    if (cacheInvalidationRegistration != null) {
+      cacheInvalidationRegistration.unregister();
+      cacheInvalidationRegistration = null;
+    }
+    if (metricsRegistration != null) {
+      metricsRegistration.unregister();
+      metricsRegistration = null;
+    }
+    if (queryServiceRegistration != null) {
+      queryServiceRegistration.unregister();
+      queryServiceRegistration = null;
+    }
+    if (loggingServiceRegistration != null) {
+      loggingServiceRegistration.unregister();
+      loggingServiceRegistration = null;
+    }
     if (serviceRegistration != null) {
       serviceRegistration.unregister();
+      serviceRegistration = null;
     }
   }
 
   @ServiceRef(
       attributeId = AuditRiComponentConstants.ATTR_AUDIT_APPLICATION_CACHE,
-      defaultValue = AuditRiComponentConstants.DEFAULT_CACHE_TARGET,
+      defaultValue = AuditRiComponentConstants.DEFAULT_AUDIT_APPLICATION_CACHE_TARGET,
       attributePriority = InternalAuditComponentAttrPriority.P02_AUDIT_APPLICATION_CACHE,
       label = "Application cache",
-      description = "OSGi service filter to identify the cache (Map or ConcurrentMap) service.")
+      description = "OSGi service filter to identify the cache (Map or ConcurrentMap) service. "
+          + "By default it is the Audit Cache configured with the 'audit-application-cache' "
+          + "service description.")
   public void setAuditApplicationCache(final Map<String, AuditApplication> auditApplicationCache) {
     this.auditApplicationCache = auditApplicationCache;
   }
 
   @ServiceRef(
       attributeId = AuditRiComponentConstants.ATTR_AUDIT_EVENT_TYPE_CACHE,
-      defaultValue = AuditRiComponentConstants.DEFAULT_CACHE_TARGET,
+      defaultValue = AuditRiComponentConstants.DEFAULT_AUDIT_EVENT_TYPE_CACHE_TARGET,
       attributePriority = InternalAuditComponentAttrPriority.P03_AUDIT_EVENT_TYPE_CACHE,
       label = "Event Type cache",
-      description = "OSGi service filter to identify the cache (Map or ConcurrentMap) service.")
+      description = "OSGi service filter to identify the cache (Map or ConcurrentMap) service. "
+          + "By default it is the Audit Cache configured with the 'audit-event-type-cache' "
+          + "service description.")
   public void setAuditEventTypeCache(
       final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache) {
     this.auditEventTypeCache = auditEventTypeCache;
   }
 
+  @ServiceRef(
+      attributeId = AuditRiComponentConstants.ATTR_AUTHENTICATION_CONTEXT,
+      defaultValue = "",
+      attributePriority = InternalAuditComponentAttrPriority.P15_AUTHENTICATION_CONTEXT,
+      label = "Authentication Context",
+      description = "OSGi service filter to identify the AuthenticationContext service that "
+          + "provides the resource the permission decisions are cached for.")
+  public void setAuthenticationContext(final AuthenticationContext authenticationContext) {
+    this.authenticationContext = authenticationContext;
+  }
+
   @ServiceRef(
       attributeId = AuditRiComponentConstants.ATTR_AUTHNR_PERMISSION_CHECKER,
       defaultValue = "",
@@ -170,6 +466,200 @@ public class InternalAuditComponent {
     this.authorizationManager = authorizationManager;
   }
 
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_CACHE_INVALIDATION_INTERVAL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_CACHE_INVALIDATION_INTERVAL,
+      priority = InternalAuditComponentAttrPriority.P23_CACHE_INVALIDATION_INTERVAL,
+      label = "Cache Invalidation Interval",
+      description = "The time in milliseconds between two polls of the audit_cache_change "
+          + "table, where the nodes sharing the audit database record the changes of the audit "
+          + "applications. The applications changed by other nodes are evicted from the caches "
+          + "with their event types. Every poll reads the changes recorded in the last ten "
+          + "minutes again, so a change whose transaction commits later than ten minutes after "
+          + "it was recorded, by the clock of the recording node, is not noticed. If it is zero, "
+          + "the changes are neither recorded nor polled, which is enough if only one node uses "
+          + "the database.")
+  public void setCacheInvalidationInterval(final long cacheInvalidationInterval) {
+    this.cacheInvalidationInterval = cacheInvalidationInterval;
+  }
+
+  @BooleanAttribute(attributeId = AuditRiComponentConstants.ATTR_CACHE_WARM_UP,
+      defaultValue = AuditRiComponentConstants.DEFAULT_CACHE_WARM_UP,
+      priority = InternalAuditComponentAttrPriority.P11_CACHE_WARM_UP,
+      label = "Cache Warm-up",
+      description = "Whether the application and event type caches are preloaded from the "
+          + "database in the background after the services are registered.")
+  public void setCacheWarmUp(final boolean cacheWarmUp) {
+    this.cacheWarmUp = cacheWarmUp;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_CACHE_WARM_UP_LIMIT,
+      defaultValue = AuditRiComponentConstants.DEFAULT_CACHE_WARM_UP_LIMIT,
+      priority = InternalAuditComponentAttrPriority.P12_CACHE_WARM_UP_LIMIT,
+      label = "Cache Warm-up Limit",
+      description = "The maximum number of the most recently used event types loaded by the "
+          + "cache warm-up. If it is zero, all applications and event types are loaded. The "
+          + "last use of the event types is recorded by the internal audit components at most "
+          + "once in ten minutes per event type, the events are not read by the warm-up.")
+  public void setCacheWarmUpLimit(final int cacheWarmUpLimit) {
+    this.cacheWarmUpLimit = cacheWarmUpLimit;
+  }
+
+  @BooleanAttribute(attributeId = AuditRiComponentConstants.ATTR_EVENT_DATA_NAME_DICTIONARY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_EVENT_DATA_NAME_DICTIONARY,
+      priority = InternalAuditComponentAttrPriority.P20_EVENT_DATA_NAME_DICTIONARY,
+      label = "Event Data Name Dictionary",
+      description = "Whether the event data rows reference their names by the identifiers of "
+          + "the event_data_name table. The rows of the event_data table keep storing the "
+          + "names; the rows of the partitions store the identifiers only. The names are read "
+          + "back transparently by the AuditEventQueryService in both cases.")
+  public void setEventDataNameDictionary(final boolean eventDataNameDictionary) {
+    this.eventDataNameDictionary = eventDataNameDictionary;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_ID_BLOCK_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_ID_BLOCK_SIZE,
+      priority = InternalAuditComponentAttrPriority.P18_ID_BLOCK_SIZE,
+      label = "Identifier Block Size",
+      description = "The number of event and event data identifiers reserved at once in the "
+          + "id_block table, so the rows can be inserted with JDBC batches. If it is zero, the "
+          + "identifiers are generated by the database. When it is switched on, every writer of "
+          + "the event and event_data tables must use block allocated identifiers, including "
+          + "the components of other nodes: the explicitly inserted identifiers do not advance "
+          + "the identity sequences, so the database generated identifiers would collide with "
+          + "them. Partitioning requires block allocated identifiers.")
+  public void setIdBlockSize(final int idBlockSize) {
+    this.idBlockSize = idBlockSize;
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_INDEXED_EVENT_DATA_NAMES,
+      defaultValue = AuditRiComponentConstants.DEFAULT_INDEXED_EVENT_DATA_NAMES,
+      priority = InternalAuditComponentAttrPriority.P29_INDEXED_EVENT_DATA_NAMES,
+      label = "Indexed Event Data Names",
+      description = "The comma separated names of the STRING event data whose values are "
+          + "indexed in the event_data_index table when the events are written. The "
+          + "AuditEventQueryService can filter the events only by the indexed event data. The "
+          + "events written before a name is added are not indexed.")
+  public void setIndexedEventDataNames(final String indexedEventDataNames) {
+    this.indexedEventDataNames = indexedEventDataNames;
+  }
+
+  @ServiceRef(
+      attributeId = AuditRiComponentConstants.ATTR_LOG_SERVICE,
+      defaultValue = "",
+      attributePriority = InternalAuditComponentAttrPriority.P10_LOG_SERVICE,
+      optional = true,
+      label = "Log Service",
+      description = "OSGi service filter to identify the LogService service that receives the "
+          + "reports of the cache warm-up, the cache invalidation and the partition maintenance. "
+          + "Optional: without a LogService the warnings and errors are written to the standard "
+          + "error stream.")
+  public void setLogService(final LogService logService) {
+    this.logService = logService;
+  }
+
+  @BooleanAttribute(attributeId = AuditRiComponentConstants.ATTR_METRICS_ENABLED,
+      defaultValue = AuditRiComponentConstants.DEFAULT_METRICS_ENABLED,
+      priority = InternalAuditComponentAttrPriority.P13_METRICS_ENABLED,
+      label = "Metrics Enabled",
+      description = "Whether the latency, throughput and error metrics of the services are "
+          + "recorded and registered as an AuditMetrics service and a JMX MBean.")
+  public void setMetricsEnabled(final boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_PARTITION_APPLICATION_MAX_AGES,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PARTITION_APPLICATION_MAX_AGES,
+      priority = InternalAuditComponentAttrPriority.P30_PARTITION_APPLICATION_MAX_AGES,
+      label = "Partition Application Max Ages",
+      description = "The max age of the partitions of an audit application, in the "
+          + "applicationName=maxAge form, separated by commas. The applications that are not "
+          + "listed use the Partition Max Age.")
+  public void setPartitionApplicationMaxAges(final String partitionApplicationMaxAges) {
+    this.partitionApplicationMaxAges = partitionApplicationMaxAges;
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_PARTITIONED_APPLICATIONS,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PARTITIONED_APPLICATIONS,
+      priority = InternalAuditComponentAttrPriority.P25_PARTITIONED_APPLICATIONS,
+      label = "Partitioned Applications",
+      description = "The names of the audit applications whose events are stored in the "
+          + "partitions, separated by commas, or '*' if the events of every audit application "
+          + "are partitioned. The events already stored in the event and event_data tables are "
+          + "not read back for the partitioned applications.")
+  public void setPartitionedApplications(final String partitionedApplications) {
+    this.partitionedApplications = partitionedApplications;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_PARTITION_MAINTENANCE_INTERVAL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PARTITION_MAINTENANCE_INTERVAL,
+      priority = InternalAuditComponentAttrPriority.P28_PARTITION_MAINTENANCE_INTERVAL,
+      label = "Partition Maintenance Interval",
+      description = "The time in milliseconds between two runs of the background job that "
+          + "creates the upcoming partitions and drops the expired ones.")
+  public void setPartitionMaintenanceInterval(final long partitionMaintenanceInterval) {
+    this.partitionMaintenanceInterval = partitionMaintenanceInterval;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_PARTITION_MAX_AGE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PARTITION_MAX_AGE,
+      priority = InternalAuditComponentAttrPriority.P27_PARTITION_MAX_AGE,
+      label = "Partition Max Age",
+      description = "The time in milliseconds after the end of its period a partition is "
+          + "dropped with all of its events. The events older than the max age are rejected "
+          + "one by one and a warning is logged, the other events of the batch are written. If "
+          + "it is zero, the partitions are kept forever.")
+  public void setPartitionMaxAge(final long partitionMaxAge) {
+    this.partitionMaxAge = partitionMaxAge;
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_PARTITION_PERIOD,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PARTITION_PERIOD,
+      priority = InternalAuditComponentAttrPriority.P24_PARTITION_PERIOD,
+      label = "Partition Period",
+      description = "The period the events of the partitioned applications are stored by in "
+          + "their own event, event_data and event_data_index tables, one set per audit "
+          + "application: DAY, MONTH or NONE. The reads touch only the partitions that overlap "
+          + "the requested time range. The partitioned layout requires a positive identifier "
+          + "block size. The period must not be changed while partitions exist.")
+  public void setPartitionPeriod(final String partitionPeriod) {
+    this.partitionPeriod = partitionPeriod;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_PARTITION_PRECREATE_COUNT,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PARTITION_PRECREATE_COUNT,
+      priority = InternalAuditComponentAttrPriority.P26_PARTITION_PRECREATE_COUNT,
+      label = "Partition Precreate Count",
+      description = "The number of the periods after the current one whose partitions are "
+          + "created ahead of time, so the writers do not wait for the DDL statements.")
+  public void setPartitionPrecreateCount(final int partitionPrecreateCount) {
+    this.partitionPrecreateCount = partitionPrecreateCount;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_PERMISSION_DECISION_CACHE_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PERMISSION_DECISION_CACHE_SIZE,
+      priority = InternalAuditComponentAttrPriority.P16_PERMISSION_DECISION_CACHE_SIZE,
+      label = "Permission Decision Cache Size",
+      description = "The maximum number of granted permission decisions cached by authenticated "
+          + "resource, target resource and actions. If it is zero, the decisions are not "
+          + "cached. The cache is cleared when permissions are changed through the "
+          + "AuditRiAuthorizationManager only: a permission revoked through the general "
+          + "AuthorizationManager or by a change of a group membership stays granted for the "
+          + "Permission Decision Cache TTL.")
+  public void setPermissionDecisionCacheSize(final int permissionDecisionCacheSize) {
+    this.permissionDecisionCacheSize = permissionDecisionCacheSize;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_PERMISSION_DECISION_CACHE_TTL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_PERMISSION_DECISION_CACHE_TTL,
+      priority = InternalAuditComponentAttrPriority.P17_PERMISSION_DECISION_CACHE_TTL,
+      label = "Permission Decision Cache TTL",
+      description = "The time in milliseconds a granted permission decision is cached for. It "
+          + "bounds the staleness of the decisions when permissions are changed without the "
+          + "AuditRiAuthorizationManager.")
+  public void setPermissionDecisionCacheTtl(final long permissionDecisionCacheTtl) {
+    this.permissionDecisionCacheTtl = permissionDecisionCacheTtl;
+  }
+
   @ServiceRef(
       attributeId = AuditRiComponentConstants.ATTR_PROPERTY_MANAGER,
       defaultValue = "",
@@ -180,6 +670,16 @@ public class InternalAuditComponent {
     this.propertyManager = propertyManager;
   }
 
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_QUERY_FETCH_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_QUERY_FETCH_SIZE,
+      priority = InternalAuditComponentAttrPriority.P14_QUERY_FETCH_SIZE,
+      label = "Query Fetch Size",
+      description = "The number of rows the JDBC driver fetches at once while the audit events "
+          + "are streamed by the AuditEventQueryService.")
+  public void setQueryFetchSize(final int queryFetchSize) {
+    this.queryFetchSize = queryFetchSize;
+  }
+
   @ServiceRef(
       attributeId = AuditRiComponentConstants.ATTR_QUERYDSL_SUPPORT,
       defaultValue = "",
@@ -200,6 +700,17 @@ public class InternalAuditComponent {
     this.resourceService = resourceService;
   }
 
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_TEXT_COMPRESSION_THRESHOLD,
+      defaultValue = AuditRiComponentConstants.DEFAULT_TEXT_COMPRESSION_THRESHOLD,
+      priority = InternalAuditComponentAttrPriority.P19_TEXT_COMPRESSION_THRESHOLD,
+      label = "Text Compression Threshold",
+      description = "The length in characters from which the TEXT event data values are stored "
+          + "Deflate compressed. If it is zero, the values are stored uncompressed. The "
+          + "compressed values are decompressed by the AuditEventQueryService.")
+  public void setTextCompressionThreshold(final int textCompressionThreshold) {
+    this.textCompressionThreshold = textCompressionThreshold;
+  }
+
   @ServiceRef(
       attributeId = AuditRiComponentConstants.ATTR_TRASACTION_PROPAGATOR,
       defaultValue = "",
@@ -210,4 +721,105 @@ public class InternalAuditComponent {
     this.transactionPropagator = transactionPropagator;
   }
 
+  @ServiceRef(
+      attributeId = AuditRiComponentConstants.ATTR_TRANSACTION_SYNCHRONIZATION_REGISTRY,
+      defaultValue = "",
+      attributePriority =
+          InternalAuditComponentAttrPriority.P31_TRANSACTION_SYNCHRONIZATION_REGISTRY,
+      optional = true,
+      label = "Transaction Synchronization Registry",
+      description = "OSGi service filter to identify the TransactionSynchronizationRegistry "
+          + "service of the transaction manager. The caches that hold the state changed by the "
+          + "AuditRiAuthorizationManager and the AuditApplicationManager are invalidated "
+          + "immediately and again after the transaction of the change is completed. Optional: "
+          + "without a registry the caches are invalidated immediately only, so a concurrent "
+          + "reader can cache the replaced state until the entry expires if the caller changes "
+          + "the state in an enclosing transaction.")
+  public void setTransactionSynchronizationRegistry(
+      final TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+    this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_UNKNOWN_APPLICATION_CACHE_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_UNKNOWN_APPLICATION_CACHE_SIZE,
+      priority = InternalAuditComponentAttrPriority.P21_UNKNOWN_APPLICATION_CACHE_SIZE,
+      label = "Unknown Application Cache Size",
+      description = "The maximum number of the names of not existing audit applications "
+          + "cached, so the repeated calls with the same unknown name are refused without "
+          + "querying the database. If it is zero, the unknown names are not cached. A name is "
+          + "dropped from the cache when the audit application is initialized through the "
+          + "AuditApplicationManager, and again after the transaction of the initialization is "
+          + "completed, see transactionSynchronizationRegistry.target.")
+  public void setUnknownApplicationCacheSize(final int unknownApplicationCacheSize) {
+    this.unknownApplicationCacheSize = unknownApplicationCacheSize;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_UNKNOWN_APPLICATION_CACHE_TTL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_UNKNOWN_APPLICATION_CACHE_TTL,
+      priority = InternalAuditComponentAttrPriority.P22_UNKNOWN_APPLICATION_CACHE_TTL,
+      label = "Unknown Application Cache TTL",
+      description = "The time in milliseconds the name of a not existing audit application is "
+          + "cached for. It bounds the time an audit application created by another node is "
+          + "refused.")
+  public void setUnknownApplicationCacheTtl(final long unknownApplicationCacheTtl) {
+    this.unknownApplicationCacheTtl = unknownApplicationCacheTtl;
+  }
+
+  private void startCacheWarmUp() {
+    cacheWarmUpJob = new AuditCacheWarmUp(auditApplicationCache, auditEventTypeCache,
+        querydslSupport, logService, cacheWarmUpLimit);
+    cacheWarmUpThread = new Thread(cacheWarmUpJob, "audit-cache-warm-up");
+    cacheWarmUpThread.setDaemon(true);
+    cacheWarmUpThread.start();
+  }
+
+  private void stopCacheInvalidation() {
+    if (cacheInvalidationThread == null) {
+      return;
+    }
+    cacheInvalidation.stop();
+    try {
+      cacheInvalidationThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    cacheInvalidationThread = null;
+  }
+
+  private void stopCacheWarmUp() {
+    if (cacheWarmUpJob == null) {
+      return;
+    }
+    cacheWarmUpJob.cancel();
+    try {
+      cacheWarmUpThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    cacheWarmUpJob = null;
+    cacheWarmUpThread = null;
+  }
+
+  private void stopPartitionMaintenance() {
+    if (partitionMaintenanceThread == null) {
+      return;
+    }
+    partitionManager.stop();
+    try {
+      partitionMaintenanceThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    partitionMaintenanceThread = null;
+    partitionManager = null;
+  }
+
+  private String[] toClassNames(final Class<?>[] classes) {
+    String[] classNames = new String[classes.length];
+    for (int i = 0; i < classes.length; i++) {
+      classNames[i] = classes[i].getName();
+    }
+    return classNames;
+  }
+
 }
@@ -38,6 +38,50 @@ public final class InternalAuditComponentAttrPriority {
 
   public static final int P09_TRASACTION_PROPAGATOR = 9;
 
+  public static final int P10_LOG_SERVICE = 10;
+
+  public static final int P11_CACHE_WARM_UP = 11;
+
+  public static final int P12_CACHE_WARM_UP_LIMIT = 12;
+
+  public static final int P13_METRICS_ENABLED = 13;
+
+  public static final int P14_QUERY_FETCH_SIZE = 14;
+
+  public static final int P15_AUTHENTICATION_CONTEXT = 15;
+
+  public static final int P16_PERMISSION_DECISION_CACHE_SIZE = 16;
+
+  public static final int P17_PERMISSION_DECISION_CACHE_TTL = 17;
+
+  public static final int P18_ID_BLOCK_SIZE = 18;
+
+  public static final int P19_TEXT_COMPRESSION_THRESHOLD = 19;
+
+  public static final int P20_EVENT_DATA_NAME_DICTIONARY = 20;
+
+  public static final int P21_UNKNOWN_APPLICATION_CACHE_SIZE = 21;
+
+  public static final int P22_UNKNOWN_APPLICATION_CACHE_TTL = 22;
+
+  public static final int P23_CACHE_INVALIDATION_INTERVAL = 23;
+
+  public static final int P24_PARTITION_PERIOD = 24;
+
+  public static final int P25_PARTITIONED_APPLICATIONS = 25;
+
+  public static final int P26_PARTITION_PRECREATE_COUNT = 26;
+
+  public static final int P27_PARTITION_MAX_AGE = 27;
+
+  public static final int P28_PARTITION_MAINTENANCE_INTERVAL = 28;
+
+  public static final int P29_INDEXED_EVENT_DATA_NAMES = 29;
+
+  public static final int P30_PARTITION_APPLICATION_MAX_AGES = 30;
+
+  public static final int P31_TRANSACTION_SYNCHRONIZATION_REGISTRY = 31;
+
   private InternalAuditComponentAttrPriority() {
   }
 
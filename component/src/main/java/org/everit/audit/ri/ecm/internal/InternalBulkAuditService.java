@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.InternalAuditEventTypeManager;
+import org.everit.audit.ri.InternalLoggingService;
+import org.everit.audit.ri.authorization.AuditRiPermissionConstants;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.audit.ri.ecm.internal.persistence.AuditEntityResolver;
+import org.everit.audit.ri.ecm.internal.persistence.AuditEventWriter;
+import org.everit.audit.ri.ecm.internal.persistence.EventTypeUsageRecorder;
+import org.everit.authnr.permissionchecker.AuthnrPermissionChecker;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+/**
+ * {@link InternalLoggingService} and {@link InternalBulkLoggingService} that writes a collection of
+ * audit events in one transaction. The audit application is resolved and the permission is checked
+ * once for the whole collection, the event data rows are inserted with one JDBC batch. As an
+ * {@link InternalAuditEventTypeManager} it initializes the event types set-based: the existing
+ * ones are selected and the missing ones are inserted in slices instead of one by one. The use of
+ * the event types of the logged events is recorded for the cache warm-up.
+ */
+public class InternalBulkAuditService
+    implements InternalAuditEventTypeManager, InternalLoggingService,
+    InternalBulkLoggingService {
+
+  private final AuditEntityResolver auditEntityResolver;
+
+  private final AuditEventWriter auditEventWriter;
+
+  private final AuthnrPermissionChecker authnrPermissionChecker;
+
+  private final EventTypeUsageRecorder eventTypeUsageRecorder;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   */
+  public InternalBulkAuditService(final AuditEntityResolver auditEntityResolver,
+      final AuditEventWriter auditEventWriter,
+      final AuthnrPermissionChecker authnrPermissionChecker,
+      final EventTypeUsageRecorder eventTypeUsageRecorder, final QuerydslSupport querydslSupport,
+      final TransactionPropagator transactionPropagator) {
+    this.auditEntityResolver = auditEntityResolver;
+    this.auditEventWriter = auditEventWriter;
+    this.authnrPermissionChecker = authnrPermissionChecker;
+    this.eventTypeUsageRecorder = eventTypeUsageRecorder;
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+  }
+
+  @Override
+  public void initAuditEventTypes(final String applicationName, final String... eventTypeNames) {
+    Objects.requireNonNull(applicationName, "applicationName cannot be null");
+    Objects.requireNonNull(eventTypeNames, "eventTypeNames cannot be null");
+    for (String eventTypeName : eventTypeNames) {
+      Objects.requireNonNull(eventTypeName, "eventTypeNames cannot contain null value");
+    }
+
+    transactionPropagator.required(() -> querydslSupport.execute((connection, configuration) -> {
+      AuditApplication auditApplication = auditEntityResolver.resolveAuditApplication(
+          connection, configuration, applicationName);
+
+      authnrPermissionChecker.checkPermission(auditApplication.resourceId,
+          AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION);
+
+      if (eventTypeNames.length > 0) {
+        auditEntityResolver.resolveEventTypeIds(connection, configuration,
+            auditApplication.applicationId, Arrays.asList(eventTypeNames));
+      }
+      return null;
+    }));
+  }
+
+  @Override
+  public void logEvent(final String applicationName, final AuditEvent auditEvent) {
+    Objects.requireNonNull(applicationName, "applicationName cannot be null");
+    Objects.requireNonNull(auditEvent, "auditEvent cannot be null");
+    logEvents(applicationName, Collections.singletonList(auditEvent));
+  }
+
+  @Override
+  public void logEvents(final String applicationName, final Collection<AuditEvent> auditEvents) {
+    Objects.requireNonNull(applicationName, "applicationName cannot be null");
+    Objects.requireNonNull(auditEvents, "auditEvents cannot be null");
+
+    List<AuditEvent> events = new ArrayList<>(auditEvents);
+    Set<String> eventTypeNames = new LinkedHashSet<>();
+    for (AuditEvent auditEvent : events) {
+      Objects.requireNonNull(auditEvent, "auditEvents cannot contain null value");
+      eventTypeNames.add(auditEvent.eventTypeName);
+    }
+
+    transactionPropagator.required(() -> querydslSupport.execute((connection, configuration) -> {
+      AuditApplication auditApplication = auditEntityResolver.resolveAuditApplication(
+          connection, configuration, applicationName);
+
+      authnrPermissionChecker.checkPermission(auditApplication.resourceId,
+          AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION);
+
+      if (events.isEmpty()) {
+        return null;
+      }
+
+      Map<String, Long> eventTypeIds = auditEntityResolver.resolveEventTypeIds(
+          connection, configuration, auditApplication.applicationId, eventTypeNames);
+      auditEventWriter.writeEvents(connection, configuration, auditApplication.applicationId,
+          applicationName, eventTypeIds, events);
+      eventTypeUsageRecorder.recordUsage(eventTypeIds.values());
+      return null;
+    }));
+  }
+
+}
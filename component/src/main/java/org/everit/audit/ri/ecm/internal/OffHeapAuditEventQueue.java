@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.ecm.AuditEventCodec;
+
+/**
+ * {@link AuditEventQueue} that encodes the events with the {@link AuditEventCodec} into a ring
+ * buffer of direct memory, so the queued events do not put pressure on the garbage collector. The
+ * capacity of the queue is given in bytes.
+ *
+ * <p>
+ * The records start at the boundary of {@link #BLOCK_SIZE} byte blocks. A producer claims the
+ * blocks of its record by a compare-and-set on the tail position, so every block has a single
+ * writer, then writes the record directly into the buffer and commits it by storing the number of
+ * blocks of the record into the state of its first block. If the record does not fit before the
+ * end of the buffer, the producer claims the remaining blocks as padding first. If the encoding
+ * fails, the claimed blocks are committed as padding. The consumers take
+ * the committed records in order and decode them while holding the consumer lock, then release the
+ * blocks by moving the head position.
+ */
+public class OffHeapAuditEventQueue implements AuditEventQueue {
+
+  /**
+   * The size of the blocks in bytes. Every record occupies at least one block.
+   */
+  public static final int BLOCK_SIZE = 64;
+
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+  /**
+   * The number of blocks of the committed record starting at the block, the negated number of
+   * blocks of a padding or zero if no committed record starts at the block.
+   */
+  private final AtomicIntegerArray blockStates;
+
+  private final ByteBuffer buffer;
+
+  private final int capacity;
+
+  private final AuditEventCodec codec = new AuditEventCodec();
+
+  private final ReentrantLock consumerLock = new ReentrantLock();
+
+  /**
+   * The position of the first byte that is not released by the consumers. The positions grow
+   * continuously, the index in the buffer is the position modulo the capacity.
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * The position after the last byte claimed by the producers.
+   */
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param capacity
+   *          the size of the ring buffer in bytes. It is rounded down to a multiple of the
+   *          {@link #BLOCK_SIZE}.
+   */
+  public OffHeapAuditEventQueue(final long capacity) {
+    if (capacity < BLOCK_SIZE) {
+      throw new IllegalArgumentException("capacity must be at least " + BLOCK_SIZE + " bytes");
+    }
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "capacity cannot be more than " + Integer.MAX_VALUE + " bytes");
+    }
+    this.capacity = (int) (capacity - capacity % BLOCK_SIZE);
+    buffer = ByteBuffer.allocateDirect(this.capacity);
+    blockStates = new AtomicIntegerArray(this.capacity / BLOCK_SIZE);
+  }
+
+  private static void park(final long nanos) throws InterruptedException {
+    LockSupport.parkNanos(nanos);
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+  }
+
+  /**
+   * Claims the blocks of a record and returns the index of its first byte in the buffer. Waits
+   * while the buffer does not have enough free space.
+   */
+  private int claim(final int blockCount) throws InterruptedException {
+    int recordLength = blockCount * BLOCK_SIZE;
+    long parkNanos = MIN_PARK_NANOS;
+    while (true) {
+      long currentTail = tail.get();
+      int index = (int) (currentTail % capacity);
+      int paddingLength = index + recordLength > capacity ? capacity - index : 0;
+      int claimLength = paddingLength > 0 ? paddingLength : recordLength;
+      if (currentTail + claimLength - head.get() > capacity) {
+        park(parkNanos);
+        parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+      } else if (tail.compareAndSet(currentTail, currentTail + claimLength)) {
+        if (paddingLength == 0) {
+          return index;
+        }
+        // the record starts at the beginning of the buffer, in the next round
+        blockStates.lazySet(index / BLOCK_SIZE, -(paddingLength / BLOCK_SIZE));
+      }
+    }
+  }
+
+  @Override
+  public int drainTo(final Collection<? super AuditEvent> collection, final int maxElements) {
+    consumerLock.lock();
+    try {
+      int count = 0;
+      while (count < maxElements) {
+        AuditEvent auditEvent = takeCommitted();
+        if (auditEvent == null) {
+          break;
+        }
+        collection.add(auditEvent);
+        count++;
+      }
+      return count;
+    } finally {
+      consumerLock.unlock();
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  @Override
+  public AuditEvent poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    long parkNanos = MIN_PARK_NANOS;
+    while (true) {
+      AuditEvent auditEvent;
+      consumerLock.lock();
+      try {
+        auditEvent = takeCommitted();
+      } finally {
+        consumerLock.unlock();
+      }
+      if (auditEvent != null) {
+        return auditEvent;
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      park(Math.min(parkNanos, remaining));
+      parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+    }
+  }
+
+  /**
+   * Serializes the event into the buffer.
+   *
+   * @throws IllegalArgumentException
+   *           if the serialized event is larger than the capacity of the queue.
+   */
+  @Override
+  public void put(final AuditEvent auditEvent) throws InterruptedException {
+    Objects.requireNonNull(auditEvent, "auditEvent cannot be null");
+    int recordLength = codec.encodedLength(auditEvent);
+    int blockCount = (recordLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    if ((long) blockCount * BLOCK_SIZE > capacity) {
+      throw new IllegalArgumentException("the serialized audit event of " + recordLength
+          + " bytes does not fit into the queue of " + capacity + " bytes");
+    }
+
+    int index = claim(blockCount);
+    boolean encoded = false;
+    try {
+      ByteBuffer view = buffer.duplicate();
+      view.position(index);
+      codec.encode(auditEvent, view);
+      size.incrementAndGet();
+      encoded = true;
+    } finally {
+      // the claimed blocks are committed as padding if the encoding failed, otherwise the
+      // consumers would wait for them forever
+      blockStates.lazySet(index / BLOCK_SIZE, encoded ? blockCount : -blockCount);
+    }
+  }
+
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Decodes and releases the first committed record. Must be called while holding the consumer
+   * lock.
+   *
+   * @return the event or <code>null</code> if the first record is not committed yet.
+   */
+  private AuditEvent takeCommitted() {
+    while (true) {
+      long currentHead = head.get();
+      int index = (int) (currentHead % capacity);
+      int block = index / BLOCK_SIZE;
+      int blockState = blockStates.get(block);
+      if (blockState == 0) {
+        return null;
+      }
+      try {
+        if (blockState > 0) {
+          ByteBuffer view = buffer.duplicate();
+          view.position(index);
+          size.decrementAndGet();
+          return codec.decode(view);
+        }
+      } finally {
+        blockStates.lazySet(block, 0);
+        head.set(currentHead + (long) Math.abs(blockState) * BLOCK_SIZE);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.everit.audit.ri.InternalAuditEventTypeManager;
+import org.everit.audit.ri.InternalLoggingService;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.audit.ri.ecm.internal.spool.AuditEventSpool;
+import org.everit.audit.ri.ecm.internal.spool.SpoolLoggingService;
+import org.everit.audit.ri.ecm.internal.spool.SpoolReplayer;
+import org.everit.authentication.context.AuthenticationContext;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.osgi.ecm.annotation.Activate;
+import org.everit.osgi.ecm.annotation.Component;
+import org.everit.osgi.ecm.annotation.ConfigurationPolicy;
+import org.everit.osgi.ecm.annotation.Deactivate;
+import org.everit.osgi.ecm.annotation.ManualService;
+import org.everit.osgi.ecm.annotation.ServiceRef;
+import org.everit.osgi.ecm.annotation.attribute.BooleanAttribute;
+import org.everit.osgi.ecm.annotation.attribute.IntegerAttribute;
+import org.everit.osgi.ecm.annotation.attribute.LongAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttribute;
+import org.everit.osgi.ecm.annotation.attribute.StringAttributes;
+import org.everit.osgi.ecm.component.ComponentContext;
+import org.everit.osgi.ecm.extender.ECMExtenderConstants;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.log.LogService;
+
+import aQute.bnd.annotation.headers.ProvideCapability;
+
+/**
+ * The spooling implementation of the {@link InternalLoggingService} and the
+ * {@link InternalBulkLoggingService}. The events are appended to memory-mapped segment files on
+ * the local disk and replayed into the database in order by a background thread. The segments
+ * left by a previous run or a crash are recovered at activation.
+ */
+@Component(componentId = AuditRiComponentConstants.SPOOL_SERVICE_FACTORY_PID,
+    configurationPolicy = ConfigurationPolicy.FACTORY,
+    label = "Everit Audit (Spool Logging) RI",
+    description = "Component for audit logging through a durable local spool that keeps "
+        + "accepting events while the database is slow or unavailable.")
+@ProvideCapability(ns = ECMExtenderConstants.CAPABILITY_NS_COMPONENT,
+    value = ECMExtenderConstants.CAPABILITY_ATTR_CLASS + "=${@class}")
+@StringAttributes({
+    @StringAttribute(
+        attributeId = Constants.SERVICE_DESCRIPTION,
+        defaultValue = AuditRiComponentConstants.SPOOL_DEFAULT_SERVICE_DESCRIPTION,
+        priority = SpoolLoggingComponentAttrPriority.P01_SERVICE_DESCRIPTION,
+        label = "Service Description",
+        description = "The description of this component configuration. It is used to easily "
+            + "identify the service registered by this component.") })
+@ManualService({ InternalLoggingService.class, InternalBulkLoggingService.class })
+public class SpoolLoggingComponent {
+
+  private AuthenticationContext authenticationContext;
+
+  private AuthenticationPropagator authenticationPropagator;
+
+  private int batchSize;
+
+  private boolean forceOnWrite;
+
+  private InternalAuditEventTypeManager internalAuditEventTypeManager;
+
+  private InternalBulkLoggingService internalBulkLoggingService;
+
+  private LogService logService;
+
+  private long maxDiskUsage;
+
+  private Thread replayerThread;
+
+  private long retryInterval;
+
+  private int segmentSize;
+
+  private ServiceRegistration<?> serviceRegistration;
+
+  private AuditEventSpool spool;
+
+  private String spoolDirectory;
+
+  private SpoolReplayer spoolReplayer;
+
+  /**
+   * Recovers the spool, starts the replayer and registers the OSGi services.
+   */
+  @Activate
+  public void activate(final ComponentContext<SpoolLoggingComponent> componentContext) {
+    try {
+      spool = new AuditEventSpool(Paths.get(spoolDirectory), segmentSize, maxDiskUsage,
+          forceOnWrite);
+    } catch (IOException e) {
+      throw new UncheckedIOException("cannot open the audit spool [" + spoolDirectory + "]", e);
+    }
+
+    spoolReplayer = new SpoolReplayer(spool, internalBulkLoggingService,
+        authenticationPropagator, logService, batchSize, retryInterval);
+    replayerThread = new Thread(spoolReplayer, "audit-spool-replayer");
+    replayerThread.setDaemon(true);
+    replayerThread.start();
+
+    Dictionary<String, Object> serviceProperties =
+        new Hashtable<>(componentContext.getProperties());
+
+    serviceRegistration =
+        componentContext.registerService(
+            new String[] {
+                InternalLoggingService.class.getName(),
+                InternalBulkLoggingService.class.getName() },
+            new SpoolLoggingService(spool, authenticationContext, internalAuditEventTypeManager),
+            serviceProperties);
+  }
+
+  /**
+   * Unregisters the registered OSGi services, stops the replayer and closes the spool. The events
+   * that are not replayed yet stay in the spool until the next activation.
+   */
+  @Deactivate
+  public void deactivate() {
+    if (serviceRegistration != null) {
+      serviceRegistration.unregister();
+    }
+    if (spoolReplayer != null) {
+      spoolReplayer.stop();
+      try {
+        replayerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (spool != null) {
+      try {
+        spool.close();
+      } catch (IOException e) {
+        logService.log(LogService.LOG_WARNING, "failed to close the audit spool", e);
+      }
+    }
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_AUTHENTICATION_CONTEXT,
+      defaultValue = "",
+      attributePriority = SpoolLoggingComponentAttrPriority.P09_AUTHENTICATION_CONTEXT,
+      label = "Authentication Context",
+      description = "OSGi service filter to identify the AuthenticationContext service that "
+          + "provides the resource the spooled events are persisted in the name of.")
+  public void setAuthenticationContext(final AuthenticationContext authenticationContext) {
+    this.authenticationContext = authenticationContext;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_AUTHENTICATION_PROPAGATOR,
+      defaultValue = "",
+      attributePriority = SpoolLoggingComponentAttrPriority.P10_AUTHENTICATION_PROPAGATOR,
+      label = "Authentication Propagator",
+      description = "OSGi service filter to identify the AuthenticationPropagator service.")
+  public void setAuthenticationPropagator(final AuthenticationPropagator authenticationPropagator) {
+    this.authenticationPropagator = authenticationPropagator;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_BATCH_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_BATCH_SIZE,
+      priority = SpoolLoggingComponentAttrPriority.P06_BATCH_SIZE,
+      label = "Batch Size",
+      description = "The maximum number of spooled events persisted by the replayer in one "
+          + "transaction.")
+  public void setBatchSize(final int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  @BooleanAttribute(attributeId = AuditRiComponentConstants.ATTR_FORCE_ON_WRITE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_FORCE_ON_WRITE,
+      priority = SpoolLoggingComponentAttrPriority.P05_FORCE_ON_WRITE,
+      label = "Force On Write",
+      description = "Whether every spooled event is forced to the storage device before logEvent "
+          + "returns. Without it the events survive a crash of the JVM but not a crash of the "
+          + "operating system.")
+  public void setForceOnWrite(final boolean forceOnWrite) {
+    this.forceOnWrite = forceOnWrite;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_INTERNAL_AUDIT_EVENT_TYPE_MANAGER,
+      defaultValue = AuditRiComponentConstants.DEFAULT_INTERNAL_SERVICE_TARGET,
+      attributePriority =
+          SpoolLoggingComponentAttrPriority.P12_INTERNAL_AUDIT_EVENT_TYPE_MANAGER,
+      label = "Internal Audit Event Type Manager",
+      description = "OSGi service filter to identify the InternalAuditEventTypeManager service "
+          + "that checks the audit application and the permission of the caller before the "
+          + "events are spooled. It must be registered by the same component as the Internal "
+          + "Bulk Logging Service.")
+  public void setInternalAuditEventTypeManager(
+      final InternalAuditEventTypeManager internalAuditEventTypeManager) {
+    this.internalAuditEventTypeManager = internalAuditEventTypeManager;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_INTERNAL_BULK_LOGGING_SERVICE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_INTERNAL_SERVICE_TARGET,
+      attributePriority = SpoolLoggingComponentAttrPriority.P08_INTERNAL_BULK_LOGGING_SERVICE,
+      label = "Internal Bulk Logging Service",
+      description = "OSGi service filter to identify the InternalBulkLoggingService service that "
+          + "persists the spooled events. By default it is the one registered by the Internal "
+          + "Audit Component.")
+  public void setInternalBulkLoggingService(
+      final InternalBulkLoggingService internalBulkLoggingService) {
+    this.internalBulkLoggingService = internalBulkLoggingService;
+  }
+
+  @ServiceRef(attributeId = AuditRiComponentConstants.ATTR_LOG_SERVICE,
+      defaultValue = "",
+      attributePriority = SpoolLoggingComponentAttrPriority.P11_LOG_SERVICE,
+      label = "Log Service",
+      description = "OSGi service filter to identify the LogService service that receives the "
+          + "errors of the replayer.")
+  public void setLogService(final LogService logService) {
+    this.logService = logService;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_MAX_DISK_USAGE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_MAX_DISK_USAGE,
+      priority = SpoolLoggingComponentAttrPriority.P04_MAX_DISK_USAGE,
+      label = "Max Disk Usage",
+      description = "The maximum size of all segment files in bytes. logEvent throws an "
+          + "exception if the spool is full. The events of a logEvents call are spooled only if "
+          + "all of them fit.")
+  public void setMaxDiskUsage(final long maxDiskUsage) {
+    this.maxDiskUsage = maxDiskUsage;
+  }
+
+  @LongAttribute(attributeId = AuditRiComponentConstants.ATTR_RETRY_INTERVAL,
+      defaultValue = AuditRiComponentConstants.DEFAULT_RETRY_INTERVAL,
+      priority = SpoolLoggingComponentAttrPriority.P07_RETRY_INTERVAL,
+      label = "Retry Interval",
+      description = "The time in milliseconds the replayer waits before it retries a batch that "
+          + "could not be persisted.")
+  public void setRetryInterval(final long retryInterval) {
+    this.retryInterval = retryInterval;
+  }
+
+  @IntegerAttribute(attributeId = AuditRiComponentConstants.ATTR_SEGMENT_SIZE,
+      defaultValue = AuditRiComponentConstants.DEFAULT_SEGMENT_SIZE,
+      priority = SpoolLoggingComponentAttrPriority.P03_SEGMENT_SIZE,
+      label = "Segment Size",
+      description = "The size of a memory-mapped segment file in bytes. A segment is deleted when "
+          + "all of its events are persisted.")
+  public void setSegmentSize(final int segmentSize) {
+    this.segmentSize = segmentSize;
+  }
+
+  @StringAttribute(attributeId = AuditRiComponentConstants.ATTR_SPOOL_DIRECTORY,
+      defaultValue = AuditRiComponentConstants.DEFAULT_SPOOL_DIRECTORY,
+      priority = SpoolLoggingComponentAttrPriority.P02_SPOOL_DIRECTORY,
+      label = "Spool Directory",
+      description = "The directory of the segment files. Every component configuration must "
+          + "have its own directory.")
+  public void setSpoolDirectory(final String spoolDirectory) {
+    this.spoolDirectory = spoolDirectory;
+  }
+
+}
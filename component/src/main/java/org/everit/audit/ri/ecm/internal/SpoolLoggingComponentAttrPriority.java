@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+/**
+ * Constants for component attribute priorities.
+ */
+public final class SpoolLoggingComponentAttrPriority {
+
+  public static final int P01_SERVICE_DESCRIPTION = 1;
+
+  public static final int P02_SPOOL_DIRECTORY = 2;
+
+  public static final int P03_SEGMENT_SIZE = 3;
+
+  public static final int P04_MAX_DISK_USAGE = 4;
+
+  public static final int P05_FORCE_ON_WRITE = 5;
+
+  public static final int P06_BATCH_SIZE = 6;
+
+  public static final int P07_RETRY_INTERVAL = 7;
+
+  public static final int P08_INTERNAL_BULK_LOGGING_SERVICE = 8;
+
+  public static final int P09_AUTHENTICATION_CONTEXT = 9;
+
+  public static final int P10_AUTHENTICATION_PROPAGATOR = 10;
+
+  public static final int P11_LOG_SERVICE = 11;
+
+  public static final int P12_INTERNAL_AUDIT_EVENT_TYPE_MANAGER = 12;
+
+  private SpoolLoggingComponentAttrPriority() {
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal;
+
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.log.LogService;
+
+/**
+ * {@link LogService} of the components that are configured without one. The warnings and errors
+ * are written to the standard error stream, the other messages are dropped.
+ */
+final class StandardErrorLogService implements LogService {
+
+  static final StandardErrorLogService INSTANCE = new StandardErrorLogService();
+
+  private StandardErrorLogService() {
+  }
+
+  @Override
+  public void log(final int level, final String message) {
+    log(null, level, message, null);
+  }
+
+  @Override
+  public void log(final int level, final String message, final Throwable exception) {
+    log(null, level, message, exception);
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public void log(final ServiceReference sr, final int level, final String message) {
+    log(sr, level, message, null);
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public void log(final ServiceReference sr, final int level, final String message,
+      final Throwable exception) {
+    if (level > LogService.LOG_WARNING) {
+      return;
+    }
+    System.err.println((level == LogService.LOG_ERROR ? "ERROR" : "WARNING") + ": " + message);
+    if (exception != null) {
+      exception.printStackTrace();
+    }
+  }
+
+}
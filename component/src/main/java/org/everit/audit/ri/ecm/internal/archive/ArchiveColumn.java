@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+/**
+ * The columns of an archive segment in the order they are stored. The event columns have one
+ * value for every event, the event data columns one value for every event data, and the value
+ * columns one value for every event data of their type.
+ */
+enum ArchiveColumn {
+
+  /**
+   * The event identifiers as zigzag encoded deltas.
+   */
+  EVENT_ID,
+
+  /**
+   * The epoch seconds of the occurrence times as zigzag encoded deltas.
+   */
+  OCCURED_AT_SECOND,
+
+  /**
+   * The nanosecond parts of the occurrence times.
+   */
+  OCCURED_AT_NANO,
+
+  /**
+   * The distinct event type names of the segment.
+   */
+  EVENT_TYPE_DICTIONARY,
+
+  /**
+   * The indexes of the event type names in the dictionary.
+   */
+  EVENT_TYPE,
+
+  /**
+   * The number of the event data of the events.
+   */
+  EVENT_DATA_COUNT,
+
+  /**
+   * The distinct event data names of the segment.
+   */
+  EVENT_DATA_NAME_DICTIONARY,
+
+  /**
+   * The indexes of the event data names in the dictionary.
+   */
+  EVENT_DATA_NAME,
+
+  /**
+   * The ordinals of the event data types.
+   */
+  EVENT_DATA_TYPE,
+
+  /**
+   * The values of the STRING event data.
+   */
+  STRING_VALUE,
+
+  /**
+   * The values of the TEXT event data, uncompressed.
+   */
+  TEXT_VALUE,
+
+  /**
+   * The values of the NUMBER event data.
+   */
+  NUMBER_VALUE,
+
+  /**
+   * The epoch seconds of the TIMESTAMP event data as zigzag encoded deltas.
+   */
+  TIMESTAMP_SECOND,
+
+  /**
+   * The nanosecond parts of the TIMESTAMP event data.
+   */
+  TIMESTAMP_NANO
+
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.EventData;
+import org.everit.audit.ri.ecm.AuditEventQuery;
+import org.everit.audit.ri.ecm.StoredAuditEvent;
+
+/**
+ * An immutable, columnar segment file of archived events of one audit application. The file
+ * starts with a header, followed by the Deflate compressed {@link ArchiveColumn}s and a footer
+ * that contains the application, the number of the rows, the minimum and maximum occurrence time
+ * of the events and the position of the columns. The file ends with the position of the footer,
+ * so a reader can decide from the footer alone whether it has to decompress any column.
+ *
+ * <p>
+ * The segments are read through a read-only memory mapping of the file.
+ */
+class ArchiveSegment {
+
+  private static final int EVENT_DATA_TYPE_NUMBER = 2;
+
+  private static final int EVENT_DATA_TYPE_STRING = 0;
+
+  private static final int EVENT_DATA_TYPE_TEXT = 1;
+
+  private static final int EVENT_DATA_TYPE_TIMESTAMP = 3;
+
+  private static final int HEADER_SIZE = 8;
+
+  private static final int MAGIC = 0x41534152;
+
+  private static final int TRAILER_SIZE = 12;
+
+  private static final int VERSION = 1;
+
+  final String applicationName;
+
+  final long applicationResourceId;
+
+  private final ByteBuffer buffer;
+
+  private final int[] columnLengths;
+
+  private final int[] columnOffsets;
+
+  private final int[] compressedColumnLengths;
+
+  final int eventCount;
+
+  final int eventDataCount;
+
+  /**
+   * The identifier of the first event of the segment.
+   */
+  final long firstEventId;
+
+  final Instant maxOccuredAt;
+
+  final Instant minOccuredAt;
+
+  private final Path path;
+
+  private ArchiveSegment(final Path path, final ByteBuffer buffer, final ColumnInput footer) {
+    this.path = path;
+    this.buffer = buffer;
+    eventCount = footer.readInt();
+    eventDataCount = footer.readInt();
+    minOccuredAt = Instant.ofEpochSecond(footer.readLong(), footer.readInt());
+    maxOccuredAt = Instant.ofEpochSecond(footer.readLong(), footer.readInt());
+    firstEventId = footer.readLong();
+    applicationResourceId = footer.readLong();
+    applicationName = footer.readString();
+
+    int columnCount = ArchiveColumn.values().length;
+    columnOffsets = new int[columnCount];
+    compressedColumnLengths = new int[columnCount];
+    columnLengths = new int[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      columnOffsets[i] = footer.readInt();
+      compressedColumnLengths[i] = footer.readInt();
+      columnLengths[i] = footer.readInt();
+    }
+  }
+
+  /**
+   * Maps the segment file and reads its footer.
+   *
+   * @throws IOException
+   *           if the file cannot be read or it is not a valid segment.
+   */
+  static ArchiveSegment open(final Path path) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("invalid archive segment size [" + path + "]");
+      }
+      // the mapping stays valid after the channel is closed
+      buffer = channel.map(MapMode.READ_ONLY, 0, size);
+    }
+    int trailerOffset = buffer.capacity() - TRAILER_SIZE;
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION
+        || buffer.getInt(trailerOffset + Long.BYTES) != MAGIC) {
+      throw new IOException("not an archive segment [" + path + "]");
+    }
+    long footerOffset = buffer.getLong(trailerOffset);
+    if (footerOffset < HEADER_SIZE || footerOffset > trailerOffset) {
+      throw new IOException("corrupt archive segment [" + path + "]");
+    }
+    ByteBuffer footer = buffer.duplicate();
+    footer.position((int) footerOffset);
+    footer.limit(trailerOffset);
+    try {
+      return new ArchiveSegment(path, buffer, new ColumnInput(footer.slice()));
+    } catch (RuntimeException e) {
+      throw new IOException("corrupt archive segment [" + path + "]", e);
+    }
+  }
+
+  private static String[] readDictionary(final ColumnInput column) {
+    String[] dictionary = new String[(int) column.readVarLong()];
+    for (int i = 0; i < dictionary.length; i++) {
+      dictionary[i] = column.readString();
+    }
+    return dictionary;
+  }
+
+  private static int toIndex(final Map<String, Integer> dictionary, final String value) {
+    Integer index = dictionary.get(value);
+    if (index == null) {
+      index = dictionary.size();
+      dictionary.put(value, index);
+    }
+    return index;
+  }
+
+  /**
+   * Writes the events to a new segment file and forces it to the storage device.
+   *
+   * @param events
+   *          the events of the application, at least one.
+   */
+  static void write(final Path path, final String applicationName,
+      final long applicationResourceId, final List<StoredAuditEvent> events) throws IOException {
+    ColumnOutput[] columns = new ColumnOutput[ArchiveColumn.values().length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new ColumnOutput();
+    }
+    Map<String, Integer> eventTypeDictionary = new LinkedHashMap<>();
+    Map<String, Integer> eventDataNameDictionary = new LinkedHashMap<>();
+
+    Instant minOccuredAt = Instant.MAX;
+    Instant maxOccuredAt = Instant.MIN;
+    long previousEventId = 0;
+    long previousOccuredAtSecond = 0;
+    long previousTimestampSecond = 0;
+    int eventDataCount = 0;
+    for (StoredAuditEvent storedAuditEvent : events) {
+      Instant occuredAt = storedAuditEvent.occuredAt;
+      if (occuredAt.isBefore(minOccuredAt)) {
+        minOccuredAt = occuredAt;
+      }
+      if (occuredAt.isAfter(maxOccuredAt)) {
+        maxOccuredAt = occuredAt;
+      }
+      columns[ArchiveColumn.EVENT_ID.ordinal()]
+          .writeZigZag(storedAuditEvent.eventId - previousEventId);
+      previousEventId = storedAuditEvent.eventId;
+      columns[ArchiveColumn.OCCURED_AT_SECOND.ordinal()]
+          .writeZigZag(occuredAt.getEpochSecond() - previousOccuredAtSecond);
+      previousOccuredAtSecond = occuredAt.getEpochSecond();
+      columns[ArchiveColumn.OCCURED_AT_NANO.ordinal()].writeVarLong(occuredAt.getNano());
+      columns[ArchiveColumn.EVENT_TYPE.ordinal()]
+          .writeVarLong(toIndex(eventTypeDictionary, storedAuditEvent.eventTypeName));
+
+      EventData[] eventDataArray = storedAuditEvent.getAuditEvent().eventDataArray;
+      columns[ArchiveColumn.EVENT_DATA_COUNT.ordinal()].writeVarLong(eventDataArray.length);
+      eventDataCount += eventDataArray.length;
+      for (EventData eventData : eventDataArray) {
+        columns[ArchiveColumn.EVENT_DATA_NAME.ordinal()]
+            .writeVarLong(toIndex(eventDataNameDictionary, eventData.eventDataName));
+        ColumnOutput eventDataType = columns[ArchiveColumn.EVENT_DATA_TYPE.ordinal()];
+        switch (eventData.eventDataType) {
+          case STRING:
+            eventDataType.writeByte(EVENT_DATA_TYPE_STRING);
+            columns[ArchiveColumn.STRING_VALUE.ordinal()].writeString(eventData.stringValue);
+            break;
+          case TEXT:
+            eventDataType.writeByte(EVENT_DATA_TYPE_TEXT);
+            columns[ArchiveColumn.TEXT_VALUE.ordinal()].writeString(eventData.textValue);
+            break;
+          case NUMBER:
+            eventDataType.writeByte(EVENT_DATA_TYPE_NUMBER);
+            columns[ArchiveColumn.NUMBER_VALUE.ordinal()].writeDouble(eventData.numberValue);
+            break;
+          case TIMESTAMP:
+            eventDataType.writeByte(EVENT_DATA_TYPE_TIMESTAMP);
+            Instant timestampValue = eventData.timestampValue;
+            columns[ArchiveColumn.TIMESTAMP_SECOND.ordinal()]
+                .writeZigZag(timestampValue.getEpochSecond() - previousTimestampSecond);
+            previousTimestampSecond = timestampValue.getEpochSecond();
+            columns[ArchiveColumn.TIMESTAMP_NANO.ordinal()].writeVarLong(timestampValue.getNano());
+            break;
+          default:
+            throw new IllegalStateException(
+                "unsupported eventDataType [" + eventData.eventDataType + "]");
+        }
+      }
+    }
+    writeDictionary(columns[ArchiveColumn.EVENT_TYPE_DICTIONARY.ordinal()],
+        eventTypeDictionary);
+    writeDictionary(columns[ArchiveColumn.EVENT_DATA_NAME_DICTIONARY.ordinal()],
+        eventDataNameDictionary);
+
+    ColumnOutput file = new ColumnOutput();
+    file.writeInt(MAGIC);
+    file.writeInt(VERSION);
+    int[] offsets = new int[columns.length];
+    int[] compressedLengths = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      byte[] compressed = columns[i].compress();
+      offsets[i] = file.size();
+      compressedLengths[i] = compressed.length;
+      file.writeBytes(compressed);
+    }
+
+    long footerOffset = file.size();
+    file.writeInt(events.size());
+    file.writeInt(eventDataCount);
+    file.writeLong(minOccuredAt.getEpochSecond());
+    file.writeInt(minOccuredAt.getNano());
+    file.writeLong(maxOccuredAt.getEpochSecond());
+    file.writeInt(maxOccuredAt.getNano());
+    file.writeLong(events.get(0).eventId);
+    file.writeLong(applicationResourceId);
+    file.writeString(applicationName);
+    for (int i = 0; i < columns.length; i++) {
+      file.writeInt(offsets[i]);
+      file.writeInt(compressedLengths[i]);
+      file.writeInt(columns[i].size());
+    }
+    file.writeLong(footerOffset);
+    file.writeInt(MAGIC);
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE)) {
+      ByteBuffer content = ByteBuffer.wrap(file.toByteArray());
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+      channel.force(true);
+    }
+  }
+
+  private static void writeDictionary(final ColumnOutput column,
+      final Map<String, Integer> dictionary) {
+    column.writeVarLong(dictionary.size());
+    for (String value : dictionary.keySet()) {
+      column.writeString(value);
+    }
+  }
+
+  private ColumnInput column(final ArchiveColumn archiveColumn) {
+    int index = archiveColumn.ordinal();
+    return ColumnInput.inflate(buffer, columnOffsets[index], compressedColumnLengths[index],
+        columnLengths[index]);
+  }
+
+  /**
+   * Returns whether the segment can contain events of the query. Only the footer is checked.
+   */
+  boolean matches(final AuditEventQuery query) {
+    return applicationName.equals(query.applicationName)
+        && (query.occuredAtTo == null || minOccuredAt.isBefore(query.occuredAtTo))
+        && (query.occuredAtFrom == null || !maxOccuredAt.isBefore(query.occuredAtFrom));
+  }
+
+  /**
+   * Passes the events of the segment that match the event types and the time range of the query
+   * to the consumer in the order they were archived. The event columns are decompressed first,
+   * the event data columns only if any event matches.
+   *
+   * @return the number of events passed to the consumer.
+   * @throws IllegalArgumentException
+   *           if a column of the segment is corrupt.
+   */
+  long scan(final AuditEventQuery query, final Consumer<StoredAuditEvent> consumer) {
+    String[] eventTypeNames = readDictionary(column(ArchiveColumn.EVENT_TYPE_DICTIONARY));
+    boolean[] acceptedEventTypes = new boolean[eventTypeNames.length];
+    String[] queriedEventTypeNames = query.getEventTypeNames();
+    Set<String> queriedEventTypeNameSet = new HashSet<>(Arrays.asList(queriedEventTypeNames));
+    boolean anyAcceptedEventType = false;
+    for (int i = 0; i < eventTypeNames.length; i++) {
+      acceptedEventTypes[i] = queriedEventTypeNames.length == 0
+          || queriedEventTypeNameSet.contains(eventTypeNames[i]);
+      anyAcceptedEventType |= acceptedEventTypes[i];
+    }
+    if (!anyAcceptedEventType) {
+      return 0;
+    }
+
+    ColumnInput eventIdColumn = column(ArchiveColumn.EVENT_ID);
+    ColumnInput occuredAtSecondColumn = column(ArchiveColumn.OCCURED_AT_SECOND);
+    ColumnInput occuredAtNanoColumn = column(ArchiveColumn.OCCURED_AT_NANO);
+    ColumnInput eventTypeColumn = column(ArchiveColumn.EVENT_TYPE);
+
+    long[] eventIds = new long[eventCount];
+    Instant[] occuredAts = new Instant[eventCount];
+    int[] eventTypes = new int[eventCount];
+    boolean[] selected = new boolean[eventCount];
+    boolean anySelected = false;
+    long eventId = 0;
+    long occuredAtSecond = 0;
+    for (int i = 0; i < eventCount; i++) {
+      eventId += eventIdColumn.readZigZag();
+      occuredAtSecond += occuredAtSecondColumn.readZigZag();
+      eventIds[i] = eventId;
+      occuredAts[i] = Instant.ofEpochSecond(occuredAtSecond, occuredAtNanoColumn.readVarLong());
+      eventTypes[i] = (int) eventTypeColumn.readVarLong();
+      selected[i] = acceptedEventTypes[eventTypes[i]]
+          && (query.occuredAtFrom == null || !occuredAts[i].isBefore(query.occuredAtFrom))
+          && (query.occuredAtTo == null || occuredAts[i].isBefore(query.occuredAtTo));
+      anySelected |= selected[i];
+    }
+    if (!anySelected) {
+      return 0;
+    }
+
+    ColumnInput eventDataCountColumn = column(ArchiveColumn.EVENT_DATA_COUNT);
+    String[] eventDataNames = readDictionary(column(ArchiveColumn.EVENT_DATA_NAME_DICTIONARY));
+    ColumnInput eventDataNameColumn = column(ArchiveColumn.EVENT_DATA_NAME);
+    ColumnInput eventDataTypeColumn = column(ArchiveColumn.EVENT_DATA_TYPE);
+    ColumnInput stringValueColumn = column(ArchiveColumn.STRING_VALUE);
+    ColumnInput textValueColumn = column(ArchiveColumn.TEXT_VALUE);
+    ColumnInput numberValueColumn = column(ArchiveColumn.NUMBER_VALUE);
+    ColumnInput timestampSecondColumn = column(ArchiveColumn.TIMESTAMP_SECOND);
+    ColumnInput timestampNanoColumn = column(ArchiveColumn.TIMESTAMP_NANO);
+
+    long count = 0;
+    long timestampSecond = 0;
+    for (int i = 0; i < eventCount; i++) {
+      AuditEvent.Builder builder = null;
+      if (selected[i]) {
+        builder = new AuditEvent.Builder()
+            .eventTypeName(eventTypeNames[eventTypes[i]])
+            .occuredAt(occuredAts[i]);
+      }
+      int eventDataCountOfEvent = (int) eventDataCountColumn.readVarLong();
+      for (int j = 0; j < eventDataCountOfEvent; j++) {
+        String eventDataName = eventDataNames[(int) eventDataNameColumn.readVarLong()];
+        int eventDataType = eventDataTypeColumn.readByte();
+        switch (eventDataType) {
+          case EVENT_DATA_TYPE_STRING:
+            if (builder != null) {
+              builder.addStringEventData(eventDataName, stringValueColumn.readString());
+            } else {
+              stringValueColumn.skipString();
+            }
+            break;
+          case EVENT_DATA_TYPE_TEXT:
+            if (builder != null) {
+              builder.addTextEventData(eventDataName, false, textValueColumn.readString());
+            } else {
+              textValueColumn.skipString();
+            }
+            break;
+          case EVENT_DATA_TYPE_NUMBER:
+            double numberValue = numberValueColumn.readDouble();
+            if (builder != null) {
+              builder.addNumberEventData(eventDataName, numberValue);
+            }
+            break;
+          case EVENT_DATA_TYPE_TIMESTAMP:
+            timestampSecond += timestampSecondColumn.readZigZag();
+            Instant timestampValue =
+                Instant.ofEpochSecond(timestampSecond, timestampNanoColumn.readVarLong());
+            if (builder != null) {
+              builder.addTimestampEventData(eventDataName, timestampValue);
+            }
+            break;
+          default:
+            throw new IllegalArgumentException("unsupported event data type [" + eventDataType
+                + "] in archive segment [" + path + "]");
+        }
+      }
+      if (builder != null) {
+        AuditEvent auditEvent = builder.build();
+        consumer.accept(new StoredAuditEvent(eventIds[i], applicationName,
+            auditEvent.eventTypeName, occuredAts[i], () -> auditEvent));
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The names of the segment files in the archive directory. The name of a segment is its sequence
+ * number, so the segments are listed in the order they were archived. A segment is written to a
+ * temporary file first and renamed when the archived events are deleted from the database.
+ */
+final class ArchiveSegmentFiles {
+
+  private static final String SEGMENT_FILE_SUFFIX = ".segment";
+
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  static Path segmentFile(final Path directory, final long sequence) {
+    return directory.resolve(String.format("%020d", sequence) + SEGMENT_FILE_SUFFIX);
+  }
+
+  static Path segmentFileOf(final Path temporaryFile) {
+    String fileName = temporaryFile.getFileName().toString();
+    return temporaryFile.resolveSibling(
+        fileName.substring(0, fileName.length() - TEMPORARY_FILE_SUFFIX.length())
+            + SEGMENT_FILE_SUFFIX);
+  }
+
+  /**
+   * Lists the segment files in the order they were archived.
+   */
+  static List<Path> segmentFiles(final Path directory) throws IOException {
+    return list(directory, SEGMENT_FILE_SUFFIX);
+  }
+
+  static long sequenceOf(final Path file) {
+    String fileName = file.getFileName().toString();
+    return Long.parseLong(fileName.substring(0, fileName.indexOf('.')));
+  }
+
+  static Path temporaryFile(final Path directory, final long sequence) {
+    return directory.resolve(String.format("%020d", sequence) + TEMPORARY_FILE_SUFFIX);
+  }
+
+  static List<Path> temporaryFiles(final Path directory) throws IOException {
+    return list(directory, TEMPORARY_FILE_SUFFIX);
+  }
+
+  private static List<Path> list(final Path directory, final String suffix) throws IOException {
+    List<Path> files = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return files;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  private ArchiveSegmentFiles() {
+  }
+
+}
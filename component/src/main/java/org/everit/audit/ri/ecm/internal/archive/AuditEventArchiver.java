@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.ri.ecm.StoredAuditEvent;
+import org.everit.audit.ri.ecm.internal.persistence.EventDataIndex;
+import org.everit.audit.ri.ecm.internal.query.AuditEventAssembler;
+import org.everit.audit.ri.schema.qdsl.QApplication;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.service.log.LogService;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+
+/**
+ * Moves the events older than the maximum age from the database to archive segment files,
+ * periodically. Every segment holds the oldest events of one audit application. The segment is
+ * written to a temporary file and the events are deleted in one transaction; the temporary file is
+ * renamed after the commit. A temporary file left by a crash is renamed if its events are no
+ * longer in the database and deleted otherwise, so an event is neither lost nor archived twice.
+ */
+public class AuditEventArchiver implements Runnable {
+
+  /**
+   * The maximum number of event identifiers in one IN condition.
+   */
+  private static final int SLICE_SIZE = 1000;
+
+  private final Path archiveDirectory;
+
+  private final long archiveInterval;
+
+  private final LogService logService;
+
+  private final long maxAge;
+
+  private long nextSequence;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final int segmentEventCount;
+
+  private final CountDownLatch stopLatch = new CountDownLatch(1);
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   *
+   * @param maxAge
+   *          the time in milliseconds after the events are archived.
+   * @param archiveInterval
+   *          the time in milliseconds between two archive runs.
+   * @param segmentEventCount
+   *          the maximum number of events in one segment.
+   */
+  public AuditEventArchiver(final Path archiveDirectory, final long maxAge,
+      final long archiveInterval, final int segmentEventCount,
+      final QuerydslSupport querydslSupport, final TransactionPropagator transactionPropagator,
+      final LogService logService) {
+    this.archiveDirectory = Objects.requireNonNull(archiveDirectory,
+        "archiveDirectory cannot be null");
+    if (maxAge < 0) {
+      throw new IllegalArgumentException("maxAge cannot be negative");
+    }
+    if (archiveInterval <= 0) {
+      throw new IllegalArgumentException("archiveInterval must be positive");
+    }
+    if (segmentEventCount <= 0) {
+      throw new IllegalArgumentException("segmentEventCount must be positive");
+    }
+    this.maxAge = maxAge;
+    this.archiveInterval = archiveInterval;
+    this.segmentEventCount = segmentEventCount;
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+  }
+
+  /**
+   * Archives all events of all audit applications that are older than the maximum age.
+   *
+   * @return the number of archived events.
+   */
+  public long archiveAgedEvents() throws IOException {
+    Instant cutoff = Instant.now().minusMillis(maxAge);
+    List<Tuple> applications = querydslSupport.execute((connection, configuration) -> {
+      QApplication qApplication = QApplication.application;
+      return new SQLQuery<Void>(connection, configuration)
+          .select(qApplication.applicationId, qApplication.applicationName,
+              qApplication.resourceId)
+          .from(qApplication)
+          .orderBy(qApplication.applicationId.asc())
+          .fetch();
+    });
+
+    QApplication qApplication = QApplication.application;
+    long archivedEventCount = 0;
+    for (Tuple application : applications) {
+      int segmentSize;
+      do {
+        segmentSize = archiveSegment(application.get(qApplication.applicationId),
+            application.get(qApplication.applicationName),
+            application.get(qApplication.resourceId), cutoff);
+        archivedEventCount += segmentSize;
+      } while (segmentSize == segmentEventCount && stopLatch.getCount() > 0);
+    }
+    return archivedEventCount;
+  }
+
+  /**
+   * Moves the oldest aged events of the application to a new segment.
+   *
+   * @return the number of archived events.
+   */
+  private int archiveSegment(final long applicationId, final String applicationName,
+      final long applicationResourceId, final Instant cutoff) throws IOException {
+    long sequence = nextSequence++;
+    Path temporaryFile = ArchiveSegmentFiles.temporaryFile(archiveDirectory, sequence);
+
+    int eventCount;
+    try {
+      eventCount = transactionPropagator.required(() -> querydslSupport.execute(
+          (connection, configuration) -> {
+            QEvent qEvent = QEvent.event;
+            QEventType qEventType = QEventType.eventType;
+            QEventData qEventData = QEventData.eventData;
+
+            List<Long> eventIds = new SQLQuery<Void>(connection, configuration)
+                .select(qEvent.eventId)
+                .from(qEvent)
+                .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+                .where(qEventType.applicationId.eq(applicationId)
+                    .and(qEvent.occuredAt.lt(Timestamp.from(cutoff))))
+                .orderBy(qEvent.occuredAt.asc(), qEvent.eventId.asc())
+                .limit(segmentEventCount)
+                .fetch();
+            if (eventIds.isEmpty()) {
+              return 0;
+            }
+
+            List<StoredAuditEvent> events = new ArrayList<>(eventIds.size());
+            AuditEventAssembler assembler = new AuditEventAssembler(applicationName, events::add);
+            for (int from = 0; from < eventIds.size(); from += SLICE_SIZE) {
+              List<Long> slice = eventIds.subList(from,
+                  Math.min(from + SLICE_SIZE, eventIds.size()));
+              for (Tuple tuple : AuditEventAssembler.createQuery(connection, configuration,
+                  qEvent.eventId.in(slice)).fetch()) {
+                assembler.accept(tuple);
+              }
+            }
+            assembler.flush();
+
+            try {
+              ArchiveSegment.write(temporaryFile, applicationName, applicationResourceId,
+                  events);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+
+            for (int from = 0; from < eventIds.size(); from += SLICE_SIZE) {
+              List<Long> slice = eventIds.subList(from,
+                  Math.min(from + SLICE_SIZE, eventIds.size()));
+              EventDataIndex.deleteEntries(connection, configuration, slice);
+              new SQLDeleteClause(connection, configuration, qEventData)
+                  .where(qEventData.eventId.in(slice))
+                  .execute();
+              new SQLDeleteClause(connection, configuration, qEvent)
+                  .where(qEvent.eventId.in(slice))
+                  .execute();
+            }
+            return events.size();
+          }));
+    } catch (RuntimeException e) {
+      Files.deleteIfExists(temporaryFile);
+      if (e instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e).getCause();
+      }
+      throw e;
+    }
+
+    if (eventCount > 0) {
+      Files.move(temporaryFile, ArchiveSegmentFiles.segmentFileOf(temporaryFile),
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    return eventCount;
+  }
+
+  private boolean eventExists(final long eventId) {
+    return querydslSupport.execute((connection, configuration) -> {
+      QEvent qEvent = QEvent.event;
+      return new SQLQuery<Void>(connection, configuration)
+          .select(qEvent.eventId)
+          .from(qEvent)
+          .where(qEvent.eventId.eq(eventId))
+          .fetchFirst() != null;
+    });
+  }
+
+  /**
+   * Creates the archive directory and completes or discards the segments of an interrupted run.
+   */
+  public void recover() throws IOException {
+    Files.createDirectories(archiveDirectory);
+    long lastSequence = 0;
+    for (Path segmentFile : ArchiveSegmentFiles.segmentFiles(archiveDirectory)) {
+      lastSequence = Math.max(lastSequence, ArchiveSegmentFiles.sequenceOf(segmentFile));
+    }
+    for (Path temporaryFile : ArchiveSegmentFiles.temporaryFiles(archiveDirectory)) {
+      lastSequence = Math.max(lastSequence, ArchiveSegmentFiles.sequenceOf(temporaryFile));
+      ArchiveSegment segment;
+      try {
+        segment = ArchiveSegment.open(temporaryFile);
+      } catch (IOException e) {
+        // the file was not written completely, so the transaction was not committed
+        Files.delete(temporaryFile);
+        continue;
+      }
+      if (eventExists(segment.firstEventId)) {
+        Files.delete(temporaryFile);
+      } else {
+        Files.move(temporaryFile, ArchiveSegmentFiles.segmentFileOf(temporaryFile),
+            StandardCopyOption.ATOMIC_MOVE);
+        logService.log(LogService.LOG_INFO, "recovered archive segment of "
+            + segment.eventCount + " events of audit application [" + segment.applicationName
+            + "]");
+      }
+    }
+    nextSequence = lastSequence + 1;
+  }
+
+  @Override
+  public void run() {
+    try {
+      recover();
+      while (stopLatch.getCount() > 0) {
+        try {
+          long archivedEventCount = archiveAgedEvents();
+          if (archivedEventCount > 0) {
+            logService.log(LogService.LOG_INFO,
+                "archived " + archivedEventCount + " audit events");
+          }
+        } catch (IOException | RuntimeException e) {
+          logService.log(LogService.LOG_ERROR, "failed to archive audit events", e);
+        }
+        stopLatch.await(archiveInterval, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | RuntimeException e) {
+      logService.log(LogService.LOG_ERROR, "audit event archiver stopped", e);
+    }
+  }
+
+  /**
+   * Signals the archiver to stop after the current segment.
+   */
+  public void stop() {
+    stopLatch.countDown();
+  }
+
+}
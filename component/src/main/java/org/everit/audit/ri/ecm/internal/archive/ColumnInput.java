@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the values written by a {@link ColumnOutput}.
+ */
+class ColumnInput {
+
+  private static final int VARINT_CONTINUATION = 0x80;
+
+  private static final int VARINT_MASK = 0x7F;
+
+  private static final int VARINT_SHIFT = 7;
+
+  private final ByteBuffer buffer;
+
+  ColumnInput(final ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Inflates a compressed column.
+   *
+   * @param source
+   *          the buffer that contains the compressed column, typically a mapped segment file.
+   * @param offset
+   *          the position of the compressed column in the source.
+   * @param compressedLength
+   *          the length of the compressed column.
+   * @param length
+   *          the length of the inflated column.
+   * @throws IllegalArgumentException
+   *           if the compressed column is corrupt.
+   */
+  static ColumnInput inflate(final ByteBuffer source, final int offset,
+      final int compressedLength, final int length) {
+    byte[] compressed = new byte[compressedLength];
+    ByteBuffer slice = source.duplicate();
+    slice.position(offset);
+    slice.get(compressed);
+
+    byte[] inflated = new byte[length];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      int inflatedLength = 0;
+      while (inflatedLength < length) {
+        int count = inflater.inflate(inflated, inflatedLength, length - inflatedLength);
+        if (count == 0 && (inflater.finished() || inflater.needsInput()
+            || inflater.needsDictionary())) {
+          throw new IllegalArgumentException("truncated archive column");
+        }
+        inflatedLength += count;
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("corrupt archive column", e);
+    } finally {
+      inflater.end();
+    }
+    return new ColumnInput(ByteBuffer.wrap(inflated));
+  }
+
+  int readByte() {
+    return buffer.get() & 0xFF;
+  }
+
+  double readDouble() {
+    return Double.longBitsToDouble(buffer.getLong());
+  }
+
+  int readInt() {
+    return buffer.getInt();
+  }
+
+  long readLong() {
+    return buffer.getLong();
+  }
+
+  String readString() {
+    int length = (int) readVarLong();
+    byte[] utf8 = new byte[length];
+    buffer.get(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  long readVarLong() {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = readByte();
+      value |= (long) (b & VARINT_MASK) << shift;
+      shift += VARINT_SHIFT;
+    } while ((b & VARINT_CONTINUATION) != 0);
+    return value;
+  }
+
+  long readZigZag() {
+    long encoded = readVarLong();
+    return (encoded >>> 1) ^ -(encoded & 1);
+  }
+
+  void skipString() {
+    int length = (int) readVarLong();
+    buffer.position(buffer.position() + length);
+  }
+
+}
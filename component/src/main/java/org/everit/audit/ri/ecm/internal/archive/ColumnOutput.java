@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * A growable buffer the values of one column of an archive segment are encoded into. The integers
+ * are written as variable-length quantities (seven bits per byte, least significant group first),
+ * the signed integers in zigzag encoding, so the small deltas of the sorted columns take one or two
+ * bytes.
+ */
+class ColumnOutput {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private static final int VARINT_CONTINUATION = 0x80;
+
+  private static final int VARINT_MASK = 0x7F;
+
+  private static final int VARINT_SHIFT = 7;
+
+  private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+  private int size;
+
+  /**
+   * Returns the Deflate compressed content of the buffer.
+   */
+  byte[] compress() {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    try {
+      deflater.setInput(bytes, 0, size);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(size / 2 + 1);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!deflater.finished()) {
+        int length = deflater.deflate(buffer);
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private void ensureCapacity(final int additional) {
+    int required = size + additional;
+    if (required > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(bytes, size);
+  }
+
+  void writeByte(final int value) {
+    ensureCapacity(1);
+    bytes[size++] = (byte) value;
+  }
+
+  void writeBytes(final byte[] value) {
+    ensureCapacity(value.length);
+    System.arraycopy(value, 0, bytes, size, value.length);
+    size += value.length;
+  }
+
+  void writeDouble(final double value) {
+    writeLong(Double.doubleToRawLongBits(value));
+  }
+
+  void writeInt(final int value) {
+    for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+      writeByte(value >>> shift);
+    }
+  }
+
+  void writeLong(final long value) {
+    for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+      writeByte((int) (value >>> shift));
+    }
+  }
+
+  void writeString(final String value) {
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(utf8.length);
+    writeBytes(utf8);
+  }
+
+  /**
+   * Writes a non-negative value as a variable-length quantity.
+   */
+  void writeVarLong(final long value) {
+    long remaining = value;
+    while ((remaining & ~VARINT_MASK) != 0) {
+      writeByte((int) ((remaining & VARINT_MASK) | VARINT_CONTINUATION));
+      remaining >>>= VARINT_SHIFT;
+    }
+    writeByte((int) remaining);
+  }
+
+  /**
+   * Writes a signed value in zigzag encoding, so the values close to zero are short.
+   */
+  void writeZigZag(final long value) {
+    writeVarLong((value << 1) ^ (value >> (Long.SIZE - 1)));
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.everit.audit.ri.ecm.AuditArchiveService;
+import org.everit.audit.ri.ecm.AuditEventQuery;
+import org.everit.audit.ri.ecm.AuditRiEcmPermissionConstants;
+import org.everit.audit.ri.ecm.StoredAuditEvent;
+import org.everit.authnr.permissionchecker.AuthnrPermissionChecker;
+
+/**
+ * {@link AuditArchiveService} that scans the segment files of the archive directory. The
+ * permission to read the audit application is checked against the resource of the application
+ * stored in the segments, so the archive can be read even if the application is deleted from the
+ * database.
+ */
+public class SegmentAuditArchiveService implements AuditArchiveService {
+
+  private final Path archiveDirectory;
+
+  private final AuthnrPermissionChecker authnrPermissionChecker;
+
+  /**
+   * Constructor.
+   */
+  public SegmentAuditArchiveService(final Path archiveDirectory,
+      final AuthnrPermissionChecker authnrPermissionChecker) {
+    this.archiveDirectory = archiveDirectory;
+    this.authnrPermissionChecker = authnrPermissionChecker;
+  }
+
+  @Override
+  public long streamArchivedEvents(final AuditEventQuery query,
+      final Consumer<StoredAuditEvent> consumer) {
+    Objects.requireNonNull(query, "query cannot be null");
+    Objects.requireNonNull(consumer, "consumer cannot be null");
+
+    try {
+      long count = 0;
+      boolean permissionChecked = false;
+      for (Path segmentFile : ArchiveSegmentFiles.segmentFiles(archiveDirectory)) {
+        ArchiveSegment segment = ArchiveSegment.open(segmentFile);
+        if (segment.matches(query)) {
+          if (!permissionChecked) {
+            authnrPermissionChecker.checkPermission(segment.applicationResourceId,
+                AuditRiEcmPermissionConstants.READ_AUDIT_APPLICATION);
+            permissionChecked = true;
+          }
+          count += segment.scan(query, consumer);
+        }
+      }
+      return count;
+    } catch (IOException e) {
+      throw new UncheckedIOException("cannot read the audit archive [" + archiveDirectory + "]",
+          e);
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.authorization;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.everit.audit.ri.authorization.AuditRiAuthorizationManager;
+import org.everit.audit.ri.ecm.internal.persistence.TransactionCompletionRunner;
+
+/**
+ * Invalidates a {@link PermissionDecisionCache} after every invocation of the methods declared by
+ * {@link AuditRiAuthorizationManager}, as all of them change permissions. The cache is
+ * invalidated again after the completion of the transaction of the caller, as a concurrent
+ * permission check can cache a decision based on the permissions replaced by the uncommitted
+ * change. The invocations of the other methods are passed to the target unchanged.
+ */
+public final class PermissionChangeInvocationHandler implements InvocationHandler {
+
+  private final PermissionDecisionCache permissionDecisionCache;
+
+  private final Object target;
+
+  private final TransactionCompletionRunner transactionCompletionRunner;
+
+  private PermissionChangeInvocationHandler(final Object target,
+      final PermissionDecisionCache permissionDecisionCache,
+      final TransactionCompletionRunner transactionCompletionRunner) {
+    this.target = target;
+    this.permissionDecisionCache = permissionDecisionCache;
+    this.transactionCompletionRunner = transactionCompletionRunner;
+  }
+
+  /**
+   * Returns a proxy of the target that implements the given interfaces and invalidates the cache
+   * on permission changes, or the target itself if the cache is <code>null</code>.
+   */
+  public static Object invalidateOnChange(final Object target,
+      final PermissionDecisionCache permissionDecisionCache,
+      final TransactionCompletionRunner transactionCompletionRunner,
+      final Class<?>... interfaces) {
+    if (permissionDecisionCache == null) {
+      return target;
+    }
+    return Proxy.newProxyInstance(PermissionChangeInvocationHandler.class.getClassLoader(),
+        interfaces, new PermissionChangeInvocationHandler(target, permissionDecisionCache,
+            transactionCompletionRunner));
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      if (method.getDeclaringClass() == AuditRiAuthorizationManager.class) {
+        transactionCompletionRunner.runNowAndAfterCompletion(permissionDecisionCache::invalidate);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.authorization;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.everit.audit.ri.ecm.internal.cache.BoundedCache;
+import org.everit.audit.ri.ecm.internal.cache.EvictionPolicy;
+
+/**
+ * Remembers the granted permission decisions for a limited time. The denied decisions are not
+ * cached, so the caller always gets the detailed exception of the permission checker. Every
+ * permission change must call {@link #invalidate()}.
+ */
+public class PermissionDecisionCache {
+
+  private final BoundedCache<PermissionDecisionKey, Boolean> grantedDecisions;
+
+  /**
+   * Incremented by every invalidation, so a decision that was made before an invalidation is not
+   * put into the cache after it.
+   */
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maximumSize
+   *          the maximum number of cached decisions.
+   * @param timeToLive
+   *          the time in milliseconds a decision is cached for.
+   */
+  public PermissionDecisionCache(final long maximumSize, final long timeToLive) {
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("timeToLive must be positive");
+    }
+    grantedDecisions = new BoundedCache<>(maximumSize, EvictionPolicy.LRU, timeToLive);
+  }
+
+  /**
+   * Returns the cache of the granted decisions, e.g. to read its statistics.
+   */
+  public BoundedCache<?, ?> getGrantedDecisions() {
+    return grantedDecisions;
+  }
+
+  long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Drops all cached decisions.
+   */
+  public void invalidate() {
+    version.incrementAndGet();
+    grantedDecisions.clear();
+  }
+
+  boolean isGranted(final PermissionDecisionKey key) {
+    return grantedDecisions.get(key) != null;
+  }
+
+  void putGranted(final PermissionDecisionKey key, final long decisionVersion) {
+    if (version.get() != decisionVersion) {
+      return;
+    }
+    grantedDecisions.put(key, Boolean.TRUE);
+    if (version.get() != decisionVersion) {
+      // invalidated concurrently
+      grantedDecisions.remove(key);
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.authorization;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.everit.authentication.context.AuthenticationContext;
+import org.everit.authnr.permissionchecker.AuthnrPermissionChecker;
+
+/**
+ * Serves the <code>checkPermission(long, String...)</code> and
+ * <code>hasPermission(long, String...)</code> calls of an {@link AuthnrPermissionChecker} from a
+ * {@link PermissionDecisionCache} if the permission was granted to the current resource recently.
+ * All other methods are passed to the permission checker.
+ */
+public final class PermissionDecisionCachingHandler implements InvocationHandler {
+
+  private static final String CHECK_PERMISSION = "checkPermission";
+
+  private static final String HAS_PERMISSION = "hasPermission";
+
+  private final AuthenticationContext authenticationContext;
+
+  private final PermissionDecisionCache permissionDecisionCache;
+
+  private final AuthnrPermissionChecker target;
+
+  private PermissionDecisionCachingHandler(final AuthnrPermissionChecker target,
+      final AuthenticationContext authenticationContext,
+      final PermissionDecisionCache permissionDecisionCache) {
+    this.target = target;
+    this.authenticationContext = authenticationContext;
+    this.permissionDecisionCache = permissionDecisionCache;
+  }
+
+  /**
+   * Returns a proxy of the permission checker that caches the granted decisions in the given
+   * cache, or the permission checker itself if the cache is <code>null</code>.
+   */
+  public static AuthnrPermissionChecker cache(final AuthnrPermissionChecker target,
+      final AuthenticationContext authenticationContext,
+      final PermissionDecisionCache permissionDecisionCache) {
+    if (permissionDecisionCache == null) {
+      return target;
+    }
+    return (AuthnrPermissionChecker) Proxy.newProxyInstance(
+        PermissionDecisionCachingHandler.class.getClassLoader(),
+        new Class<?>[] { AuthnrPermissionChecker.class },
+        new PermissionDecisionCachingHandler(target, authenticationContext,
+            permissionDecisionCache));
+  }
+
+  private static boolean isDecisionMethod(final Method method) {
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    return (CHECK_PERMISSION.equals(method.getName()) || HAS_PERMISSION.equals(method.getName()))
+        && parameterTypes.length == 2
+        && parameterTypes[0] == long.class
+        && parameterTypes[1] == String[].class;
+  }
+
+  private static Object grantedResult(final Method method) {
+    return HAS_PERMISSION.equals(method.getName()) ? Boolean.TRUE : null;
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws Throwable {
+    if (!isDecisionMethod(method)) {
+      return invokeTarget(method, args);
+    }
+
+    PermissionDecisionKey key = new PermissionDecisionKey(
+        authenticationContext.getCurrentResourceId(), (Long) args[0], (String[]) args[1]);
+    if (permissionDecisionCache.isGranted(key)) {
+      return grantedResult(method);
+    }
+
+    long decisionVersion = permissionDecisionCache.getVersion();
+    Object result = invokeTarget(method, args);
+    // checkPermission returns normally only if the permission is granted
+    if (CHECK_PERMISSION.equals(method.getName()) || Boolean.TRUE.equals(result)) {
+      permissionDecisionCache.putGranted(key, decisionVersion);
+    }
+    return result;
+  }
+
+  private Object invokeTarget(final Method method, final Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+}
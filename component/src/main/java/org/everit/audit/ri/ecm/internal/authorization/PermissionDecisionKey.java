@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.authorization;
+
+import java.util.Arrays;
+
+/**
+ * Identifies a permission decision by the authenticated resource, the target resource and the
+ * actions.
+ */
+final class PermissionDecisionKey {
+
+  private final String[] actions;
+
+  private final long authenticatedResourceId;
+
+  private final int hashCode;
+
+  private final long targetResourceId;
+
+  PermissionDecisionKey(final long authenticatedResourceId, final long targetResourceId,
+      final String[] actions) {
+    this.authenticatedResourceId = authenticatedResourceId;
+    this.targetResourceId = targetResourceId;
+    this.actions = actions.clone();
+    hashCode = 31 * (31 * Long.hashCode(authenticatedResourceId)
+        + Long.hashCode(targetResourceId)) + Arrays.hashCode(this.actions);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof PermissionDecisionKey)) {
+      return false;
+    }
+    PermissionDecisionKey other = (PermissionDecisionKey) obj;
+    return authenticatedResourceId == other.authenticatedResourceId
+        && targetResourceId == other.targetResourceId
+        && Arrays.equals(actions, other.actions);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+}
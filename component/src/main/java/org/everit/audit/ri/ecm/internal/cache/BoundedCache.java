@@ -0,0 +1,526 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.everit.audit.ri.ecm.AuditCacheStatistics;
+
+/**
+ * A {@link ConcurrentMap} that holds entries up to a maximum total weight and evicts entries by an
+ * {@link EvictionPolicy} when the bound is exceeded. Entries can optionally expire after a fixed
+ * time from their last write. The map operations are guarded by one lock, the statistics counters
+ * are updated without locking. The views of the map are backed by the map, but their iterators
+ * iterate over a snapshot of the live entries taken when the iterator is created. Removing through
+ * the views and their iterators removes the entries from the map. The expired entries are
+ * neither counted by {@link #size()} nor returned by the iterators.
+ *
+ * @param <K>
+ *          the type of the keys.
+ * @param <V>
+ *          the type of the values.
+ */
+public class BoundedCache<K, V> extends AbstractMap<K, V>
+    implements ConcurrentMap<K, V>, AuditCacheStatistics {
+
+  /**
+   * The value of a cache entry with its metadata.
+   *
+   * @param <V>
+   *          the type of the value.
+   */
+  private static final class CacheEntry<V> {
+
+    final V value;
+
+    final long weight;
+
+    final long writeTime;
+
+    CacheEntry(final V value, final long weight, final long writeTime) {
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = writeTime;
+    }
+
+  }
+
+  /**
+   * Iterates over a snapshot of the entries. Removing an entry removes it from the cache if it is
+   * still mapped to the same value.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+    private Map.Entry<K, V> current;
+
+    private final Iterator<Map.Entry<K, V>> snapshotIterator;
+
+    EntryIterator(final List<Map.Entry<K, V>> snapshot) {
+      snapshotIterator = snapshot.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return snapshotIterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      current = snapshotIterator.next();
+      return current;
+    }
+
+    @Override
+    public void remove() {
+      if (current == null) {
+        throw new IllegalStateException("next() has not been called since the last remove()");
+      }
+      BoundedCache.this.remove(current.getKey(), current.getValue());
+      current = null;
+    }
+
+  }
+
+  /**
+   * The entry set view of the cache.
+   */
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+    @Override
+    public void clear() {
+      BoundedCache.this.clear();
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      if (entry.getKey() == null || entry.getValue() == null) {
+        return false;
+      }
+      lock.lock();
+      try {
+        CacheEntry<V> cacheEntry = liveEntry(entry.getKey());
+        return cacheEntry != null && cacheEntry.value.equals(entry.getValue());
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator(liveEntries());
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      if (entry.getKey() == null) {
+        return false;
+      }
+      return BoundedCache.this.remove(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public int size() {
+      return BoundedCache.this.size();
+    }
+
+  }
+
+  private final Map<K, CacheEntry<V>> entries = new HashMap<>();
+
+  private final EntrySet entrySet = new EntrySet();
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  private final EvictionQueue<K> evictionQueue;
+
+  private final long expireAfterWriteNanos;
+
+  private final LongAdder expirationCount = new LongAdder();
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final long maximumWeight;
+
+  private final LongAdder missCount = new LongAdder();
+
+  private long totalWeight;
+
+  private final Weigher<? super K, ? super V> weigher;
+
+  /**
+   * Creates a cache bounded by the number of entries.
+   *
+   * @param maximumSize
+   *          the maximum number of entries.
+   * @param evictionPolicy
+   *          the policy that selects the entries to be evicted.
+   * @param expireAfterWrite
+   *          the time in milliseconds after an entry expires from its last write, or zero if the
+   *          entries never expire.
+   */
+  @SuppressWarnings("unchecked")
+  public BoundedCache(final long maximumSize, final EvictionPolicy evictionPolicy,
+      final long expireAfterWrite) {
+    this(maximumSize, Weigher.SINGLETON, evictionPolicy, expireAfterWrite);
+  }
+
+  /**
+   * Creates a cache bounded by the total weight of the entries.
+   *
+   * @param maximumWeight
+   *          the maximum total weight of the entries.
+   * @param weigher
+   *          calculates the weight of the entries.
+   * @param evictionPolicy
+   *          the policy that selects the entries to be evicted.
+   * @param expireAfterWrite
+   *          the time in milliseconds after an entry expires from its last write, or zero if the
+   *          entries never expire.
+   */
+  public BoundedCache(final long maximumWeight, final Weigher<? super K, ? super V> weigher,
+      final EvictionPolicy evictionPolicy, final long expireAfterWrite) {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("maximumWeight must be positive");
+    }
+    if (expireAfterWrite < 0) {
+      throw new IllegalArgumentException("expireAfterWrite cannot be negative");
+    }
+    this.maximumWeight = maximumWeight;
+    this.weigher = Objects.requireNonNull(weigher, "weigher cannot be null");
+    evictionQueue = Objects.requireNonNull(evictionPolicy, "evictionPolicy cannot be null")
+        .createQueue();
+    expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterWrite);
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      entries.clear();
+      evictionQueue.clear();
+      totalWeight = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    Objects.requireNonNull(key, "key cannot be null");
+    lock.lock();
+    try {
+      return liveEntry(key) != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a view of the entries. The entries returned by the iterators are immutable snapshots,
+   * they can be removed by the iterator but the values cannot be set.
+   */
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return entrySet;
+  }
+
+  private void evictIfNecessary() {
+    while (totalWeight > maximumWeight) {
+      K victim = evictionQueue.victim();
+      if (victim == null) {
+        return;
+      }
+      removeEntry(victim);
+      evictionCount.increment();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(final Object key) {
+    Objects.requireNonNull(key, "key cannot be null");
+    lock.lock();
+    try {
+      CacheEntry<V> cacheEntry = liveEntry(key);
+      if (cacheEntry == null) {
+        missCount.increment();
+        return null;
+      }
+      evictionQueue.touch((K) key);
+      hitCount.increment();
+      return cacheEntry.value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  @Override
+  public long getExpirationCount() {
+    return expirationCount.sum();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  @Override
+  public int getSize() {
+    return size();
+  }
+
+  private V insert(final K key, final V value) {
+    CacheEntry<V> previous = removeEntry(key);
+    long weight = weigher.weigh(key, value);
+    if (weight <= 0) {
+      throw new IllegalArgumentException("the weight of an entry must be positive");
+    }
+    if (weight <= maximumWeight) {
+      entries.put(key, new CacheEntry<>(value, weight, System.nanoTime()));
+      evictionQueue.add(key);
+      totalWeight += weight;
+      evictIfNecessary();
+    }
+    return previous == null || isExpired(previous, System.nanoTime()) ? null : previous.value;
+  }
+
+  private boolean isExpired(final CacheEntry<V> cacheEntry, final long now) {
+    return expireAfterWriteNanos > 0 && now - cacheEntry.writeTime >= expireAfterWriteNanos;
+  }
+
+  /**
+   * Removes the expired entries and returns a snapshot of the remaining ones.
+   */
+  private List<Map.Entry<K, V>> liveEntries() {
+    lock.lock();
+    try {
+      purgeExpired();
+      List<Map.Entry<K, V>> snapshot = new ArrayList<>(entries.size());
+      for (Map.Entry<K, CacheEntry<V>> entry : entries.entrySet()) {
+        snapshot.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().value));
+      }
+      return snapshot;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private CacheEntry<V> liveEntry(final Object key) {
+    CacheEntry<V> cacheEntry = entries.get(key);
+    if (cacheEntry == null) {
+      return null;
+    }
+    if (isExpired(cacheEntry, System.nanoTime())) {
+      removeEntry(key);
+      expirationCount.increment();
+      return null;
+    }
+    return cacheEntry;
+  }
+
+  @Override
+  public V put(final K key, final V value) {
+    Objects.requireNonNull(key, "key cannot be null");
+    Objects.requireNonNull(value, "value cannot be null");
+    lock.lock();
+    try {
+      return insert(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Puts all entries of the map into the cache while holding the lock only once.
+   */
+  @Override
+  public void putAll(final Map<? extends K, ? extends V> map) {
+    for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      Objects.requireNonNull(entry.getKey(), "key cannot be null");
+      Objects.requireNonNull(entry.getValue(), "value cannot be null");
+    }
+    lock.lock();
+    try {
+      for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+        insert(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the expired entries. Must be called while holding the lock.
+   */
+  private void purgeExpired() {
+    if (expireAfterWriteNanos == 0) {
+      return;
+    }
+    long now = System.nanoTime();
+    List<K> expiredKeys = new ArrayList<>();
+    for (Map.Entry<K, CacheEntry<V>> entry : entries.entrySet()) {
+      if (isExpired(entry.getValue(), now)) {
+        expiredKeys.add(entry.getKey());
+      }
+    }
+    for (K expiredKey : expiredKeys) {
+      removeEntry(expiredKey);
+      expirationCount.increment();
+    }
+  }
+
+  @Override
+  public V putIfAbsent(final K key, final V value) {
+    Objects.requireNonNull(key, "key cannot be null");
+    Objects.requireNonNull(value, "value cannot be null");
+    lock.lock();
+    try {
+      CacheEntry<V> cacheEntry = liveEntry(key);
+      if (cacheEntry != null) {
+        return cacheEntry.value;
+      }
+      insert(key, value);
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public V remove(final Object key) {
+    Objects.requireNonNull(key, "key cannot be null");
+    lock.lock();
+    try {
+      CacheEntry<V> cacheEntry = liveEntry(key);
+      if (cacheEntry == null) {
+        return null;
+      }
+      removeEntry(key);
+      return cacheEntry.value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(final Object key, final Object value) {
+    Objects.requireNonNull(key, "key cannot be null");
+    if (value == null) {
+      return false;
+    }
+    lock.lock();
+    try {
+      CacheEntry<V> cacheEntry = liveEntry(key);
+      if (cacheEntry == null || !cacheEntry.value.equals(value)) {
+        return false;
+      }
+      removeEntry(key);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private CacheEntry<V> removeEntry(final Object key) {
+    CacheEntry<V> cacheEntry = entries.remove(key);
+    if (cacheEntry != null) {
+      evictionQueue.remove((K) key);
+      totalWeight -= cacheEntry.weight;
+    }
+    return cacheEntry;
+  }
+
+  @Override
+  public V replace(final K key, final V value) {
+    Objects.requireNonNull(key, "key cannot be null");
+    Objects.requireNonNull(value, "value cannot be null");
+    lock.lock();
+    try {
+      if (liveEntry(key) == null) {
+        return null;
+      }
+      return insert(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean replace(final K key, final V oldValue, final V newValue) {
+    Objects.requireNonNull(key, "key cannot be null");
+    Objects.requireNonNull(oldValue, "oldValue cannot be null");
+    Objects.requireNonNull(newValue, "newValue cannot be null");
+    lock.lock();
+    try {
+      CacheEntry<V> cacheEntry = liveEntry(key);
+      if (cacheEntry == null || !cacheEntry.value.equals(oldValue)) {
+        return false;
+      }
+      insert(key, newValue);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of the live entries. The expired entries are removed first.
+   */
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      purgeExpired();
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
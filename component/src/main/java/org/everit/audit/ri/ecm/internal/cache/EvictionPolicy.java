@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.cache;
+
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+
+/**
+ * The policies that select the entry to be evicted when a {@link BoundedCache} is full.
+ */
+public enum EvictionPolicy {
+
+  /**
+   * Evicts the least frequently used entry. Entries with the same frequency are evicted in least
+   * recently used order.
+   */
+  LFU {
+    @Override
+    <K> EvictionQueue<K> createQueue() {
+      return new LfuEvictionQueue<>();
+    }
+  },
+
+  /**
+   * Evicts the least recently used entry.
+   */
+  LRU {
+    @Override
+    <K> EvictionQueue<K> createQueue() {
+      return new LruEvictionQueue<>();
+    }
+  };
+
+  /**
+   * Returns the policy with the given name.
+   *
+   * @throws IllegalArgumentException
+   *           if there is no policy with the given name.
+   */
+  public static EvictionPolicy fromName(final String name) {
+    if (AuditRiComponentConstants.EVICTION_POLICY_LFU.equalsIgnoreCase(name)) {
+      return LFU;
+    }
+    if (AuditRiComponentConstants.EVICTION_POLICY_LRU.equalsIgnoreCase(name)) {
+      return LRU;
+    }
+    throw new IllegalArgumentException("unknown eviction policy [" + name + "]");
+  }
+
+  abstract <K> EvictionQueue<K> createQueue();
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.cache;
+
+/**
+ * Keeps the keys of a {@link BoundedCache} in eviction order. The implementations are not thread
+ * safe, the cache calls them while it holds its lock.
+ *
+ * @param <K>
+ *          the type of the keys.
+ */
+interface EvictionQueue<K> {
+
+  void add(K key);
+
+  void clear();
+
+  void remove(K key);
+
+  void touch(K key);
+
+  /**
+   * Returns the key of the entry that should be evicted next or <code>null</code> if the queue is
+   * empty.
+   */
+  K victim();
+
+}
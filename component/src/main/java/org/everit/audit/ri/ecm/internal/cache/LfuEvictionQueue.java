@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * {@link EvictionQueue} of the {@link EvictionPolicy#LFU} policy. The keys are grouped into
+ * buckets by their access frequency, so touching a key and selecting the victim costs a
+ * logarithm of the number of distinct frequencies.
+ *
+ * @param <K>
+ *          the type of the keys.
+ */
+class LfuEvictionQueue<K> implements EvictionQueue<K> {
+
+  private final TreeMap<Long, LinkedHashSet<K>> bucketsByFrequency = new TreeMap<>();
+
+  private final Map<K, Long> frequencies = new HashMap<>();
+
+  @Override
+  public void add(final K key) {
+    remove(key);
+    frequencies.put(key, 1L);
+    bucketsByFrequency.computeIfAbsent(1L, (frequency) -> new LinkedHashSet<>()).add(key);
+  }
+
+  @Override
+  public void clear() {
+    frequencies.clear();
+    bucketsByFrequency.clear();
+  }
+
+  @Override
+  public void remove(final K key) {
+    Long frequency = frequencies.remove(key);
+    if (frequency != null) {
+      removeFromBucket(key, frequency);
+    }
+  }
+
+  private void removeFromBucket(final K key, final Long frequency) {
+    LinkedHashSet<K> bucket = bucketsByFrequency.get(frequency);
+    bucket.remove(key);
+    if (bucket.isEmpty()) {
+      bucketsByFrequency.remove(frequency);
+    }
+  }
+
+  @Override
+  public void touch(final K key) {
+    Long frequency = frequencies.get(key);
+    if (frequency == null) {
+      return;
+    }
+    removeFromBucket(key, frequency);
+    Long newFrequency = frequency == Long.MAX_VALUE ? frequency : frequency + 1;
+    frequencies.put(key, newFrequency);
+    bucketsByFrequency.computeIfAbsent(newFrequency, (f) -> new LinkedHashSet<>()).add(key);
+  }
+
+  @Override
+  public K victim() {
+    Entry<Long, LinkedHashSet<K>> lowestBucket = bucketsByFrequency.firstEntry();
+    if (lowestBucket == null) {
+      return null;
+    }
+    return lowestBucket.getValue().iterator().next();
+  }
+
+}
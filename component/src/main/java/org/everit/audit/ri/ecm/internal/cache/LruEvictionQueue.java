@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * {@link EvictionQueue} of the {@link EvictionPolicy#LRU} policy.
+ *
+ * @param <K>
+ *          the type of the keys.
+ */
+class LruEvictionQueue<K> implements EvictionQueue<K> {
+
+  private final LinkedHashSet<K> keys = new LinkedHashSet<>();
+
+  @Override
+  public void add(final K key) {
+    keys.add(key);
+  }
+
+  @Override
+  public void clear() {
+    keys.clear();
+  }
+
+  @Override
+  public void remove(final K key) {
+    keys.remove(key);
+  }
+
+  @Override
+  public void touch(final K key) {
+    if (keys.remove(key)) {
+      keys.add(key);
+    }
+  }
+
+  @Override
+  public K victim() {
+    Iterator<K> iterator = keys.iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+}
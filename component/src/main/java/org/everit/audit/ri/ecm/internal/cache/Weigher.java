@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.cache;
+
+/**
+ * Calculates the weight of a cache entry. The weight of an entry must not change while it is in
+ * the cache.
+ *
+ * @param <K>
+ *          the type of the keys.
+ * @param <V>
+ *          the type of the values.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+  /**
+   * A weigher that weighs every entry to one, so the maximum weight is the maximum size.
+   */
+  @SuppressWarnings("rawtypes")
+  Weigher SINGLETON = (key, value) -> 1;
+
+  /**
+   * Returns the weight of the entry. It must be positive.
+   */
+  long weigh(K key, V value);
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.metrics;
+
+/**
+ * JMX management interface of the audit metrics. The latencies are in milliseconds.
+ */
+public interface AuditMetricsMBean {
+
+  /**
+   * The hit ratio of the cache with the given name, or <code>NaN</code> if the cache does not
+   * exist or was not accessed.
+   */
+  double getCacheHitRatio(String cacheName);
+
+  String[] getCacheNames();
+
+  long getErrorCount(String operationName);
+
+  long getInvocationCount(String operationName);
+
+  double getLatencyPercentile(String operationName, double percentile);
+
+  double getMaxLatency(String operationName);
+
+  double getMeanLatency(String operationName);
+
+  String[] getOperationNames();
+
+  /**
+   * The number of invocations of the operation per second.
+   */
+  double getThroughput(String operationName);
+
+  void reset();
+
+}
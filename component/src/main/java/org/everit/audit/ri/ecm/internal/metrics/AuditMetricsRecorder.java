@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.ri.ecm.AuditCacheStatistics;
+import org.everit.audit.ri.ecm.AuditMetrics;
+import org.everit.audit.ri.ecm.OperationMetrics;
+
+/**
+ * Collects the metrics of the operations of an audit component. Once an operation is known, its
+ * recording does not take any lock.
+ */
+public class AuditMetricsRecorder implements AuditMetrics, AuditMetricsMBean {
+
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final Map<String, AuditCacheStatistics> cacheStatistics = new LinkedHashMap<>();
+
+  private volatile ConcurrentMap<String, OperationRecorder> operationRecorders =
+      new ConcurrentHashMap<>();
+
+  private volatile long startedAt = System.nanoTime();
+
+  /**
+   * Adds the cache to the reported caches if it provides statistics.
+   *
+   * @param cacheName
+   *          the name of the cache reference.
+   */
+  public void addCache(final String cacheName, final Object cache) {
+    if (cache instanceof AuditCacheStatistics) {
+      cacheStatistics.put(cacheName, (AuditCacheStatistics) cache);
+    }
+  }
+
+  @Override
+  public double getCacheHitRatio(final String cacheName) {
+    AuditCacheStatistics statistics = cacheStatistics.get(cacheName);
+    if (statistics == null) {
+      return Double.NaN;
+    }
+    long hitCount = statistics.getHitCount();
+    long requestCount = hitCount + statistics.getMissCount();
+    return requestCount == 0 ? Double.NaN : (double) hitCount / requestCount;
+  }
+
+  @Override
+  public String[] getCacheNames() {
+    return cacheStatistics.keySet().toArray(new String[cacheStatistics.size()]);
+  }
+
+  @Override
+  public Map<String, AuditCacheStatistics> getCacheStatistics() {
+    return Collections.unmodifiableMap(cacheStatistics);
+  }
+
+  @Override
+  public long getErrorCount(final String operationName) {
+    OperationMetrics operationMetrics = getOperationMetrics(operationName);
+    return operationMetrics == null ? 0 : operationMetrics.errorCount;
+  }
+
+  @Override
+  public long getInvocationCount(final String operationName) {
+    OperationMetrics operationMetrics = getOperationMetrics(operationName);
+    return operationMetrics == null ? 0 : operationMetrics.invocationCount;
+  }
+
+  @Override
+  public double getLatencyPercentile(final String operationName, final double percentile) {
+    OperationMetrics operationMetrics = getOperationMetrics(operationName);
+    return operationMetrics == null ? 0
+        : operationMetrics.getLatencyPercentile(percentile) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMaxLatency(final String operationName) {
+    OperationMetrics operationMetrics = getOperationMetrics(operationName);
+    return operationMetrics == null ? 0 : operationMetrics.maxTime / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMeanLatency(final String operationName) {
+    OperationMetrics operationMetrics = getOperationMetrics(operationName);
+    return operationMetrics == null ? 0 : operationMetrics.getMeanTime() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public Map<String, OperationMetrics> getOperationMetrics() {
+    Map<String, OperationMetrics> operationMetrics = new TreeMap<>();
+    for (OperationRecorder operationRecorder : operationRecorders.values()) {
+      OperationMetrics snapshot = operationRecorder.snapshot();
+      operationMetrics.put(snapshot.operationName, snapshot);
+    }
+    return operationMetrics;
+  }
+
+  private OperationMetrics getOperationMetrics(final String operationName) {
+    OperationRecorder operationRecorder = operationRecorders.get(operationName);
+    return operationRecorder == null ? null : operationRecorder.snapshot();
+  }
+
+  @Override
+  public String[] getOperationNames() {
+    return new TreeMap<>(operationRecorders).keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public double getThroughput(final String operationName) {
+    OperationMetrics operationMetrics = getOperationMetrics(operationName);
+    return operationMetrics == null ? 0 : operationMetrics.getThroughput();
+  }
+
+  /**
+   * Records an invocation of the operation.
+   *
+   * @param durationNanos
+   *          the duration of the invocation in nanoseconds.
+   * @param failed
+   *          whether the invocation threw an exception.
+   */
+  public void record(final String operationName, final long durationNanos,
+      final boolean failed) {
+    ConcurrentMap<String, OperationRecorder> recorders = operationRecorders;
+    OperationRecorder operationRecorder = recorders.get(operationName);
+    if (operationRecorder == null) {
+      operationRecorder = recorders.computeIfAbsent(operationName,
+          (name) -> new OperationRecorder(name, startedAt));
+    }
+    operationRecorder.record(durationNanos, failed);
+  }
+
+  @Override
+  public void reset() {
+    startedAt = System.nanoTime();
+    operationRecorders = new ConcurrentHashMap<>();
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Dictionary;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.everit.audit.ri.ecm.AuditMetrics;
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.osgi.ecm.component.ComponentContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Registers an {@link AuditMetricsRecorder} as an {@link AuditMetrics} OSGi service and as an MBean
+ * of the platform MBean server. The name of the MBean contains the service PID of the component.
+ */
+public final class AuditMetricsRegistration {
+
+  private final MBeanServer mbeanServer;
+
+  private final ObjectName objectName;
+
+  private final ServiceRegistration<AuditMetrics> serviceRegistration;
+
+  private AuditMetricsRegistration(final MBeanServer mbeanServer, final ObjectName objectName,
+      final ServiceRegistration<AuditMetrics> serviceRegistration) {
+    this.mbeanServer = mbeanServer;
+    this.objectName = objectName;
+    this.serviceRegistration = serviceRegistration;
+  }
+
+  /**
+   * Registers the recorder with the properties of the component.
+   */
+  public static AuditMetricsRegistration register(final ComponentContext<?> componentContext,
+      final AuditMetricsRecorder recorder, final Dictionary<String, Object> serviceProperties) {
+
+    Object servicePid = serviceProperties.get(Constants.SERVICE_PID);
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName;
+    try {
+      objectName = new ObjectName(AuditRiComponentConstants.METRICS_JMX_DOMAIN
+          + ":type=AuditMetrics,pid=" + ObjectName.quote(String.valueOf(servicePid)));
+      mbeanServer.registerMBean(new StandardMBean(recorder, AuditMetricsMBean.class),
+          objectName);
+    } catch (JMException e) {
+      throw new IllegalStateException("cannot register the audit metrics MBean", e);
+    }
+
+    ServiceRegistration<AuditMetrics> serviceRegistration =
+        componentContext.registerService(AuditMetrics.class, recorder, serviceProperties);
+    return new AuditMetricsRegistration(mbeanServer, objectName, serviceRegistration);
+  }
+
+  /**
+   * Unregisters the OSGi service and the MBean.
+   */
+  public void unregister() {
+    serviceRegistration.unregister();
+    try {
+      mbeanServer.unregisterMBean(objectName);
+    } catch (JMException e) {
+      throw new IllegalStateException("cannot unregister the audit metrics MBean", e);
+    }
+  }
+
+}
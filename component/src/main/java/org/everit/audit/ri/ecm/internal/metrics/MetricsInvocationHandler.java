@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Records the duration and the outcome of every method invocation of a service object by the
+ * simple name of the declaring interface and the name of the method, so the methods with the same
+ * name in different interfaces are recorded separately. The methods of {@link Object} are not
+ * recorded.
+ */
+public final class MetricsInvocationHandler implements InvocationHandler {
+
+  private final AuditMetricsRecorder recorder;
+
+  private final Object target;
+
+  private MetricsInvocationHandler(final Object target, final AuditMetricsRecorder recorder) {
+    this.target = target;
+    this.recorder = recorder;
+  }
+
+  /**
+   * Returns a proxy of the target that implements the given interfaces and records the invocations
+   * to the recorder, or the target itself if the recorder is <code>null</code>.
+   */
+  public static Object instrument(final Object target, final AuditMetricsRecorder recorder,
+      final Class<?>... interfaces) {
+    if (recorder == null) {
+      return target;
+    }
+    return Proxy.newProxyInstance(MetricsInvocationHandler.class.getClassLoader(), interfaces,
+        new MetricsInvocationHandler(target, recorder));
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(target, args);
+    }
+    long startedAt = System.nanoTime();
+    boolean failed = true;
+    try {
+      Object result = method.invoke(target, args);
+      failed = false;
+      return result;
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      recorder.record(method.getDeclaringClass().getSimpleName() + '.' + method.getName(),
+          System.nanoTime() - startedAt, failed);
+    }
+  }
+
+}
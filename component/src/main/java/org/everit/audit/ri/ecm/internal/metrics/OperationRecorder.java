@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.everit.audit.ri.ecm.OperationMetrics;
+
+/**
+ * Records the invocations of one operation. Every counter is striped, so concurrent invocations do
+ * not contend on a shared memory location or a lock.
+ */
+class OperationRecorder {
+
+  private final LongAdder errorCount = new LongAdder();
+
+  private final LongAdder invocationCount = new LongAdder();
+
+  private final LongAdder[] latencyHistogram;
+
+  private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+  private final String operationName;
+
+  private final long startedAt;
+
+  private final LongAdder totalTime = new LongAdder();
+
+  OperationRecorder(final String operationName, final long startedAt) {
+    this.operationName = operationName;
+    this.startedAt = startedAt;
+    latencyHistogram = new LongAdder[OperationMetrics.LATENCY_BUCKET_COUNT];
+    for (int i = 0; i < latencyHistogram.length; i++) {
+      latencyHistogram[i] = new LongAdder();
+    }
+  }
+
+  public void record(final long durationNanos, final boolean failed) {
+    invocationCount.increment();
+    if (failed) {
+      errorCount.increment();
+    }
+    totalTime.add(durationNanos);
+    maxTime.accumulate(durationNanos);
+    latencyHistogram[OperationMetrics.bucketIndexOf(durationNanos)].increment();
+  }
+
+  public OperationMetrics snapshot() {
+    long[] histogram = new long[latencyHistogram.length];
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] = latencyHistogram[i].sum();
+    }
+    return new OperationMetrics(operationName, invocationCount.sum(), errorCount.sum(),
+        totalTime.sum(), maxTime.get(), System.nanoTime() - startedAt, histogram);
+  }
+
+}
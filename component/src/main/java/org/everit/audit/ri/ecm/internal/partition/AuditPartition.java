@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.partition;
+
+import java.time.Instant;
+
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataIndex;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataNameRef;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+
+/**
+ * The event, event_data and event_data_index tables of an audit application in a period. The
+ * query types of the tables use the same variables as the default instances of {@link QEvent},
+ * {@link QEventData}, {@link QEventDataNameRef} and {@link QEventDataIndex}, so the paths of the
+ * default instances can be used in the queries and inserts of the partition.
+ */
+public final class AuditPartition {
+
+  /**
+   * The event_data_index table name prefix of the partitions.
+   */
+  public static final String EVENT_DATA_INDEX_TABLE_PREFIX = "event_data_index_p";
+
+  /**
+   * The event_data table name prefix of the partitions.
+   */
+  public static final String EVENT_DATA_TABLE_PREFIX = "event_data_p";
+
+  /**
+   * The event table name prefix of the partitions.
+   */
+  public static final String EVENT_TABLE_PREFIX = "event_p";
+
+  /**
+   * The event, event_data and event_data_index tables of the audit applications that are not
+   * partitioned.
+   */
+  public static final AuditPartition UNPARTITIONED = new AuditPartition();
+
+  /**
+   * The identifier of the audit application, or <code>null</code> if the tables are not
+   * partitioned.
+   */
+  public final Long applicationId;
+
+  public final QEvent event;
+
+  public final QEventData eventData;
+
+  public final QEventDataIndex eventDataIndex;
+
+  public final QEventDataNameRef eventDataNameRef;
+
+  /**
+   * The exclusive end of the period, or <code>null</code> if the tables are not partitioned.
+   */
+  public final Instant periodEnd;
+
+  /**
+   * The inclusive start of the period, or <code>null</code> if the tables are not partitioned.
+   */
+  public final Instant periodStart;
+
+  /**
+   * The suffix of the table names, or <code>null</code> if the tables are not partitioned.
+   */
+  public final String tableSuffix;
+
+  private AuditPartition() {
+    applicationId = null;
+    event = QEvent.event;
+    eventData = QEventData.eventData;
+    eventDataIndex = QEventDataIndex.eventDataIndex;
+    eventDataNameRef = QEventDataNameRef.eventDataNameRef;
+    periodStart = null;
+    periodEnd = null;
+    tableSuffix = null;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param applicationId
+   *          the identifier of the audit application.
+   * @param periodStart
+   *          the inclusive start of the period.
+   * @param periodEnd
+   *          the exclusive end of the period.
+   * @param tableSuffix
+   *          the suffix of the table names.
+   */
+  public AuditPartition(final long applicationId, final Instant periodStart,
+      final Instant periodEnd, final String tableSuffix) {
+    this.applicationId = applicationId;
+    this.periodStart = periodStart;
+    this.periodEnd = periodEnd;
+    this.tableSuffix = tableSuffix;
+    event = new QEvent(QEvent.event.getMetadata().getName(), null,
+        EVENT_TABLE_PREFIX + tableSuffix);
+    String eventDataVariable = QEventData.eventData.getMetadata().getName();
+    eventData = new QEventData(eventDataVariable, null, EVENT_DATA_TABLE_PREFIX + tableSuffix);
+    eventDataNameRef = new QEventDataNameRef(eventDataVariable, null,
+        EVENT_DATA_TABLE_PREFIX + tableSuffix);
+    eventDataIndex = new QEventDataIndex(QEventDataIndex.eventDataIndex.getMetadata().getName(),
+        null, EVENT_DATA_INDEX_TABLE_PREFIX + tableSuffix);
+  }
+
+  /**
+   * Returns the suffix of the table names of the audit application in the period.
+   *
+   * @param periodSuffix
+   *          the suffix of the period, see {@link PartitionPeriod#tableSuffix(Instant)}.
+   */
+  public static String tableSuffix(final long applicationId, final String periodSuffix) {
+    return applicationId + "_" + periodSuffix;
+  }
+
+  /**
+   * Whether the period of the partition contains the instant.
+   */
+  public boolean contains(final Instant instant) {
+    return !instant.isBefore(periodStart) && instant.isBefore(periodEnd);
+  }
+
+  public String getEventDataIndexTableName() {
+    return eventDataIndex.getTableName();
+  }
+
+  public String getEventDataTableName() {
+    return eventData.getTableName();
+  }
+
+  public String getEventTableName() {
+    return event.getTableName();
+  }
+
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.partition;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditPartition;
+import org.everit.audit.ri.schema.qdsl.QApplication;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.service.log.LogService;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
+
+/**
+ * Manages the per-period event, event_data and event_data_index tables of the partitioned audit
+ * applications. Every audit application has its own partitions, created by the
+ * {@link PartitionTableTemplate} and registered in the audit_partition table. The tables of the
+ * current and the upcoming periods are created ahead of time periodically; the tables of an
+ * earlier period are created when an event of the period is written first. The events older than
+ * the maximum age of their application are rejected one by one instead of being written. An
+ * expired partition is dropped as a whole one maintenance interval after it expired, so the
+ * writers that resolved it before have finished.
+ * The tables are created and dropped outside of the transaction of the caller, because many
+ * databases commit the transaction on DDL statements. The creation and the removal of a partition
+ * are serialized by the lock of the partition only, so the writers of the other partitions are not
+ * blocked by the DDL.
+ */
+public class AuditPartitionManager implements Runnable {
+
+  private final Map<String, Long> applicationMaxAges;
+
+  /**
+   * The registered partitions by their table suffixes.
+   */
+  private final ConcurrentMap<String, AuditPartition> knownPartitions = new ConcurrentHashMap<>();
+
+  private final LogService logService;
+
+  private final long maintenanceInterval;
+
+  private final long maxAge;
+
+  /**
+   * The names of the partitioned audit applications, or <code>null</code> if every audit
+   * application is partitioned.
+   */
+  private final Set<String> partitionedApplicationNames;
+
+  /**
+   * The locks of the partitions by their table suffixes.
+   */
+  private final ConcurrentMap<String, Object> partitionLocks = new ConcurrentHashMap<>();
+
+  private final PartitionPeriod period;
+
+  private final int precreateCount;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final CountDownLatch stopLatch = new CountDownLatch(1);
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   *
+   * @param period
+   *          the length of the periods.
+   * @param partitionedApplications
+   *          the names of the partitioned audit applications separated by commas, or
+   *          {@link AuditRiComponentConstants#PARTITIONED_APPLICATIONS_ALL} if every audit
+   *          application is partitioned.
+   * @param precreateCount
+   *          the number of the periods after the current one whose tables are created ahead of
+   *          time.
+   * @param applicationMaxAges
+   *          the maximum ages of the partitions by the names of their audit applications.
+   * @param maxAge
+   *          the maximum age of the partitions of the other audit applications.
+   * @param maintenanceInterval
+   *          the time in milliseconds between two creations of the upcoming partitions.
+   */
+  public AuditPartitionManager(final PartitionPeriod period,
+      final String partitionedApplications, final int precreateCount,
+      final Map<String, Long> applicationMaxAges, final long maxAge,
+      final long maintenanceInterval, final QuerydslSupport querydslSupport,
+      final TransactionPropagator transactionPropagator, final LogService logService) {
+    this.period = Objects.requireNonNull(period, "period cannot be null");
+    Objects.requireNonNull(partitionedApplications, "partitionedApplications cannot be null");
+    if (precreateCount < 0) {
+      throw new IllegalArgumentException("precreateCount cannot be negative");
+    }
+    Objects.requireNonNull(applicationMaxAges, "applicationMaxAges cannot be null");
+    for (Map.Entry<String, Long> applicationMaxAge : applicationMaxAges.entrySet()) {
+      if (applicationMaxAge.getValue() < 0) {
+        throw new IllegalArgumentException(
+            "the max age of [" + applicationMaxAge.getKey() + "] cannot be negative");
+      }
+    }
+    if (maxAge < 0) {
+      throw new IllegalArgumentException("maxAge cannot be negative");
+    }
+    if (maintenanceInterval <= 0) {
+      throw new IllegalArgumentException("maintenanceInterval must be positive");
+    }
+    if (AuditRiComponentConstants.PARTITIONED_APPLICATIONS_ALL
+        .equals(partitionedApplications.trim())) {
+      partitionedApplicationNames = null;
+    } else {
+      Set<String> applicationNames = new HashSet<>();
+      for (String applicationName : partitionedApplications.split(",")) {
+        if (!applicationName.trim().isEmpty()) {
+          applicationNames.add(applicationName.trim());
+        }
+      }
+      partitionedApplicationNames = Collections.unmodifiableSet(applicationNames);
+    }
+    this.precreateCount = precreateCount;
+    this.applicationMaxAges = new HashMap<>(applicationMaxAges);
+    this.maxAge = maxAge;
+    this.maintenanceInterval = maintenanceInterval;
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+  }
+
+  private static AuditPartition toPartition(final Tuple tuple) {
+    QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+    return new AuditPartition(tuple.get(qAuditPartition.applicationId),
+        tuple.get(qAuditPartition.periodStart).toInstant(),
+        tuple.get(qAuditPartition.periodEnd).toInstant(),
+        tuple.get(qAuditPartition.tableSuffix));
+  }
+
+  private AuditPartition createPartition(final long applicationId, final Instant periodStart) {
+    AuditPartition partition = new AuditPartition(applicationId, periodStart,
+        period.nextPeriodStart(periodStart),
+        AuditPartition.tableSuffix(applicationId, period.tableSuffix(periodStart)));
+    try {
+      transactionPropagator.notSupported(() -> querydslSupport.execute(
+          (connection, configuration) -> {
+            PartitionTableTemplate.createTables(connection, configuration.getTemplates(),
+                partition);
+
+            QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+            new SQLInsertClause(connection, configuration, qAuditPartition)
+                .set(qAuditPartition.applicationId, applicationId)
+                .set(qAuditPartition.periodStart, Timestamp.from(partition.periodStart))
+                .set(qAuditPartition.periodEnd, Timestamp.from(partition.periodEnd))
+                .set(qAuditPartition.tableSuffix, partition.tableSuffix)
+                .set(qAuditPartition.expired, false)
+                .execute();
+            return null;
+          }));
+    } catch (RuntimeException e) {
+      // another node may have created the partition at the same time
+      AuditPartition registeredPartition = readPartition(applicationId, periodStart);
+      if (registeredPartition == null) {
+        throw e;
+      }
+      return registeredPartition;
+    }
+    logService.log(LogService.LOG_INFO,
+        "created audit partition [" + partition.tableSuffix + "]");
+    return partition;
+  }
+
+  /**
+   * Creates the partitions of the current and the upcoming periods of the existing partitioned
+   * audit applications that do not exist yet.
+   */
+  public void createUpcomingPartitions() {
+    QApplication qApplication = QApplication.application;
+    List<Tuple> applications = querydslSupport.execute((connection, configuration) -> {
+      SQLQuery<Tuple> query = new SQLQuery<Void>(connection, configuration)
+          .select(qApplication.applicationId, qApplication.applicationName)
+          .from(qApplication);
+      if (partitionedApplicationNames != null) {
+        if (partitionedApplicationNames.isEmpty()) {
+          return Collections.<Tuple> emptyList();
+        }
+        query.where(qApplication.applicationName.in(partitionedApplicationNames));
+      }
+      return query.fetch();
+    });
+
+    Instant currentPeriodStart = period.periodStart(Instant.now());
+    for (Tuple application : applications) {
+      Instant periodStart = currentPeriodStart;
+      for (int i = 0; i <= precreateCount; i++) {
+        partitionOf(application.get(qApplication.applicationId),
+            application.get(qApplication.applicationName), periodStart);
+        periodStart = period.nextPeriodStart(periodStart);
+      }
+    }
+  }
+
+  /**
+   * Drops the partitions that expired at least one maintenance interval ago. The partition is
+   * marked as expired first, so the readers do not find it any more, then its tables are dropped
+   * and it is removed from the registry. If the drop is interrupted, the next maintenance finishes
+   * it.
+   *
+   * @return the number of dropped partitions.
+   */
+  public int dropExpiredPartitions() {
+    QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+    QApplication qApplication = QApplication.application;
+    List<Tuple> registeredPartitions = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qAuditPartition.applicationId, qAuditPartition.periodStart,
+                qAuditPartition.periodEnd, qAuditPartition.tableSuffix,
+                qAuditPartition.expired, qApplication.applicationName)
+            .from(qAuditPartition)
+            .leftJoin(qApplication)
+            .on(qApplication.applicationId.eq(qAuditPartition.applicationId))
+            .orderBy(qAuditPartition.periodStart.asc())
+            .fetch());
+
+    Instant now = Instant.now();
+    Set<String> registeredTableSuffixes = new HashSet<>();
+    int droppedPartitionCount = 0;
+    for (Tuple registeredPartition : registeredPartitions) {
+      AuditPartition partition = toPartition(registeredPartition);
+      // the partitions of the removed audit applications expire by the default max age
+      long applicationMaxAge = getMaxAge(registeredPartition.get(qApplication.applicationName));
+      boolean expired = registeredPartition.get(qAuditPartition.expired)
+          || (applicationMaxAge > 0 && !partition.periodEnd
+              .isAfter(now.minusMillis(applicationMaxAge + maintenanceInterval)));
+      if (expired) {
+        dropPartition(partition);
+        droppedPartitionCount++;
+      } else {
+        registeredTableSuffixes.add(partition.tableSuffix);
+      }
+    }
+
+    // the partitions dropped by other nodes
+    for (AuditPartition knownPartition : knownPartitions.values()) {
+      if (!registeredTableSuffixes.contains(knownPartition.tableSuffix)) {
+        String tableSuffix = knownPartition.tableSuffix;
+        Object lock = lockOf(tableSuffix);
+        synchronized (lock) {
+          if (knownPartitions.containsKey(tableSuffix) && readPartition(
+              knownPartition.applicationId, knownPartition.periodStart) == null) {
+            knownPartitions.remove(tableSuffix);
+            partitionLocks.remove(tableSuffix, lock);
+          }
+        }
+      }
+    }
+    return droppedPartitionCount;
+  }
+
+  private void dropPartition(final AuditPartition partition) {
+    QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+    BooleanBuilder registryPredicate = new BooleanBuilder()
+        .and(qAuditPartition.applicationId.eq(partition.applicationId))
+        .and(qAuditPartition.periodStart.eq(Timestamp.from(partition.periodStart)));
+    Object lock = lockOf(partition.tableSuffix);
+    synchronized (lock) {
+      knownPartitions.remove(partition.tableSuffix);
+      transactionPropagator.notSupported(() -> querydslSupport.execute(
+          (connection, configuration) -> new SQLUpdateClause(connection, configuration,
+              qAuditPartition)
+                  .set(qAuditPartition.expired, true)
+                  .where(registryPredicate)
+                  .execute()));
+      transactionPropagator.notSupported(() -> querydslSupport.execute(
+          (connection, configuration) -> {
+            PartitionTableTemplate.dropTables(connection, configuration.getTemplates(),
+                partition);
+            return new SQLDeleteClause(connection, configuration, qAuditPartition)
+                .where(registryPredicate)
+                .execute();
+          }));
+      partitionLocks.remove(partition.tableSuffix, lock);
+    }
+    logService.log(LogService.LOG_INFO,
+        "dropped audit partition [" + partition.tableSuffix + "]");
+  }
+
+  /**
+   * Returns the registered partitions of the audit application that overlap the time range, in
+   * the order of their periods.
+   *
+   * @param from
+   *          the inclusive start of the range, or <code>null</code> if the range is not bounded
+   *          from below.
+   * @param to
+   *          the exclusive end of the range, or <code>null</code> if the range is not bounded
+   *          from above.
+   */
+  public List<AuditPartition> findPartitions(final Connection connection,
+      final Configuration configuration, final long applicationId, final Instant from,
+      final Instant to) {
+    QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+    BooleanBuilder predicate = new BooleanBuilder()
+        .and(qAuditPartition.applicationId.eq(applicationId))
+        .and(qAuditPartition.expired.isFalse());
+    if (from != null) {
+      predicate.and(qAuditPartition.periodEnd.gt(Timestamp.from(from)));
+    }
+    if (to != null) {
+      predicate.and(qAuditPartition.periodStart.lt(Timestamp.from(to)));
+    }
+    List<Tuple> tuples = new SQLQuery<Void>(connection, configuration)
+        .select(qAuditPartition.applicationId, qAuditPartition.periodStart,
+            qAuditPartition.periodEnd, qAuditPartition.tableSuffix)
+        .from(qAuditPartition)
+        .where(predicate)
+        .orderBy(qAuditPartition.periodStart.asc())
+        .fetch();
+    List<AuditPartition> partitions = new ArrayList<>(tuples.size());
+    for (Tuple tuple : tuples) {
+      partitions.add(toPartition(tuple));
+    }
+    return partitions;
+  }
+
+  private long getMaxAge(final String applicationName) {
+    Long applicationMaxAge = applicationMaxAges.get(applicationName);
+    return (applicationMaxAge != null) ? applicationMaxAge : maxAge;
+  }
+
+  /**
+   * Whether the events of the audit application are stored in the partitions.
+   */
+  public boolean isPartitioned(final String applicationName) {
+    return partitionedApplicationNames == null
+        || partitionedApplicationNames.contains(applicationName);
+  }
+
+  private Object lockOf(final String tableSuffix) {
+    return partitionLocks.computeIfAbsent(tableSuffix, (key) -> new Object());
+  }
+
+  /**
+   * Logs the events that were rejected, because they are older than the maximum age of the
+   * partitions of their audit application.
+   */
+  public void logExpiredEvents(final String applicationName, final int eventCount) {
+    logService.log(LogService.LOG_WARNING, "rejected " + eventCount + " audit events of ["
+        + applicationName + "] older than the max age of its partitions");
+  }
+
+  /**
+   * Returns the partition of the audit application in the period that contains the instant. The
+   * partition is created if it does not exist yet.
+   *
+   * @return the partition, or <code>null</code> if the period ended before the maximum age of
+   *         the partitions of the audit application.
+   */
+  public AuditPartition partitionOf(final long applicationId, final String applicationName,
+      final Instant instant) {
+    Instant periodStart = period.periodStart(instant);
+    long applicationMaxAge = getMaxAge(applicationName);
+    if (applicationMaxAge > 0 && !period.nextPeriodStart(periodStart)
+        .isAfter(Instant.now().minusMillis(applicationMaxAge))) {
+      return null;
+    }
+    String tableSuffix = AuditPartition.tableSuffix(applicationId,
+        period.tableSuffix(periodStart));
+    AuditPartition partition = knownPartitions.get(tableSuffix);
+    if (partition != null) {
+      return partition;
+    }
+    synchronized (lockOf(tableSuffix)) {
+      partition = knownPartitions.get(tableSuffix);
+      if (partition == null) {
+        partition = readPartition(applicationId, periodStart);
+        if (partition == null) {
+          partition = createPartition(applicationId, periodStart);
+        }
+        knownPartitions.put(tableSuffix, partition);
+      }
+      return partition;
+    }
+  }
+
+  private AuditPartition readPartition(final long applicationId, final Instant periodStart) {
+    return querydslSupport.execute((connection, configuration) -> {
+      QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+      Tuple tuple = new SQLQuery<Void>(connection, configuration)
+          .select(qAuditPartition.applicationId, qAuditPartition.periodStart,
+              qAuditPartition.periodEnd, qAuditPartition.tableSuffix)
+          .from(qAuditPartition)
+          .where(qAuditPartition.applicationId.eq(applicationId),
+              qAuditPartition.periodStart.eq(Timestamp.from(periodStart)),
+              qAuditPartition.expired.isFalse())
+          .fetchOne();
+      return (tuple == null) ? null : toPartition(tuple);
+    });
+  }
+
+  @Override
+  public void run() {
+    try {
+      try {
+        upgradePartitions();
+      } catch (RuntimeException e) {
+        logService.log(LogService.LOG_ERROR, "failed to upgrade the audit partitions", e);
+      }
+      while (stopLatch.getCount() > 0) {
+        try {
+          createUpcomingPartitions();
+          dropExpiredPartitions();
+        } catch (RuntimeException e) {
+          logService.log(LogService.LOG_ERROR, "failed to maintain the audit partitions", e);
+        }
+        stopLatch.await(maintenanceInterval, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Signals the maintenance to stop after the current run.
+   */
+  public void stop() {
+    stopLatch.countDown();
+  }
+
+  /**
+   * Adds the columns that the query types of the base tables got since the partitions were
+   * created to the tables of the registered partitions.
+   */
+  public void upgradePartitions() {
+    QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+    List<Tuple> registeredPartitions = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qAuditPartition.applicationId, qAuditPartition.periodStart,
+                qAuditPartition.periodEnd, qAuditPartition.tableSuffix)
+            .from(qAuditPartition)
+            .where(qAuditPartition.expired.isFalse())
+            .fetch());
+    for (Tuple registeredPartition : registeredPartitions) {
+      AuditPartition partition = toPartition(registeredPartition);
+      transactionPropagator.notSupported(() -> querydslSupport.execute(
+          (connection, configuration) -> {
+            PartitionTableTemplate.addMissingColumns(connection, configuration.getTemplates(),
+                partition);
+            return null;
+          }));
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.partition;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+
+/**
+ * The length of the periods the events are partitioned by. The periods are aligned to UTC.
+ */
+public enum PartitionPeriod {
+
+  /**
+   * One partition per UTC day.
+   */
+  DAY(DateTimeFormatter.ofPattern("yyyyMMdd")) {
+    @Override
+    ZonedDateTime next(final ZonedDateTime periodStart) {
+      return periodStart.plusDays(1);
+    }
+
+    @Override
+    ZonedDateTime truncate(final ZonedDateTime dateTime) {
+      return dateTime.truncatedTo(ChronoUnit.DAYS);
+    }
+  },
+
+  /**
+   * One partition per UTC month.
+   */
+  MONTH(DateTimeFormatter.ofPattern("yyyyMM")) {
+    @Override
+    ZonedDateTime next(final ZonedDateTime periodStart) {
+      return periodStart.plusMonths(1);
+    }
+
+    @Override
+    ZonedDateTime truncate(final ZonedDateTime dateTime) {
+      return dateTime.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+    }
+  };
+
+  private final DateTimeFormatter suffixFormatter;
+
+  PartitionPeriod(final DateTimeFormatter suffixFormatter) {
+    this.suffixFormatter = suffixFormatter;
+  }
+
+  /**
+   * Returns the period with the given name.
+   *
+   * @throws IllegalArgumentException
+   *           if there is no period with the given name.
+   */
+  public static PartitionPeriod fromName(final String name) {
+    if (AuditRiComponentConstants.PARTITION_PERIOD_DAY.equalsIgnoreCase(name)) {
+      return DAY;
+    }
+    if (AuditRiComponentConstants.PARTITION_PERIOD_MONTH.equalsIgnoreCase(name)) {
+      return MONTH;
+    }
+    throw new IllegalArgumentException("unknown partition period [" + name + "]");
+  }
+
+  abstract ZonedDateTime next(ZonedDateTime periodStart);
+
+  /**
+   * Returns the start of the period that follows the period starting at the given instant.
+   */
+  public Instant nextPeriodStart(final Instant periodStart) {
+    return next(periodStart.atZone(ZoneOffset.UTC)).toInstant();
+  }
+
+  /**
+   * Returns the start of the period that contains the given instant.
+   */
+  public Instant periodStart(final Instant instant) {
+    return truncate(instant.atZone(ZoneOffset.UTC)).toInstant();
+  }
+
+  /**
+   * Returns the suffix of the table names of the period starting at the given instant.
+   */
+  public String tableSuffix(final Instant periodStart) {
+    return suffixFormatter.format(periodStart.atZone(ZoneOffset.UTC));
+  }
+
+  abstract ZonedDateTime truncate(ZonedDateTime dateTime);
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.partition;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataIndex;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataName;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataNameRef;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLTemplates;
+
+/**
+ * The DDL of the tables of the partitions. The columns of the tables are the columns of the query
+ * types of the base tables ({@link QEvent}, {@link QEventData} with {@link QEventDataNameRef} and
+ * {@link QEventDataIndex}) with their types and NOT NULL constraints, and the tables have the
+ * primary keys, foreign keys and indexes of the base tables. The identifier columns have no
+ * identity, because the identifiers of the partitioned events are always allocated in blocks.
+ * The event_data_name column is the only exception of the NOT NULL constraints: the rows that
+ * reference their names in the dictionary do not store them, so a check constraint requires one
+ * of the two columns instead.
+ * The columns that the changesets of the base tables add later reach the partitions through the
+ * regenerated query types: they are added to the existing partitions by
+ * {@link #addMissingColumns(Connection, SQLTemplates, AuditPartition)} as nullable columns.
+ */
+final class PartitionTableTemplate {
+
+  private static void addMissingColumns(final Connection connection,
+      final SQLTemplates templates, final String tableName,
+      final Map<String, ColumnMetadata> columns) {
+    Set<String> existingColumnNames = new HashSet<>();
+    try (ResultSet existingColumns =
+        connection.getMetaData().getColumns(null, null, tableName, null)) {
+      while (existingColumns.next()) {
+        existingColumnNames.add(existingColumns.getString("COLUMN_NAME").toLowerCase());
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("cannot read the columns of table [" + tableName + "]",
+          e);
+    }
+    if (existingColumnNames.isEmpty()) {
+      return;
+    }
+    for (ColumnMetadata column : columns.values()) {
+      if (!existingColumnNames.contains(column.getName().toLowerCase())) {
+        // the existing rows have no value for the new column
+        executeDdl(connection, "ALTER TABLE " + templates.quoteIdentifier(tableName)
+            + " ADD " + columnDefinition(templates, column, false));
+      }
+    }
+  }
+
+  /**
+   * Adds the columns of the query types that the tables of the partition do not have yet.
+   */
+  static void addMissingColumns(final Connection connection, final SQLTemplates templates,
+      final AuditPartition partition) {
+    addMissingColumns(connection, templates, partition.getEventTableName(),
+        columnsOf(partition.event));
+    addMissingColumns(connection, templates, partition.getEventDataTableName(),
+        columnsOf(partition.eventData, partition.eventDataNameRef));
+    addMissingColumns(connection, templates, partition.getEventDataIndexTableName(),
+        columnsOf(partition.eventDataIndex));
+  }
+
+  private static String columnDefinition(final SQLTemplates templates,
+      final ColumnMetadata column, final boolean keepNotNull) {
+    if (!column.hasJdbcType()) {
+      throw new IllegalStateException("the type of column [" + column.getName() + "] is unknown");
+    }
+    StringBuilder definition = new StringBuilder(templates.quoteIdentifier(column.getName()))
+        .append(' ').append(templates.getTypeNameForCode(column.getJdbcType()));
+    switch (column.getJdbcType()) {
+      case Types.BINARY:
+      case Types.CHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.VARBINARY:
+      case Types.VARCHAR:
+        if (column.hasSize()) {
+          definition.append('(').append(column.getSize()).append(')');
+        }
+        break;
+      case Types.DECIMAL:
+      case Types.NUMERIC:
+        if (column.hasSize()) {
+          definition.append('(').append(column.getSize());
+          if (column.hasDigits()) {
+            definition.append(", ").append(column.getDigits());
+          }
+          definition.append(')');
+        }
+        break;
+      default:
+        break;
+    }
+    if (keepNotNull && !column.isNullable()) {
+      definition.append(" NOT NULL");
+    }
+    return definition.toString();
+  }
+
+  private static Map<String, ColumnMetadata> columnsOf(final RelationalPath<?>... queryTypes) {
+    Map<String, ColumnMetadata> columns = new LinkedHashMap<>();
+    for (RelationalPath<?> queryType : queryTypes) {
+      for (Path<?> column : queryType.getColumns()) {
+        ColumnMetadata columnMetadata = queryType.getMetadata(column);
+        columns.putIfAbsent(columnMetadata.getName(), columnMetadata);
+      }
+    }
+    return columns;
+  }
+
+  private static String columnList(final SQLTemplates templates, final Path<?>... columns) {
+    StringBuilder columnList = new StringBuilder("(");
+    for (Path<?> column : columns) {
+      if (columnList.length() > 1) {
+        columnList.append(", ");
+      }
+      columnList.append(templates.quoteIdentifier(ColumnMetadata.getName(column)));
+    }
+    return columnList.append(')').toString();
+  }
+
+  private static void createIndex(final Connection connection, final SQLTemplates templates,
+      final String tableName, final String indexName, final Path<?>... columns) {
+    executeDdl(connection, "CREATE INDEX " + templates.quoteIdentifier(indexName) + " ON "
+        + templates.quoteIdentifier(tableName) + " " + columnList(templates, columns));
+  }
+
+  private static void createTable(final Connection connection, final SQLTemplates templates,
+      final String tableName, final Map<String, ColumnMetadata> columns,
+      final List<String> constraints) {
+    StringBuilder ddl = new StringBuilder("CREATE TABLE ")
+        .append(templates.quoteIdentifier(tableName)).append(" (");
+    for (ColumnMetadata column : columns.values()) {
+      ddl.append(columnDefinition(templates, column, true)).append(", ");
+    }
+    ddl.append(String.join(", ", constraints)).append(')');
+    executeDdl(connection, ddl.toString());
+  }
+
+  /**
+   * Creates the tables of the partition that do not exist yet.
+   */
+  static void createTables(final Connection connection, final SQLTemplates templates,
+      final AuditPartition partition) {
+    QEvent qEvent = partition.event;
+    String eventTableName = partition.getEventTableName();
+    if (!tableExists(connection, eventTableName)) {
+      List<String> constraints = new ArrayList<>();
+      constraints.add(primaryKey(templates, "pk_" + eventTableName, qEvent.eventId));
+      constraints.add(foreignKey(templates, "fk_" + eventTableName + "_event_type",
+          QEventType.eventType, qEvent.eventTypeId, QEventType.eventType.eventTypeId));
+      createTable(connection, templates, eventTableName, columnsOf(qEvent), constraints);
+      createIndex(connection, templates, eventTableName, "ix_" + eventTableName + "_occured_at",
+          qEvent.occuredAt, qEvent.eventId);
+    }
+
+    QEventData qEventData = partition.eventData;
+    String eventDataTableName = partition.getEventDataTableName();
+    if (!tableExists(connection, eventDataTableName)) {
+      List<String> constraints = new ArrayList<>();
+      constraints.add(primaryKey(templates, "pk_" + eventDataTableName, qEventData.eventDataId));
+      constraints.add(foreignKey(templates, "fk_" + eventDataTableName + "_event", qEvent,
+          qEventData.eventId, qEvent.eventId));
+      constraints.add(foreignKey(templates, "fk_" + eventDataTableName + "_event_data_name",
+          QEventDataName.eventDataName1, partition.eventDataNameRef.eventDataNameId,
+          QEventDataName.eventDataName1.eventDataNameId));
+      ColumnMetadata nameColumn = qEventData.getMetadata(qEventData.eventDataName);
+      String nameIdColumnName = ColumnMetadata.getName(partition.eventDataNameRef.eventDataNameId);
+      constraints.add("CONSTRAINT "
+          + templates.quoteIdentifier("ck_" + eventDataTableName + "_name") + " CHECK ("
+          + templates.quoteIdentifier(nameColumn.getName()) + " IS NOT NULL OR "
+          + templates.quoteIdentifier(nameIdColumnName) + " IS NOT NULL)");
+      Map<String, ColumnMetadata> columns =
+          columnsOf(qEventData, partition.eventDataNameRef);
+      columns.put(nameColumn.getName(), nullable(nameColumn));
+      createTable(connection, templates, eventDataTableName, columns, constraints);
+      createIndex(connection, templates, eventDataTableName, "ix_" + eventDataTableName
+          + "_event_id", qEventData.eventId);
+    }
+
+    QEventDataIndex qEventDataIndex = partition.eventDataIndex;
+    String indexTableName = partition.getEventDataIndexTableName();
+    if (!tableExists(connection, indexTableName)) {
+      List<String> constraints = new ArrayList<>();
+      constraints.add(primaryKey(templates, "pk_" + indexTableName,
+          qEventDataIndex.eventDataName, qEventDataIndex.stringValue,
+          qEventDataIndex.occuredAt, qEventDataIndex.eventId));
+      createTable(connection, templates, indexTableName, columnsOf(qEventDataIndex),
+          constraints);
+      createIndex(connection, templates, indexTableName, "ix_" + indexTableName + "_event_id",
+          qEventDataIndex.eventId);
+    }
+  }
+
+  /**
+   * Drops the tables of the partition that still exist, the referencing tables first.
+   */
+  static void dropTables(final Connection connection, final SQLTemplates templates,
+      final AuditPartition partition) {
+    for (String tableName : new String[] { partition.getEventDataIndexTableName(),
+        partition.getEventDataTableName(), partition.getEventTableName() }) {
+      if (tableExists(connection, tableName)) {
+        executeDdl(connection, "DROP TABLE " + templates.quoteIdentifier(tableName));
+      }
+    }
+  }
+
+  private static void executeDdl(final Connection connection, final String sql) {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    } catch (SQLException e) {
+      throw new IllegalStateException("cannot execute [" + sql + "]", e);
+    }
+  }
+
+  private static String foreignKey(final SQLTemplates templates, final String constraintName,
+      final RelationalPath<?> referencedTable, final Path<?> column,
+      final Path<?> referencedColumn) {
+    return "CONSTRAINT " + templates.quoteIdentifier(constraintName) + " FOREIGN KEY "
+        + columnList(templates, column) + " REFERENCES "
+        + templates.quoteIdentifier(referencedTable.getTableName()) + " "
+        + columnList(templates, referencedColumn);
+  }
+
+  private static ColumnMetadata nullable(final ColumnMetadata column) {
+    ColumnMetadata nullableColumn =
+        ColumnMetadata.named(column.getName()).withIndex(column.getIndex());
+    if (column.hasJdbcType()) {
+      nullableColumn = nullableColumn.ofType(column.getJdbcType());
+    }
+    if (column.hasSize()) {
+      nullableColumn = nullableColumn.withSize(column.getSize());
+    }
+    if (column.hasDigits()) {
+      nullableColumn = nullableColumn.withDigits(column.getDigits());
+    }
+    return nullableColumn;
+  }
+
+  private static String primaryKey(final SQLTemplates templates, final String constraintName,
+      final Path<?>... columns) {
+    return "CONSTRAINT " + templates.quoteIdentifier(constraintName) + " PRIMARY KEY "
+        + columnList(templates, columns);
+  }
+
+  private static boolean tableExists(final Connection connection, final String tableName) {
+    try (ResultSet tables = connection.getMetaData().getTables(null, null, tableName, null)) {
+      return tables.next();
+    } catch (SQLException e) {
+      throw new IllegalStateException("cannot check the existence of table [" + tableName + "]",
+          e);
+    }
+  }
+
+  private PartitionTableTemplate() {
+  }
+
+}
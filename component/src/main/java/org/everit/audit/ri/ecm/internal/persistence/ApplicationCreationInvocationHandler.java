@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.everit.audit.ri.AuditApplicationManager;
+import org.everit.audit.ri.dto.AuditApplication;
+
+/**
+ * Notifies a listener about the name of the audit application after the successful invocations
+ * of the <code>initAuditApplication</code> methods of the {@link AuditApplicationManager} that
+ * can create the audit application. An invocation cannot create the audit application if it is
+ * in the auditApplicationCache already. The invocations of the other methods are passed to the
+ * target unchanged.
+ */
+public final class ApplicationCreationInvocationHandler implements InvocationHandler {
+
+  private static final String INIT_AUDIT_APPLICATION = "initAuditApplication";
+
+  private final Map<String, AuditApplication> auditApplicationCache;
+
+  private final Consumer<String> creationListener;
+
+  private final Object target;
+
+  private ApplicationCreationInvocationHandler(final Object target,
+      final Map<String, AuditApplication> auditApplicationCache,
+      final Consumer<String> creationListener) {
+    this.target = target;
+    this.auditApplicationCache = auditApplicationCache;
+    this.creationListener = creationListener;
+  }
+
+  /**
+   * Returns a proxy of the target that implements the given interfaces and notifies the listener
+   * when audit applications are created, or the target itself if the listener is
+   * <code>null</code>.
+   */
+  public static Object notifyOnCreation(final Object target,
+      final Map<String, AuditApplication> auditApplicationCache,
+      final Consumer<String> creationListener, final Class<?>... interfaces) {
+    if (creationListener == null) {
+      return target;
+    }
+    return Proxy.newProxyInstance(ApplicationCreationInvocationHandler.class.getClassLoader(),
+        interfaces,
+        new ApplicationCreationInvocationHandler(target, auditApplicationCache, creationListener));
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws Throwable {
+    String applicationName = null;
+    if (method.getDeclaringClass() == AuditApplicationManager.class
+        && INIT_AUDIT_APPLICATION.equals(method.getName()) && args != null && args.length > 0
+        && args[0] instanceof String && !auditApplicationCache.containsKey(args[0])) {
+      applicationName = (String) args[0];
+    }
+
+    Object result;
+    try {
+      result = method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+    if (applicationName != null) {
+      creationListener.accept(applicationName);
+    }
+    return result;
+  }
+
+}
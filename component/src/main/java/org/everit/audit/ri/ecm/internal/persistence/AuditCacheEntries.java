@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.dto.AuditApplication;
+
+/**
+ * Creates the keys and values of the auditApplicationCache and the auditEventTypeCache in the same
+ * form as the audit RI does, so the caches can be shared with it.
+ */
+public final class AuditCacheEntries {
+
+  /**
+   * Creates the value of the auditApplicationCache.
+   */
+  public static AuditApplication createAuditApplication(final long applicationId,
+      final String applicationName, final long resourceId) {
+    return new AuditApplication.Builder()
+        .applicationId(applicationId)
+        .applicationName(applicationName)
+        .resourceId(resourceId)
+        .build();
+  }
+
+  /**
+   * Creates the value of the auditEventTypeCache.
+   */
+  public static AuditEventType createAuditEventType(final long eventTypeId,
+      final String eventTypeName, final long applicationId) {
+    return new AuditEventType.Builder()
+        .eventTypeId(eventTypeId)
+        .eventTypeName(eventTypeName)
+        .applicationId(applicationId)
+        .build();
+  }
+
+  /**
+   * Creates the key of the auditEventTypeCache.
+   */
+  public static CachedEventTypeKey createEventTypeKey(final long applicationId,
+      final String eventTypeName) {
+    return new CachedEventTypeKey(applicationId, eventTypeName);
+  }
+
+  private AuditCacheEntries() {
+  }
+
+}
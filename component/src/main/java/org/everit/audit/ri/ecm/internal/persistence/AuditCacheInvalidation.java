@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.AuditCacheInvalidator;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditCacheChange;
+import org.everit.audit.ri.schema.qdsl.QApplication;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.service.log.LogService;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+/**
+ * Keeps the auditApplicationCache and the auditEventTypeCache of the nodes sharing the audit
+ * database consistent through the audit_cache_change table. The changes of an audit application
+ * are recorded as rows of the table, and every node polls the rows recorded by the other nodes
+ * and evicts only the audit applications named by them, together with their event types.
+ *
+ * <p>
+ * As the identifiers of the rows can be committed out of order and long after they are
+ * allocated, each poll reads the rows above the highest identifier seen so far together with all
+ * rows recorded in the last {@link #LATE_COMMIT_WINDOW}, and skips the rows that are already
+ * processed. A change committed later than the window after it was recorded, e.g. by a long
+ * transaction or on a node with a clock behind by more than the window, is not noticed. The rows
+ * older than a day are deleted by the polls.
+ */
+public class AuditCacheInvalidation implements AuditCacheInvalidator, Runnable {
+
+  /**
+   * The time in milliseconds the change rows are kept for.
+   */
+  private static final long CHANGE_RETENTION = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * The time in milliseconds the change rows are read again by the polls after they are
+   * recorded, so the rows committed later than the rows with higher identifiers are processed.
+   */
+  private static final long LATE_COMMIT_WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+  private final Map<String, AuditApplication> auditApplicationCache;
+
+  private final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache;
+
+  /**
+   * The highest identifier of the change rows seen by the polls. The next poll reads the rows
+   * above it and the rows recorded in the {@link #LATE_COMMIT_WINDOW}.
+   */
+  private long highWatermark;
+
+  private final LogService logService;
+
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private final long pollInterval;
+
+  /**
+   * The identifiers of the processed change rows that are read again by the next poll.
+   */
+  private Set<Long> processedChangeIds = Collections.emptySet();
+
+  private final QuerydslSupport querydslSupport;
+
+  private final CountDownLatch stopLatch = new CountDownLatch(1);
+
+  private final TransactionPropagator transactionPropagator;
+
+  private final UnknownApplicationCache unknownApplicationCache;
+
+  /**
+   * Constructor.
+   *
+   * @param unknownApplicationCache
+   *          the cache of the names of the not existing audit applications, or <code>null</code>.
+   * @param pollInterval
+   *          the time in milliseconds between two polls of the change rows. If it is zero, the
+   *          changes are neither recorded nor polled, only the caches of this node are
+   *          invalidated.
+   */
+  public AuditCacheInvalidation(final Map<String, AuditApplication> auditApplicationCache,
+      final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache,
+      final UnknownApplicationCache unknownApplicationCache, final long pollInterval,
+      final QuerydslSupport querydslSupport, final TransactionPropagator transactionPropagator,
+      final LogService logService) {
+    this.auditApplicationCache = Objects.requireNonNull(auditApplicationCache,
+        "auditApplicationCache cannot be null");
+    this.auditEventTypeCache = Objects.requireNonNull(auditEventTypeCache,
+        "auditEventTypeCache cannot be null");
+    this.unknownApplicationCache = unknownApplicationCache;
+    if (pollInterval < 0) {
+      throw new IllegalArgumentException("pollInterval cannot be negative");
+    }
+    this.pollInterval = pollInterval;
+    this.querydslSupport = Objects.requireNonNull(querydslSupport,
+        "querydslSupport cannot be null");
+    this.transactionPropagator = Objects.requireNonNull(transactionPropagator,
+        "transactionPropagator cannot be null");
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+  }
+
+  private void deleteExpiredChanges() {
+    QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+    Timestamp expiredBefore = Timestamp.from(Instant.now().minusMillis(CHANGE_RETENTION));
+    transactionPropagator.required(() -> querydslSupport.execute(
+        (connection, configuration) -> new SQLDeleteClause(connection, configuration,
+            qAuditCacheChange)
+                .where(qAuditCacheChange.changedAt.lt(expiredBefore))
+                .execute()));
+  }
+
+  /**
+   * Evicts the audit application and its event types from the caches of this node.
+   */
+  private void evictAuditApplication(final String applicationName) {
+    AuditApplication auditApplication = auditApplicationCache.remove(applicationName);
+    if (unknownApplicationCache != null) {
+      unknownApplicationCache.invalidate(applicationName);
+    }
+    Long applicationId = auditApplication != null
+        ? auditApplication.applicationId
+        : selectApplicationId(applicationName);
+    if (applicationId == null) {
+      return;
+    }
+    for (Map.Entry<CachedEventTypeKey, AuditEventType> entry : new ArrayList<>(
+        auditEventTypeCache.entrySet())) {
+      if (entry.getValue().applicationId == applicationId) {
+        auditEventTypeCache.remove(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Marks the changes recorded before the start of this node as processed, so they do not evict
+   * anything.
+   */
+  private void initWatermark() {
+    QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+    Long lastChangeId = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qAuditCacheChange.changeId.max())
+            .from(qAuditCacheChange)
+            .fetchOne());
+    highWatermark = lastChangeId != null ? lastChangeId : 0;
+    Set<Long> changeIds = new HashSet<>();
+    for (Tuple change : selectPolledChanges()) {
+      changeIds.add(change.get(qAuditCacheChange.changeId));
+    }
+    processedChangeIds = changeIds;
+  }
+
+  @Override
+  public void invalidateAuditApplication(final String applicationName) {
+    Objects.requireNonNull(applicationName, "applicationName cannot be null");
+    recordChange(applicationName);
+    evictAuditApplication(applicationName);
+  }
+
+  /**
+   * Evicts the audit applications changed by the other nodes since the last poll.
+   */
+  private void poll() {
+    QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+    List<Tuple> changes = selectPolledChanges();
+
+    Set<String> changedApplicationNames = new HashSet<>();
+    Set<Long> seenChangeIds = new HashSet<>();
+    long maxChangeId = highWatermark;
+    for (Tuple change : changes) {
+      long changeId = change.get(qAuditCacheChange.changeId);
+      seenChangeIds.add(changeId);
+      maxChangeId = Math.max(maxChangeId, changeId);
+      if (!processedChangeIds.contains(changeId)
+          && !nodeId.equals(change.get(qAuditCacheChange.nodeId))) {
+        changedApplicationNames.add(change.get(qAuditCacheChange.applicationName));
+      }
+    }
+    for (String applicationName : changedApplicationNames) {
+      evictAuditApplication(applicationName);
+    }
+
+    highWatermark = maxChangeId;
+    // the rows that are not read again by the next poll do not need to be remembered
+    processedChangeIds = seenChangeIds;
+  }
+
+  /**
+   * Records the change of the audit application for the other nodes in the current transaction,
+   * if the changes are polled.
+   */
+  public void recordChange(final String applicationName) {
+    if (pollInterval == 0) {
+      return;
+    }
+    QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+    transactionPropagator.required(() -> querydslSupport.execute(
+        (connection, configuration) -> new SQLInsertClause(connection, configuration,
+            qAuditCacheChange)
+                .set(qAuditCacheChange.applicationName, applicationName)
+                .set(qAuditCacheChange.nodeId, nodeId)
+                .set(qAuditCacheChange.changedAt, Timestamp.from(Instant.now()))
+                .execute()));
+  }
+
+  private Long selectApplicationId(final String applicationName) {
+    QApplication qApplication = QApplication.application;
+    return querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qApplication.applicationId)
+            .from(qApplication)
+            .where(qApplication.applicationName.eq(applicationName))
+            .fetchOne());
+  }
+
+  /**
+   * Selects the change rows above the {@link #highWatermark} and the rows recorded in the
+   * {@link #LATE_COMMIT_WINDOW}. The second condition is served by the changed_at index.
+   */
+  private List<Tuple> selectPolledChanges() {
+    QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+    Timestamp windowStart = Timestamp.from(Instant.now().minusMillis(LATE_COMMIT_WINDOW));
+    return querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qAuditCacheChange.changeId, qAuditCacheChange.applicationName,
+                qAuditCacheChange.nodeId)
+            .from(qAuditCacheChange)
+            .where(qAuditCacheChange.changeId.gt(highWatermark)
+                .or(qAuditCacheChange.changedAt.goe(windowStart)))
+            .orderBy(qAuditCacheChange.changeId.asc())
+            .fetch());
+  }
+
+  /**
+   * Polls the change rows until {@link #stop()} is called or the thread is interrupted. A failed
+   * poll, including the initialization of the watermark, is logged and retried after the poll
+   * interval. Does nothing if the poll interval is zero.
+   */
+  @Override
+  public void run() {
+    if (pollInterval == 0) {
+      return;
+    }
+    boolean watermarkInitialized = false;
+    try {
+      while (stopLatch.getCount() > 0) {
+        try {
+          if (!watermarkInitialized) {
+            initWatermark();
+            watermarkInitialized = true;
+          }
+          poll();
+          deleteExpiredChanges();
+        } catch (RuntimeException e) {
+          logService.log(LogService.LOG_ERROR,
+              "failed to poll the changes of the audit applications", e);
+        }
+        stopLatch.await(pollInterval, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Signals the polling to stop after the current poll.
+   */
+  public void stop() {
+    stopLatch.countDown();
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditEventTypeUsage;
+import org.everit.audit.ri.schema.qdsl.QApplication;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.osgi.service.log.LogService;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Preloads the audit applications and event types into the auditApplicationCache and the
+ * auditEventTypeCache with one streaming query. The entries already in the caches are not
+ * overwritten. If the number of the loaded event types is limited, the most recently used event
+ * types are selected by the uses recorded by the {@link EventTypeUsageRecorder}, so the events are
+ * not read, wherever they are stored.
+ */
+public class AuditCacheWarmUp implements Runnable {
+
+  private final Map<String, AuditApplication> auditApplicationCache;
+
+  private final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache;
+
+  private volatile boolean cancelled;
+
+  private final int limit;
+
+  private final LogService logService;
+
+  private final QuerydslSupport querydslSupport;
+
+  /**
+   * Constructor.
+   *
+   * @param limit
+   *          the maximum number of event types to load. If it is zero, all the applications and
+   *          event types are loaded, otherwise the most recently used event types and their
+   *          applications. The event types without a recorded use are not loaded then.
+   */
+  public AuditCacheWarmUp(final Map<String, AuditApplication> auditApplicationCache,
+      final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache,
+      final QuerydslSupport querydslSupport, final LogService logService, final int limit) {
+    this.auditApplicationCache = Objects.requireNonNull(auditApplicationCache,
+        "auditApplicationCache cannot be null");
+    this.auditEventTypeCache = Objects.requireNonNull(auditEventTypeCache,
+        "auditEventTypeCache cannot be null");
+    this.querydslSupport = Objects.requireNonNull(querydslSupport,
+        "querydslSupport cannot be null");
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit cannot be negative");
+    }
+    this.limit = limit;
+  }
+
+  /**
+   * Stops the warm-up after the currently processed row.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  private SQLQuery<Tuple> createQuery(final SQLQuery<?> query) {
+    QApplication qApplication = QApplication.application;
+    QEventType qEventType = QEventType.eventType;
+
+    SQLQuery<Tuple> tupleQuery = query.select(qApplication.applicationId,
+        qApplication.applicationName, qApplication.resourceId, qEventType.eventTypeId,
+        qEventType.eventTypeName);
+
+    if (limit == 0) {
+      return tupleQuery
+          .from(qApplication)
+          .leftJoin(qEventType).on(qEventType.applicationId.eq(qApplication.applicationId));
+    }
+
+    // the usage rows are read through the index of their last use
+    QAuditEventTypeUsage qAuditEventTypeUsage = QAuditEventTypeUsage.auditEventTypeUsage;
+    return tupleQuery
+        .from(qAuditEventTypeUsage)
+        .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qAuditEventTypeUsage.eventTypeId))
+        .innerJoin(qApplication).on(qApplication.applicationId.eq(qEventType.applicationId))
+        .orderBy(qAuditEventTypeUsage.lastUsedAt.desc(), qEventType.eventTypeId.desc())
+        .limit(limit);
+  }
+
+  private int[] load() {
+    return querydslSupport.execute((connection, configuration) -> {
+      QApplication qApplication = QApplication.application;
+      QEventType qEventType = QEventType.eventType;
+
+      int applicationCount = 0;
+      int eventTypeCount = 0;
+      try (CloseableIterator<Tuple> tuples =
+          createQuery(new SQLQuery<Void>(connection, configuration)).iterate()) {
+        while (!cancelled && tuples.hasNext()) {
+          Tuple tuple = tuples.next();
+          long applicationId = tuple.get(qApplication.applicationId);
+          String applicationName = tuple.get(qApplication.applicationName);
+
+          if (!auditApplicationCache.containsKey(applicationName)) {
+            auditApplicationCache.putIfAbsent(applicationName,
+                AuditCacheEntries.createAuditApplication(applicationId, applicationName,
+                    tuple.get(qApplication.resourceId)));
+            applicationCount++;
+          }
+
+          Long eventTypeId = tuple.get(qEventType.eventTypeId);
+          if (eventTypeId != null) {
+            String eventTypeName = tuple.get(qEventType.eventTypeName);
+            auditEventTypeCache.putIfAbsent(
+                AuditCacheEntries.createEventTypeKey(applicationId, eventTypeName),
+                AuditCacheEntries.createAuditEventType(eventTypeId, eventTypeName, applicationId));
+            eventTypeCount++;
+          }
+        }
+      }
+      return new int[] { applicationCount, eventTypeCount };
+    });
+  }
+
+  @Override
+  public void run() {
+    long startedAt = System.nanoTime();
+    try {
+      int[] counts = load();
+      long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+      logService.log(LogService.LOG_INFO, "audit cache warm-up "
+          + (cancelled ? "cancelled" : "finished") + " in " + duration + " ms, loaded "
+          + counts[0] + " applications and " + counts[1] + " event types");
+    } catch (RuntimeException e) {
+      logService.log(LogService.LOG_ERROR, "audit cache warm-up failed", e);
+    }
+  }
+
+}
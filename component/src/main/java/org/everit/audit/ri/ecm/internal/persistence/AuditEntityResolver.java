@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.everit.audit.dto.AuditEventType;
+import org.everit.audit.ri.CachedEventTypeKey;
+import org.everit.audit.ri.UnknownAuditApplicationException;
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.schema.qdsl.QApplication;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+import com.querydsl.core.QueryException;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+/**
+ * Resolves audit applications and event types by name through the auditApplicationCache and the
+ * auditEventTypeCache. The cache misses are loaded from the database and put into the caches.
+ *
+ * <p>
+ * The missing event types are created single-flight: the first thread that misses a
+ * {@link CachedEventTypeKey} inserts the event type in its own transaction, the other threads
+ * missing the same key wait for the result of that insert instead of inserting the same row
+ * concurrently and failing on the unique constraint. As the event types are committed
+ * independently of the transaction of the caller, a created event type is kept even if the
+ * transaction of the caller is rolled back.
+ *
+ * <p>
+ * If the audit application was created by the transaction of the caller and is not committed
+ * yet, the new transaction cannot reference it. The event types of such an application are
+ * inserted in the transaction of the caller instead, and they are rolled back together with the
+ * application. No other transaction can create event types for the application until it is
+ * committed, so these inserts cannot collide with other nodes.
+ */
+public class AuditEntityResolver {
+
+  /**
+   * The number of attempts to create the missing event types. More attempts are needed only if
+   * the same event type is inserted concurrently by several nodes.
+   */
+  private static final int MAX_CREATE_ATTEMPTS = 3;
+
+  /**
+   * The maximum number of names in one IN condition or insert batch. Some databases limit the
+   * number of the elements of an IN list to 1000.
+   */
+  static final int SLICE_SIZE = 1000;
+
+  private final Map<String, AuditApplication> auditApplicationCache;
+
+  private final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache;
+
+  /**
+   * The event type creations in progress by the key of the created event type.
+   */
+  private final ConcurrentMap<CachedEventTypeKey, CompletableFuture<Long>> pendingEventTypes =
+      new ConcurrentHashMap<>();
+
+  private final QuerydslSupport querydslSupport;
+
+  private final TransactionPropagator transactionPropagator;
+
+  private final UnknownApplicationCache unknownApplicationCache;
+
+  /**
+   * Constructor.
+   *
+   * @param unknownApplicationCache
+   *          the cache of the names of the audit applications that do not exist, or
+   *          <code>null</code> if every lookup of an unknown audit application queries the
+   *          database.
+   */
+  public AuditEntityResolver(final Map<String, AuditApplication> auditApplicationCache,
+      final Map<CachedEventTypeKey, AuditEventType> auditEventTypeCache,
+      final UnknownApplicationCache unknownApplicationCache,
+      final QuerydslSupport querydslSupport, final TransactionPropagator transactionPropagator) {
+    this.auditApplicationCache = Objects.requireNonNull(auditApplicationCache,
+        "auditApplicationCache cannot be null");
+    this.auditEventTypeCache = Objects.requireNonNull(auditEventTypeCache,
+        "auditEventTypeCache cannot be null");
+    this.querydslSupport = Objects.requireNonNull(querydslSupport,
+        "querydslSupport cannot be null");
+    this.transactionPropagator = Objects.requireNonNull(transactionPropagator,
+        "transactionPropagator cannot be null");
+    this.unknownApplicationCache = unknownApplicationCache;
+  }
+
+  /**
+   * Creates the missing event types. The creation of the event types that are already being
+   * created by another thread is awaited, the rest is inserted by the current thread.
+   */
+  private void createEventTypes(final Connection connection, final Configuration configuration,
+      final long applicationId, final List<String> eventTypeNames,
+      final Map<String, Long> eventTypeIds) {
+    Map<String, CompletableFuture<Long>> ownCreations = new LinkedHashMap<>();
+    Map<String, CompletableFuture<Long>> foreignCreations = new HashMap<>();
+    for (String eventTypeName : eventTypeNames) {
+      CompletableFuture<Long> creation = new CompletableFuture<>();
+      CompletableFuture<Long> pendingCreation = pendingEventTypes.putIfAbsent(
+          AuditCacheEntries.createEventTypeKey(applicationId, eventTypeName), creation);
+      if (pendingCreation == null) {
+        ownCreations.put(eventTypeName, creation);
+      } else {
+        foreignCreations.put(eventTypeName, pendingCreation);
+      }
+    }
+
+    if (!ownCreations.isEmpty()) {
+      try {
+        Map<String, Long> createdEventTypeIds = insertMissingEventTypes(connection,
+            configuration, applicationId, new ArrayList<>(ownCreations.keySet()));
+        Map<CachedEventTypeKey, AuditEventType> createdEventTypes = new HashMap<>();
+        for (Map.Entry<String, Long> entry : createdEventTypeIds.entrySet()) {
+          createdEventTypes.put(
+              AuditCacheEntries.createEventTypeKey(applicationId, entry.getKey()),
+              AuditCacheEntries.createAuditEventType(entry.getValue(), entry.getKey(),
+                  applicationId));
+        }
+        // cached before the creations are removed, so the event types can always be found
+        auditEventTypeCache.putAll(createdEventTypes);
+        eventTypeIds.putAll(createdEventTypeIds);
+        for (Map.Entry<String, CompletableFuture<Long>> entry : ownCreations.entrySet()) {
+          entry.getValue().complete(createdEventTypeIds.get(entry.getKey()));
+        }
+      } catch (RuntimeException e) {
+        for (CompletableFuture<Long> creation : ownCreations.values()) {
+          creation.completeExceptionally(e);
+        }
+        throw e;
+      } finally {
+        for (Map.Entry<String, CompletableFuture<Long>> entry : ownCreations.entrySet()) {
+          pendingEventTypes.remove(
+              AuditCacheEntries.createEventTypeKey(applicationId, entry.getKey()),
+              entry.getValue());
+        }
+      }
+    }
+
+    for (Map.Entry<String, CompletableFuture<Long>> entry : foreignCreations.entrySet()) {
+      try {
+        eventTypeIds.put(entry.getKey(), entry.getValue().join());
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void insertEventTypes(final Connection connection, final Configuration configuration,
+      final long applicationId, final List<String> eventTypeNames) {
+    QEventType qEventType = QEventType.eventType;
+    for (int from = 0; from < eventTypeNames.size(); from += SLICE_SIZE) {
+      List<String> slice =
+          eventTypeNames.subList(from, Math.min(from + SLICE_SIZE, eventTypeNames.size()));
+      SQLInsertClause insert = new SQLInsertClause(connection, configuration, qEventType);
+      for (String eventTypeName : slice) {
+        insert
+            .set(qEventType.applicationId, applicationId)
+            .set(qEventType.eventTypeName, eventTypeName)
+            .addBatch();
+      }
+      insert.execute();
+    }
+  }
+
+  /**
+   * Inserts the event types that do not exist yet and returns the identifiers of all the event
+   * types. The event types are inserted in a new transaction, or in the transaction of the caller
+   * if the audit application is not visible to a new transaction.
+   */
+  private Map<String, Long> insertMissingEventTypes(final Connection connection,
+      final Configuration configuration, final long applicationId,
+      final List<String> eventTypeNames) {
+    Map<String, Long> eventTypeIds = null;
+    for (int attempt = 1; eventTypeIds == null; attempt++) {
+      try {
+        eventTypeIds = transactionPropagator.requiresNew(() -> querydslSupport
+            .execute((newConnection, newConfiguration) -> {
+              if (!isApplicationCommitted(newConnection, newConfiguration, applicationId)) {
+                return Collections.emptyMap();
+              }
+              return selectOrInsertEventTypes(newConnection, newConfiguration, applicationId,
+                  eventTypeNames);
+            }));
+      } catch (QueryException e) {
+        if (attempt >= MAX_CREATE_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+    if (eventTypeIds.isEmpty()) {
+      // the application was created by the transaction of the caller. The failures are not
+      // retried as they can leave the transaction of the caller unusable.
+      eventTypeIds =
+          selectOrInsertEventTypes(connection, configuration, applicationId, eventTypeNames);
+    }
+    return eventTypeIds;
+  }
+
+  private boolean isApplicationCommitted(final Connection connection,
+      final Configuration configuration, final long applicationId) {
+    QApplication qApplication = QApplication.application;
+    return new SQLQuery<Void>(connection, configuration)
+        .select(qApplication.applicationId)
+        .from(qApplication)
+        .where(qApplication.applicationId.eq(applicationId))
+        .fetchFirst() != null;
+  }
+
+  private void loadEventTypes(final Connection connection, final Configuration configuration,
+      final long applicationId, final List<String> eventTypeNames,
+      final Map<String, Long> eventTypeIds) {
+    Map<String, Long> loadedEventTypeIds =
+        selectEventTypeIds(connection, configuration, applicationId, eventTypeNames);
+
+    Map<CachedEventTypeKey, AuditEventType> loadedEventTypes = new HashMap<>();
+    for (Map.Entry<String, Long> entry : loadedEventTypeIds.entrySet()) {
+      loadedEventTypes.put(AuditCacheEntries.createEventTypeKey(applicationId, entry.getKey()),
+          AuditCacheEntries.createAuditEventType(entry.getValue(), entry.getKey(),
+              applicationId));
+    }
+    auditEventTypeCache.putAll(loadedEventTypes);
+    eventTypeIds.putAll(loadedEventTypeIds);
+  }
+
+  /**
+   * Returns the audit application with the given name. The names that were not found recently
+   * are refused from the unknownApplicationCache without querying the database.
+   *
+   * @throws UnknownAuditApplicationException
+   *           if the audit application does not exist.
+   */
+  public AuditApplication resolveAuditApplication(final Connection connection,
+      final Configuration configuration, final String applicationName) {
+    AuditApplication auditApplication = auditApplicationCache.get(applicationName);
+    if (auditApplication != null) {
+      return auditApplication;
+    }
+
+    long lookupVersion = 0;
+    if (unknownApplicationCache != null) {
+      if (unknownApplicationCache.isUnknown(applicationName)) {
+        throw new UnknownAuditApplicationException(applicationName);
+      }
+      lookupVersion = unknownApplicationCache.getVersion();
+    }
+
+    QApplication qApplication = QApplication.application;
+
+    Tuple tuple = new SQLQuery<Tuple>(connection, configuration)
+        .select(qApplication.applicationId, qApplication.resourceId)
+        .from(qApplication)
+        .where(qApplication.applicationName.eq(applicationName))
+        .fetchOne();
+
+    if (tuple == null) {
+      if (unknownApplicationCache != null) {
+        unknownApplicationCache.putUnknown(applicationName, lookupVersion);
+      }
+      throw new UnknownAuditApplicationException(applicationName);
+    }
+
+    auditApplication = AuditCacheEntries.createAuditApplication(
+        tuple.get(qApplication.applicationId), applicationName,
+        tuple.get(qApplication.resourceId));
+    auditApplicationCache.put(applicationName, auditApplication);
+    return auditApplication;
+  }
+
+  /**
+   * Returns the identifiers of the event types of the audit application by their names. The event
+   * types that are not cached are loaded with one query per slice of names, the ones that do not
+   * exist are created single-flight with one batch insert per slice and all loaded event types
+   * are put into the cache at once.
+   */
+  public Map<String, Long> resolveEventTypeIds(final Connection connection,
+      final Configuration configuration, final long applicationId,
+      final Collection<String> eventTypeNames) {
+
+    Map<String, Long> eventTypeIds = new HashMap<>();
+    List<String> uncachedEventTypeNames = new ArrayList<>();
+    for (String eventTypeName : new LinkedHashSet<>(eventTypeNames)) {
+      AuditEventType auditEventType = auditEventTypeCache
+          .get(AuditCacheEntries.createEventTypeKey(applicationId, eventTypeName));
+      if (auditEventType != null) {
+        eventTypeIds.put(eventTypeName, auditEventType.eventTypeId);
+      } else {
+        uncachedEventTypeNames.add(eventTypeName);
+      }
+    }
+    if (uncachedEventTypeNames.isEmpty()) {
+      return eventTypeIds;
+    }
+
+    loadEventTypes(connection, configuration, applicationId, uncachedEventTypeNames,
+        eventTypeIds);
+
+    List<String> missingEventTypeNames = new ArrayList<>();
+    for (String eventTypeName : uncachedEventTypeNames) {
+      if (!eventTypeIds.containsKey(eventTypeName)) {
+        missingEventTypeNames.add(eventTypeName);
+      }
+    }
+    if (!missingEventTypeNames.isEmpty()) {
+      createEventTypes(connection, configuration, applicationId, missingEventTypeNames,
+          eventTypeIds);
+    }
+    return eventTypeIds;
+  }
+
+  private Map<String, Long> selectEventTypeIds(final Connection connection,
+      final Configuration configuration, final long applicationId,
+      final List<String> eventTypeNames) {
+    QEventType qEventType = QEventType.eventType;
+
+    Map<String, Long> eventTypeIds = new HashMap<>();
+    for (int from = 0; from < eventTypeNames.size(); from += SLICE_SIZE) {
+      List<String> slice =
+          eventTypeNames.subList(from, Math.min(from + SLICE_SIZE, eventTypeNames.size()));
+      List<Tuple> tuples = new SQLQuery<Tuple>(connection, configuration)
+          .select(qEventType.eventTypeId, qEventType.eventTypeName)
+          .from(qEventType)
+          .where(qEventType.applicationId.eq(applicationId)
+              .and(qEventType.eventTypeName.in(slice)))
+          .fetch();
+
+      for (Tuple tuple : tuples) {
+        eventTypeIds.put(tuple.get(qEventType.eventTypeName), tuple.get(qEventType.eventTypeId));
+      }
+    }
+    return eventTypeIds;
+  }
+
+  /**
+   * Selects the event types and inserts the ones that do not exist yet.
+   */
+  private Map<String, Long> selectOrInsertEventTypes(final Connection connection,
+      final Configuration configuration, final long applicationId,
+      final List<String> eventTypeNames) {
+    Map<String, Long> eventTypeIds =
+        selectEventTypeIds(connection, configuration, applicationId, eventTypeNames);
+    List<String> missingEventTypeNames = new ArrayList<>();
+    for (String eventTypeName : eventTypeNames) {
+      if (!eventTypeIds.containsKey(eventTypeName)) {
+        missingEventTypeNames.add(eventTypeName);
+      }
+    }
+    if (!missingEventTypeNames.isEmpty()) {
+      insertEventTypes(connection, configuration, applicationId, missingEventTypeNames);
+      eventTypeIds.putAll(selectEventTypeIds(connection, configuration, applicationId,
+          missingEventTypeNames));
+    }
+    return eventTypeIds;
+  }
+
+}
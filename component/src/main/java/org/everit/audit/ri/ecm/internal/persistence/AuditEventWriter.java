@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.EventData;
+import org.everit.audit.ri.ecm.internal.partition.AuditPartition;
+import org.everit.audit.ri.ecm.internal.partition.AuditPartitionManager;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataIndex;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataNameRef;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+/**
+ * Writes audit events and their event data to the database. The event data rows of all the
+ * written events are inserted with one JDBC batch. If an {@link IdBlockAllocator} is available,
+ * the identifiers are allocated before the insert and the event rows are inserted with one JDBC
+ * batch as well, otherwise the event rows are inserted one by one to read their generated keys.
+ * The long TEXT values can be stored compressed by the {@link TextValueCompressor}. If an
+ * {@link AuditPartitionManager} is available, the events of the partitioned audit applications are
+ * written to the tables of the period they occured at, with one JDBC batch per table; the events
+ * older than the maximum age of the partitions are rejected one by one. If an
+ * {@link EventDataNameDictionary} is available, the event data rows reference their names by the
+ * identifiers of the dictionary. The rows of the base event_data table store the names as well,
+ * because the table is read by other tools too; only the rows of the partitions, that are read by
+ * this component alone, leave them out. If an {@link EventDataIndex} is available, the entries of
+ * the indexed event data are inserted with one more JDBC batch per index table.
+ */
+public class AuditEventWriter {
+
+  private final EventDataIndex eventDataIndex;
+
+  private final EventDataNameDictionary eventDataNameDictionary;
+
+  private final IdBlockAllocator idBlockAllocator;
+
+  private final AuditPartitionManager partitionManager;
+
+  private final TextValueCompressor textValueCompressor;
+
+  /**
+   * Constructor.
+   *
+   * @param eventDataIndex
+   *          maintains the lookup of the events by their indexed event data, or <code>null</code>
+   *          if no event data is indexed.
+   * @param eventDataNameDictionary
+   *          encodes the event data names, or <code>null</code> if the names are stored in the
+   *          event data rows.
+   * @param idBlockAllocator
+   *          allocates the identifiers of the rows, or <code>null</code> if the identifiers are
+   *          generated by the database.
+   * @param partitionManager
+   *          resolves the partitions of the events, or <code>null</code> if the events are not
+   *          partitioned. The partitioned layout requires an idBlockAllocator.
+   * @param textValueCompressor
+   *          converts the TEXT event data values to the stored values.
+   */
+  public AuditEventWriter(final EventDataIndex eventDataIndex,
+      final EventDataNameDictionary eventDataNameDictionary,
+      final IdBlockAllocator idBlockAllocator, final AuditPartitionManager partitionManager,
+      final TextValueCompressor textValueCompressor) {
+    if (partitionManager != null && idBlockAllocator == null) {
+      throw new IllegalArgumentException(
+          "the partitioned layout requires block allocated identifiers");
+    }
+    this.eventDataIndex = eventDataIndex;
+    this.eventDataNameDictionary = eventDataNameDictionary;
+    this.idBlockAllocator = idBlockAllocator;
+    this.partitionManager = partitionManager;
+    this.textValueCompressor = Objects.requireNonNull(textValueCompressor,
+        "textValueCompressor cannot be null");
+  }
+
+  private void addEvent(final SQLInsertClause eventInsert, final long eventId,
+      final long eventTypeId, final Timestamp occuredAt) {
+    QEvent qEvent = QEvent.event;
+
+    eventInsert
+        .set(qEvent.eventId, eventId)
+        .set(qEvent.eventTypeId, eventTypeId)
+        .set(qEvent.occuredAt, occuredAt)
+        .addBatch();
+  }
+
+  /**
+   * Adds an event data row to the batch of the insert.
+   *
+   * @param nameStored
+   *          whether the row stores the name even if it references the name in the dictionary.
+   */
+  private void addEventData(final SQLInsertClause eventDataInsert, final Long eventDataId,
+      final long eventId, final EventData eventData, final Map<String, Integer> nameIds,
+      final boolean nameStored) {
+    QEventData qEventData = QEventData.eventData;
+    QEventDataNameRef qEventDataNameRef = QEventDataNameRef.eventDataNameRef;
+
+    if (eventDataId != null) {
+      eventDataInsert.set(qEventData.eventDataId, eventDataId);
+    }
+    eventDataInsert
+        .set(qEventData.eventId, eventId)
+        .set(qEventData.eventDataType, eventData.eventDataType.name());
+
+    Integer nameId = nameIds.get(eventData.eventDataName);
+    if (nameId == null || nameStored) {
+      eventDataInsert.set(qEventData.eventDataName, eventData.eventDataName);
+    } else {
+      eventDataInsert.setNull(qEventData.eventDataName);
+    }
+    if (nameId != null) {
+      eventDataInsert.set(qEventDataNameRef.eventDataNameId, nameId);
+    } else {
+      eventDataInsert.setNull(qEventDataNameRef.eventDataNameId);
+    }
+
+    // every row sets every value column, so all rows share the same statement
+    eventDataInsert.setNull(qEventData.stringValue);
+    eventDataInsert.setNull(qEventData.textValue);
+    eventDataInsert.setNull(qEventData.numberValue);
+    eventDataInsert.setNull(qEventData.timestampValue);
+    switch (eventData.eventDataType) {
+      case STRING:
+        eventDataInsert.set(qEventData.stringValue, eventData.stringValue);
+        break;
+      case TEXT:
+        eventDataInsert.set(qEventData.textValue,
+            textValueCompressor.toStoredValue(eventData.textValue));
+        break;
+      case NUMBER:
+        eventDataInsert.set(qEventData.numberValue, eventData.numberValue);
+        break;
+      case TIMESTAMP:
+        eventDataInsert.set(qEventData.timestampValue, Timestamp.from(eventData.timestampValue));
+        break;
+      default:
+        throw new IllegalStateException(
+            "unsupported eventDataType [" + eventData.eventDataType + "]");
+    }
+    eventDataInsert.addBatch();
+  }
+
+  private SQLInsertClause createIndexInsert(final Connection connection,
+      final Configuration configuration) {
+    if (eventDataIndex == null) {
+      return null;
+    }
+    return new SQLInsertClause(connection, configuration, QEventDataIndex.eventDataIndex);
+  }
+
+  private void executeBatches(final Collection<SQLInsertClause> inserts) {
+    for (SQLInsertClause insert : inserts) {
+      if (insert.getBatchCount() > 0) {
+        insert.execute();
+      }
+    }
+  }
+
+  private void executeIndexInsert(final SQLInsertClause indexInsert) {
+    if (indexInsert != null && indexInsert.getBatchCount() > 0) {
+      indexInsert.execute();
+    }
+  }
+
+  private long insertEvent(final Connection connection, final Configuration configuration,
+      final long eventTypeId, final Timestamp occuredAt) {
+    QEvent qEvent = QEvent.event;
+
+    return new SQLInsertClause(connection, configuration, qEvent)
+        .set(qEvent.eventTypeId, eventTypeId)
+        .set(qEvent.occuredAt, occuredAt)
+        .executeWithKey(qEvent.eventId);
+  }
+
+  private Map<String, Integer> getNameIds(final Collection<AuditEvent> auditEvents) {
+    if (eventDataNameDictionary == null) {
+      return Collections.emptyMap();
+    }
+    Collection<String> eventDataNames = new HashSet<>();
+    for (AuditEvent auditEvent : auditEvents) {
+      for (EventData eventData : auditEvent.eventDataArray) {
+        eventDataNames.add(eventData.eventDataName);
+      }
+    }
+    return eventDataNameDictionary.getNameIds(eventDataNames);
+  }
+
+  private Timestamp occuredAt(final AuditEvent auditEvent) {
+    Instant occuredAt = auditEvent.occuredAt != null ? auditEvent.occuredAt : Instant.now();
+    return Timestamp.from(occuredAt);
+  }
+
+  /**
+   * Writes the audit events.
+   *
+   * @param applicationId
+   *          the identifier of the audit application of the events.
+   * @param applicationName
+   *          the name of the audit application of the events.
+   * @param eventTypeIds
+   *          the identifiers of the event types of the events by their names.
+   */
+  public void writeEvents(final Connection connection, final Configuration configuration,
+      final long applicationId, final String applicationName,
+      final Map<String, Long> eventTypeIds, final Collection<AuditEvent> auditEvents) {
+    Map<String, Integer> nameIds = getNameIds(auditEvents);
+    if (idBlockAllocator != null) {
+      String partitionedApplicationName =
+          (partitionManager != null && partitionManager.isPartitioned(applicationName))
+              ? applicationName
+              : null;
+      writeEventsWithAllocatedIds(connection, configuration, eventTypeIds, auditEvents, nameIds,
+          applicationId, partitionedApplicationName);
+    } else {
+      writeEventsWithGeneratedIds(connection, configuration, eventTypeIds, auditEvents, nameIds);
+    }
+  }
+
+  /**
+   * Writes the audit events with allocated identifiers. The rows are inserted with one JDBC batch
+   * per table; if the events are partitioned, the rows of every partition have their own batches.
+   *
+   * @param partitionedApplicationName
+   *          the name of the audit application if its events are partitioned, otherwise
+   *          <code>null</code>.
+   */
+  private void writeEventsWithAllocatedIds(final Connection connection,
+      final Configuration configuration, final Map<String, Long> eventTypeIds,
+      final Collection<AuditEvent> auditEvents, final Map<String, Integer> nameIds,
+      final long applicationId, final String partitionedApplicationName) {
+
+    int eventDataCount = 0;
+    for (AuditEvent auditEvent : auditEvents) {
+      eventDataCount += auditEvent.eventDataArray.length;
+    }
+    long[] eventIds = idBlockAllocator.allocate(IdSequence.EVENT, auditEvents.size());
+    long[] eventDataIds = idBlockAllocator.allocate(IdSequence.EVENT_DATA, eventDataCount);
+
+    Map<AuditPartition, SQLInsertClause> eventInserts = new LinkedHashMap<>();
+    Map<AuditPartition, SQLInsertClause> eventDataInserts = new LinkedHashMap<>();
+    Map<AuditPartition, SQLInsertClause> indexInserts = new LinkedHashMap<>();
+
+    int eventIndex = 0;
+    int eventDataPosition = 0;
+    int expiredEventCount = 0;
+    AuditPartition partition = AuditPartition.UNPARTITIONED;
+    for (AuditEvent auditEvent : auditEvents) {
+      long eventId = eventIds[eventIndex++];
+      Timestamp occuredAt = occuredAt(auditEvent);
+      if (partitionedApplicationName != null
+          && (partition.periodStart == null || !partition.contains(occuredAt.toInstant()))) {
+        partition = partitionManager.partitionOf(applicationId, partitionedApplicationName,
+            occuredAt.toInstant());
+        if (partition == null) {
+          // only the expired event is rejected, the others of the batch are written
+          partition = AuditPartition.UNPARTITIONED;
+          eventDataPosition += auditEvent.eventDataArray.length;
+          expiredEventCount++;
+          continue;
+        }
+      }
+      SQLInsertClause eventInsert = eventInserts.computeIfAbsent(partition,
+          (key) -> new SQLInsertClause(connection, configuration, key.event));
+      SQLInsertClause eventDataInsert = eventDataInserts.computeIfAbsent(partition,
+          (key) -> new SQLInsertClause(connection, configuration, key.eventData));
+
+      long eventTypeId = eventTypeIds.get(auditEvent.eventTypeName);
+      addEvent(eventInsert, eventId, eventTypeId, occuredAt);
+      for (EventData eventData : auditEvent.eventDataArray) {
+        addEventData(eventDataInsert, eventDataIds[eventDataPosition++], eventId, eventData,
+            nameIds, partition == AuditPartition.UNPARTITIONED);
+      }
+      if (eventDataIndex != null) {
+        SQLInsertClause indexInsert = indexInserts.computeIfAbsent(partition,
+            (key) -> new SQLInsertClause(connection, configuration, key.eventDataIndex));
+        eventDataIndex.addEntries(indexInsert, eventId, eventTypeId, occuredAt,
+            auditEvent.eventDataArray);
+      }
+    }
+
+    executeBatches(eventInserts.values());
+    executeBatches(eventDataInserts.values());
+    executeBatches(indexInserts.values());
+    if (expiredEventCount > 0) {
+      partitionManager.logExpiredEvents(partitionedApplicationName, expiredEventCount);
+    }
+  }
+
+  /**
+   * Writes the audit events. The event rows are inserted one by one because their generated keys
+   * are needed by the event data rows, the event data rows are inserted with one batch.
+   */
+  private void writeEventsWithGeneratedIds(final Connection connection,
+      final Configuration configuration, final Map<String, Long> eventTypeIds,
+      final Collection<AuditEvent> auditEvents, final Map<String, Integer> nameIds) {
+
+    SQLInsertClause eventDataInsert =
+        new SQLInsertClause(connection, configuration, QEventData.eventData);
+    SQLInsertClause indexInsert = createIndexInsert(connection, configuration);
+
+    for (AuditEvent auditEvent : auditEvents) {
+      long eventTypeId = eventTypeIds.get(auditEvent.eventTypeName);
+      Timestamp occuredAt = occuredAt(auditEvent);
+      long eventId = insertEvent(connection, configuration, eventTypeId, occuredAt);
+      for (EventData eventData : auditEvent.eventDataArray) {
+        addEventData(eventDataInsert, null, eventId, eventData, nameIds, true);
+      }
+      if (indexInsert != null) {
+        eventDataIndex.addEntries(indexInsert, eventId, eventTypeId, occuredAt,
+            auditEvent.eventDataArray);
+      }
+    }
+
+    if (eventDataInsert.getBatchCount() > 0) {
+      eventDataInsert.execute();
+    }
+    executeIndexInsert(indexInsert);
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.everit.audit.dto.EventData;
+import org.everit.audit.dto.EventDataType;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataIndex;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+/**
+ * Maintains the event_data_index table, the lookup of the events by the values of their STRING
+ * event data with the configured names. The entries are ordered by the name, the value and the
+ * time the event occured at, so the events of a value in a time range are found with one index
+ * range scan instead of scanning the event_data table.
+ *
+ * <p>
+ * The values that do not fit the index column are not indexed, so they cannot be looked up
+ * either.
+ */
+public class EventDataIndex {
+
+  /**
+   * The maximum length of the indexed names and values, the size of the index columns.
+   */
+  public static final int MAX_VALUE_LENGTH = 255;
+
+  private final Set<String> indexedEventDataNames;
+
+  /**
+   * Constructor.
+   *
+   * @param indexedEventDataNames
+   *          the comma separated names of the indexed event data.
+   * @throws IllegalArgumentException
+   *           if a name is longer than {@link #MAX_VALUE_LENGTH}.
+   */
+  public EventDataIndex(final String indexedEventDataNames) {
+    Set<String> names = new HashSet<>();
+    for (String entry : indexedEventDataNames.split(",")) {
+      String name = entry.trim();
+      if (name.length() > MAX_VALUE_LENGTH) {
+        throw new IllegalArgumentException("the indexed event data name [" + name
+            + "] is longer than " + MAX_VALUE_LENGTH + " characters");
+      }
+      if (!name.isEmpty()) {
+        names.add(name);
+      }
+    }
+    this.indexedEventDataNames = Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * Deletes the entries of the events. Must be called whenever events are deleted, independently
+   * of the indexed names of the actual configuration.
+   */
+  public static void deleteEntries(final Connection connection,
+      final Configuration configuration, final Collection<Long> eventIds) {
+    QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+    new SQLDeleteClause(connection, configuration, qEventDataIndex)
+        .where(qEventDataIndex.eventId.in(eventIds))
+        .execute();
+  }
+
+  /**
+   * Adds the entries of the indexed event data of an event to the batch of the insert. An event
+   * has one entry per distinct name and value.
+   */
+  public void addEntries(final SQLInsertClause indexInsert, final long eventId,
+      final long eventTypeId, final Timestamp occuredAt, final EventData[] eventDataArray) {
+    QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+
+    Set<List<String>> addedEntries = null;
+    for (EventData eventData : eventDataArray) {
+      if (eventData.eventDataType != EventDataType.STRING
+          || !isIndexable(eventData.eventDataName, eventData.stringValue)) {
+        continue;
+      }
+      if (addedEntries == null) {
+        addedEntries = new HashSet<>();
+      }
+      if (!addedEntries.add(Arrays.asList(eventData.eventDataName, eventData.stringValue))) {
+        continue;
+      }
+      indexInsert
+          .set(qEventDataIndex.eventDataName, eventData.eventDataName)
+          .set(qEventDataIndex.stringValue, eventData.stringValue)
+          .set(qEventDataIndex.occuredAt, occuredAt)
+          .set(qEventDataIndex.eventId, eventId)
+          .set(qEventDataIndex.eventTypeId, eventTypeId)
+          .addBatch();
+    }
+  }
+
+  /**
+   * Whether the value of the event data can be looked up through the index.
+   */
+  public boolean isIndexable(final String eventDataName, final String stringValue) {
+    return stringValue != null && stringValue.length() <= MAX_VALUE_LENGTH
+        && indexedEventDataNames.contains(eventDataName);
+  }
+
+  public boolean isIndexed(final String eventDataName) {
+    return indexedEventDataNames.contains(eventDataName);
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataName;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+import com.querydsl.core.QueryException;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+/**
+ * Maps the event data names to the identifiers of the event_data_name table. The resolved
+ * identifiers are interned in a concurrent map, so the names that are already known are looked
+ * up without locking and without database access. The missing names are inserted in their own
+ * transaction, so the identifiers in the map are never rolled back with the transaction of the
+ * caller.
+ *
+ * <p>
+ * The names that do not fit the dictionary column are not encoded, they must be stored in the
+ * event_data row itself.
+ */
+public class EventDataNameDictionary {
+
+  /**
+   * The maximum number of interned names. The identifiers of further names are read from the
+   * database each time, so an unexpected variety of names cannot exhaust the memory.
+   */
+  private static final int MAX_INTERNED_NAMES = 100000;
+
+  /**
+   * The maximum length of the encoded names, the size of the event_data_name column.
+   */
+  private static final int MAX_NAME_LENGTH = 255;
+
+  /**
+   * The number of attempts to resolve the missing names. More attempts are needed only if the
+   * same name is inserted concurrently by several nodes.
+   */
+  private static final int MAX_RESOLVE_ATTEMPTS = 3;
+
+  private final ConcurrentMap<String, Integer> nameIds = new ConcurrentHashMap<>();
+
+  private final QuerydslSupport querydslSupport;
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   */
+  public EventDataNameDictionary(final QuerydslSupport querydslSupport,
+      final TransactionPropagator transactionPropagator) {
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+  }
+
+  /**
+   * Returns the identifiers of the event data names. The names that are not encoded are missing
+   * from the result.
+   */
+  public Map<String, Integer> getNameIds(final Collection<String> eventDataNames) {
+    Map<String, Integer> result = new HashMap<>();
+    Set<String> missingNames = new LinkedHashSet<>();
+    for (String eventDataName : eventDataNames) {
+      if (eventDataName.length() > MAX_NAME_LENGTH) {
+        continue;
+      }
+      Integer nameId = nameIds.get(eventDataName);
+      if (nameId != null) {
+        result.put(eventDataName, nameId);
+      } else {
+        missingNames.add(eventDataName);
+      }
+    }
+    if (!missingNames.isEmpty()) {
+      Map<String, Integer> resolvedIds = resolveMissingNames(missingNames);
+      result.putAll(resolvedIds);
+      if (nameIds.size() < MAX_INTERNED_NAMES) {
+        nameIds.putAll(resolvedIds);
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Integer> resolveMissingNames(final Set<String> missingNames) {
+    for (int attempt = 1;; attempt++) {
+      try {
+        return transactionPropagator.requiresNew(() -> querydslSupport.execute(
+            (connection, configuration) -> {
+              QEventDataName qEventDataName = QEventDataName.eventDataName1;
+
+              Map<String, Integer> resolvedIds = new HashMap<>();
+              List<String> names = new ArrayList<>(missingNames);
+              for (int from = 0; from < names.size(); from += AuditEntityResolver.SLICE_SIZE) {
+                List<String> slice = names.subList(from,
+                    Math.min(from + AuditEntityResolver.SLICE_SIZE, names.size()));
+                for (Tuple tuple : new SQLQuery<Void>(connection, configuration)
+                    .select(qEventDataName.eventDataName, qEventDataName.eventDataNameId)
+                    .from(qEventDataName)
+                    .where(qEventDataName.eventDataName.in(slice))
+                    .fetch()) {
+                  resolvedIds.put(tuple.get(qEventDataName.eventDataName),
+                      tuple.get(qEventDataName.eventDataNameId));
+                }
+              }
+
+              for (String name : names) {
+                if (!resolvedIds.containsKey(name)) {
+                  Integer nameId = new SQLInsertClause(connection, configuration, qEventDataName)
+                      .set(qEventDataName.eventDataName, name)
+                      .executeWithKey(qEventDataName.eventDataNameId);
+                  resolvedIds.put(name, nameId);
+                }
+              }
+              return resolvedIds;
+            }));
+      } catch (QueryException e) {
+        if (attempt >= MAX_RESOLVE_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditEventTypeUsage;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+import com.querydsl.core.QueryException;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
+
+/**
+ * Records the last use of the event types in the audit_event_type_usage table, so the cache
+ * warm-up can select the most recently used event types without reading the events. A node
+ * records the use of an event type at most once in {@link #RECORD_INTERVAL}, so the recording
+ * costs a few statements per event type and hour regardless of the number of logged events.
+ *
+ * <p>
+ * The uses are recorded in their own transaction. A failed recording does not roll back the
+ * logged events, the use is recorded again with the next use of the event type.
+ */
+public class EventTypeUsageRecorder {
+
+  /**
+   * The maximum number of event types the time of the last recording is kept for. If there are
+   * more, the times are forgotten and the next uses are recorded again.
+   */
+  private static final int MAX_TRACKED_EVENT_TYPES = 100000;
+
+  /**
+   * The time in milliseconds the use of an event type is not recorded again for by a node.
+   */
+  private static final long RECORD_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+  private final QuerydslSupport querydslSupport;
+
+  /**
+   * The time of the last recording by the identifiers of the event types.
+   */
+  private final ConcurrentMap<Long, Long> recordedAt = new ConcurrentHashMap<>();
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   */
+  public EventTypeUsageRecorder(final QuerydslSupport querydslSupport,
+      final TransactionPropagator transactionPropagator) {
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+  }
+
+  /**
+   * Claims the recording of the use of the event types that are not recorded in the last
+   * {@link #RECORD_INTERVAL}, so the concurrent callers do not record the same use.
+   */
+  private List<Long> claimRecordings(final Collection<Long> eventTypeIds, final long now) {
+    List<Long> claimedEventTypeIds = new ArrayList<>();
+    for (Long eventTypeId : eventTypeIds) {
+      Long lastRecordedAt = recordedAt.get(eventTypeId);
+      boolean claimed;
+      if (lastRecordedAt == null) {
+        claimed = recordedAt.putIfAbsent(eventTypeId, now) == null;
+      } else {
+        claimed = now - lastRecordedAt >= RECORD_INTERVAL
+            && recordedAt.replace(eventTypeId, lastRecordedAt, now);
+      }
+      if (claimed) {
+        claimedEventTypeIds.add(eventTypeId);
+      }
+    }
+    return claimedEventTypeIds;
+  }
+
+  /**
+   * Records the use of the event types.
+   */
+  public void recordUsage(final Collection<Long> eventTypeIds) {
+    if (recordedAt.size() > MAX_TRACKED_EVENT_TYPES) {
+      recordedAt.clear();
+    }
+    long now = System.currentTimeMillis();
+    List<Long> claimedEventTypeIds = claimRecordings(eventTypeIds, now);
+    if (claimedEventTypeIds.isEmpty()) {
+      return;
+    }
+    // the rows are locked in the same order by all nodes
+    Collections.sort(claimedEventTypeIds);
+    try {
+      transactionPropagator.requiresNew(() -> querydslSupport.execute(
+          (connection, configuration) -> {
+            QAuditEventTypeUsage qAuditEventTypeUsage = QAuditEventTypeUsage.auditEventTypeUsage;
+
+            Timestamp lastUsedAt = new Timestamp(now);
+            for (Long eventTypeId : claimedEventTypeIds) {
+              long updatedCount = new SQLUpdateClause(connection, configuration,
+                  qAuditEventTypeUsage)
+                      .set(qAuditEventTypeUsage.lastUsedAt, lastUsedAt)
+                      .where(qAuditEventTypeUsage.eventTypeId.eq(eventTypeId))
+                      .execute();
+              if (updatedCount == 0) {
+                new SQLInsertClause(connection, configuration, qAuditEventTypeUsage)
+                    .set(qAuditEventTypeUsage.eventTypeId, eventTypeId)
+                    .set(qAuditEventTypeUsage.lastUsedAt, lastUsedAt)
+                    .execute();
+              }
+            }
+            return null;
+          }));
+    } catch (QueryException e) {
+      // e.g. another node inserted the row of the same event type concurrently
+      for (Long eventTypeId : claimedEventTypeIds) {
+        recordedAt.remove(eventTypeId, now);
+      }
+    }
+  }
+
+}
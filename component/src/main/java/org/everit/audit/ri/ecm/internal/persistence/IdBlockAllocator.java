@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.everit.audit.ri.ecm.schema.qdsl.QIdBlock;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+import com.querydsl.core.QueryException;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
+
+/**
+ * Allocates identifiers in memory from blocks that are reserved in the id_block table (hi/lo
+ * allocation). A block is reserved in its own transaction, so the reservation is not rolled back
+ * with the transaction of the caller and the row lock is held only for the time of the
+ * reservation. The identifiers of a rolled back transaction are not reused, so the sequences can
+ * have gaps.
+ *
+ * <p>
+ * The first reservation of a sequence starts after the greatest identifier of its table, so the
+ * allocation can be switched on for a database that already contains events. Once switched on,
+ * all writers of the table must use the allocator.
+ */
+public class IdBlockAllocator {
+
+  /**
+   * The range of identifiers reserved for this allocator.
+   */
+  private static final class IdBlock {
+
+    long end;
+
+    long next;
+
+  }
+
+  /**
+   * The number of attempts to reserve a block. More attempts are needed only if the first
+   * reservation of a sequence is done concurrently by several nodes.
+   */
+  private static final int MAX_RESERVATION_ATTEMPTS = 3;
+
+  private final Map<IdSequence, IdBlock> blocks = new EnumMap<>(IdSequence.class);
+
+  private final int blockSize;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   *
+   * @param blockSize
+   *          the number of identifiers reserved at once.
+   */
+  public IdBlockAllocator(final int blockSize, final QuerydslSupport querydslSupport,
+      final TransactionPropagator transactionPropagator) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be positive");
+    }
+    this.blockSize = blockSize;
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+    for (IdSequence idSequence : IdSequence.values()) {
+      blocks.put(idSequence, new IdBlock());
+    }
+  }
+
+  /**
+   * Returns the given number of unique identifiers of the sequence. The identifiers are increasing
+   * but not necessarily consecutive.
+   */
+  public long[] allocate(final IdSequence idSequence, final int count) {
+    long[] ids = new long[count];
+    IdBlock idBlock = blocks.get(idSequence);
+    synchronized (idBlock) {
+      for (int i = 0; i < count; i++) {
+        if (idBlock.next == idBlock.end) {
+          idBlock.next = reserveBlock(idSequence);
+          idBlock.end = idBlock.next + blockSize;
+        }
+        ids[i] = idBlock.next++;
+      }
+    }
+    return ids;
+  }
+
+  private long reserveBlock(final IdSequence idSequence) {
+    for (int attempt = 1;; attempt++) {
+      try {
+        return transactionPropagator.requiresNew(() -> querydslSupport.execute(
+            (connection, configuration) -> {
+              QIdBlock qIdBlock = QIdBlock.idBlock;
+
+              Long nextValue = new SQLQuery<Long>(connection, configuration)
+                  .select(qIdBlock.nextValue)
+                  .from(qIdBlock)
+                  .where(qIdBlock.blockName.eq(idSequence.blockName))
+                  .forUpdate()
+                  .fetchOne();
+
+              if (nextValue == null) {
+                Long maxId = new SQLQuery<Long>(connection, configuration)
+                    .select(idSequence.idColumn.max())
+                    .from(idSequence.table)
+                    .fetchOne();
+                long start = (maxId == null) ? 1 : maxId + 1;
+                new SQLInsertClause(connection, configuration, qIdBlock)
+                    .set(qIdBlock.blockName, idSequence.blockName)
+                    .set(qIdBlock.nextValue, start + blockSize)
+                    .execute();
+                return start;
+              }
+
+              new SQLUpdateClause(connection, configuration, qIdBlock)
+                  .set(qIdBlock.nextValue, nextValue + blockSize)
+                  .where(qIdBlock.blockName.eq(idSequence.blockName))
+                  .execute();
+              return nextValue;
+            }));
+      } catch (QueryException e) {
+        if (attempt >= MAX_RESERVATION_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+}
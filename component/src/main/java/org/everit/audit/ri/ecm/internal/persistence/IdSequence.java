@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.sql.RelationalPath;
+
+/**
+ * The identifier sequences allocated by the {@link IdBlockAllocator}.
+ */
+public enum IdSequence {
+
+  EVENT("event", QEvent.event, QEvent.event.eventId),
+
+  EVENT_DATA("event_data", QEventData.eventData, QEventData.eventData.eventDataId);
+
+  /**
+   * The name of the row of the sequence in the id_block table.
+   */
+  final String blockName;
+
+  /**
+   * The identifier column of the table, used to start the sequence after the existing rows.
+   */
+  final NumberPath<Long> idColumn;
+
+  final RelationalPath<?> table;
+
+  IdSequence(final String blockName, final RelationalPath<?> table,
+      final NumberPath<Long> idColumn) {
+    this.blockName = blockName;
+    this.table = table;
+    this.idColumn = idColumn;
+  }
+
+}
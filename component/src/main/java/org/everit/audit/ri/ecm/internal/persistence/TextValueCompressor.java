@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import org.everit.audit.ri.ecm.CompressedText;
+
+/**
+ * Decides which TEXT event data values are stored compressed in the {@link CompressedText}
+ * format.
+ */
+public class TextValueCompressor {
+
+  private final int threshold;
+
+  /**
+   * Constructor.
+   *
+   * @param threshold
+   *          the length of the texts in characters from which the texts are compressed, or zero
+   *          if no text is compressed.
+   */
+  public TextValueCompressor(final int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold cannot be negative");
+    }
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns the value to be stored for the text. A long text is stored compressed if it gets
+   * shorter. A text that starts with the {@link CompressedText#MARKER} is always stored compressed,
+   * otherwise it would be mistaken for a compressed value when it is read.
+   */
+  public String toStoredValue(final String text) {
+    if (text == null) {
+      return null;
+    }
+    if (CompressedText.isCompressed(text)) {
+      return CompressedText.compress(text);
+    }
+    if (threshold == 0 || text.length() < threshold) {
+      return text;
+    }
+    String compressedText = CompressedText.compress(text);
+    return (compressedText.length() < text.length()) ? compressedText : text;
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Runs the actions that invalidate cached database state both immediately and after the
+ * completion of the transaction of the current thread. A concurrent reader does not see the
+ * uncommitted changes of the transaction, so it can put the replaced state into the cache after
+ * the immediate run. The run after the completion removes that stale state. The actions are run
+ * after rollbacks as well, as invalidating a cache is always safe.
+ */
+public class TransactionCompletionRunner {
+
+  /**
+   * The runner used without a TransactionSynchronizationRegistry. It runs the actions
+   * immediately only, so a concurrent reader can cache the replaced state until the cache entry
+   * expires, if the caller commits the change in an enclosing transaction.
+   */
+  public static final TransactionCompletionRunner IMMEDIATE = new TransactionCompletionRunner(null);
+
+  private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+  /**
+   * Constructor.
+   *
+   * @param transactionSynchronizationRegistry
+   *          the registry of the transactions, or <code>null</code> to run the actions
+   *          immediately only.
+   */
+  public TransactionCompletionRunner(
+      final TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+    this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+  }
+
+  /**
+   * Runs the action immediately and, if there is an active transaction on the current thread,
+   * after its completion again.
+   */
+  public void runNowAndAfterCompletion(final Runnable action) {
+    action.run();
+    if (transactionSynchronizationRegistry == null
+        || transactionSynchronizationRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+      return;
+    }
+    transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+      @Override
+      public void afterCompletion(final int status) {
+        action.run();
+      }
+
+      @Override
+      public void beforeCompletion() {
+        // the action is run after the changes are visible to the other transactions
+      }
+    });
+  }
+
+}
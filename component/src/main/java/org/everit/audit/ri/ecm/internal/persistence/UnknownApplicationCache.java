@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.everit.audit.ri.ecm.internal.cache.BoundedCache;
+import org.everit.audit.ri.ecm.internal.cache.EvictionPolicy;
+
+/**
+ * Remembers the names of the audit applications that were not found in the database for a
+ * limited time, so the repeated calls with an unknown application name are refused without
+ * querying the database. The creation of an audit application must call
+ * {@link #invalidate(String)}.
+ */
+public class UnknownApplicationCache {
+
+  private final BoundedCache<String, Boolean> unknownApplications;
+
+  /**
+   * Incremented by every invalidation, so a lookup that started before an invalidation does not
+   * put its result into the cache after it.
+   */
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maximumSize
+   *          the maximum number of cached application names.
+   * @param timeToLive
+   *          the time in milliseconds an application name is cached for.
+   */
+  public UnknownApplicationCache(final long maximumSize, final long timeToLive) {
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("timeToLive must be positive");
+    }
+    unknownApplications = new BoundedCache<>(maximumSize, EvictionPolicy.LRU, timeToLive);
+  }
+
+  /**
+   * Returns the cache of the unknown application names, e.g. to read its statistics.
+   */
+  public BoundedCache<?, ?> getUnknownApplications() {
+    return unknownApplications;
+  }
+
+  long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Drops the application name from the cache.
+   */
+  public void invalidate(final String applicationName) {
+    version.incrementAndGet();
+    unknownApplications.remove(applicationName);
+  }
+
+  boolean isUnknown(final String applicationName) {
+    return unknownApplications.get(applicationName) != null;
+  }
+
+  void putUnknown(final String applicationName, final long lookupVersion) {
+    if (version.get() != lookupVersion) {
+      return;
+    }
+    unknownApplications.put(applicationName, Boolean.TRUE);
+    if (version.get() != lookupVersion) {
+      // invalidated concurrently
+      unknownApplications.remove(applicationName, Boolean.TRUE);
+    }
+  }
+
+}
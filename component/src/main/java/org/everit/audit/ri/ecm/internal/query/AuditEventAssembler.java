@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.query;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.EventDataType;
+import org.everit.audit.ri.ecm.CompressedText;
+import org.everit.audit.ri.ecm.StoredAuditEvent;
+import org.everit.audit.ri.ecm.internal.partition.AuditPartition;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataName;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataNameRef;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Groups the joined event and event data rows into {@link StoredAuditEvent}s as the rows arrive.
+ * The rows of an event must be consecutive. The event data name is read from the event_data row
+ * or, if the row references the name dictionary, from the joined event_data_name row.
+ */
+public class AuditEventAssembler {
+
+  /**
+   * The columns of the rows the assembler expects.
+   */
+  private static final Expression<?>[] COLUMNS;
+
+  /**
+   * The name of the event data, stored in the event_data row or in the dictionary.
+   */
+  private static final StringExpression EVENT_DATA_NAME = QEventData.eventData.eventDataName
+      .coalesce(QEventDataName.eventDataName1.eventDataName).asString();
+
+  static {
+    QEvent qEvent = QEvent.event;
+    QEventType qEventType = QEventType.eventType;
+    QEventData qEventData = QEventData.eventData;
+    COLUMNS = new Expression<?>[] {
+        qEvent.eventId,
+        qEvent.occuredAt,
+        qEventType.eventTypeName,
+        EVENT_DATA_NAME,
+        qEventData.eventDataType,
+        qEventData.stringValue,
+        qEventData.textValue,
+        qEventData.numberValue,
+        qEventData.timestampValue };
+  }
+
+  /**
+   * The event data read from a row, with the TEXT value in its stored form.
+   */
+  private static final class EventDataRow {
+
+    final String eventDataName;
+
+    final EventDataType eventDataType;
+
+    final Object value;
+
+    EventDataRow(final String eventDataName, final EventDataType eventDataType,
+        final Object value) {
+      this.eventDataName = eventDataName;
+      this.eventDataType = eventDataType;
+      this.value = value;
+    }
+
+  }
+
+  private final String applicationName;
+
+  private final Consumer<StoredAuditEvent> consumer;
+
+  private long count;
+
+  private List<EventDataRow> eventDataRows;
+
+  private long eventId;
+
+  private String eventTypeName;
+
+  private Instant occuredAt;
+
+  /**
+   * Constructor.
+   *
+   * @param applicationName
+   *          the name of the audit application of the events.
+   * @param consumer
+   *          receives the assembled events.
+   */
+  public AuditEventAssembler(final String applicationName,
+      final Consumer<StoredAuditEvent> consumer) {
+    this.applicationName = applicationName;
+    this.consumer = consumer;
+  }
+
+  private static AuditEvent createAuditEvent(final String eventTypeName,
+      final Instant occuredAt, final List<EventDataRow> eventDataRows) {
+    AuditEvent.Builder builder = new AuditEvent.Builder()
+        .eventTypeName(eventTypeName)
+        .occuredAt(occuredAt);
+    for (EventDataRow eventDataRow : eventDataRows) {
+      String eventDataName = eventDataRow.eventDataName;
+      switch (eventDataRow.eventDataType) {
+        case STRING:
+          builder.addStringEventData(eventDataName, (String) eventDataRow.value);
+          break;
+        case TEXT:
+          builder.addTextEventData(eventDataName, false,
+              CompressedText.decompress((String) eventDataRow.value));
+          break;
+        case NUMBER:
+          builder.addNumberEventData(eventDataName, (Double) eventDataRow.value);
+          break;
+        case TIMESTAMP:
+          builder.addTimestampEventData(eventDataName, (Instant) eventDataRow.value);
+          break;
+        default:
+          throw new IllegalStateException(
+              "unsupported eventDataType [" + eventDataRow.eventDataType + "]");
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Creates the query of the rows of the events that match the predicate in the order the
+   * assembler expects them. The predicate can reference the event and the event type.
+   */
+  public static SQLQuery<Tuple> createQuery(final Connection connection,
+      final Configuration configuration, final Predicate predicate) {
+    return createQuery(connection, configuration, AuditPartition.UNPARTITIONED, predicate);
+  }
+
+  /**
+   * Creates the query of the rows of the events of the partition that match the predicate in the
+   * order the assembler expects them. The predicate can reference the event and the event type
+   * through the default query types.
+   */
+  public static SQLQuery<Tuple> createQuery(final Connection connection,
+      final Configuration configuration, final AuditPartition partition,
+      final Predicate predicate) {
+    QEvent qEvent = QEvent.event;
+    QEventType qEventType = QEventType.eventType;
+    QEventData qEventData = QEventData.eventData;
+    QEventDataNameRef qEventDataNameRef = QEventDataNameRef.eventDataNameRef;
+    QEventDataName qEventDataName = QEventDataName.eventDataName1;
+
+    return new SQLQuery<Void>(connection, configuration)
+        .select(COLUMNS)
+        .from(partition.event)
+        .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+        .leftJoin(partition.eventData).on(qEventData.eventId.eq(qEvent.eventId))
+        .leftJoin(qEventDataName)
+        .on(qEventDataName.eventDataNameId.eq(qEventDataNameRef.eventDataNameId))
+        .where(predicate)
+        .orderBy(qEvent.occuredAt.asc(), qEvent.eventId.asc(), qEventData.eventDataId.asc());
+  }
+
+  /**
+   * Adds the event data of the row to the current event. If the row belongs to a new event, the
+   * current event is passed to the consumer first.
+   */
+  public void accept(final Tuple tuple) {
+    QEvent qEvent = QEvent.event;
+    QEventType qEventType = QEventType.eventType;
+    QEventData qEventData = QEventData.eventData;
+
+    long rowEventId = tuple.get(qEvent.eventId);
+    if (eventDataRows == null || rowEventId != eventId) {
+      flush();
+      eventId = rowEventId;
+      eventTypeName = tuple.get(qEventType.eventTypeName);
+      occuredAt = tuple.get(qEvent.occuredAt).toInstant();
+      eventDataRows = new ArrayList<>();
+    }
+
+    String eventDataName = tuple.get(EVENT_DATA_NAME);
+    if (eventDataName == null) {
+      // event without event data
+      return;
+    }
+    EventDataType eventDataType = EventDataType.valueOf(tuple.get(qEventData.eventDataType));
+    Object value;
+    switch (eventDataType) {
+      case STRING:
+        value = tuple.get(qEventData.stringValue);
+        break;
+      case TEXT:
+        // decompressed only when the audit event is requested
+        value = tuple.get(qEventData.textValue);
+        break;
+      case NUMBER:
+        value = tuple.get(qEventData.numberValue);
+        break;
+      case TIMESTAMP:
+        Timestamp timestampValue = tuple.get(qEventData.timestampValue);
+        value = timestampValue.toInstant();
+        break;
+      default:
+        throw new IllegalStateException("unsupported eventDataType [" + eventDataType + "]");
+    }
+    eventDataRows.add(new EventDataRow(eventDataName, eventDataType, value));
+  }
+
+  /**
+   * Passes the current event to the consumer.
+   */
+  public void flush() {
+    if (eventDataRows != null) {
+      String currentEventTypeName = eventTypeName;
+      Instant currentOccuredAt = occuredAt;
+      List<EventDataRow> currentEventDataRows = eventDataRows;
+      consumer.accept(new StoredAuditEvent(eventId, applicationName, currentEventTypeName,
+          currentOccuredAt,
+          () -> createAuditEvent(currentEventTypeName, currentOccuredAt, currentEventDataRows)));
+      eventDataRows = null;
+      count++;
+    }
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+}
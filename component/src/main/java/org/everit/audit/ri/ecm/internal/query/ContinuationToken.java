@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.query;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * The position of the last event of a page. It is passed to the clients as an opaque, URL-safe
+ * string so the format can change without breaking the API.
+ */
+final class ContinuationToken {
+
+  private static final int LENGTH = Byte.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES;
+
+  private static final byte VERSION = 1;
+
+  final long eventId;
+
+  final Instant occuredAt;
+
+  ContinuationToken(final Instant occuredAt, final long eventId) {
+    this.occuredAt = occuredAt;
+    this.eventId = eventId;
+  }
+
+  /**
+   * Decodes a token created by {@link #encode()}.
+   *
+   * @throws IllegalArgumentException
+   *           if the token is malformed.
+   */
+  static ContinuationToken decode(final String token) {
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("invalid continuation token [" + token + "]", e);
+    }
+    if (buffer.remaining() != LENGTH || buffer.get() != VERSION) {
+      throw new IllegalArgumentException("invalid continuation token [" + token + "]");
+    }
+    try {
+      long epochSecond = buffer.getLong();
+      int nanos = buffer.getInt();
+      long eventId = buffer.getLong();
+      return new ContinuationToken(Instant.ofEpochSecond(epochSecond, nanos), eventId);
+    } catch (DateTimeException e) {
+      throw new IllegalArgumentException("invalid continuation token [" + token + "]", e);
+    }
+  }
+
+  String encode() {
+    ByteBuffer buffer = ByteBuffer.allocate(LENGTH)
+        .put(VERSION)
+        .putLong(occuredAt.getEpochSecond())
+        .putInt(occuredAt.getNano())
+        .putLong(eventId);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.query;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+
+/**
+ * Sets the fetch size of the statements of a query, so the JDBC driver reads the result set
+ * through a cursor instead of loading all rows into memory.
+ */
+class FetchSizeListener extends SQLBaseListener {
+
+  private final int fetchSize;
+
+  FetchSizeListener(final int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  @Override
+  public void prepared(final SQLListenerContext context) {
+    PreparedStatement preparedStatement = context.getPreparedStatement();
+    if (preparedStatement == null) {
+      return;
+    }
+    try {
+      preparedStatement.setFetchSize(fetchSize);
+    } catch (SQLException e) {
+      throw new IllegalStateException("cannot set the fetch size of the statement", e);
+    }
+  }
+
+}
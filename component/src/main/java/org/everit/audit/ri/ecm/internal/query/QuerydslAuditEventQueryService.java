@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.query;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.AuditEventPage;
+import org.everit.audit.ri.ecm.AuditEventQuery;
+import org.everit.audit.ri.ecm.AuditEventQueryService;
+import org.everit.audit.ri.ecm.AuditRiEcmPermissionConstants;
+import org.everit.audit.ri.ecm.StoredAuditEvent;
+import org.everit.audit.ri.ecm.internal.partition.AuditPartition;
+import org.everit.audit.ri.ecm.internal.partition.AuditPartitionManager;
+import org.everit.audit.ri.ecm.internal.persistence.AuditEntityResolver;
+import org.everit.audit.ri.ecm.internal.persistence.EventDataIndex;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataIndex;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+import org.everit.authnr.permissionchecker.AuthnrPermissionChecker;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * {@link AuditEventQueryService} that reads the events with Querydsl. The events of the
+ * partitioned audit applications are read from the partitions that overlap the time range of the
+ * query, one partition after the other in the order of their periods. The queries that filter by
+ * a STRING event data select the events through the event_data_index table, so they scan only
+ * the index entries of the value in the time range of the query.
+ */
+public class QuerydslAuditEventQueryService implements AuditEventQueryService {
+
+  private final AuditEntityResolver auditEntityResolver;
+
+  private final AuthnrPermissionChecker authnrPermissionChecker;
+
+  private final EventDataIndex eventDataIndex;
+
+  private final int fetchSize;
+
+  private final AuditPartitionManager partitionManager;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   *
+   * @param eventDataIndex
+   *          the lookup of the events by their indexed event data, or <code>null</code> if no
+   *          event data is indexed.
+   * @param partitionManager
+   *          resolves the partitions of the events, or <code>null</code> if the events are not
+   *          partitioned.
+   * @param fetchSize
+   *          the number of rows the JDBC driver fetches from the cursor at once.
+   */
+  public QuerydslAuditEventQueryService(final AuditEntityResolver auditEntityResolver,
+      final AuthnrPermissionChecker authnrPermissionChecker, final EventDataIndex eventDataIndex,
+      final AuditPartitionManager partitionManager, final QuerydslSupport querydslSupport,
+      final TransactionPropagator transactionPropagator, final int fetchSize) {
+    if (fetchSize <= 0) {
+      throw new IllegalArgumentException("fetchSize must be positive");
+    }
+    this.auditEntityResolver = auditEntityResolver;
+    this.authnrPermissionChecker = authnrPermissionChecker;
+    this.eventDataIndex = eventDataIndex;
+    this.partitionManager = partitionManager;
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Checks whether the event data the query filters by can be looked up through the index.
+   */
+  private void checkIndexed(final AuditEventQuery query) {
+    String eventDataName = query.stringEventDataName;
+    if (eventDataName == null) {
+      return;
+    }
+    if (eventDataIndex == null || !eventDataIndex.isIndexed(eventDataName)) {
+      throw new IllegalArgumentException("event data [" + eventDataName + "] is not indexed");
+    }
+    if (!eventDataIndex.isIndexable(eventDataName, query.stringEventDataValue)) {
+      throw new IllegalArgumentException("only the values of at most "
+          + EventDataIndex.MAX_VALUE_LENGTH + " characters are indexed");
+    }
+  }
+
+  /**
+   * Creates the predicate of the event type and the time range of the query.
+   *
+   * @param occuredAt
+   *          the column the time range is applied to.
+   */
+  private BooleanBuilder createPredicate(final AuditEventQuery query, final long applicationId,
+      final DateTimePath<Timestamp> occuredAt) {
+    QEventType qEventType = QEventType.eventType;
+
+    BooleanBuilder predicate = new BooleanBuilder(qEventType.applicationId.eq(applicationId));
+    String[] eventTypeNames = query.getEventTypeNames();
+    if (eventTypeNames.length > 0) {
+      predicate.and(qEventType.eventTypeName.in(eventTypeNames));
+    }
+    return predicate.and(createRangePredicate(query, occuredAt));
+  }
+
+  private BooleanBuilder createRangePredicate(final AuditEventQuery query,
+      final DateTimePath<Timestamp> occuredAt) {
+    BooleanBuilder predicate = new BooleanBuilder();
+    if (query.occuredAtFrom != null) {
+      predicate.and(occuredAt.goe(Timestamp.from(query.occuredAtFrom)));
+    }
+    if (query.occuredAtTo != null) {
+      predicate.and(occuredAt.lt(Timestamp.from(query.occuredAtTo)));
+    }
+    return predicate;
+  }
+
+  private BooleanExpression createValuePredicate(final AuditEventQuery query) {
+    QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+    return qEventDataIndex.eventDataName.eq(query.stringEventDataName)
+        .and(qEventDataIndex.stringValue.eq(query.stringEventDataValue));
+  }
+
+  @Override
+  public AuditEventPage findEvents(final AuditEventQuery query, final String continuationToken,
+      final int pageSize) {
+    Objects.requireNonNull(query, "query cannot be null");
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("pageSize must be positive");
+    }
+    checkIndexed(query);
+    ContinuationToken position = (continuationToken == null)
+        ? null
+        : ContinuationToken.decode(continuationToken);
+
+    return transactionPropagator.required(() -> querydslSupport.execute(
+        (connection, configuration) -> {
+          AuditApplication auditApplication = resolveReadableAuditApplication(connection,
+              configuration, query.applicationName);
+
+          QEvent qEvent = QEvent.event;
+          QEventType qEventType = QEventType.eventType;
+          QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+
+          // the index entries have the keyset of their events, so the index drives the query
+          boolean indexed = query.stringEventDataName != null;
+          DateTimePath<Timestamp> occuredAt =
+              indexed ? qEventDataIndex.occuredAt : qEvent.occuredAt;
+          NumberPath<Long> eventId = indexed ? qEventDataIndex.eventId : qEvent.eventId;
+
+          BooleanBuilder predicate =
+              createPredicate(query, auditApplication.applicationId, occuredAt);
+          if (indexed) {
+            predicate.and(createValuePredicate(query));
+          }
+          if (position != null) {
+            Timestamp lastOccuredAt = Timestamp.from(position.occuredAt);
+            // the redundant lower bound lets the database seek on the occured_at index
+            predicate.and(occuredAt.goe(lastOccuredAt))
+                .and(occuredAt.gt(lastOccuredAt)
+                    .or(occuredAt.eq(lastOccuredAt)
+                        .and(eventId.gt(position.eventId))));
+          }
+
+          Instant from = query.occuredAtFrom;
+          if (position != null && (from == null || position.occuredAt.isAfter(from))) {
+            from = position.occuredAt;
+          }
+
+          // one more event is selected to know whether there is a next page
+          Map<AuditPartition, List<Long>> eventIdsByPartition = new LinkedHashMap<>();
+          int eventCount = 0;
+          for (AuditPartition partition : resolvePartitions(connection, configuration,
+              auditApplication, from, query.occuredAtTo)) {
+            SQLQuery<Long> eventIdQuery = new SQLQuery<Void>(connection, configuration)
+                .select(eventId);
+            if (indexed) {
+              eventIdQuery.from(partition.eventDataIndex)
+                  .innerJoin(partition.event).on(qEvent.eventId.eq(qEventDataIndex.eventId));
+            } else {
+              eventIdQuery.from(partition.event);
+            }
+            List<Long> eventIds = eventIdQuery
+                .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+                .where(predicate)
+                .orderBy(occuredAt.asc(), eventId.asc())
+                .limit(pageSize + 1L - eventCount)
+                .fetch();
+            if (!eventIds.isEmpty()) {
+              eventIdsByPartition.put(partition, eventIds);
+              eventCount += eventIds.size();
+            }
+            if (eventCount > pageSize) {
+              eventIds.remove(eventIds.size() - 1);
+              break;
+            }
+          }
+          boolean hasNextPage = eventCount > pageSize;
+
+          List<StoredAuditEvent> events = new ArrayList<>(Math.min(eventCount, pageSize));
+          AuditEventAssembler assembler =
+              new AuditEventAssembler(query.applicationName, events::add);
+          for (Map.Entry<AuditPartition, List<Long>> partitionEventIds : eventIdsByPartition
+              .entrySet()) {
+            if (partitionEventIds.getValue().isEmpty()) {
+              continue;
+            }
+            for (Tuple tuple : AuditEventAssembler.createQuery(connection, configuration,
+                partitionEventIds.getKey(), qEvent.eventId.in(partitionEventIds.getValue()))
+                .fetch()) {
+              assembler.accept(tuple);
+            }
+          }
+          assembler.flush();
+
+          String nextContinuationToken = null;
+          if (hasNextPage) {
+            StoredAuditEvent lastEvent = events.get(events.size() - 1);
+            nextContinuationToken =
+                new ContinuationToken(lastEvent.occuredAt, lastEvent.eventId).encode();
+          }
+          return new AuditEventPage(events, nextContinuationToken);
+        }));
+  }
+
+  /**
+   * Returns the partitions of the application that overlap the time range, or the unpartitioned
+   * tables if the application is not partitioned.
+   */
+  private List<AuditPartition> resolvePartitions(final Connection connection,
+      final Configuration configuration, final AuditApplication auditApplication,
+      final Instant from, final Instant to) {
+    if (partitionManager == null
+        || !partitionManager.isPartitioned(auditApplication.applicationName)) {
+      return Collections.singletonList(AuditPartition.UNPARTITIONED);
+    }
+    return partitionManager.findPartitions(connection, configuration,
+        auditApplication.applicationId, from, to);
+  }
+
+  private AuditApplication resolveReadableAuditApplication(final Connection connection,
+      final Configuration configuration, final String applicationName) {
+    AuditApplication auditApplication =
+        auditEntityResolver.resolveAuditApplication(connection, configuration, applicationName);
+    authnrPermissionChecker.checkPermission(auditApplication.resourceId,
+        AuditRiEcmPermissionConstants.READ_AUDIT_APPLICATION);
+    return auditApplication;
+  }
+
+  @Override
+  public long streamEvents(final AuditEventQuery query,
+      final Consumer<StoredAuditEvent> consumer) {
+    Objects.requireNonNull(query, "query cannot be null");
+    Objects.requireNonNull(consumer, "consumer cannot be null");
+    checkIndexed(query);
+
+    return transactionPropagator.required(() -> querydslSupport.execute(
+        (connection, configuration) -> {
+          AuditApplication auditApplication = resolveReadableAuditApplication(connection,
+              configuration, query.applicationName);
+
+          AuditEventAssembler assembler =
+              new AuditEventAssembler(query.applicationName, consumer);
+          for (AuditPartition partition : resolvePartitions(connection, configuration,
+              auditApplication, query.occuredAtFrom, query.occuredAtTo)) {
+            BooleanBuilder predicate =
+                createPredicate(query, auditApplication.applicationId, QEvent.event.occuredAt);
+            if (query.stringEventDataName != null) {
+              QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+              predicate.and(QEvent.event.eventId.in(SQLExpressions
+                  .select(qEventDataIndex.eventId)
+                  .from(partition.eventDataIndex)
+                  .where(createValuePredicate(query),
+                      createRangePredicate(query, qEventDataIndex.occuredAt))));
+            }
+            SQLQuery<Tuple> sqlQuery = AuditEventAssembler.createQuery(connection,
+                configuration, partition, predicate);
+            sqlQuery.addListener(new FetchSizeListener(fetchSize));
+
+            try (CloseableIterator<Tuple> tuples = sqlQuery.iterate()) {
+              while (tuples.hasNext()) {
+                assembler.accept(tuples.next());
+              }
+            }
+          }
+          assembler.flush();
+          return assembler.getCount();
+        }));
+  }
+
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.retention;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.everit.audit.ri.ecm.AuditRetentionStatistics;
+import org.everit.audit.ri.ecm.internal.persistence.EventDataIndex;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditRetentionProgress;
+import org.everit.audit.ri.schema.qdsl.QApplication;
+import org.everit.audit.ri.schema.qdsl.QEvent;
+import org.everit.audit.ri.schema.qdsl.QEventData;
+import org.everit.audit.ri.schema.qdsl.QEventType;
+import org.everit.persistence.querydsl.support.QuerydslSupport;
+import org.everit.transaction.propagator.TransactionPropagator;
+import org.osgi.service.log.LogService;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
+
+/**
+ * Deletes the events older than the maximum age of their audit application, periodically. The
+ * expired events of an application are deleted in chunks of ascending event identifiers, every
+ * chunk in its own short transaction, with a pause between the chunks. The cutoff of the pass and
+ * the last deleted event identifier are stored in the audit_retention_progress table in the
+ * transaction of the chunk, so a pass interrupted by a restart continues where it stopped. The
+ * row is deleted with the last chunk of the pass.
+ *
+ * <p>
+ * The greatest identifier of the events that occured before the cutoff is selected once per pass
+ * through the occured_at index of the event table, and the chunks do not read the events after
+ * it. Without the bound the last chunk of every pass would scan all events that are not expired
+ * yet, looking for further expired ones.
+ */
+public class AuditEventPurger implements Runnable, AuditRetentionStatistics {
+
+  /**
+   * The position of the retention pass of an audit application.
+   */
+  private static final class RetentionProgress {
+
+    final Instant cutoff;
+
+    long lastEventId;
+
+    /**
+     * The greatest identifier of the events that occured before the cutoff when the pass was
+     * started or resumed.
+     */
+    final long maxEventId;
+
+    RetentionProgress(final Instant cutoff, final long lastEventId, final long maxEventId) {
+      this.cutoff = cutoff;
+      this.lastEventId = lastEventId;
+      this.maxEventId = maxEventId;
+    }
+
+  }
+
+  /**
+   * The maximum number of event identifiers in one IN condition.
+   */
+  private static final int SLICE_SIZE = 1000;
+
+  private final Map<String, Long> applicationMaxAges;
+
+  private final long chunkDelay;
+
+  private final int chunkSize;
+
+  private final LongAdder completedRunCount = new LongAdder();
+
+  private volatile String currentApplicationName;
+
+  private final long defaultMaxAge;
+
+  private final LongAdder deletedChunkCount = new LongAdder();
+
+  private final LongAdder deletedEventCount = new LongAdder();
+
+  private volatile Instant lastRunFinishedAt;
+
+  private final LogService logService;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final long retentionInterval;
+
+  private final CountDownLatch stopLatch = new CountDownLatch(1);
+
+  private final TransactionPropagator transactionPropagator;
+
+  /**
+   * Constructor.
+   *
+   * @param applicationMaxAges
+   *          the time in milliseconds after the events of the audit applications expire, by the
+   *          name of the application.
+   * @param defaultMaxAge
+   *          the time in milliseconds after the events of the other audit applications expire,
+   *          or zero if they never expire.
+   * @param retentionInterval
+   *          the time in milliseconds between two retention runs.
+   * @param chunkSize
+   *          the maximum number of events deleted in one transaction.
+   * @param chunkDelay
+   *          the time in milliseconds to wait between two chunks.
+   */
+  public AuditEventPurger(final Map<String, Long> applicationMaxAges, final long defaultMaxAge,
+      final long retentionInterval, final int chunkSize, final long chunkDelay,
+      final QuerydslSupport querydslSupport, final TransactionPropagator transactionPropagator,
+      final LogService logService) {
+    Objects.requireNonNull(applicationMaxAges, "applicationMaxAges cannot be null");
+    for (Map.Entry<String, Long> applicationMaxAge : applicationMaxAges.entrySet()) {
+      if (applicationMaxAge.getValue() < 0) {
+        throw new IllegalArgumentException("the max age of audit application ["
+            + applicationMaxAge.getKey() + "] cannot be negative");
+      }
+    }
+    if (defaultMaxAge < 0) {
+      throw new IllegalArgumentException("defaultMaxAge cannot be negative");
+    }
+    if (retentionInterval <= 0) {
+      throw new IllegalArgumentException("retentionInterval must be positive");
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    if (chunkDelay < 0) {
+      throw new IllegalArgumentException("chunkDelay cannot be negative");
+    }
+    this.applicationMaxAges = Collections.unmodifiableMap(new HashMap<>(applicationMaxAges));
+    this.defaultMaxAge = defaultMaxAge;
+    this.retentionInterval = retentionInterval;
+    this.chunkSize = chunkSize;
+    this.chunkDelay = chunkDelay;
+    this.querydslSupport = querydslSupport;
+    this.transactionPropagator = transactionPropagator;
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+  }
+
+  /**
+   * Parses the max ages of the audit applications from the
+   * <code>applicationName=maxAge,...</code> form.
+   *
+   * @throws IllegalArgumentException
+   *           if an entry is not in the expected form.
+   */
+  public static Map<String, Long> parseApplicationMaxAges(final String applicationMaxAges) {
+    Map<String, Long> result = new HashMap<>();
+    if (applicationMaxAges == null) {
+      return result;
+    }
+    for (String entry : applicationMaxAges.split(",")) {
+      String trimmedEntry = entry.trim();
+      if (trimmedEntry.isEmpty()) {
+        continue;
+      }
+      int separatorIndex = trimmedEntry.lastIndexOf('=');
+      if (separatorIndex <= 0) {
+        throw new IllegalArgumentException(
+            "invalid application max age [" + trimmedEntry + "], expected name=maxAge");
+      }
+      String applicationName = trimmedEntry.substring(0, separatorIndex).trim();
+      try {
+        result.put(applicationName,
+            Long.parseLong(trimmedEntry.substring(separatorIndex + 1).trim()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "invalid application max age [" + trimmedEntry + "], expected name=maxAge", e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Deletes the next chunk of expired events of the application and advances the progress in the
+   * same transaction. The progress row is deleted with the last chunk of the pass.
+   *
+   * @return the number of deleted events.
+   */
+  private int deleteChunk(final long applicationId, final String applicationName,
+      final RetentionProgress progress) {
+    return transactionPropagator.required(() -> querydslSupport.execute(
+        (connection, configuration) -> {
+          QEvent qEvent = QEvent.event;
+          QEventType qEventType = QEventType.eventType;
+          QEventData qEventData = QEventData.eventData;
+          QAuditRetentionProgress qAuditRetentionProgress =
+              QAuditRetentionProgress.auditRetentionProgress;
+
+          List<Long> eventIds = new SQLQuery<Void>(connection, configuration)
+              .select(qEvent.eventId)
+              .from(qEvent)
+              .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+              .where(qEventType.applicationId.eq(applicationId)
+                  .and(qEvent.eventId.gt(progress.lastEventId))
+                  .and(qEvent.eventId.loe(progress.maxEventId))
+                  .and(qEvent.occuredAt.lt(Timestamp.from(progress.cutoff))))
+              .orderBy(qEvent.eventId.asc())
+              .limit(chunkSize)
+              .fetch();
+
+          for (int from = 0; from < eventIds.size(); from += SLICE_SIZE) {
+            List<Long> slice = eventIds.subList(from,
+                Math.min(from + SLICE_SIZE, eventIds.size()));
+            EventDataIndex.deleteEntries(connection, configuration, slice);
+            new SQLDeleteClause(connection, configuration, qEventData)
+                .where(qEventData.eventId.in(slice))
+                .execute();
+            new SQLDeleteClause(connection, configuration, qEvent)
+                .where(qEvent.eventId.in(slice))
+                .execute();
+          }
+
+          if (eventIds.size() < chunkSize) {
+            new SQLDeleteClause(connection, configuration, qAuditRetentionProgress)
+                .where(qAuditRetentionProgress.applicationName.eq(applicationName))
+                .execute();
+          } else {
+            new SQLUpdateClause(connection, configuration, qAuditRetentionProgress)
+                .set(qAuditRetentionProgress.lastEventId, eventIds.get(eventIds.size() - 1))
+                .set(qAuditRetentionProgress.deletedEventCount,
+                    qAuditRetentionProgress.deletedEventCount.add(eventIds.size()))
+                .set(qAuditRetentionProgress.updatedAt, Timestamp.from(Instant.now()))
+                .where(qAuditRetentionProgress.applicationName.eq(applicationName))
+                .execute();
+          }
+          if (!eventIds.isEmpty()) {
+            progress.lastEventId = eventIds.get(eventIds.size() - 1);
+          }
+          return eventIds.size();
+        }));
+  }
+
+  /**
+   * Deletes the expired events of all audit applications that have a max age.
+   *
+   * @return the number of deleted events.
+   */
+  public long deleteExpiredEvents() throws InterruptedException {
+    List<Tuple> applications = querydslSupport.execute((connection, configuration) -> {
+      QApplication qApplication = QApplication.application;
+      return new SQLQuery<Void>(connection, configuration)
+          .select(qApplication.applicationId, qApplication.applicationName)
+          .from(qApplication)
+          .orderBy(qApplication.applicationId.asc())
+          .fetch();
+    });
+
+    QApplication qApplication = QApplication.application;
+    long deletedEventCountOfRun = 0;
+    try {
+      for (Tuple application : applications) {
+        if (stopLatch.getCount() == 0) {
+          return deletedEventCountOfRun;
+        }
+        String applicationName = application.get(qApplication.applicationName);
+        long maxAge = applicationMaxAges.getOrDefault(applicationName, defaultMaxAge);
+        if (maxAge > 0) {
+          currentApplicationName = applicationName;
+          deletedEventCountOfRun += deleteExpiredEvents(
+              application.get(qApplication.applicationId), applicationName, maxAge);
+        }
+      }
+    } finally {
+      currentApplicationName = null;
+    }
+    if (stopLatch.getCount() > 0) {
+      completedRunCount.increment();
+      lastRunFinishedAt = Instant.now();
+    }
+    return deletedEventCountOfRun;
+  }
+
+  private long deleteExpiredEvents(final long applicationId, final String applicationName,
+      final long maxAge) throws InterruptedException {
+    RetentionProgress progress = startPass(applicationName, Instant.now().minusMillis(maxAge));
+    long deletedEventCountOfPass = 0;
+    while (true) {
+      int chunkEventCount = deleteChunk(applicationId, applicationName, progress);
+      deletedEventCountOfPass += chunkEventCount;
+      if (chunkEventCount > 0) {
+        deletedChunkCount.increment();
+        deletedEventCount.add(chunkEventCount);
+      }
+      if (chunkEventCount < chunkSize
+          || stopLatch.await(chunkDelay, TimeUnit.MILLISECONDS)) {
+        return deletedEventCountOfPass;
+      }
+    }
+  }
+
+  @Override
+  public long getCompletedRunCount() {
+    return completedRunCount.sum();
+  }
+
+  @Override
+  public String getCurrentApplicationName() {
+    return currentApplicationName;
+  }
+
+  @Override
+  public long getDeletedChunkCount() {
+    return deletedChunkCount.sum();
+  }
+
+  @Override
+  public long getDeletedEventCount() {
+    return deletedEventCount.sum();
+  }
+
+  @Override
+  public Instant getLastRunFinishedAt() {
+    return lastRunFinishedAt;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (stopLatch.getCount() > 0) {
+        try {
+          long deletedEventCountOfRun = deleteExpiredEvents();
+          if (deletedEventCountOfRun > 0) {
+            logService.log(LogService.LOG_INFO,
+                "deleted " + deletedEventCountOfRun + " expired audit events");
+          }
+        } catch (RuntimeException e) {
+          logService.log(LogService.LOG_ERROR, "failed to delete expired audit events", e);
+        }
+        stopLatch.await(retentionInterval, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Selects the greatest identifier of the events that occured before the cutoff, or zero if
+   * there is no such event. The query reads the ix_event_occured_at_event_id index only.
+   */
+  private long selectMaxEventId(final Connection connection, final Configuration configuration,
+      final Instant cutoff) {
+    QEvent qEvent = QEvent.event;
+    Long maxEventId = new SQLQuery<Void>(connection, configuration)
+        .select(qEvent.eventId.max())
+        .from(qEvent)
+        .where(qEvent.occuredAt.lt(Timestamp.from(cutoff)))
+        .fetchOne();
+    return maxEventId != null ? maxEventId : 0;
+  }
+
+  /**
+   * Reads the progress of the interrupted pass of the application or starts a new pass with the
+   * cutoff.
+   */
+  private RetentionProgress startPass(final String applicationName, final Instant cutoff) {
+    return transactionPropagator.required(() -> querydslSupport.execute(
+        (connection, configuration) -> {
+          QAuditRetentionProgress qAuditRetentionProgress =
+              QAuditRetentionProgress.auditRetentionProgress;
+
+          Tuple storedProgress = new SQLQuery<Void>(connection, configuration)
+              .select(qAuditRetentionProgress.cutoff, qAuditRetentionProgress.lastEventId)
+              .from(qAuditRetentionProgress)
+              .where(qAuditRetentionProgress.applicationName.eq(applicationName))
+              .fetchOne();
+          if (storedProgress != null) {
+            Instant storedCutoff = storedProgress.get(qAuditRetentionProgress.cutoff).toInstant();
+            RetentionProgress progress = new RetentionProgress(storedCutoff,
+                storedProgress.get(qAuditRetentionProgress.lastEventId),
+                selectMaxEventId(connection, configuration, storedCutoff));
+            logService.log(LogService.LOG_INFO, "resuming the deletion of the expired events "
+                + "of audit application [" + applicationName + "] after event ["
+                + progress.lastEventId + "]");
+            return progress;
+          }
+
+          Timestamp now = Timestamp.from(Instant.now());
+          new SQLInsertClause(connection, configuration, qAuditRetentionProgress)
+              .set(qAuditRetentionProgress.applicationName, applicationName)
+              .set(qAuditRetentionProgress.cutoff, Timestamp.from(cutoff))
+              .set(qAuditRetentionProgress.lastEventId, 0L)
+              .set(qAuditRetentionProgress.deletedEventCount, 0L)
+              .set(qAuditRetentionProgress.updatedAt, now)
+              .execute();
+          return new RetentionProgress(cutoff, 0,
+              selectMaxEventId(connection, configuration, cutoff));
+        }));
+  }
+
+  /**
+   * Signals the purger to stop after the current chunk.
+   */
+  public void stop() {
+    stopLatch.countDown();
+  }
+
+}
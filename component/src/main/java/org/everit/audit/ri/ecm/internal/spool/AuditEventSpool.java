@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only spool of records stored in a sequence of memory-mapped segment files. New records
+ * are appended to the newest segment, the replayer reads the oldest one. The number of segments is
+ * bounded by the maximum disk usage.
+ */
+public class AuditEventSpool implements Closeable {
+
+  private boolean closed;
+
+  private final Path directory;
+
+  private final boolean forceOnWrite;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final int maxSegmentCount;
+
+  private final Condition recordAppended = lock.newCondition();
+
+  private final int segmentSize;
+
+  private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+
+  /**
+   * Opens the spool in the directory. The segments left in the directory by the previous run are
+   * recovered: their records are validated and the replay continues where it stopped.
+   *
+   * @param segmentSize
+   *          the size of a segment file in bytes.
+   * @param maxDiskUsage
+   *          the maximum size of all segment files in bytes.
+   * @param forceOnWrite
+   *          whether every appended record is forced to the storage device before the append
+   *          returns.
+   */
+  public AuditEventSpool(final Path directory, final int segmentSize, final long maxDiskUsage,
+      final boolean forceOnWrite) throws IOException {
+    if (segmentSize <= SpoolSegment.HEADER_SIZE + SpoolSegment.RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("segmentSize is too small");
+    }
+    if (maxDiskUsage < segmentSize) {
+      throw new IllegalArgumentException("maxDiskUsage cannot be less than segmentSize");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.forceOnWrite = forceOnWrite;
+    maxSegmentCount = (int) Math.min(Integer.MAX_VALUE, maxDiskUsage / segmentSize);
+
+    Files.createDirectories(directory);
+    try {
+      recoverSegments();
+      if (segments.isEmpty()) {
+        segments.add(SpoolSegment.create(directory, 0, segmentSize));
+      }
+    } catch (IOException | RuntimeException e) {
+      closeSegments();
+      throw e;
+    }
+  }
+
+  /**
+   * Appends the records to the newest segment. A new segment is started if a record does not fit
+   * into the newest one. Either all records are appended or none of them: the space of the whole
+   * batch is checked before the first record is written.
+   *
+   * @throws IllegalStateException
+   *           if the spool is closed or the records do not fit into the maximum disk usage.
+   */
+  public void append(final List<byte[]> payloads) throws IOException {
+    for (byte[] payload : payloads) {
+      if (payload.length > segmentSize - SpoolSegment.HEADER_SIZE
+          - SpoolSegment.RECORD_HEADER_SIZE) {
+        throw new IllegalArgumentException("the record is larger than a spool segment");
+      }
+    }
+    lock.lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("the audit spool is closed");
+      }
+      if (segments.size() + countNewSegments(payloads) > maxSegmentCount) {
+        throw new IllegalStateException("the audit spool is full");
+      }
+      for (byte[] payload : payloads) {
+        SpoolSegment segment = segments.getLast();
+        if (!segment.append(payload, forceOnWrite)) {
+          segment.seal();
+          segment = SpoolSegment.create(directory, segment.sequence + 1, segmentSize);
+          segments.addLast(segment);
+          segment.append(payload, forceOnWrite);
+        }
+      }
+      recordAppended.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until a record is appended after the given position of the segment, the segment is
+   * sealed, the spool is closed or the timeout elapses.
+   */
+  void awaitRecord(final SpoolSegment segment, final int position, final long timeout)
+      throws InterruptedException {
+    lock.lock();
+    try {
+      if (!closed && !segment.isSealed() && segment.getWritePosition() <= position) {
+        recordAppended.await(timeout, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Closes the segment files. The records that are not replayed stay on the disk.
+   */
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      closed = true;
+      recordAppended.signalAll();
+      closeSegments();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void closeSegments() throws IOException {
+    IOException exception = null;
+    for (SpoolSegment segment : segments) {
+      try {
+        segment.close();
+      } catch (IOException e) {
+        exception = e;
+      }
+    }
+    segments.clear();
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * Returns the number of the segments that must be started to append the records.
+   */
+  private int countNewSegments(final List<byte[]> payloads) {
+    SpoolSegment lastSegment = segments.getLast();
+    int capacity = lastSegment.capacity();
+    int position = lastSegment.getWritePosition();
+    int newSegmentCount = 0;
+    for (byte[] payload : payloads) {
+      int recordSize = SpoolSegment.RECORD_HEADER_SIZE + payload.length;
+      if (position + recordSize > capacity) {
+        newSegmentCount++;
+        capacity = segmentSize;
+        position = SpoolSegment.HEADER_SIZE;
+      }
+      position += recordSize;
+    }
+    return newSegmentCount;
+  }
+
+  /**
+   * The oldest segment or <code>null</code> if the spool is closed.
+   */
+  SpoolSegment oldestSegment() {
+    lock.lock();
+    try {
+      return segments.peekFirst();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void recoverSegments() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+      for (Path path : directoryStream) {
+        if (SpoolSegment.isSegmentFile(path)) {
+          paths.add(path);
+        }
+      }
+    }
+    Collections.sort(paths, Comparator.comparing((path) -> path.getFileName().toString()));
+    for (Path path : paths) {
+      SpoolSegment segment = SpoolSegment.recover(path);
+      if (!segments.isEmpty()) {
+        segments.getLast().seal();
+      }
+      segments.addLast(segment);
+    }
+  }
+
+  /**
+   * Deletes the sealed and fully replayed segment.
+   */
+  void removeSegment(final SpoolSegment segment) throws IOException {
+    lock.lock();
+    try {
+      if (closed || !segment.isSealed() || segments.peekFirst() != segment) {
+        return;
+      }
+      segments.removeFirst();
+      segment.delete();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.spool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.InternalAuditEventTypeManager;
+import org.everit.audit.ri.InternalLoggingService;
+import org.everit.audit.ri.UnknownAuditApplicationException;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.authentication.context.AuthenticationContext;
+import org.everit.authnr.permissionchecker.UnauthorizedException;
+
+/**
+ * {@link InternalLoggingService} and {@link InternalBulkLoggingService} that appends the audit
+ * events to the durable spool and returns immediately. The events are persisted later by the
+ * {@link SpoolReplayer} in the name of the resource that logged them.
+ *
+ * <p>
+ * The audit application and the permission of the current resource are checked before the events
+ * are spooled, so the callers are refused the same way as by the synchronous services. If the
+ * check fails for another reason, e.g. the database is unavailable, the events are spooled anyway
+ * and the replayer checks them again.
+ */
+public class SpoolLoggingService implements InternalLoggingService, InternalBulkLoggingService {
+
+  private final AuthenticationContext authenticationContext;
+
+  private final InternalAuditEventTypeManager internalAuditEventTypeManager;
+
+  private final AuditEventSpool spool;
+
+  /**
+   * Constructor.
+   */
+  public SpoolLoggingService(final AuditEventSpool spool,
+      final AuthenticationContext authenticationContext,
+      final InternalAuditEventTypeManager internalAuditEventTypeManager) {
+    this.spool = Objects.requireNonNull(spool, "spool cannot be null");
+    this.authenticationContext = Objects.requireNonNull(authenticationContext,
+        "authenticationContext cannot be null");
+    this.internalAuditEventTypeManager = Objects.requireNonNull(internalAuditEventTypeManager,
+        "internalAuditEventTypeManager cannot be null");
+  }
+
+  private void append(final List<byte[]> payloads) {
+    try {
+      spool.append(payloads);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void checkAuditApplication(final String applicationName) {
+    try {
+      // resolves the audit application and checks the permission without event types
+      internalAuditEventTypeManager.initAuditEventTypes(applicationName);
+    } catch (UnknownAuditApplicationException | UnauthorizedException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      // the replayer checks the events again when the database is available
+      return;
+    }
+  }
+
+  @Override
+  public void logEvent(final String applicationName, final AuditEvent auditEvent) {
+    Objects.requireNonNull(applicationName, "applicationName cannot be null");
+    Objects.requireNonNull(auditEvent, "auditEvent cannot be null");
+    checkAuditApplication(applicationName);
+    List<byte[]> payloads = new ArrayList<>(1);
+    payloads.add(SpooledEventSerializer.serialize(new SpooledEvent(
+        authenticationContext.getCurrentResourceId(), applicationName, auditEvent)));
+    append(payloads);
+  }
+
+  @Override
+  public void logEvents(final String applicationName, final Collection<AuditEvent> auditEvents) {
+    Objects.requireNonNull(applicationName, "applicationName cannot be null");
+    Objects.requireNonNull(auditEvents, "auditEvents cannot be null");
+    for (AuditEvent auditEvent : auditEvents) {
+      Objects.requireNonNull(auditEvent, "auditEvents cannot contain null value");
+    }
+    checkAuditApplication(applicationName);
+    long authenticatedResourceId = authenticationContext.getCurrentResourceId();
+    List<byte[]> payloads = new ArrayList<>(auditEvents.size());
+    for (AuditEvent auditEvent : auditEvents) {
+      payloads.add(SpooledEventSerializer.serialize(
+          new SpooledEvent(authenticatedResourceId, applicationName, auditEvent)));
+    }
+    append(payloads);
+  }
+
+}
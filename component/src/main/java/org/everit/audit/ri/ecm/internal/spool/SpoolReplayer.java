@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.spool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.ri.UnknownAuditApplicationException;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.authentication.context.AuthenticationPropagator;
+import org.everit.authnr.permissionchecker.UnauthorizedException;
+import org.osgi.service.log.LogService;
+
+/**
+ * Drains the spool into the database in the order of the records. Consecutive records of the same
+ * resource and audit application are persisted in one batch. The replayed position of the segment
+ * is stored after the batch is committed, so a crash can cause at most one batch to be persisted
+ * twice but never loses an event.
+ */
+public class SpoolReplayer implements Runnable {
+
+  /**
+   * The maximum time in milliseconds the replayer waits for a new record before it checks whether
+   * it is stopped.
+   */
+  private static final long IDLE_WAIT_TIMEOUT = 100;
+
+  private final AuthenticationPropagator authenticationPropagator;
+
+  private final int batchSize;
+
+  private final InternalBulkLoggingService internalBulkLoggingService;
+
+  private final LogService logService;
+
+  private final long retryInterval;
+
+  private final AuditEventSpool spool;
+
+  private final CountDownLatch stopLatch = new CountDownLatch(1);
+
+  /**
+   * Constructor.
+   *
+   * @param batchSize
+   *          the maximum number of events persisted in one transaction.
+   * @param retryInterval
+   *          the time in milliseconds the replayer waits before it retries a failed batch.
+   */
+  public SpoolReplayer(final AuditEventSpool spool,
+      final InternalBulkLoggingService internalBulkLoggingService,
+      final AuthenticationPropagator authenticationPropagator, final LogService logService,
+      final int batchSize, final long retryInterval) {
+    this.spool = Objects.requireNonNull(spool, "spool cannot be null");
+    this.internalBulkLoggingService = Objects.requireNonNull(internalBulkLoggingService,
+        "internalBulkLoggingService cannot be null");
+    this.authenticationPropagator = Objects.requireNonNull(authenticationPropagator,
+        "authenticationPropagator cannot be null");
+    this.logService = Objects.requireNonNull(logService, "logService cannot be null");
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    if (retryInterval < 0) {
+      throw new IllegalArgumentException("retryInterval cannot be negative");
+    }
+    this.batchSize = batchSize;
+    this.retryInterval = retryInterval;
+  }
+
+  private void persist(final List<SpooledEvent> batch) {
+    SpooledEvent first = batch.get(0);
+    List<AuditEvent> auditEvents = new ArrayList<>(batch.size());
+    for (SpooledEvent spooledEvent : batch) {
+      auditEvents.add(spooledEvent.auditEvent);
+    }
+    authenticationPropagator.runAs(first.authenticatedResourceId, () -> {
+      internalBulkLoggingService.logEvents(first.applicationName, auditEvents);
+      return null;
+    });
+  }
+
+  /**
+   * Replays the next batch of the segment.
+   *
+   * @return <code>false</code> if there was nothing to replay.
+   */
+  private boolean replayBatch(final SpoolSegment segment) throws IOException, InterruptedException {
+    int position = segment.getReplayedPosition();
+    List<SpooledEvent> batch = new ArrayList<>();
+    byte[] payload = segment.read(position);
+    while (payload != null && batch.size() < batchSize) {
+      SpooledEvent spooledEvent;
+      try {
+        spooledEvent = SpooledEventSerializer.deserialize(payload);
+      } catch (IllegalArgumentException e) {
+        if (!batch.isEmpty()) {
+          break;
+        }
+        logService.log(LogService.LOG_ERROR, "skipping unreadable audit spool record", e);
+        segment.setReplayedPosition(position + SpoolSegment.RECORD_HEADER_SIZE + payload.length);
+        return true;
+      }
+      if (!batch.isEmpty() && !sameBatch(batch.get(0), spooledEvent)) {
+        break;
+      }
+      batch.add(spooledEvent);
+      position += SpoolSegment.RECORD_HEADER_SIZE + payload.length;
+      payload = segment.read(position);
+    }
+
+    if (batch.isEmpty()) {
+      return false;
+    }
+
+    try {
+      persist(batch);
+    } catch (UnknownAuditApplicationException | UnauthorizedException e) {
+      // the events were checked before they were spooled, so the audit application or the
+      // permission was removed since then, or the check could not be done
+      logService.log(LogService.LOG_ERROR, "dropping " + batch.size()
+          + " spooled audit events of audit application [" + batch.get(0).applicationName
+          + "] that cannot be persisted", e);
+    } catch (RuntimeException e) {
+      logService.log(LogService.LOG_WARNING, "failed to replay " + batch.size()
+          + " spooled audit events, retrying in " + retryInterval + " ms", e);
+      stopLatch.await(retryInterval, TimeUnit.MILLISECONDS);
+      return true;
+    }
+    segment.setReplayedPosition(position);
+    return true;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (stopLatch.getCount() > 0) {
+        SpoolSegment segment = spool.oldestSegment();
+        if (segment == null) {
+          return;
+        }
+        if (!replayBatch(segment)) {
+          // a segment is sealed after its last record is published, so the check must be done
+          // before the last read
+          if (!segment.isSealed()) {
+            spool.awaitRecord(segment, segment.getReplayedPosition(), IDLE_WAIT_TIMEOUT);
+          } else if (segment.read(segment.getReplayedPosition()) == null) {
+            spool.removeSegment(segment);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | RuntimeException e) {
+      logService.log(LogService.LOG_ERROR, "audit spool replayer stopped", e);
+    }
+  }
+
+  private boolean sameBatch(final SpooledEvent first, final SpooledEvent spooledEvent) {
+    return first.authenticatedResourceId == spooledEvent.authenticatedResourceId
+        && first.applicationName.equals(spooledEvent.applicationName);
+  }
+
+  /**
+   * Signals the replayer to stop after the current batch.
+   */
+  public void stop() {
+    stopLatch.countDown();
+  }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped, append-only segment file of the spool. The segment starts with a header that
+ * contains the position up to which the records are replayed, followed by the records. Every
+ * record consists of the length of the payload, the CRC32 checksum of the payload and the payload.
+ * The length is written last, so a record that was torn by a crash is either zero or fails the
+ * checksum validation.
+ */
+class SpoolSegment implements Closeable {
+
+  static final int HEADER_SIZE = 16;
+
+  static final int RECORD_HEADER_SIZE = 8;
+
+  private static final int CLEAR_CHUNK_SIZE = 4096;
+
+  private static final int MAGIC = 0x41535047;
+
+  private static final int REPLAYED_POSITION_OFFSET = 8;
+
+  private static final String SEGMENT_FILE_SUFFIX = ".segment";
+
+  private static final int VERSION = 1;
+
+  private static final int VERSION_OFFSET = 4;
+
+  final long sequence;
+
+  private final MappedByteBuffer buffer;
+
+  private final FileChannel channel;
+
+  private final Path path;
+
+  private volatile boolean sealed;
+
+  /**
+   * The end of the last complete record. It is written only by the thread that holds the lock of
+   * the spool and it publishes the records to the replayer.
+   */
+  private volatile int writePosition;
+
+  private SpoolSegment(final long sequence, final Path path, final FileChannel channel,
+      final MappedByteBuffer buffer, final int writePosition) {
+    this.sequence = sequence;
+    this.path = path;
+    this.channel = channel;
+    this.buffer = buffer;
+    this.writePosition = writePosition;
+  }
+
+  /**
+   * Creates a new, empty segment file.
+   */
+  static SpoolSegment create(final Path directory, final long sequence, final int segmentSize)
+      throws IOException {
+    Path path = directory.resolve(fileNameOf(sequence));
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    MappedByteBuffer buffer;
+    try {
+      buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(VERSION_OFFSET, VERSION);
+    buffer.putInt(REPLAYED_POSITION_OFFSET, HEADER_SIZE);
+    buffer.force();
+    return new SpoolSegment(sequence, path, channel, buffer, HEADER_SIZE);
+  }
+
+  static String fileNameOf(final long sequence) {
+    return String.format("%020d", sequence) + SEGMENT_FILE_SUFFIX;
+  }
+
+  static boolean isSegmentFile(final Path path) {
+    return path.getFileName().toString().endsWith(SEGMENT_FILE_SUFFIX);
+  }
+
+  /**
+   * Opens an existing segment file after a restart or a crash. The records are validated from the
+   * beginning of the segment, the end of the segment is the first record that is not complete or
+   * fails the checksum validation. Everything after the end is cleared.
+   */
+  static SpoolSegment recover(final Path path) throws IOException {
+    String fileName = path.getFileName().toString();
+    long sequence = Long.parseLong(
+        fileName.substring(0, fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("invalid spool segment size [" + path + "]");
+      }
+      MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+        throw new IOException("not a spool segment [" + path + "]");
+      }
+
+      int position = HEADER_SIZE;
+      while (true) {
+        int next = validRecordEnd(buffer, position);
+        if (next < 0) {
+          break;
+        }
+        position = next;
+      }
+      clear(buffer, position);
+
+      int replayedPosition = buffer.getInt(REPLAYED_POSITION_OFFSET);
+      if (replayedPosition < HEADER_SIZE || replayedPosition > position) {
+        buffer.putInt(REPLAYED_POSITION_OFFSET, Math.min(Math.max(replayedPosition,
+            HEADER_SIZE), position));
+      }
+      buffer.force();
+      return new SpoolSegment(sequence, path, channel, buffer, position);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static int validRecordEnd(final ByteBuffer buffer, final int position) {
+    if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+      return -1;
+    }
+    int length = buffer.getInt(position);
+    if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+      return -1;
+    }
+    int checksum = buffer.getInt(position + Integer.BYTES);
+    byte[] payload = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(position + RECORD_HEADER_SIZE);
+    source.get(payload);
+    if (checksum(payload) != checksum) {
+      return -1;
+    }
+    return position + RECORD_HEADER_SIZE + length;
+  }
+
+  private static void clear(final ByteBuffer buffer, final int position) {
+    ByteBuffer target = buffer.duplicate();
+    target.position(position);
+    byte[] zeros = new byte[CLEAR_CHUNK_SIZE];
+    while (target.hasRemaining()) {
+      target.put(zeros, 0, Math.min(zeros.length, target.remaining()));
+    }
+  }
+
+  private static int checksum(final byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Appends a record to the segment.
+   *
+   * @return <code>false</code> if the record does not fit into the segment.
+   */
+  boolean append(final byte[] payload, final boolean force) {
+    int position = writePosition;
+    int end = position + RECORD_HEADER_SIZE + payload.length;
+    if (end > buffer.capacity() || end < 0) {
+      return false;
+    }
+    ByteBuffer target = buffer.duplicate();
+    target.position(position + RECORD_HEADER_SIZE);
+    target.put(payload);
+    buffer.putInt(position + Integer.BYTES, checksum(payload));
+    buffer.putInt(position, payload.length);
+    if (force) {
+      buffer.force();
+    }
+    writePosition = end;
+    return true;
+  }
+
+  int capacity() {
+    return buffer.capacity();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  void delete() throws IOException {
+    close();
+    Files.deleteIfExists(path);
+  }
+
+  int getReplayedPosition() {
+    return buffer.getInt(REPLAYED_POSITION_OFFSET);
+  }
+
+  int getWritePosition() {
+    return writePosition;
+  }
+
+  boolean isSealed() {
+    return sealed;
+  }
+
+  /**
+   * Reads the payload of the record that starts at the given position.
+   *
+   * @return the payload or <code>null</code> if there is no published record at the position.
+   */
+  byte[] read(final int position) {
+    if (position + RECORD_HEADER_SIZE > writePosition) {
+      return null;
+    }
+    int length = buffer.getInt(position);
+    byte[] payload = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(position + RECORD_HEADER_SIZE);
+    source.get(payload);
+    return payload;
+  }
+
+  void seal() {
+    sealed = true;
+  }
+
+  /**
+   * Stores the position up to which the records are persisted to the database. The position
+   * survives a crash, so the replay continues from there after the next start.
+   */
+  void setReplayedPosition(final int position) {
+    buffer.putInt(REPLAYED_POSITION_OFFSET, position);
+    buffer.force();
+  }
+
+}
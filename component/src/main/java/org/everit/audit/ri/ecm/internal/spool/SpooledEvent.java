@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.spool;
+
+import org.everit.audit.dto.AuditEvent;
+
+/**
+ * An audit event in the spool together with the audit application it is logged to and the
+ * resource that logged it.
+ */
+public class SpooledEvent {
+
+  public final String applicationName;
+
+  public final AuditEvent auditEvent;
+
+  /**
+   * The resource that was authenticated when the event was logged. The event is persisted in the
+   * name of this resource, so the permission check is the same as without the spool.
+   */
+  public final long authenticatedResourceId;
+
+  /**
+   * Constructor.
+   */
+  public SpooledEvent(final long authenticatedResourceId, final String applicationName,
+      final AuditEvent auditEvent) {
+    this.authenticatedResourceId = authenticatedResourceId;
+    this.applicationName = applicationName;
+    this.auditEvent = auditEvent;
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.internal.spool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.EventDataType;
+import org.everit.audit.ri.ecm.AuditEventCodec;
+
+/**
+ * Converts {@link SpooledEvent}s to the payload of the spool records and back. The audit event is
+ * encoded by the {@link AuditEventCodec}. The records of the segments written before are still
+ * read in their original format.
+ */
+public final class SpooledEventSerializer {
+
+  private static final AuditEventCodec CODEC = new AuditEventCodec();
+
+  private static final int FORMAT_VERSION = 2;
+
+  /**
+   * The version of the records that contain the audit event in the format of
+   * {@link DataOutputStream}.
+   */
+  private static final int LEGACY_FORMAT_VERSION = 1;
+
+  private static final int NULL_LENGTH = -1;
+
+  /**
+   * Restores the spooled event from the payload of a record.
+   *
+   * @throws IllegalArgumentException
+   *           if the payload is not a spooled event.
+   */
+  public static SpooledEvent deserialize(final byte[] payload) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+      int formatVersion = in.readUnsignedByte();
+      if (formatVersion != FORMAT_VERSION && formatVersion != LEGACY_FORMAT_VERSION) {
+        throw new IllegalArgumentException(
+            "unsupported spool record format version [" + formatVersion + "]");
+      }
+      long authenticatedResourceId = in.readLong();
+      String applicationName = readString(in);
+
+      AuditEvent auditEvent;
+      if (formatVersion == LEGACY_FORMAT_VERSION) {
+        auditEvent = readLegacyAuditEvent(in);
+      } else {
+        int offset = payload.length - in.available();
+        auditEvent = CODEC.decode(ByteBuffer.wrap(payload, offset, payload.length - offset));
+      }
+      return new SpooledEvent(authenticatedResourceId, applicationName, auditEvent);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("invalid spool record", e);
+    }
+  }
+
+  private static Instant readInstant(final DataInputStream in) throws IOException {
+    long epochSecond = in.readLong();
+    return Instant.ofEpochSecond(epochSecond, in.readInt());
+  }
+
+  private static AuditEvent readLegacyAuditEvent(final DataInputStream in) throws IOException {
+    AuditEvent.Builder builder = new AuditEvent.Builder().eventTypeName(readString(in));
+    if (in.readBoolean()) {
+      builder.occuredAt(readInstant(in));
+    }
+    int eventDataCount = in.readInt();
+    for (int i = 0; i < eventDataCount; i++) {
+      String eventDataName = readString(in);
+      EventDataType eventDataType = EventDataType.valueOf(readString(in));
+      switch (eventDataType) {
+        case STRING:
+          builder.addStringEventData(eventDataName, readString(in));
+          break;
+        case TEXT:
+          builder.addTextEventData(eventDataName, false, readString(in));
+          break;
+        case NUMBER:
+          builder.addNumberEventData(eventDataName, in.readDouble());
+          break;
+        case TIMESTAMP:
+          builder.addTimestampEventData(eventDataName, readInstant(in));
+          break;
+        default:
+          throw new IllegalArgumentException("unsupported eventDataType [" + eventDataType + "]");
+      }
+    }
+    return builder.build();
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Converts the spooled event to the payload of a record.
+   */
+  public static byte[] serialize(final SpooledEvent spooledEvent) {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bout)) {
+      out.writeByte(FORMAT_VERSION);
+      out.writeLong(spooledEvent.authenticatedResourceId);
+      writeString(out, spooledEvent.applicationName);
+      out.write(CODEC.encode(spooledEvent.auditEvent));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bout.toByteArray();
+  }
+
+  private static void writeString(final DataOutputStream out, final String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(NULL_LENGTH);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private SpooledEventSerializer() {
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QAuditCacheChange is a Querydsl query type for the audit_cache_change table, the change log of
+ * the audit applications the nodes invalidate their caches by.
+ */
+public class QAuditCacheChange extends RelationalPathBase<QAuditCacheChange> {
+
+  public static final QAuditCacheChange auditCacheChange =
+      new QAuditCacheChange("audit_cache_change");
+
+  private static final long serialVersionUID = 1L;
+
+  public final StringPath applicationName = createString("applicationName");
+
+  public final DateTimePath<Timestamp> changedAt =
+      createDateTime("changedAt", Timestamp.class);
+
+  public final NumberPath<Long> changeId = createNumber("changeId", Long.class);
+
+  public final StringPath nodeId = createString("nodeId");
+
+  public final PrimaryKey<QAuditCacheChange> pkAuditCacheChange = createPrimaryKey(changeId);
+
+  public QAuditCacheChange(final Path<? extends QAuditCacheChange> path) {
+    super(path.getType(), path.getMetadata(), null, "audit_cache_change");
+    addMetadata();
+  }
+
+  public QAuditCacheChange(final PathMetadata metadata) {
+    super(QAuditCacheChange.class, metadata, null, "audit_cache_change");
+    addMetadata();
+  }
+
+  public QAuditCacheChange(final String variable) {
+    super(QAuditCacheChange.class, forVariable(variable), null, "audit_cache_change");
+    addMetadata();
+  }
+
+  public QAuditCacheChange(final String variable, final String schema, final String table) {
+    super(QAuditCacheChange.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(changeId, ColumnMetadata.named("change_id").withIndex(1)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(applicationName, ColumnMetadata.named("application_name").withIndex(2)
+        .ofType(Types.VARCHAR).withSize(255).notNull());
+    addMetadata(nodeId, ColumnMetadata.named("node_id").withIndex(3)
+        .ofType(Types.VARCHAR).withSize(36).notNull());
+    addMetadata(changedAt, ColumnMetadata.named("changed_at").withIndex(4)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+  }
+
+}
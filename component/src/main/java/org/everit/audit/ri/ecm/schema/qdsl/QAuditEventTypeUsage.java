@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QAuditEventTypeUsage is a Querydsl query type for the audit_event_type_usage table, the last
+ * use of the event types.
+ */
+public class QAuditEventTypeUsage extends RelationalPathBase<QAuditEventTypeUsage> {
+
+  public static final QAuditEventTypeUsage auditEventTypeUsage =
+      new QAuditEventTypeUsage("audit_event_type_usage");
+
+  private static final long serialVersionUID = 1L;
+
+  public final NumberPath<Long> eventTypeId = createNumber("eventTypeId", Long.class);
+
+  public final DateTimePath<Timestamp> lastUsedAt =
+      createDateTime("lastUsedAt", Timestamp.class);
+
+  public final PrimaryKey<QAuditEventTypeUsage> pkAuditEventTypeUsage =
+      createPrimaryKey(eventTypeId);
+
+  public QAuditEventTypeUsage(final Path<? extends QAuditEventTypeUsage> path) {
+    super(path.getType(), path.getMetadata(), null, "audit_event_type_usage");
+    addMetadata();
+  }
+
+  public QAuditEventTypeUsage(final PathMetadata metadata) {
+    super(QAuditEventTypeUsage.class, metadata, null, "audit_event_type_usage");
+    addMetadata();
+  }
+
+  public QAuditEventTypeUsage(final String variable) {
+    super(QAuditEventTypeUsage.class, forVariable(variable), null, "audit_event_type_usage");
+    addMetadata();
+  }
+
+  public QAuditEventTypeUsage(final String variable, final String schema, final String table) {
+    super(QAuditEventTypeUsage.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(eventTypeId, ColumnMetadata.named("event_type_id").withIndex(1)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(lastUsedAt, ColumnMetadata.named("last_used_at").withIndex(2)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+  }
+
+}
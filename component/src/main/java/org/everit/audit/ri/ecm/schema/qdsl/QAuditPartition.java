@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.BooleanPath;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QAuditPartition is a Querydsl query type for the audit_partition table, the registry of the
+ * per-application and per-period tables of the partitioned layout.
+ */
+public class QAuditPartition extends RelationalPathBase<QAuditPartition> {
+
+  public static final QAuditPartition auditPartition = new QAuditPartition("audit_partition");
+
+  private static final long serialVersionUID = 1L;
+
+  public final NumberPath<Long> applicationId = createNumber("applicationId", Long.class);
+
+  public final BooleanPath expired = createBoolean("expired");
+
+  public final DateTimePath<Timestamp> periodEnd =
+      createDateTime("periodEnd", Timestamp.class);
+
+  public final DateTimePath<Timestamp> periodStart =
+      createDateTime("periodStart", Timestamp.class);
+
+  // declared after the columns of the key, so they are initialized already
+  public final PrimaryKey<QAuditPartition> pkAuditPartition =
+      createPrimaryKey(applicationId, periodStart);
+
+  public final StringPath tableSuffix = createString("tableSuffix");
+
+  public QAuditPartition(final Path<? extends QAuditPartition> path) {
+    super(path.getType(), path.getMetadata(), null, "audit_partition");
+    addMetadata();
+  }
+
+  public QAuditPartition(final PathMetadata metadata) {
+    super(QAuditPartition.class, metadata, null, "audit_partition");
+    addMetadata();
+  }
+
+  public QAuditPartition(final String variable) {
+    super(QAuditPartition.class, forVariable(variable), null, "audit_partition");
+    addMetadata();
+  }
+
+  public QAuditPartition(final String variable, final String schema, final String table) {
+    super(QAuditPartition.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(applicationId, ColumnMetadata.named("application_id").withIndex(1)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(periodStart, ColumnMetadata.named("period_start").withIndex(2)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+    addMetadata(periodEnd, ColumnMetadata.named("period_end").withIndex(3)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+    addMetadata(tableSuffix, ColumnMetadata.named("table_suffix").withIndex(4)
+        .ofType(Types.VARCHAR).withSize(48).notNull());
+    addMetadata(expired, ColumnMetadata.named("expired").withIndex(5)
+        .ofType(Types.BOOLEAN).withSize(1).notNull());
+  }
+
+}
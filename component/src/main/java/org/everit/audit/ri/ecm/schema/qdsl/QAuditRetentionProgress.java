@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QAuditRetentionProgress is a Querydsl query type for the audit_retention_progress table, the
+ * position of the interrupted retention passes of the audit applications.
+ */
+public class QAuditRetentionProgress extends RelationalPathBase<QAuditRetentionProgress> {
+
+  public static final QAuditRetentionProgress auditRetentionProgress =
+      new QAuditRetentionProgress("audit_retention_progress");
+
+  private static final long serialVersionUID = 1L;
+
+  public final StringPath applicationName = createString("applicationName");
+
+  public final DateTimePath<Timestamp> cutoff = createDateTime("cutoff", Timestamp.class);
+
+  public final NumberPath<Long> deletedEventCount =
+      createNumber("deletedEventCount", Long.class);
+
+  public final NumberPath<Long> lastEventId = createNumber("lastEventId", Long.class);
+
+  public final PrimaryKey<QAuditRetentionProgress> pkAuditRetentionProgress =
+      createPrimaryKey(applicationName);
+
+  public final DateTimePath<Timestamp> updatedAt =
+      createDateTime("updatedAt", Timestamp.class);
+
+  public QAuditRetentionProgress(final Path<? extends QAuditRetentionProgress> path) {
+    super(path.getType(), path.getMetadata(), null, "audit_retention_progress");
+    addMetadata();
+  }
+
+  public QAuditRetentionProgress(final PathMetadata metadata) {
+    super(QAuditRetentionProgress.class, metadata, null, "audit_retention_progress");
+    addMetadata();
+  }
+
+  public QAuditRetentionProgress(final String variable) {
+    super(QAuditRetentionProgress.class, forVariable(variable), null,
+        "audit_retention_progress");
+    addMetadata();
+  }
+
+  public QAuditRetentionProgress(final String variable, final String schema,
+      final String table) {
+    super(QAuditRetentionProgress.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(applicationName, ColumnMetadata.named("application_name").withIndex(1)
+        .ofType(Types.VARCHAR).withSize(255).notNull());
+    addMetadata(cutoff, ColumnMetadata.named("cutoff").withIndex(2)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+    addMetadata(lastEventId, ColumnMetadata.named("last_event_id").withIndex(3)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(deletedEventCount, ColumnMetadata.named("deleted_event_count").withIndex(4)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(updatedAt, ColumnMetadata.named("updated_at").withIndex(5)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QEventDataIndex is a Querydsl query type for the event_data_index table, the lookup of the
+ * events by the values of their indexed STRING event data.
+ */
+public class QEventDataIndex extends RelationalPathBase<QEventDataIndex> {
+
+  public static final QEventDataIndex eventDataIndex = new QEventDataIndex("event_data_index");
+
+  private static final long serialVersionUID = 1L;
+
+  public final StringPath eventDataName = createString("eventDataName");
+
+  public final NumberPath<Long> eventId = createNumber("eventId", Long.class);
+
+  public final NumberPath<Long> eventTypeId = createNumber("eventTypeId", Long.class);
+
+  public final DateTimePath<Timestamp> occuredAt = createDateTime("occuredAt", Timestamp.class);
+
+  public final StringPath stringValue = createString("stringValue");
+
+  // declared after the columns of the key, so they are initialized already
+  public final PrimaryKey<QEventDataIndex> pkEventDataIndex =
+      createPrimaryKey(eventDataName, stringValue, occuredAt, eventId);
+
+  public QEventDataIndex(final Path<? extends QEventDataIndex> path) {
+    super(path.getType(), path.getMetadata(), null, "event_data_index");
+    addMetadata();
+  }
+
+  public QEventDataIndex(final PathMetadata metadata) {
+    super(QEventDataIndex.class, metadata, null, "event_data_index");
+    addMetadata();
+  }
+
+  public QEventDataIndex(final String variable) {
+    super(QEventDataIndex.class, forVariable(variable), null, "event_data_index");
+    addMetadata();
+  }
+
+  public QEventDataIndex(final String variable, final String schema, final String table) {
+    super(QEventDataIndex.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(eventDataName, ColumnMetadata.named("event_data_name").withIndex(1)
+        .ofType(Types.VARCHAR).withSize(255).notNull());
+    addMetadata(stringValue, ColumnMetadata.named("string_value").withIndex(2)
+        .ofType(Types.VARCHAR).withSize(255).notNull());
+    addMetadata(occuredAt, ColumnMetadata.named("occured_at").withIndex(3)
+        .ofType(Types.TIMESTAMP).withSize(23).withDigits(10).notNull());
+    addMetadata(eventId, ColumnMetadata.named("event_id").withIndex(4)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(eventTypeId, ColumnMetadata.named("event_type_id").withIndex(5)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+  }
+
+}
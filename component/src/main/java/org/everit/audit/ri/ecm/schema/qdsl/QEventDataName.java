@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QEventDataName is a Querydsl query type for the event_data_name table, the dictionary of the
+ * event data names referenced by the event_data rows.
+ */
+public class QEventDataName extends RelationalPathBase<QEventDataName> {
+
+  public static final QEventDataName eventDataName1 = new QEventDataName("event_data_name");
+
+  private static final long serialVersionUID = 1L;
+
+  public final StringPath eventDataName = createString("eventDataName");
+
+  public final NumberPath<Integer> eventDataNameId =
+      createNumber("eventDataNameId", Integer.class);
+
+  public final PrimaryKey<QEventDataName> pkEventDataName = createPrimaryKey(eventDataNameId);
+
+  public QEventDataName(final Path<? extends QEventDataName> path) {
+    super(path.getType(), path.getMetadata(), null, "event_data_name");
+    addMetadata();
+  }
+
+  public QEventDataName(final PathMetadata metadata) {
+    super(QEventDataName.class, metadata, null, "event_data_name");
+    addMetadata();
+  }
+
+  public QEventDataName(final String variable) {
+    super(QEventDataName.class, forVariable(variable), null, "event_data_name");
+    addMetadata();
+  }
+
+  public QEventDataName(final String variable, final String schema, final String table) {
+    super(QEventDataName.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(eventDataNameId, ColumnMetadata.named("event_data_name_id").withIndex(1)
+        .ofType(Types.INTEGER).withSize(10).notNull());
+    addMetadata(eventDataName, ColumnMetadata.named("event_data_name").withIndex(2)
+        .ofType(Types.VARCHAR).withSize(255).notNull());
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QEventDataNameRef is a Querydsl query type for the event_data_name_id column that this
+ * component adds to the event_data table. Its default instance uses the same variable as
+ * {@link org.everit.audit.ri.schema.qdsl.QEventData#eventData}, so its paths can be used in the
+ * queries and inserts of that instance.
+ */
+public class QEventDataNameRef extends RelationalPathBase<QEventDataNameRef> {
+
+  public static final QEventDataNameRef eventDataNameRef = new QEventDataNameRef("event_data");
+
+  private static final long serialVersionUID = 1L;
+
+  public final NumberPath<Long> eventDataId = createNumber("eventDataId", Long.class);
+
+  public final NumberPath<Integer> eventDataNameId =
+      createNumber("eventDataNameId", Integer.class);
+
+  public QEventDataNameRef(final Path<? extends QEventDataNameRef> path) {
+    super(path.getType(), path.getMetadata(), null, "event_data");
+    addMetadata();
+  }
+
+  public QEventDataNameRef(final PathMetadata metadata) {
+    super(QEventDataNameRef.class, metadata, null, "event_data");
+    addMetadata();
+  }
+
+  public QEventDataNameRef(final String variable) {
+    super(QEventDataNameRef.class, forVariable(variable), null, "event_data");
+    addMetadata();
+  }
+
+  public QEventDataNameRef(final String variable, final String schema, final String table) {
+    super(QEventDataNameRef.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(eventDataId, ColumnMetadata.named("event_data_id")
+        .ofType(Types.BIGINT).withSize(19).notNull());
+    addMetadata(eventDataNameId, ColumnMetadata.named("event_data_name_id")
+        .ofType(Types.INTEGER).withSize(10));
+  }
+
+}
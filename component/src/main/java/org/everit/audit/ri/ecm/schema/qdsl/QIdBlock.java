@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.schema.qdsl;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * QIdBlock is a Querydsl query type for the id_block table that stores the next free identifier
+ * of the block allocated identifier sequences.
+ */
+public class QIdBlock extends RelationalPathBase<QIdBlock> {
+
+  public static final QIdBlock idBlock = new QIdBlock("id_block");
+
+  private static final long serialVersionUID = 1L;
+
+  public final StringPath blockName = createString("blockName");
+
+  public final NumberPath<Long> nextValue = createNumber("nextValue", Long.class);
+
+  public final PrimaryKey<QIdBlock> pkIdBlock = createPrimaryKey(blockName);
+
+  public QIdBlock(final Path<? extends QIdBlock> path) {
+    super(path.getType(), path.getMetadata(), null, "id_block");
+    addMetadata();
+  }
+
+  public QIdBlock(final PathMetadata metadata) {
+    super(QIdBlock.class, metadata, null, "id_block");
+    addMetadata();
+  }
+
+  public QIdBlock(final String variable) {
+    super(QIdBlock.class, forVariable(variable), null, "id_block");
+    addMetadata();
+  }
+
+  public QIdBlock(final String variable, final String schema, final String table) {
+    super(QIdBlock.class, forVariable(variable), schema, table);
+    addMetadata();
+  }
+
+  private void addMetadata() {
+    addMetadata(blockName, ColumnMetadata.named("block_name").withIndex(1)
+        .ofType(Types.VARCHAR).withSize(64).notNull());
+    addMetadata(nextValue, ColumnMetadata.named("next_value").withIndex(2)
+        .ofType(Types.BIGINT).withSize(19).notNull());
+  }
+
+}
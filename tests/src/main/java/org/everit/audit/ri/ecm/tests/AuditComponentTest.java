@@ -15,16 +15,46 @@
  */
 package org.everit.audit.ri.ecm.tests;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.everit.audit.AuditEventTypeManager;
 import org.everit.audit.LoggingService;
 import org.everit.audit.dto.AuditEvent;
+import org.everit.audit.dto.AuditEventType;
 import org.everit.audit.dto.EventData;
 import org.everit.audit.dto.EventData.Builder;
 import org.everit.audit.dto.EventDataType;
@@ -36,7 +66,29 @@ import org.everit.audit.ri.authorization.AuditRiAuthorizationManager;
 import org.everit.audit.ri.authorization.AuditRiPermissionChecker;
 import org.everit.audit.ri.authorization.AuditRiPermissionConstants;
 import org.everit.audit.ri.dto.AuditApplication;
+import org.everit.audit.ri.ecm.AuditArchiveService;
+import org.everit.audit.ri.ecm.AuditCacheInvalidator;
+import org.everit.audit.ri.ecm.AuditCacheStatistics;
+import org.everit.audit.ri.ecm.AuditEventCodec;
+import org.everit.audit.ri.ecm.AuditEventPage;
+import org.everit.audit.ri.ecm.AuditEventQuery;
+import org.everit.audit.ri.ecm.AuditEventQueryService;
+import org.everit.audit.ri.ecm.AuditMetrics;
+import org.everit.audit.ri.ecm.AuditRetentionStatistics;
 import org.everit.audit.ri.ecm.AuditRiComponentConstants;
+import org.everit.audit.ri.ecm.BulkLoggingService;
+import org.everit.audit.ri.ecm.CompressedText;
+import org.everit.audit.ri.ecm.InternalBulkLoggingService;
+import org.everit.audit.ri.ecm.OperationMetrics;
+import org.everit.audit.ri.ecm.StoredAuditEvent;
+import org.everit.audit.ri.ecm.Utf8Slice;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditCacheChange;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditEventTypeUsage;
+import org.everit.audit.ri.ecm.schema.qdsl.QAuditPartition;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataIndex;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataName;
+import org.everit.audit.ri.ecm.schema.qdsl.QEventDataNameRef;
+import org.everit.audit.ri.ecm.schema.qdsl.QIdBlock;
 import org.everit.audit.ri.props.AuditRiPropertyConstants;
 import org.everit.audit.ri.schema.qdsl.QApplication;
 import org.everit.audit.ri.schema.qdsl.QEvent;
@@ -63,16 +115,26 @@ import org.everit.props.PropertyManager;
 import org.everit.props.ri.schema.qdsl.QProperty;
 import org.everit.resource.ResourceService;
 import org.everit.resource.ri.schema.qdsl.QResource;
+import org.everit.transaction.propagator.TransactionPropagator;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.log.LogService;
+import org.osgi.util.tracker.ServiceTracker;
 
 import com.querydsl.core.Tuple;
 import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLListener;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
 
 import aQute.bnd.annotation.headers.ProvideCapability;
 
@@ -91,18 +153,94 @@ import aQute.bnd.annotation.headers.ProvideCapability;
 @TestDuringDevelopment
 public class AuditComponentTest {
 
+  private static final String ASYNC_LOGGING_SERVICE_FILTER = "(" + Constants.SERVICE_PID + "="
+      + AuditRiComponentConstants.ASYNC_SERVICE_FACTORY_PID
+      + ".d249a056-0b11-43ae-8d54-2cc760397508)";
+
+  private static final long ASYNC_WAIT_TIMEOUT = 10000;
+
+  /**
+   * Names of the test events that are encoded as dictionary references.
+   */
+  private static final String[] CODEC_DICTIONARY = new String[] { "login", "userId", "sessionId",
+      "ipAddress", "request", "response", "amount", "createdAt" };
+
+  private static final String COMPRESSION_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=compression-internal-audit-component)";
+
+  private static final int CONCURRENT_THREAD_COUNT = 32;
+
+  private static final String DICTIONARY_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=dictionary-internal-audit-component)";
+
+  private static final String EMBEDDED_LOGGING_SERVICE_FILTER = "(" + Constants.SERVICE_PID + "="
+      + AuditRiComponentConstants.EMBEDDED_SERVICE_FACTORY_PID
+      + ".80724b99-df3f-42ca-88d3-d5426b1ac797)";
+
+  private static final int EVENT_DATA_COUNT = 20;
+
+  private static final EventDataStatementCounter EVENT_DATA_STATEMENT_COUNTER =
+      new EventDataStatementCounter();
+
+  private static final InsertStatementCounter EVENT_INSERT_COUNTER =
+      new InsertStatementCounter(QEvent.event);
+
+  private static final InsertStatementCounter EVENT_TYPE_INSERT_COUNTER =
+      new InsertStatementCounter(QEventType.eventType);
+
   private static final int EXPECTED_EVENT_DATA_LIST_SIZE = 4;
 
+  private static final String GROUP_COMMIT_LOGGING_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=group-commit-audit-component)";
+
   private static final int HUNDRED = 100;
 
+  private static final int HUNDRED_THOUSAND = 100000;
+
+  private static final String INDEX_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=index-internal-audit-component)";
+
+  /**
+   * The internal audit component with the default configuration. The opt-in features are tested
+   * with their own internal audit components.
+   */
+  private static final String INTERNAL_SERVICE_FILTER = "(" + Constants.SERVICE_PID + "="
+      + AuditRiComponentConstants.INTERNAL_SERVICE_FACTORY_PID
+      + ".7d1370f3-84b8-414f-a817-74a384636d97)";
+
+  private static final String INVALIDATION_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=invalidation-internal-audit-component)";
+
   private static final int NUMBER_INDEX = 2;
 
   private static final String NUMBER_N = "number";
 
   private static final double NUMBER_V = 10.75;
 
+  private static final int NANOS_PER_SECOND = 1000000000;
+
+  private static final long RANDOM_SEED = 20110101L;
+
+  /**
+   * Edge cases of the NUMBER values. NaN is not included, because EventData instances with NaN
+   * value are never equal.
+   */
+  private static final double[] SPECIAL_NUMBERS = new double[] { 0.0, -0.0, Double.MIN_VALUE,
+      Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+  private static final long OFF_HEAP_QUEUE_CAPACITY = 1024;
+
+  private static final String OFF_HEAP_ASYNC_LOGGING_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=off-heap-async-logging-component)";
+
+  private static final String PARTITION_SERVICE_FILTER =
+      "(" + Constants.SERVICE_DESCRIPTION + "=partition-internal-audit-component)";
+
   private static final int STRING_INDEX = 0;
 
+  private static final String SPOOL_LOGGING_SERVICE_FILTER = "(" + Constants.SERVICE_PID + "="
+      + AuditRiComponentConstants.SPOOL_SERVICE_FACTORY_PID + ".*)";
+
   private static final String STRING_N = "string";
 
   private static final String STRING_V = "string-value";
@@ -111,6 +249,8 @@ public class AuditComponentTest {
 
   private static final int TEXT_INDEX = 1;
 
+  private static final int THOUSAND = 1000;
+
   private static final String TEXT_N = "text";
 
   private static final String TEXT_V = "text-value";
@@ -121,30 +261,66 @@ public class AuditComponentTest {
 
   private static final Instant TIMESTAMP_V = Instant.now();
 
+  private LoggingService asyncLoggingService;
+
   private Map<?, ?> auditApplicationCache;
 
   private AuditApplicationManager auditApplicationManager; // check
 
+  private AuditArchiveService auditArchiveService;
+
   private Map<?, ?> auditEventTypeCache;
 
+  private AuditEventQueryService auditEventQueryService;
+
   private AuditEventTypeManager auditEventTypeManager; // check
 
+  private AuditRetentionStatistics auditRetentionStatistics;
+
   private AuditRiAuthorizationManager auditRiAuthorizationManager; // check
 
   private AuditRiPermissionChecker auditRiPermissionChecker; // check
 
   private AuthenticationPropagator authenticationPropagator;
 
+  private BulkLoggingService bulkLoggingService;
+
+  private InternalLoggingService compressionLoggingService;
+
+  private ConfigurationAdmin configurationAdmin;
+
+  private InternalLoggingService dictionaryLoggingService;
+
   private String embeddedAuditApplicationName;
 
+  private AuditMetrics embeddedAuditMetrics;
+
+  private LoggingService groupCommitLoggingService;
+
+  private InternalBulkLoggingService indexBulkLoggingService;
+
+  private AuditEventQueryService indexQueryService;
+
   private InternalAuditEventTypeManager internalAuditEventTypeManager; // check
 
+  private AuditMetrics internalAuditMetrics;
+
+  private InternalBulkLoggingService internalBulkLoggingService;
+
   private InternalLoggingService internalLoggingService;
 
+  private AuditCacheInvalidator invalidationCacheInvalidator;
+
   private LoggingService loggingService; // check
 
   private LogService logService;
 
+  private LoggingService offHeapAsyncLoggingService;
+
+  private InternalBulkLoggingService partitionBulkLoggingService;
+
+  private AuditEventQueryService partitionQueryService;
+
   private PermissionChecker permissionChecker;
 
   private PropertyManager propertyManager;
@@ -153,6 +329,12 @@ public class AuditComponentTest {
 
   private ResourceService resourceService;
 
+  private InternalLoggingService spoolLoggingService;
+
+  private ConcurrentMap<String, String> testCache;
+
+  private TransactionPropagator transactionPropagator;
+
   /**
    * Cleans up the database and caches after a test.
    */
@@ -163,6 +345,13 @@ public class AuditComponentTest {
     clearAuditCaches();
   }
 
+  private void addStatementListener(final SQLListener listener) {
+    querydslSupport.execute((connection, configuration) -> {
+      configuration.addListener(listener);
+      return null;
+    });
+  }
+
   private void assertAuditApplicationExists(final String expectedApplicationName) {
 
     String actualApplicationName = querydslSupport.execute((connection, configuration) -> {
@@ -264,6 +453,57 @@ public class AuditComponentTest {
         eventDataList.get(TIMESTAMP_INDEX));
   }
 
+  private void assertAuditEventEquals(final AuditEvent expected, final AuditEvent actual) {
+    Assert.assertEquals(expected.eventTypeName, actual.eventTypeName);
+    Assert.assertEquals(expected.occuredAt, actual.occuredAt);
+    Assert.assertEquals(Arrays.asList(expected.eventDataArray),
+        Arrays.asList(actual.eventDataArray));
+  }
+
+  private void assertApplicationEvicted(final String applicationName, final long applicationId) {
+    long deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+    while (isApplicationCached(applicationName, applicationId)
+        && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(HUNDRED);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+    Assert.assertFalse(isApplicationCached(applicationName, applicationId));
+  }
+
+  private void assertEventCountDropped(final String eventTypeName, final long expectedCount) {
+    long deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+    long actualCount = countEvents(eventTypeName);
+    while (actualCount > expectedCount && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(HUNDRED);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      actualCount = countEvents(eventTypeName);
+    }
+    Assert.assertEquals(expectedCount, actualCount);
+  }
+
+  private void assertEventCountReached(final String eventTypeName, final long expectedCount) {
+    long deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+    long actualCount = countEvents(eventTypeName);
+    while (actualCount < expectedCount && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(HUNDRED);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      actualCount = countEvents(eventTypeName);
+    }
+    Assert.assertEquals(expectedCount, actualCount);
+  }
+
   @Before
   public void before() {
     clearAuditCaches();
@@ -275,6 +515,8 @@ public class AuditComponentTest {
       new SQLDeleteClause(connection, configuration, QEventData.eventData).execute();
       new SQLDeleteClause(connection, configuration, QEvent.event).execute();
       new SQLDeleteClause(connection, configuration, QEventType.eventType).execute();
+      new SQLDeleteClause(connection, configuration, QAuditEventTypeUsage.auditEventTypeUsage)
+          .execute();
 
       return null;
     });
@@ -287,6 +529,43 @@ public class AuditComponentTest {
       QEvent qEvent = QEvent.event;
       QEventType qEventType = QEventType.eventType;
       QApplication qApplication = QApplication.application;
+      QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+      QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+
+      // the tables of the partitions reference the event types of the application
+      List<String> tableSuffixes = new SQLQuery<Void>(connection, configuration)
+          .select(qAuditPartition.tableSuffix)
+          .from(qAuditPartition)
+          .innerJoin(qApplication)
+          .on(qApplication.applicationId.eq(qAuditPartition.applicationId))
+          .where(qApplication.applicationName.eq(applicationName))
+          .fetch();
+      for (String tableSuffix : tableSuffixes) {
+        for (String tablePrefix : new String[] { "event_data_index_p", "event_data_p",
+            "event_p" }) {
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS "
+                + configuration.getTemplates().quoteIdentifier(tablePrefix + tableSuffix));
+          } catch (SQLException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }
+      new SQLDeleteClause(connection, configuration, qAuditPartition)
+          .where(qAuditPartition.applicationId.in(SQLExpressions
+              .select(qApplication.applicationId)
+              .from(qApplication)
+              .where(qApplication.applicationName.eq(applicationName))))
+          .execute();
+
+      new SQLDeleteClause(connection, configuration, qEventDataIndex)
+          .where(SQLExpressions.select(qApplication.applicationId)
+              .from(qApplication)
+              .innerJoin(qEventType).on(qEventType.applicationId.eq(qApplication.applicationId))
+              .where(qApplication.applicationName.eq(applicationName)
+                  .and(qEventType.eventTypeId.eq(qEventDataIndex.eventTypeId)))
+              .exists())
+          .execute();
 
       new SQLDeleteClause(connection, configuration, qEventData)
           .where(SQLExpressions.select(qApplication.applicationId)
@@ -359,6 +638,126 @@ public class AuditComponentTest {
     });
   }
 
+  private long countEvents(final String eventTypeName) {
+    return querydslSupport.execute((connection, configuration) -> {
+
+      QEvent qEvent = QEvent.event;
+      QEventType qEventType = QEventType.eventType;
+
+      return new SQLQuery<Long>(connection, configuration)
+          .select(qEvent.eventId.count())
+          .from(qEvent)
+          .innerJoin(qEventType)
+          .on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+          .where(qEventType.eventTypeName.eq(eventTypeName))
+          .fetchOne();
+    });
+  }
+
+  private long countEventData(final String eventTypeName) {
+    return querydslSupport.execute((connection, configuration) -> {
+
+      QEventData qEventData = QEventData.eventData;
+      QEvent qEvent = QEvent.event;
+      QEventType qEventType = QEventType.eventType;
+
+      return new SQLQuery<Long>(connection, configuration)
+          .select(qEventData.eventDataId.count())
+          .from(qEventData)
+          .innerJoin(qEvent)
+          .on(qEvent.eventId.eq(qEventData.eventId))
+          .innerJoin(qEventType)
+          .on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+          .where(qEventType.eventTypeName.eq(eventTypeName))
+          .fetchOne();
+    });
+  }
+
+  private long countEventTypes(final String eventTypeNamePattern) {
+    return querydslSupport.execute((connection, configuration) -> {
+
+      QEventType qEventType = QEventType.eventType;
+
+      return new SQLQuery<Long>(connection, configuration)
+          .select(qEventType.eventTypeId.count())
+          .from(qEventType)
+          .where(qEventType.eventTypeName.like(eventTypeNamePattern))
+          .fetchOne();
+    });
+  }
+
+  private long countCacheChanges(final String applicationName) {
+    return querydslSupport.execute((connection, configuration) -> {
+
+      QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+
+      return new SQLQuery<Long>(connection, configuration)
+          .select(qAuditCacheChange.changeId.count())
+          .from(qAuditCacheChange)
+          .where(qAuditCacheChange.applicationName.eq(applicationName))
+          .fetchOne();
+    });
+  }
+
+  /**
+   * Creates an event with random names and values. Half of the names are in the
+   * {@link #CODEC_DICTIONARY}.
+   */
+  private AuditEvent createRandomEvent(final Random random) {
+    AuditEvent.Builder builder = new AuditEvent.Builder().eventTypeName(random.nextBoolean()
+        ? CODEC_DICTIONARY[0] : createRandomString(random, HUNDRED));
+    if (random.nextBoolean()) {
+      builder.occuredAt(createRandomInstant(random));
+    }
+    int eventDataCount = random.nextInt(CODEC_DICTIONARY.length + 1);
+    for (int i = 0; i < eventDataCount; i++) {
+      String eventDataName = random.nextBoolean()
+          ? CODEC_DICTIONARY[i] : i + createRandomString(random, HUNDRED);
+      switch (EventDataType.values()[random.nextInt(EventDataType.values().length)]) {
+        case STRING:
+          builder.addStringEventData(eventDataName, createRandomString(random, HUNDRED));
+          break;
+        case TEXT:
+          builder.addTextEventData(eventDataName, false,
+              createRandomString(random, TEN_THOUSAND));
+          break;
+        case NUMBER:
+          builder.addNumberEventData(eventDataName, random.nextBoolean()
+              ? SPECIAL_NUMBERS[random.nextInt(SPECIAL_NUMBERS.length)]
+              : random.nextDouble() * random.nextLong());
+          break;
+        case TIMESTAMP:
+          builder.addTimestampEventData(eventDataName, createRandomInstant(random));
+          break;
+        default:
+          throw new IllegalStateException("unsupported eventDataType");
+      }
+    }
+    return builder.build();
+  }
+
+  private Instant createRandomInstant(final Random random) {
+    // the shifted value is within the range of Instant
+    return Instant.ofEpochSecond(random.nextLong() >> Byte.SIZE, random.nextInt(NANOS_PER_SECOND));
+  }
+
+  /**
+   * Creates a string of one to four byte long UTF-8 characters.
+   */
+  private String createRandomString(final Random random, final int maxLength) {
+    int[] firstCodePoints = new int[] { 0, 0x80, 0x800, Character.MIN_SUPPLEMENTARY_CODE_POINT };
+    int[] lastCodePoints = new int[] { 0x7F, 0x7FF, Character.MIN_SURROGATE - 1,
+        Character.MAX_CODE_POINT };
+    int length = random.nextInt(maxLength);
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      int range = random.nextInt(firstCodePoints.length);
+      sb.appendCodePoint(firstCodePoints[range]
+          + random.nextInt(lastCodePoints[range] - firstCodePoints[range] + 1));
+    }
+    return sb.toString();
+  }
+
   private AuditEvent createTestEvent(final String eventTypeName) {
     return new AuditEvent.Builder().eventTypeName(eventTypeName)
         .addStringEventData(STRING_N, STRING_V)
@@ -384,6 +783,8 @@ public class AuditComponentTest {
       new SQLDeleteClause(connection, configuration, QEventData.eventData).execute();
       new SQLDeleteClause(connection, configuration, QEvent.event).execute();
       new SQLDeleteClause(connection, configuration, QEventType.eventType).execute();
+      new SQLDeleteClause(connection, configuration, QAuditEventTypeUsage.auditEventTypeUsage)
+          .execute();
       new SQLDeleteClause(connection, configuration, QApplication.application).execute();
 
       new SQLDeleteClause(connection, configuration, QResource.resource).execute();
@@ -393,16 +794,70 @@ public class AuditComponentTest {
     clearAuditCaches();
   }
 
+  private boolean isApplicationCached(final String applicationName, final long applicationId) {
+    if (auditApplicationCache.containsKey(applicationName)) {
+      return true;
+    }
+    for (Object value : auditEventTypeCache.values()) {
+      if (((AuditEventType) value).applicationId == applicationId) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes the listener from the Querydsl configuration shared with the components, so it does
+   * not observe the statements of the other tests.
+   */
+  private void removeStatementListener(final SQLListener listener) {
+    querydslSupport.execute((connection, configuration) -> configuration.getListeners()
+        .getListeners().remove(listener));
+  }
+
+  private String readStoredTextValue(final String eventTypeName, final String eventDataName) {
+    return querydslSupport.execute((connection, configuration) -> {
+
+      QEvent qEvent = QEvent.event;
+      QEventType qEventType = QEventType.eventType;
+      QEventData qEventData = QEventData.eventData;
+
+      return new SQLQuery<String>(connection, configuration)
+          .select(qEventData.textValue)
+          .from(qEventData)
+          .innerJoin(qEvent).on(qEvent.eventId.eq(qEventData.eventId))
+          .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+          .where(qEventType.eventTypeName.eq(eventTypeName)
+              .and(qEventData.eventDataName.eq(eventDataName)))
+          .fetchOne();
+    });
+  }
+
+  @ServiceRef(defaultValue = ASYNC_LOGGING_SERVICE_FILTER)
+  public void setAsyncLoggingService(final LoggingService asyncLoggingService) {
+    this.asyncLoggingService = asyncLoggingService;
+  }
+
   @ServiceRef(defaultValue = "(service.description=audit-application-cache)")
   public void setAuditApplicationCache(final Map<String, AuditApplication> auditApplicationCache) {
     this.auditApplicationCache = auditApplicationCache;
   }
 
-  @ServiceRef(defaultValue = "")
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
   public void setAuditApplicationManager(final AuditApplicationManager auditApplicationManager) {
     this.auditApplicationManager = auditApplicationManager;
   }
 
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
+  public void setAuditEventQueryService(final AuditEventQueryService auditEventQueryService) {
+    this.auditEventQueryService = auditEventQueryService;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setAuditArchiveService(final AuditArchiveService auditArchiveService) {
+    this.auditArchiveService = auditArchiveService;
+  }
+
   @ServiceRef(defaultValue = "(service.description=audit-event-type-cache)")
   public void setAuditEventTypeCache(final Map<?, ?> auditEventTypeCache) {
     this.auditEventTypeCache = auditEventTypeCache;
@@ -420,12 +875,18 @@ public class AuditComponentTest {
   }
 
   @ServiceRef(defaultValue = "")
+  public void setAuditRetentionStatistics(
+      final AuditRetentionStatistics auditRetentionStatistics) {
+    this.auditRetentionStatistics = auditRetentionStatistics;
+  }
+
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
   public void setAuditRiAuthorizationManager(
       final AuditRiAuthorizationManager auditRiAuthorizationManager) {
     this.auditRiAuthorizationManager = auditRiAuthorizationManager;
   }
 
-  @ServiceRef(defaultValue = "")
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
   public void setAuditRiPermissionChecker(final AuditRiPermissionChecker auditRiPermissionChecker) {
     this.auditRiPermissionChecker = auditRiPermissionChecker;
   }
@@ -436,17 +897,76 @@ public class AuditComponentTest {
   }
 
   @ServiceRef(defaultValue = "")
+  public void setBulkLoggingService(final BulkLoggingService bulkLoggingService) {
+    this.bulkLoggingService = bulkLoggingService;
+  }
+
+  @ServiceRef(defaultValue = COMPRESSION_SERVICE_FILTER)
+  public void setCompressionLoggingService(
+      final InternalLoggingService compressionLoggingService) {
+    this.compressionLoggingService = compressionLoggingService;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setConfigurationAdmin(final ConfigurationAdmin configurationAdmin) {
+    this.configurationAdmin = configurationAdmin;
+  }
+
+  @ServiceRef(defaultValue = DICTIONARY_SERVICE_FILTER)
+  public void setDictionaryLoggingService(final InternalLoggingService dictionaryLoggingService) {
+    this.dictionaryLoggingService = dictionaryLoggingService;
+  }
+
+  @ServiceRef(defaultValue = EMBEDDED_LOGGING_SERVICE_FILTER)
+  public void setEmbeddedAuditMetrics(final AuditMetrics embeddedAuditMetrics) {
+    this.embeddedAuditMetrics = embeddedAuditMetrics;
+  }
+
+  @ServiceRef(defaultValue = GROUP_COMMIT_LOGGING_SERVICE_FILTER)
+  public void setGroupCommitLoggingService(final LoggingService groupCommitLoggingService) {
+    this.groupCommitLoggingService = groupCommitLoggingService;
+  }
+
+  @ServiceRef(defaultValue = INDEX_SERVICE_FILTER)
+  public void setIndexBulkLoggingService(
+      final InternalBulkLoggingService indexBulkLoggingService) {
+    this.indexBulkLoggingService = indexBulkLoggingService;
+  }
+
+  @ServiceRef(defaultValue = INDEX_SERVICE_FILTER)
+  public void setIndexQueryService(final AuditEventQueryService indexQueryService) {
+    this.indexQueryService = indexQueryService;
+  }
+
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
   public void setInternalAuditEventTypeManager(
       final InternalAuditEventTypeManager internalAuditEventTypeManager) {
     this.internalAuditEventTypeManager = internalAuditEventTypeManager;
   }
 
-  @ServiceRef(defaultValue = "")
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
+  public void setInternalAuditMetrics(final AuditMetrics internalAuditMetrics) {
+    this.internalAuditMetrics = internalAuditMetrics;
+  }
+
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
+  public void setInternalBulkLoggingService(
+      final InternalBulkLoggingService internalBulkLoggingService) {
+    this.internalBulkLoggingService = internalBulkLoggingService;
+  }
+
+  @ServiceRef(defaultValue = INTERNAL_SERVICE_FILTER)
   public void setInternalLoggingService(final InternalLoggingService internalLoggingService) {
     this.internalLoggingService = internalLoggingService;
   }
 
-  @ServiceRef(defaultValue = "")
+  @ServiceRef(defaultValue = INVALIDATION_SERVICE_FILTER)
+  public void setInvalidationCacheInvalidator(
+      final AuditCacheInvalidator invalidationCacheInvalidator) {
+    this.invalidationCacheInvalidator = invalidationCacheInvalidator;
+  }
+
+  @ServiceRef(defaultValue = EMBEDDED_LOGGING_SERVICE_FILTER)
   public void setLoggingService(final LoggingService loggingService) {
     this.loggingService = loggingService;
   }
@@ -456,6 +976,22 @@ public class AuditComponentTest {
     this.logService = logService;
   }
 
+  @ServiceRef(defaultValue = OFF_HEAP_ASYNC_LOGGING_SERVICE_FILTER)
+  public void setOffHeapAsyncLoggingService(final LoggingService offHeapAsyncLoggingService) {
+    this.offHeapAsyncLoggingService = offHeapAsyncLoggingService;
+  }
+
+  @ServiceRef(defaultValue = PARTITION_SERVICE_FILTER)
+  public void setPartitionBulkLoggingService(
+      final InternalBulkLoggingService partitionBulkLoggingService) {
+    this.partitionBulkLoggingService = partitionBulkLoggingService;
+  }
+
+  @ServiceRef(defaultValue = PARTITION_SERVICE_FILTER)
+  public void setPartitionQueryService(final AuditEventQueryService partitionQueryService) {
+    this.partitionQueryService = partitionQueryService;
+  }
+
   @ServiceRef(defaultValue = "")
   public void setPermissionChecker(final PermissionChecker permissionChecker) {
     this.permissionChecker = permissionChecker;
@@ -476,54 +1012,811 @@ public class AuditComponentTest {
     this.resourceService = resourceService;
   }
 
+  @ServiceRef(defaultValue = SPOOL_LOGGING_SERVICE_FILTER)
+  public void setSpoolLoggingService(final InternalLoggingService spoolLoggingService) {
+    this.spoolLoggingService = spoolLoggingService;
+  }
+
+  @ServiceRef(defaultValue = "(service.description=audit-test-cache)")
+  public void setTestCache(final ConcurrentMap<String, String> testCache) {
+    this.testCache = testCache;
+  }
+
+  @ServiceRef(defaultValue = "")
+  public void setTransactionPropagator(final TransactionPropagator transactionPropagator) {
+    this.transactionPropagator = transactionPropagator;
+  }
+
   @Test
-  public void testGetAuditApplicationTypeTargetResourceId() {
+  public void testArchiveEvents() {
+
+    // the archive directory is kept between the runs
+    String eventTypeName = "archive-et-" + UUID.randomUUID();
+    int agedCount = 5;
+    Instant agedOccuredAt = Instant.parse("2000-01-01T00:00:00.123456789Z");
+
+    for (int i = 0; i < agedCount; i++) {
+      loggingService.logEvent(new AuditEvent.Builder().eventTypeName(eventTypeName)
+          .occuredAt(agedOccuredAt.plusSeconds(i))
+          .addStringEventData(STRING_N, STRING_V + i)
+          .addTextEventData(TEXT_N, false, TEXT_V)
+          .addNumberEventData(NUMBER_N, NUMBER_V + i)
+          .addTimestampEventData(TIMESTAMP_N, TIMESTAMP_V)
+          .build());
+    }
+    loggingService.logEvent(createTestEvent(eventTypeName));
 
-    long expectedAuditApplicationTypeTargetResourceId = Long.parseLong(
-        propertyManager
-            .getProperty(AuditRiPropertyConstants.AUDIT_APPLICATION_TYPE_TARGET_RESOURCE_ID));
+    // only the recent event stays in the database
+    assertEventCountDropped(eventTypeName, 1);
 
-    long actualAuditApplicationTypeTargetResourceId =
-        auditRiPermissionChecker.getAuditApplicationTypeTargetResourceId();
+    AuditEventQuery query = new AuditEventQuery.Builder()
+        .applicationName(embeddedAuditApplicationName)
+        .eventTypeNames(eventTypeName)
+        .build();
+    List<StoredAuditEvent> archivedEvents = new ArrayList<>();
+    long archivedCount = authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+        () -> auditArchiveService.streamArchivedEvents(query, archivedEvents::add));
+
+    Assert.assertEquals(agedCount, archivedCount);
+    for (int i = 0; i < agedCount; i++) {
+      StoredAuditEvent archivedEvent = archivedEvents.get(i);
+      Assert.assertEquals(eventTypeName, archivedEvent.eventTypeName);
+      Assert.assertEquals(agedOccuredAt.plusSeconds(i), archivedEvent.occuredAt);
+      EventData[] eventDataArray = archivedEvent.getAuditEvent().eventDataArray;
+      Assert.assertEquals(EXPECTED_EVENT_DATA_LIST_SIZE, eventDataArray.length);
+      Assert.assertEquals(new EventData.Builder(STRING_N).buildStringValue(STRING_V + i),
+          eventDataArray[STRING_INDEX]);
+      Assert.assertEquals(new EventData.Builder(TEXT_N).buildTextValue(false, TEXT_V),
+          eventDataArray[TEXT_INDEX]);
+      Assert.assertEquals(new EventData.Builder(NUMBER_N).buildNumberValue(NUMBER_V + i),
+          eventDataArray[NUMBER_INDEX]);
+      Assert.assertEquals(new EventData.Builder(TIMESTAMP_N).buildTimestampValue(TIMESTAMP_V),
+          eventDataArray[TIMESTAMP_INDEX]);
+    }
 
-    Assert.assertEquals(expectedAuditApplicationTypeTargetResourceId,
-        actualAuditApplicationTypeTargetResourceId);
+    // the time range of the query excludes the archived events
+    AuditEventQuery recentQuery = new AuditEventQuery.Builder()
+        .applicationName(embeddedAuditApplicationName)
+        .eventTypeNames(eventTypeName)
+        .occuredAtFrom(agedOccuredAt.plusSeconds(agedCount))
+        .build();
+    Assert.assertEquals(0, (long) authenticationPropagator.runAs(
+        permissionChecker.getSystemResourceId(),
+        () -> auditArchiveService.streamArchivedEvents(recentQuery, (event) -> Assert.fail())));
+
+    // the archived events are not returned from the database any more
+    long storedCount = authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+        () -> auditEventQueryService.streamEvents(query, (event) -> {
+        }));
+    Assert.assertEquals(1, storedCount);
   }
 
   @Test
-  public void testInitAuditApplication() {
-
-    String applicationName = UUID.randomUUID().toString();
+  public void testAsyncDeactivationPersistsQueuedEvents()
+      throws IOException, InterruptedException, InvalidSyntaxException {
+
+    String eventTypeName = "async-deactivation-et0";
+    String serviceDescription = "deactivated-async-logging-component";
+    int count = HUNDRED;
+
+    // the events of a batch linger in the writer until the component is deactivated
+    Dictionary<String, Object> properties = new Hashtable<>();
+    properties.put(Constants.SERVICE_DESCRIPTION, serviceDescription);
+    properties.put(AuditRiComponentConstants.ATTR_EMBEDDED_AUDIT_APPLICATION_NAME,
+        embeddedAuditApplicationName);
+    properties.put(AuditRiComponentConstants.ATTR_INTERNAL_BULK_LOGGING_SERVICE,
+        INTERNAL_SERVICE_FILTER);
+    properties.put(AuditRiComponentConstants.ATTR_BATCH_SIZE, count + 1);
+    properties.put(AuditRiComponentConstants.ATTR_MAX_LINGER_TIME, TimeUnit.HOURS.toMillis(1));
+    properties.put(AuditRiComponentConstants.ATTR_WRITER_THREAD_COUNT, 1);
+    Configuration configuration = configurationAdmin.createFactoryConfiguration(
+        AuditRiComponentConstants.ASYNC_SERVICE_FACTORY_PID, null);
+    configuration.update(properties);
+
+    BundleContext bundleContext = FrameworkUtil.getBundle(getClass()).getBundleContext();
+    ServiceTracker<LoggingService, LoggingService> serviceTracker = new ServiceTracker<>(
+        bundleContext, bundleContext.createFilter("(&(" + Constants.OBJECTCLASS + "="
+            + LoggingService.class.getName() + ")(" + Constants.SERVICE_DESCRIPTION + "="
+            + serviceDescription + "))"),
+        null);
+    serviceTracker.open();
+    try {
+      LoggingService deactivatedLoggingService = serviceTracker.waitForService(ASYNC_WAIT_TIMEOUT);
+      Assert.assertNotNull(deactivatedLoggingService);
+      for (int i = 0; i < count; i++) {
+        deactivatedLoggingService.logEvent(createTestEvent(eventTypeName));
+      }
+      Assert.assertEquals(0, countEvents(eventTypeName));
+    } finally {
+      serviceTracker.close();
+      configuration.delete();
+    }
 
-    // add permission
-    long authorizedResourceId = resourceService.createResource();
-    auditRiAuthorizationManager.addPermissionToInitAuditApplication(authorizedResourceId);
+    assertEventCountReached(eventTypeName, count);
+  }
 
-    // test with permission
-    authenticationPropagator.runAs(authorizedResourceId, () -> {
+  @Test
+  public void testAsyncLogEvent() {
 
-      Assert.assertTrue(auditRiPermissionChecker.hasPermissionToInitAuditApplication());
+    String eventTypeName = "async-et0";
+    int count = HUNDRED;
 
-      // insert and cache
-      auditApplicationManager.initAuditApplication(applicationName);
-      assertAuditApplicationExists(applicationName);
+    for (int i = 0; i < count; i++) {
+      asyncLoggingService.logEvent(createTestEvent(eventTypeName));
+    }
 
-      // load from cache
-      auditApplicationManager.initAuditApplication(applicationName);
-      assertAuditApplicationExists(applicationName);
+    assertEventCountReached(eventTypeName, count);
+  }
 
-      return null;
-    });
+  @Test
+  public void testAuditCache() {
+
+    testCache.clear();
+    AuditCacheStatistics statistics = (AuditCacheStatistics) testCache;
+    long evictionCount = statistics.getEvictionCount();
+    long hitCount = statistics.getHitCount();
+    long missCount = statistics.getMissCount();
+
+    testCache.put("k1", "v1");
+    testCache.put("k2", "v2");
+    Assert.assertEquals("v1", testCache.get("k1"));
+
+    // the least frequently used k2 is evicted
+    testCache.put("k3", "v3");
+    Assert.assertEquals(2, testCache.size());
+    Assert.assertNull(testCache.get("k2"));
+    Assert.assertEquals("v1", testCache.get("k1"));
+    Assert.assertEquals("v3", testCache.get("k3"));
+
+    Assert.assertEquals(evictionCount + 1, statistics.getEvictionCount());
+    Assert.assertEquals(hitCount + 3, statistics.getHitCount());
+    Assert.assertEquals(missCount + 1, statistics.getMissCount());
+
+    // the views remove the entries from the cache
+    Assert.assertTrue(testCache.keySet().remove("k1"));
+    Assert.assertEquals(1, testCache.size());
+    Iterator<String> valueIterator = testCache.values().iterator();
+    Assert.assertEquals("v3", valueIterator.next());
+    valueIterator.remove();
+    Assert.assertTrue(testCache.isEmpty());
+    Assert.assertNull(testCache.get("k3"));
+
+    testCache.clear();
+  }
 
-    // remove permission
-    auditRiAuthorizationManager.removePermissionInitAuditApplication(authorizedResourceId);
+  @Test
+  public void testAuditEventCodecDictionary() {
 
-    // test without permission
-    authenticationPropagator.runAs(authorizedResourceId, () -> {
+    AuditEventCodec codec = new AuditEventCodec();
+    AuditEventCodec dictionaryCodec =
+        new AuditEventCodec(STRING_N, TEXT_N, NUMBER_N, TIMESTAMP_N);
+    AuditEvent auditEvent = createTestEvent("codec-et0");
 
-      Assert.assertFalse(auditRiPermissionChecker.hasPermissionToInitAuditApplication());
+    byte[] encoded = dictionaryCodec.encode(auditEvent);
+    Assert.assertTrue(encoded.length < codec.encodedLength(auditEvent));
+    assertAuditEventEquals(auditEvent, dictionaryCodec.decode(ByteBuffer.wrap(encoded)));
 
-      try {
+    // the event can be decoded only with the same dictionary
+    try {
+      codec.decode(ByteBuffer.wrap(encoded));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("the audit event is encoded with a different dictionary",
+          e.getMessage());
+    }
+
+    // the string values are passed as slices of the buffer
+    List<String> visitedNames = new ArrayList<>();
+    dictionaryCodec.decode(ByteBuffer.wrap(encoded), new AuditEventCodec.Visitor() {
+
+      @Override
+      public void visitEvent(final Utf8Slice eventTypeName, final Instant occuredAt) {
+        Assert.assertTrue(eventTypeName.contentEquals("codec-et0"));
+        Assert.assertFalse(eventTypeName.contentEquals("codec-et1"));
+        Assert.assertEquals(auditEvent.occuredAt, occuredAt);
+      }
+
+      @Override
+      public void visitNumberEventData(final Utf8Slice eventDataName,
+          final double numberValue) {
+        visitedNames.add(eventDataName.toString());
+        Assert.assertEquals(NUMBER_V, numberValue, 0);
+      }
+
+      @Override
+      public void visitStringEventData(final Utf8Slice eventDataName,
+          final Utf8Slice stringValue) {
+        visitedNames.add(eventDataName.toString());
+        Assert.assertTrue(stringValue.contentEquals(STRING_V));
+        Assert.assertEquals(STRING_V.length(), stringValue.asByteBuffer().remaining());
+      }
+
+      @Override
+      public void visitTextEventData(final Utf8Slice eventDataName, final Utf8Slice textValue) {
+        visitedNames.add(eventDataName.toString());
+        Assert.assertTrue(textValue.contentEquals(TEXT_V));
+      }
+
+      @Override
+      public void visitTimestampEventData(final Utf8Slice eventDataName,
+          final Instant timestampValue) {
+        visitedNames.add(eventDataName.toString());
+        Assert.assertEquals(TIMESTAMP_V, timestampValue);
+      }
+    });
+    Assert.assertEquals(Arrays.asList(STRING_N, TEXT_N, NUMBER_N, TIMESTAMP_N), visitedNames);
+
+    // the version of the format is checked
+    encoded[0]++;
+    try {
+      dictionaryCodec.decode(ByteBuffer.wrap(encoded));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("unsupported audit event format version ["
+          + (AuditEventCodec.FORMAT_VERSION + 1) + "]", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testAuditEventCodecRoundTrip() {
+
+    Random random = new Random(RANDOM_SEED);
+    for (AuditEventCodec codec : new AuditEventCodec[] { new AuditEventCodec(),
+        new AuditEventCodec(CODEC_DICTIONARY) }) {
+
+      List<AuditEvent> auditEvents = new ArrayList<>();
+      int totalLength = 0;
+      for (int i = 0; i < THOUSAND; i++) {
+        AuditEvent auditEvent = createRandomEvent(random);
+        byte[] encoded = codec.encode(auditEvent);
+        Assert.assertEquals(codec.encodedLength(auditEvent), encoded.length);
+        assertAuditEventEquals(auditEvent, codec.decode(ByteBuffer.wrap(encoded)));
+        auditEvents.add(auditEvent);
+        totalLength += encoded.length;
+      }
+
+      // the events follow each other in a direct buffer
+      ByteBuffer buffer = ByteBuffer.allocateDirect(totalLength);
+      for (AuditEvent auditEvent : auditEvents) {
+        codec.encode(auditEvent, buffer);
+      }
+      Assert.assertFalse(buffer.hasRemaining());
+      buffer.flip();
+      for (AuditEvent auditEvent : auditEvents) {
+        assertAuditEventEquals(auditEvent, codec.decode(buffer));
+      }
+      Assert.assertFalse(buffer.hasRemaining());
+    }
+  }
+
+  @Test
+  public void testAuditMetrics() throws MalformedObjectNameException {
+
+    embeddedAuditMetrics.reset();
+
+    loggingService.logEvent(createTestEvent("metrics-et0"));
+    try {
+      loggingService.logEvent(null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("auditEvent cannot be null", e.getMessage());
+    }
+
+    OperationMetrics logEventMetrics =
+        embeddedAuditMetrics.getOperationMetrics().get("LoggingService.logEvent");
+    Assert.assertNotNull(logEventMetrics);
+    Assert.assertEquals(2, logEventMetrics.invocationCount);
+    Assert.assertEquals(1, logEventMetrics.errorCount);
+    Assert.assertTrue(logEventMetrics.maxTime > 0);
+    Assert.assertEquals(logEventMetrics.maxTime, logEventMetrics.getLatencyPercentile(HUNDRED));
+    Assert.assertTrue(logEventMetrics.getThroughput() > 0);
+
+    // the internal and the embedded components register their MBeans
+    Assert.assertEquals(2, ManagementFactory.getPlatformMBeanServer()
+        .queryNames(new ObjectName(AuditRiComponentConstants.METRICS_JMX_DOMAIN
+            + ":type=AuditMetrics,*"), null)
+        .size());
+  }
+
+  @Test
+  public void testCacheInvalidation() {
+
+    String applicationName = "cache-invalidation-application";
+    String eventTypeName = "cache-invalidation-et0";
+
+    clearAuditApplication(applicationName);
+
+    // caches the application and the event type
+    Runnable logEvent = () -> authenticationPropagator.runAs(
+        permissionChecker.getSystemResourceId(), () -> {
+          auditApplicationManager.initAuditApplication(applicationName);
+          internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+          return null;
+        });
+    logEvent.run();
+    AuditApplication auditApplication =
+        (AuditApplication) auditApplicationCache.get(applicationName);
+    Assert.assertNotNull(auditApplication);
+    Assert.assertTrue(isApplicationCached(applicationName, auditApplication.applicationId));
+
+    // a change recorded by another node is polled
+    querydslSupport.execute((connection, configuration) -> {
+      QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+      return new SQLInsertClause(connection, configuration, qAuditCacheChange)
+          .set(qAuditCacheChange.applicationName, applicationName)
+          .set(qAuditCacheChange.nodeId, UUID.randomUUID().toString())
+          .set(qAuditCacheChange.changedAt, Timestamp.from(Instant.now()))
+          .execute();
+    });
+    assertApplicationEvicted(applicationName, auditApplication.applicationId);
+
+    // a change on this node is evicted immediately and recorded for the other nodes
+    logEvent.run();
+    Assert.assertTrue(isApplicationCached(applicationName, auditApplication.applicationId));
+    long changeCount = countCacheChanges(applicationName);
+    invalidationCacheInvalidator.invalidateAuditApplication(applicationName);
+    Assert.assertFalse(isApplicationCached(applicationName, auditApplication.applicationId));
+    Assert.assertEquals(changeCount + 1, countCacheChanges(applicationName));
+
+    // a change committed after the changes with higher identifiers is polled
+    logEvent.run();
+    Assert.assertTrue(isApplicationCached(applicationName, auditApplication.applicationId));
+    querydslSupport.execute((connection, configuration) -> {
+      QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+      return new SQLInsertClause(connection, configuration, qAuditCacheChange)
+          .set(qAuditCacheChange.changeId, 0L)
+          .set(qAuditCacheChange.applicationName, applicationName)
+          .set(qAuditCacheChange.nodeId, UUID.randomUUID().toString())
+          .set(qAuditCacheChange.changedAt, Timestamp.from(Instant.now()))
+          .execute();
+    });
+    assertApplicationEvicted(applicationName, auditApplication.applicationId);
+
+    Assert.assertEquals(3, countEvents(eventTypeName));
+
+    querydslSupport.execute((connection, configuration) -> {
+      QAuditCacheChange qAuditCacheChange = QAuditCacheChange.auditCacheChange;
+      return new SQLDeleteClause(connection, configuration, qAuditCacheChange)
+          .where(qAuditCacheChange.applicationName.eq(applicationName))
+          .execute();
+    });
+    clearAuditApplication(applicationName);
+  }
+
+  @Test
+  public void testCacheWarmUp() throws IOException, InterruptedException, InvalidSyntaxException {
+
+    String applicationName = "cache-warm-up-application";
+    String serviceDescription = "warm-up-internal-audit-component";
+
+    clearAuditApplication(applicationName);
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(applicationName);
+      internalLoggingService.logEvent(applicationName, createTestEvent("cache-warm-up-et0"));
+      internalLoggingService.logEvent(applicationName, createTestEvent("cache-warm-up-et1"));
+      return null;
+    });
+    clearAuditCaches();
+
+    // loads the most recently used event type only, without a LogService
+    Dictionary<String, Object> properties = new Hashtable<>();
+    properties.put(Constants.SERVICE_DESCRIPTION, serviceDescription);
+    properties.put(AuditRiComponentConstants.ATTR_AUDIT_APPLICATION_CACHE,
+        "(" + Constants.SERVICE_DESCRIPTION + "=audit-application-cache)");
+    properties.put(AuditRiComponentConstants.ATTR_AUDIT_EVENT_TYPE_CACHE,
+        "(" + Constants.SERVICE_DESCRIPTION + "=audit-event-type-cache)");
+    properties.put(AuditRiComponentConstants.ATTR_CACHE_WARM_UP, true);
+    properties.put(AuditRiComponentConstants.ATTR_CACHE_WARM_UP_LIMIT, 1);
+    properties.put(AuditRiComponentConstants.ATTR_LOG_SERVICE,
+        "(" + Constants.SERVICE_DESCRIPTION + "=missing-log-service)");
+    properties.put(AuditRiComponentConstants.ATTR_METRICS_ENABLED, false);
+    Configuration configuration = configurationAdmin.createFactoryConfiguration(
+        AuditRiComponentConstants.INTERNAL_SERVICE_FACTORY_PID, null);
+    configuration.update(properties);
+
+    BundleContext bundleContext = FrameworkUtil.getBundle(getClass()).getBundleContext();
+    ServiceTracker<AuditEventQueryService, AuditEventQueryService> serviceTracker =
+        new ServiceTracker<>(bundleContext, bundleContext.createFilter("(&("
+            + Constants.OBJECTCLASS + "=" + AuditEventQueryService.class.getName() + ")("
+            + Constants.SERVICE_DESCRIPTION + "=" + serviceDescription + "))"),
+            null);
+    serviceTracker.open();
+    try {
+      Assert.assertNotNull(serviceTracker.waitForService(ASYNC_WAIT_TIMEOUT));
+      long deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+      while (auditEventTypeCache.isEmpty() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(HUNDRED);
+      }
+      List<String> eventTypeNames = new ArrayList<>();
+      for (Object value : auditEventTypeCache.values()) {
+        eventTypeNames.add(((AuditEventType) value).eventTypeName);
+      }
+      Assert.assertEquals(Collections.singletonList("cache-warm-up-et1"), eventTypeNames);
+      Assert.assertTrue(auditApplicationCache.containsKey(applicationName));
+    } finally {
+      serviceTracker.close();
+      configuration.delete();
+    }
+
+    clearAuditApplication(applicationName);
+  }
+
+  @Test
+  public void testEventDataNameDictionary() {
+
+    String eventTypeName = "dictionary-et0";
+    int count = 3;
+
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+      for (int i = 0; i < count; i++) {
+        dictionaryLoggingService.logEvent(embeddedAuditApplicationName,
+            createTestEvent(eventTypeName));
+      }
+      return null;
+    });
+
+    List<Tuple> tuples = querydslSupport.execute((connection, configuration) -> {
+
+      QEvent qEvent = QEvent.event;
+      QEventType qEventType = QEventType.eventType;
+      QEventData qEventData = QEventData.eventData;
+      QEventDataNameRef qEventDataNameRef = QEventDataNameRef.eventDataNameRef;
+
+      return new SQLQuery<Void>(connection, configuration)
+          .select(qEventData.eventDataName, qEventDataNameRef.eventDataNameId)
+          .from(qEventData)
+          .innerJoin(qEvent).on(qEvent.eventId.eq(qEventData.eventId))
+          .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+          .where(qEventType.eventTypeName.eq(eventTypeName))
+          .fetch();
+    });
+
+    // the rows of the event_data table reference the names and keep storing them
+    Assert.assertEquals(count * EXPECTED_EVENT_DATA_LIST_SIZE, tuples.size());
+    Set<String> names = new HashSet<>();
+    Set<Integer> nameIds = new HashSet<>();
+    for (Tuple tuple : tuples) {
+      names.add(tuple.get(QEventData.eventData.eventDataName));
+      Integer nameId = tuple.get(QEventDataNameRef.eventDataNameRef.eventDataNameId);
+      Assert.assertNotNull(nameId);
+      nameIds.add(nameId);
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList(STRING_N, TEXT_N, NUMBER_N, TIMESTAMP_N)),
+        names);
+    Assert.assertEquals(EXPECTED_EVENT_DATA_LIST_SIZE, nameIds.size());
+
+    long dictionarySize = querydslSupport.execute((connection, configuration) -> {
+      QEventDataName qEventDataName = QEventDataName.eventDataName1;
+      return new SQLQuery<Void>(connection, configuration)
+          .select(qEventDataName.eventDataNameId.count())
+          .from(qEventDataName)
+          .where(qEventDataName.eventDataName.in(STRING_N, TEXT_N, NUMBER_N, TIMESTAMP_N))
+          .fetchOne();
+    });
+    Assert.assertEquals(EXPECTED_EVENT_DATA_LIST_SIZE, dictionarySize);
+  }
+
+  @Test
+  public void testFindEvents() {
+
+    String eventTypeName = "page-et0";
+    int count = 25;
+    int pageSize = 10;
+
+    for (int i = 0; i < count; i++) {
+      loggingService.logEvent(createTestEvent(eventTypeName));
+    }
+
+    AuditEventQuery query = new AuditEventQuery.Builder()
+        .applicationName(embeddedAuditApplicationName)
+        .eventTypeNames(eventTypeName)
+        .build();
+
+    List<Long> streamedEventIds = new ArrayList<>();
+    List<Long> pagedEventIds = new ArrayList<>();
+    List<Integer> pageSizes = new ArrayList<>();
+
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditEventQueryService.streamEvents(query,
+          (storedAuditEvent) -> streamedEventIds.add(storedAuditEvent.eventId));
+
+      String continuationToken = null;
+      do {
+        AuditEventPage page =
+            auditEventQueryService.findEvents(query, continuationToken, pageSize);
+        pageSizes.add(page.events.size());
+        for (StoredAuditEvent storedAuditEvent : page.events) {
+          pagedEventIds.add(storedAuditEvent.eventId);
+          Assert.assertEquals(EXPECTED_EVENT_DATA_LIST_SIZE,
+              storedAuditEvent.getAuditEvent().eventDataArray.length);
+        }
+        continuationToken = page.nextContinuationToken;
+      } while (continuationToken != null);
+
+      try {
+        auditEventQueryService.findEvents(query, "invalid", pageSize);
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        Assert.assertEquals("invalid continuation token [invalid]", e.getMessage());
+      }
+      return null;
+    });
+
+    Assert.assertEquals(Arrays.asList(pageSize, pageSize, count - 2 * pageSize), pageSizes);
+    Assert.assertEquals(count, streamedEventIds.size());
+    Assert.assertEquals(streamedEventIds, pagedEventIds);
+
+    try {
+      auditEventQueryService.findEvents(query, null, 0);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("pageSize must be positive", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testGetAuditApplicationTypeTargetResourceId() {
+
+    long expectedAuditApplicationTypeTargetResourceId = Long.parseLong(
+        propertyManager
+            .getProperty(AuditRiPropertyConstants.AUDIT_APPLICATION_TYPE_TARGET_RESOURCE_ID));
+
+    long actualAuditApplicationTypeTargetResourceId =
+        auditRiPermissionChecker.getAuditApplicationTypeTargetResourceId();
+
+    Assert.assertEquals(expectedAuditApplicationTypeTargetResourceId,
+        actualAuditApplicationTypeTargetResourceId);
+  }
+
+  @Test
+  public void testIdBlockAllocation() {
+
+    String eventTypeName = "id-block-et0";
+
+    List<AuditEvent> auditEvents = new ArrayList<>();
+    for (int i = 0; i < HUNDRED; i++) {
+      auditEvents.add(createTestEvent(eventTypeName));
+    }
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+      internalBulkLoggingService.logEvents(embeddedAuditApplicationName, auditEvents);
+      return null;
+    });
+
+    querydslSupport.execute((connection, configuration) -> {
+
+      QEvent qEvent = QEvent.event;
+      QEventType qEventType = QEventType.eventType;
+      QEventData qEventData = QEventData.eventData;
+      QIdBlock qIdBlock = QIdBlock.idBlock;
+
+      // the events of one call get consecutive allocated identifiers
+      List<Long> eventIds = new SQLQuery<Long>(connection, configuration)
+          .select(qEvent.eventId)
+          .from(qEvent)
+          .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+          .where(qEventType.eventTypeName.eq(eventTypeName))
+          .orderBy(qEvent.eventId.asc())
+          .fetch();
+      Assert.assertEquals(HUNDRED, eventIds.size());
+      Assert.assertEquals(HUNDRED - 1, eventIds.get(HUNDRED - 1) - eventIds.get(0));
+
+      long nextEventId = new SQLQuery<Long>(connection, configuration)
+          .select(qIdBlock.nextValue)
+          .from(qIdBlock)
+          .where(qIdBlock.blockName.eq("event"))
+          .fetchOne();
+      Assert.assertTrue(nextEventId > eventIds.get(HUNDRED - 1));
+
+      long maxEventDataId = new SQLQuery<Long>(connection, configuration)
+          .select(qEventData.eventDataId.max())
+          .from(qEventData)
+          .fetchOne();
+      long nextEventDataId = new SQLQuery<Long>(connection, configuration)
+          .select(qIdBlock.nextValue)
+          .from(qIdBlock)
+          .where(qIdBlock.blockName.eq("event_data"))
+          .fetchOne();
+      Assert.assertTrue(nextEventDataId > maxEventDataId);
+      return null;
+    });
+  }
+
+  @Test
+  public void testGroupCommitLogEvent() throws InterruptedException {
+
+    String eventTypeName = "group-commit-et0";
+
+    addStatementListener(EVENT_INSERT_COUNTER);
+    try {
+      CyclicBarrier barrier = new CyclicBarrier(CONCURRENT_THREAD_COUNT);
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < CONCURRENT_THREAD_COUNT; i++) {
+        tasks.add(() -> {
+          barrier.await();
+          groupCommitLoggingService.logEvent(createTestEvent(eventTypeName));
+          return null;
+        });
+      }
+
+      List<Throwable> failures = new ArrayList<>();
+      ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_THREAD_COUNT);
+      EVENT_INSERT_COUNTER.start();
+      try {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            failures.add(e.getCause());
+          }
+        }
+      } finally {
+        executor.shutdown();
+      }
+      int eventInsertCount = EVENT_INSERT_COUNTER.stop();
+
+      Assert.assertEquals(Collections.emptyList(), failures);
+      // the events of the concurrent calls are inserted and committed together
+      Assert.assertTrue("each event is inserted separately",
+          eventInsertCount < CONCURRENT_THREAD_COUNT);
+      // every call returned after the commit of its event
+      Assert.assertEquals(CONCURRENT_THREAD_COUNT, countEvents(eventTypeName));
+      Assert.assertEquals(CONCURRENT_THREAD_COUNT * EXPECTED_EVENT_DATA_LIST_SIZE,
+          countEventData(eventTypeName));
+    } finally {
+      removeStatementListener(EVENT_INSERT_COUNTER);
+    }
+  }
+
+  @Test
+  public void testIndexedEventData() {
+
+    // the index internal audit component of the tests indexes the userId event data
+    String applicationName = "index-application";
+    String eventTypeName = "index-et-" + UUID.randomUUID();
+    String otherEventTypeName = "index-other-et-" + UUID.randomUUID();
+    String userId = "user-" + UUID.randomUUID();
+    Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+    List<Instant> occuredAts = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      occuredAts.add(now.minusMillis(5 - i));
+    }
+
+    List<AuditEvent> auditEvents = Arrays.asList(
+        new AuditEvent.Builder()
+            .eventTypeName(eventTypeName)
+            .occuredAt(occuredAts.get(0))
+            .addStringEventData("userId", userId)
+            .build(),
+        new AuditEvent.Builder()
+            .eventTypeName(eventTypeName)
+            .occuredAt(occuredAts.get(1))
+            .addStringEventData("userId", "other-" + userId)
+            .build(),
+        new AuditEvent.Builder()
+            .eventTypeName(eventTypeName)
+            .occuredAt(occuredAts.get(2))
+            .addStringEventData("userId", userId)
+            .addStringEventData("userId", userId)
+            .addStringEventData(STRING_N, STRING_V)
+            .build(),
+        new AuditEvent.Builder()
+            .eventTypeName(eventTypeName)
+            .occuredAt(occuredAts.get(3))
+            .addStringEventData(STRING_N, userId)
+            .build(),
+        new AuditEvent.Builder()
+            .eventTypeName(otherEventTypeName)
+            .occuredAt(occuredAts.get(4))
+            .addStringEventData("userId", userId)
+            .build());
+
+    clearAuditApplication(applicationName);
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(applicationName);
+      indexBulkLoggingService.logEvents(applicationName, auditEvents);
+      return null;
+    });
+
+    // one entry per event, the event data with other names are not indexed
+    QEventDataIndex qEventDataIndex = QEventDataIndex.eventDataIndex;
+    long entryCount = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qEventDataIndex.eventId)
+            .from(qEventDataIndex)
+            .where(qEventDataIndex.stringValue.eq(userId))
+            .fetchCount());
+    Assert.assertEquals(3, entryCount);
+
+    AuditEventQuery query = new AuditEventQuery.Builder()
+        .applicationName(applicationName)
+        .eventTypeNames(eventTypeName)
+        .stringEventData("userId", userId)
+        .build();
+    AuditEventQuery allTypesQuery = new AuditEventQuery.Builder()
+        .applicationName(applicationName)
+        .stringEventData("userId", userId)
+        .build();
+    AuditEventQuery recentQuery = new AuditEventQuery.Builder()
+        .applicationName(applicationName)
+        .stringEventData("userId", userId)
+        .occuredAtFrom(occuredAts.get(1))
+        .build();
+    List<Instant> pagedOccuredAts = new ArrayList<>();
+    List<Instant> streamedOccuredAts = new ArrayList<>();
+    List<Instant> recentOccuredAts = new ArrayList<>();
+
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      String continuationToken = null;
+      do {
+        AuditEventPage page = indexQueryService.findEvents(query, continuationToken, 1);
+        for (StoredAuditEvent storedAuditEvent : page.events) {
+          pagedOccuredAts.add(storedAuditEvent.occuredAt);
+        }
+        continuationToken = page.nextContinuationToken;
+      } while (continuationToken != null);
+
+      indexQueryService.streamEvents(allTypesQuery,
+          (storedAuditEvent) -> streamedOccuredAts.add(storedAuditEvent.occuredAt));
+      indexQueryService.streamEvents(recentQuery,
+          (storedAuditEvent) -> recentOccuredAts.add(storedAuditEvent.occuredAt));
+
+      try {
+        indexQueryService.findEvents(new AuditEventQuery.Builder()
+            .applicationName(applicationName)
+            .stringEventData(STRING_N, userId)
+            .build(), null, 1);
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        Assert.assertEquals("event data [" + STRING_N + "] is not indexed", e.getMessage());
+      }
+      return null;
+    });
+
+    Assert.assertEquals(Arrays.asList(occuredAts.get(0), occuredAts.get(2)), pagedOccuredAts);
+    Assert.assertEquals(
+        Arrays.asList(occuredAts.get(0), occuredAts.get(2), occuredAts.get(4)),
+        streamedOccuredAts);
+    Assert.assertEquals(Arrays.asList(occuredAts.get(2), occuredAts.get(4)), recentOccuredAts);
+
+    clearAuditApplication(applicationName);
+  }
+
+  @Test
+  public void testInitAuditApplication() {
+
+    String applicationName = UUID.randomUUID().toString();
+
+    // add permission
+    long authorizedResourceId = resourceService.createResource();
+    auditRiAuthorizationManager.addPermissionToInitAuditApplication(authorizedResourceId);
+
+    // test with permission
+    authenticationPropagator.runAs(authorizedResourceId, () -> {
+
+      Assert.assertTrue(auditRiPermissionChecker.hasPermissionToInitAuditApplication());
+
+      // insert and cache
+      auditApplicationManager.initAuditApplication(applicationName);
+      assertAuditApplicationExists(applicationName);
+
+      // load from cache
+      auditApplicationManager.initAuditApplication(applicationName);
+      assertAuditApplicationExists(applicationName);
+
+      return null;
+    });
+
+    // remove permission
+    auditRiAuthorizationManager.removePermissionInitAuditApplication(authorizedResourceId);
+
+    // test without permission
+    authenticationPropagator.runAs(authorizedResourceId, () -> {
+
+      Assert.assertFalse(auditRiPermissionChecker.hasPermissionToInitAuditApplication());
+
+      try {
         auditApplicationManager.initAuditApplication(applicationName);
         Assert.fail();
       } catch (UnauthorizedException e) {
@@ -538,6 +1831,24 @@ public class AuditComponentTest {
 
   }
 
+  @Test
+  public void testInitAuditApplicationAndLogEventInOneTransaction() {
+    String applicationName = UUID.randomUUID().toString();
+    String eventTypeName = UUID.randomUUID().toString();
+
+    // the event type is created for an application that is not committed yet
+    transactionPropagator.required(() -> authenticationPropagator.runAs(
+        permissionChecker.getSystemResourceId(), () -> {
+          auditApplicationManager.initAuditApplication(applicationName);
+          internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+          return null;
+        }));
+
+    Assert.assertEquals(1, countEvents(eventTypeName));
+
+    clearAuditApplication(applicationName);
+  }
+
   @Test
   public void testInitAuditApplicationFail() {
     try {
@@ -588,286 +1899,1075 @@ public class AuditComponentTest {
   @Test
   public void testInitAuditEventTypesStress() {
 
-    int count = TEN_THOUSAND;
-    String[] eventTypeNames = new String[count];
-    for (int i = 0; i < count; i++) {
-      eventTypeNames[i] = "e" + i;
+    int[] counts = new int[] { THOUSAND, TEN_THOUSAND, HUNDRED_THOUSAND };
+    for (int count : counts) {
+      String[] eventTypeNames = new String[count];
+      for (int i = 0; i < count; i++) {
+        eventTypeNames[i] = "s" + count + "-e" + i;
+      }
+
+      logService.log(LogService.LOG_INFO, ">>> init " + count
+          + " event types in one transaction started");
+
+      long startAt = System.nanoTime();
+
+      auditEventTypeManager.initAuditEventTypes(eventTypeNames);
+
+      long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startAt);
+      logService.log(LogService.LOG_INFO, ">>> " + count + " event types initialized in "
+          + duration + " ms");
+
+      Assert.assertEquals(count, countEventTypes("s" + count + "-e%"));
+    }
+  }
+
+
+  @Test
+  public void testInternalInitAuditEventTypes() {
+    String nonExistentApplicationName = "non-existent-application-name";
+    String existentApplicationName = "existent-application-name";
+
+    clearAuditApplication(nonExistentApplicationName);
+    clearAuditApplication(existentApplicationName);
+
+    // initialize application
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+
+      auditApplicationManager.initAuditApplication(existentApplicationName);
+      return null;
+    });
+
+    long authorizedResourceId = resourceService.createResource();
+
+    // add permission
+    try {
+      auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
+          authorizedResourceId, nonExistentApplicationName);
+      Assert.fail();
+    } catch (UnknownAuditApplicationException e) {
+      Assert.assertEquals(nonExistentApplicationName, e.applicationName);
+    }
+
+    authenticationPropagator.runAs(authorizedResourceId, () -> {
+
+      try {
+        auditRiPermissionChecker.hasPermissionToLogToAuditApplication(nonExistentApplicationName);
+        Assert.fail();
+      } catch (UnknownAuditApplicationException e) {
+        Assert.assertEquals(nonExistentApplicationName, e.applicationName);
+      }
+      return null;
+    });
+
+    auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
+        authorizedResourceId, existentApplicationName);
+
+    // test with permission
+    authenticationPropagator.runAs(authorizedResourceId, () -> {
+
+      Assert.assertTrue(auditRiPermissionChecker
+          .hasPermissionToLogToAuditApplication(existentApplicationName));
+
+      try {
+        internalAuditEventTypeManager.initAuditEventTypes(nonExistentApplicationName, "et1");
+        Assert.fail();
+      } catch (UnknownAuditApplicationException e) {
+        Assert.assertEquals(nonExistentApplicationName, e.applicationName);
+      }
+
+      // insert and cache
+      internalAuditEventTypeManager.initAuditEventTypes(existentApplicationName, "et1");
+      assertAuditEventTypesExist(existentApplicationName, "et1");
+
+      // load from cache
+      internalAuditEventTypeManager.initAuditEventTypes(existentApplicationName, "et1");
+      assertAuditEventTypesExist(existentApplicationName, "et1");
+
+      return null;
+    });
+
+    // remove permission
+    auditRiAuthorizationManager.removePermissionLogToAuditApplication(
+        authorizedResourceId, existentApplicationName);
+
+    // test without permission
+    authenticationPropagator.runAs(authorizedResourceId,
+        () -> {
+
+          Assert.assertFalse(auditRiPermissionChecker
+              .hasPermissionToLogToAuditApplication(existentApplicationName));
+
+          try {
+            internalAuditEventTypeManager.initAuditEventTypes(existentApplicationName, "et1");
+            Assert.fail();
+          } catch (UnauthorizedException e) {
+            Assert.assertEquals(1, e.actions.length);
+            Assert.assertEquals(AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION,
+                e.actions[0]);
+            Assert.assertEquals(1, e.authorizationScope.length);
+            Assert.assertEquals(authorizedResourceId, e.authorizationScope[0]);
+          }
+
+          return null;
+        });
+
+    clearAuditApplication(nonExistentApplicationName);
+    clearAuditApplication(existentApplicationName);
+  }
+
+  @Test
+  public void testInternalInitAuditEventTypesFail() {
+
+    try {
+      internalAuditEventTypeManager.initAuditEventTypes(null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("applicationName cannot be null", e.getMessage());
+    }
+
+    String applicationName = "non-null-application-name";
+    try {
+      internalAuditEventTypeManager.initAuditEventTypes(applicationName, (String[]) null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("eventTypeNames cannot be null", e.getMessage());
+    }
+
+    try {
+      String[] eventTypeNames = new String[] { null };
+      internalAuditEventTypeManager.initAuditEventTypes(applicationName, eventTypeNames);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("eventTypeNames cannot contain null value", e.getMessage());
+    }
+
+  }
+
+  @Test
+  public void testInternalLogEvent() {
+
+    String nonExistentApplicationName = "non-existent-application-name";
+    String existentApplicationName = "existent-application-name";
+
+    clearAuditApplication(nonExistentApplicationName);
+    clearAuditApplication(existentApplicationName);
+
+    // initialize application
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+
+      auditApplicationManager.initAuditApplication(existentApplicationName);
+      return null;
+    });
+
+    long authorizedResourceId = resourceService.createResource();
+
+    // add permission
+    auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
+        authorizedResourceId, existentApplicationName);
+
+    // test with permission
+    authenticationPropagator.runAs(authorizedResourceId, () -> {
+
+      try {
+        internalLoggingService.logEvent(nonExistentApplicationName, createTestEvent("et0"));
+        Assert.fail();
+      } catch (UnknownAuditApplicationException e) {
+        Assert.assertEquals(nonExistentApplicationName, e.applicationName);
+      }
+
+      internalLoggingService.logEvent(existentApplicationName, createTestEvent("et0"));
+      assertEvent("et0");
+
+      return null;
+    });
+
+    // remove permission
+    auditRiAuthorizationManager.removePermissionLogToAuditApplication(
+        authorizedResourceId, existentApplicationName);
+
+    // test without permission
+    authenticationPropagator.runAs(authorizedResourceId,
+        () -> {
+
+          try {
+            internalLoggingService.logEvent(existentApplicationName, createTestEvent("et0"));
+            Assert.fail();
+          } catch (UnauthorizedException e) {
+            Assert.assertEquals(1, e.actions.length);
+            Assert.assertEquals(AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION,
+                e.actions[0]);
+            Assert.assertEquals(1, e.authorizationScope.length);
+            Assert.assertEquals(authorizedResourceId, e.authorizationScope[0]);
+          }
+
+          return null;
+        });
+
+    clearAuditApplication(nonExistentApplicationName);
+    clearAuditApplication(existentApplicationName);
+  }
+
+  @Test
+  public void testInternalLogEventBatchStatements() {
+
+    String eventTypeName = "batch-et0";
+
+    AuditEvent.Builder auditEventBuilder = new AuditEvent.Builder().eventTypeName(eventTypeName);
+    for (int i = 0; i < EVENT_DATA_COUNT; i++) {
+      auditEventBuilder.addStringEventData(STRING_N + i, STRING_V);
+    }
+    AuditEvent auditEvent = auditEventBuilder.build();
+    List<AuditEvent> auditEvents = Arrays.asList(auditEvent, auditEvent, auditEvent);
+
+    addStatementListener(EVENT_DATA_STATEMENT_COUNTER);
+    try {
+      authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+
+        auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+
+        // one event
+        EVENT_DATA_STATEMENT_COUNTER.start();
+        internalLoggingService.logEvent(embeddedAuditApplicationName, auditEvent);
+        Assert.assertEquals(1, EVENT_DATA_STATEMENT_COUNTER.stop());
+
+        // several events
+        EVENT_DATA_STATEMENT_COUNTER.start();
+        internalBulkLoggingService.logEvents(embeddedAuditApplicationName, auditEvents);
+        Assert.assertEquals(1, EVENT_DATA_STATEMENT_COUNTER.stop());
+
+        return null;
+      });
+
+      Assert.assertEquals(EVENT_DATA_COUNT * (1 + auditEvents.size()),
+          countEventData(eventTypeName));
+    } finally {
+      removeStatementListener(EVENT_DATA_STATEMENT_COUNTER);
+    }
+  }
+
+  @Test
+  public void testInternalLogEventFail() {
+
+    try {
+      internalLoggingService.logEvent(null, null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("applicationName cannot be null", e.getMessage());
+    }
+
+    try {
+      internalLoggingService.logEvent("non-null-application-name", null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("auditEvent cannot be null", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testLogEvent() {
+
+    String eventTypeName = "et0";
+
+    // lazy create event type
+    loggingService.logEvent(createTestEvent(eventTypeName));
+    assertEvent(eventTypeName);
+
+    clearAuditEventData(eventTypeName);
+
+    // load event type from cache
+    loggingService.logEvent(createTestEvent(eventTypeName));
+    assertEvent(eventTypeName);
+  }
+
+  @Test
+  public void testLogEventFail() {
+    try {
+      loggingService.logEvent(null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertTrue(e.getMessage().equals("auditEvent cannot be null"));
+    }
+  }
+
+  @Test
+  public void testLogEventSingleFlight() throws InterruptedException {
+
+    String eventTypeName = "single-flight-et0";
+
+    addStatementListener(EVENT_TYPE_INSERT_COUNTER);
+    try {
+      // all threads miss the event type cache at the same time
+      CyclicBarrier barrier = new CyclicBarrier(CONCURRENT_THREAD_COUNT);
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < CONCURRENT_THREAD_COUNT; i++) {
+        tasks.add(() -> {
+          barrier.await();
+          loggingService.logEvent(createTestEvent(eventTypeName));
+          return null;
+        });
+      }
+
+      List<Throwable> failures = new ArrayList<>();
+      ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_THREAD_COUNT);
+      EVENT_TYPE_INSERT_COUNTER.start();
+      try {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            failures.add(e.getCause());
+          }
+        }
+      } finally {
+        executor.shutdown();
+      }
+
+      Assert.assertEquals(1, EVENT_TYPE_INSERT_COUNTER.stop());
+      Assert.assertEquals(Collections.emptyList(), failures);
+      Assert.assertEquals(1, countEventTypes(eventTypeName));
+      Assert.assertEquals(CONCURRENT_THREAD_COUNT, countEvents(eventTypeName));
+    } finally {
+      removeStatementListener(EVENT_TYPE_INSERT_COUNTER);
+    }
+  }
+
+  @Test
+  public void testLogEventStress() {
+
+    int eventTypeCount = HUNDRED;
+    int eventsPerEventType = HUNDRED;
+
+    String[] eventTypeNames = new String[eventTypeCount];
+    List<AuditEvent> auditEvents = new ArrayList<>();
+
+    for (int i = 0; i < eventTypeCount; i++) {
+      String eventTypeName = "e" + i;
+      eventTypeNames[i] = eventTypeName;
+      for (int j = 0; j < eventsPerEventType; j++) {
+        auditEvents.add(createTestEvent(eventTypeName));
+      }
+    }
+    Collections.shuffle(auditEvents);
+
+    auditEventTypeManager.initAuditEventTypes(eventTypeNames);
+
+    int count = eventTypeCount * eventsPerEventType;
+
+    logService.log(LogService.LOG_INFO, ">>> log " + count
+        + " events (containing 4 event data) started");
+
+    long startAt = Instant.now().getEpochSecond();
+
+    for (AuditEvent auditEvent : auditEvents) {
+      loggingService.logEvent(auditEvent);
+    }
+
+    long duration = Instant.now().getEpochSecond() - startAt;
+    logService.log(LogService.LOG_INFO, ">>> " + count + " events logged in " + duration
+        + " seconds");
+  }
+
+  @Test
+  public void testLogEvents() {
+
+    String eventTypeName = "bulk-et0";
+    String otherEventTypeName = "bulk-et1";
+
+    // lazy create event types
+    List<AuditEvent> auditEvents = new ArrayList<>();
+    auditEvents.add(createTestEvent(eventTypeName));
+    for (int i = 0; i < HUNDRED; i++) {
+      auditEvents.add(createTestEvent(otherEventTypeName));
+    }
+    bulkLoggingService.logEvents(auditEvents);
+    assertEvent(eventTypeName);
+    Assert.assertEquals(HUNDRED, countEvents(otherEventTypeName));
+
+    clearAuditEventData(eventTypeName);
+
+    // load event types from cache
+    bulkLoggingService.logEvents(Arrays.asList(createTestEvent(eventTypeName)));
+    assertEvent(eventTypeName);
+
+    bulkLoggingService.logEvents(Collections.emptyList());
+
+    try {
+      bulkLoggingService.logEvents(null);
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("auditEvents cannot be null", e.getMessage());
+    }
+
+    try {
+      bulkLoggingService.logEvents(Arrays.asList(createTestEvent(eventTypeName), null));
+      Assert.fail();
+    } catch (NullPointerException e) {
+      Assert.assertEquals("auditEvents cannot contain null value", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testOffHeapAsyncLogEvent() throws InterruptedException {
+
+    String eventTypeName = "off-heap-async-et0";
+    offHeapAsyncLoggingService.logEvent(createTestEvent(eventTypeName));
+    assertEventCountReached(eventTypeName, 1);
+    // the event decoded from the ring buffer is the same as the logged one
+    assertEvent(eventTypeName);
+
+    // the events of the concurrent producers wrap around the small buffer many times
+    String otherEventTypeName = "off-heap-async-et1";
+    int eventsPerThread = HUNDRED;
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < CONCURRENT_THREAD_COUNT; i++) {
+      tasks.add(() -> {
+        for (int j = 0; j < eventsPerThread; j++) {
+          offHeapAsyncLoggingService.logEvent(createTestEvent(otherEventTypeName));
+        }
+        return null;
+      });
+    }
+
+    List<Throwable> failures = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_THREAD_COUNT);
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          failures.add(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(Collections.emptyList(), failures);
+    int expectedCount = CONCURRENT_THREAD_COUNT * eventsPerThread;
+    assertEventCountReached(otherEventTypeName, expectedCount);
+    Assert.assertEquals(expectedCount * EXPECTED_EVENT_DATA_LIST_SIZE,
+        countEventData(otherEventTypeName));
+  }
+
+  @Test
+  public void testOffHeapAuditEventQueueEncodingFailure() throws ReflectiveOperationException {
+
+    // the queue is internal to the component bundle, so it is reached by reflection
+    Class<?> queueClass = AuditEventCodec.class.getClassLoader()
+        .loadClass("org.everit.audit.ri.ecm.internal.OffHeapAuditEventQueue");
+    Object queue = queueClass.getConstructor(long.class).newInstance(OFF_HEAP_QUEUE_CAPACITY);
+    Method putMethod = queueClass.getMethod("put", AuditEvent.class);
+    Method pollMethod = queueClass.getMethod("poll", long.class, TimeUnit.class);
+    Method isEmptyMethod = queueClass.getMethod("isEmpty");
+
+    String eventTypeName = "off-heap-codec-failure-et0";
+    AuditEvent auditEvent = createTestEvent(eventTypeName);
+
+    // the names are looked up once by encodedLength and once more by encode, the lookup of the
+    // first name by encode fails after the blocks of the record are claimed
+    int failingLookup = auditEvent.eventDataArray.length + 2;
+    Field codecField = queueClass.getDeclaredField("codec");
+    codecField.setAccessible(true);
+    Field dictionaryIndexesField = AuditEventCodec.class.getDeclaredField("dictionaryIndexes");
+    dictionaryIndexesField.setAccessible(true);
+    dictionaryIndexesField.set(codecField.get(queue), new HashMap<String, Integer>() {
+
+      private static final long serialVersionUID = 1L;
+
+      private int lookupCount;
+
+      @Override
+      public Integer get(final Object key) {
+        lookupCount++;
+        if (lookupCount == failingLookup) {
+          throw new IllegalStateException("codec failure");
+        }
+        return super.get(key);
+      }
+    });
+
+    try {
+      putMethod.invoke(queue, auditEvent);
+      Assert.fail();
+    } catch (InvocationTargetException e) {
+      Assert.assertEquals("codec failure", e.getCause().getMessage());
+    }
+
+    // the claimed blocks of the failed record are skipped by the consumer
+    putMethod.invoke(queue, auditEvent);
+    AuditEvent polledAuditEvent = (AuditEvent) pollMethod.invoke(queue, ASYNC_WAIT_TIMEOUT,
+        TimeUnit.MILLISECONDS);
+    Assert.assertNotNull(polledAuditEvent);
+    Assert.assertEquals(eventTypeName, polledAuditEvent.eventTypeName);
+    Assert.assertEquals(Boolean.TRUE, isEmptyMethod.invoke(queue));
+  }
+
+  @Test
+  public void testPartitionedEvents() {
+
+    // the partition internal audit component of the tests partitions the events by day
+    String applicationName = "partition-application";
+    String eventTypeName = "partition-et-" + UUID.randomUUID();
+    long day = TimeUnit.DAYS.toMillis(1);
+    // millisecond precision survives the round trip through the timestamp columns
+    Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+    List<Instant> occuredAts = Arrays.asList(now.minusMillis(2 * day),
+        now.minusMillis(2 * day).plusMillis(1), now.minusMillis(day), now);
+
+    List<AuditEvent> auditEvents = new ArrayList<>();
+    for (Instant occuredAt : occuredAts) {
+      auditEvents.add(new AuditEvent.Builder()
+          .eventTypeName(eventTypeName)
+          .occuredAt(occuredAt)
+          .addStringEventData(STRING_N, STRING_V)
+          .build());
+    }
+
+    clearAuditApplication(applicationName);
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(applicationName);
+      partitionBulkLoggingService.logEvents(applicationName, auditEvents);
+      return null;
+    });
+
+    // the events are stored in the partitions only
+    Assert.assertEquals(0, countEvents(eventTypeName));
+
+    AuditEventQuery query = new AuditEventQuery.Builder()
+        .applicationName(applicationName)
+        .eventTypeNames(eventTypeName)
+        .build();
+    AuditEventQuery recentQuery = new AuditEventQuery.Builder()
+        .applicationName(applicationName)
+        .eventTypeNames(eventTypeName)
+        .occuredAtFrom(now.minusMillis(day))
+        .build();
+    List<Instant> streamedOccuredAts = new ArrayList<>();
+    List<Instant> pagedOccuredAts = new ArrayList<>();
+    List<Instant> recentOccuredAts = new ArrayList<>();
+
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      partitionQueryService.streamEvents(query,
+          (storedAuditEvent) -> streamedOccuredAts.add(storedAuditEvent.occuredAt));
+
+      String continuationToken = null;
+      do {
+        AuditEventPage page = partitionQueryService.findEvents(query, continuationToken, 1);
+        for (StoredAuditEvent storedAuditEvent : page.events) {
+          pagedOccuredAts.add(storedAuditEvent.occuredAt);
+          EventData[] eventDataArray = storedAuditEvent.getAuditEvent().eventDataArray;
+          Assert.assertEquals(1, eventDataArray.length);
+          Assert.assertEquals(STRING_N, eventDataArray[0].eventDataName);
+        }
+        continuationToken = page.nextContinuationToken;
+      } while (continuationToken != null);
+
+      partitionQueryService.streamEvents(recentQuery,
+          (storedAuditEvent) -> recentOccuredAts.add(storedAuditEvent.occuredAt));
+      return null;
+    });
+
+    Assert.assertEquals(occuredAts, streamedOccuredAts);
+    Assert.assertEquals(occuredAts, pagedOccuredAts);
+    Assert.assertEquals(occuredAts.subList(2, occuredAts.size()), recentOccuredAts);
+
+    long applicationId = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(QApplication.application.applicationId)
+            .from(QApplication.application)
+            .where(QApplication.application.applicationName.eq(applicationName))
+            .fetchOne());
+    QAuditPartition qAuditPartition = QAuditPartition.auditPartition;
+
+    // the partition tables have the constraints of the base tables
+    String tableSuffix = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qAuditPartition.tableSuffix)
+            .from(qAuditPartition)
+            .where(qAuditPartition.applicationId.eq(applicationId)
+                .and(qAuditPartition.periodEnd.gt(Timestamp.from(now))))
+            .orderBy(qAuditPartition.periodStart.asc())
+            .limit(1)
+            .fetchOne());
+    QEventData qPartitionEventData = new QEventData("event_data", null,
+        "event_data_p" + tableSuffix);
+    try {
+      querydslSupport.execute((connection, configuration) -> new SQLInsertClause(connection,
+          configuration, qPartitionEventData)
+              .set(qPartitionEventData.eventDataId, Long.MAX_VALUE)
+              .set(qPartitionEventData.eventId, Long.MAX_VALUE)
+              .set(qPartitionEventData.eventDataName, STRING_N)
+              .set(qPartitionEventData.eventDataType, EventDataType.STRING.name())
+              .execute());
+      Assert.fail();
+    } catch (RuntimeException e) {
+      // the event of the row does not exist
     }
 
-    logService.log(LogService.LOG_INFO, ">>> init " + count
-        + " event types in one transaction started");
-
-    long startAt = Instant.now().getEpochSecond();
+    // the rows of the partitions reference the names in the dictionary without storing them
+    QEventDataNameRef qPartitionEventDataNameRef = new QEventDataNameRef("event_data", null,
+        "event_data_p" + tableSuffix);
+    List<Tuple> partitionNames = querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qPartitionEventData.eventDataName,
+                qPartitionEventDataNameRef.eventDataNameId)
+            .from(qPartitionEventData)
+            .fetch());
+    Assert.assertEquals(1, partitionNames.size());
+    Assert.assertNull(partitionNames.get(0).get(qPartitionEventData.eventDataName));
+    Assert.assertNotNull(
+        partitionNames.get(0).get(qPartitionEventDataNameRef.eventDataNameId));
+
+    // the partitions of the upcoming days are created ahead of time
+    Timestamp upcoming = Timestamp.from(now.plusMillis(2 * day));
+    long deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+    long upcomingCount = 0;
+    while (upcomingCount == 0 && System.currentTimeMillis() < deadline) {
+      upcomingCount = querydslSupport.execute((connection, configuration) ->
+          new SQLQuery<Void>(connection, configuration)
+              .select(qAuditPartition.periodStart)
+              .from(qAuditPartition)
+              .where(qAuditPartition.applicationId.eq(applicationId)
+                  .and(qAuditPartition.periodStart.loe(upcoming))
+                  .and(qAuditPartition.periodEnd.gt(upcoming)))
+              .fetchCount());
+      if (upcomingCount == 0) {
+        try {
+          Thread.sleep(HUNDRED);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    Assert.assertEquals(1, upcomingCount);
 
-    auditEventTypeManager.initAuditEventTypes(eventTypeNames);
+    // the events older than the maximum age are rejected, the others of the batch are written
+    Instant expiredOccuredAt = now.minusMillis(40 * day);
+    List<Instant> latestOccuredAts = new ArrayList<>();
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      partitionBulkLoggingService.logEvents(applicationName, Arrays.asList(
+          new AuditEvent.Builder()
+              .eventTypeName(eventTypeName)
+              .occuredAt(expiredOccuredAt)
+              .build(),
+          new AuditEvent.Builder()
+              .eventTypeName(eventTypeName)
+              .occuredAt(now.plusMillis(1))
+              .build()));
+      partitionQueryService.streamEvents(new AuditEventQuery.Builder()
+          .applicationName(applicationName)
+          .eventTypeNames(eventTypeName)
+          .occuredAtFrom(now.plusMillis(1))
+          .build(),
+          (storedAuditEvent) -> latestOccuredAts.add(storedAuditEvent.occuredAt));
+      return null;
+    });
+    Assert.assertEquals(Collections.singletonList(now.plusMillis(1)), latestOccuredAts);
+    Assert.assertEquals(0L, (long) querydslSupport.execute((connection, configuration) ->
+        new SQLQuery<Void>(connection, configuration)
+            .select(qAuditPartition.periodStart)
+            .from(qAuditPartition)
+            .where(qAuditPartition.applicationId.eq(applicationId)
+                .and(qAuditPartition.periodEnd.loe(Timestamp.from(expiredOccuredAt
+                    .plusMillis(day)))))
+            .fetchCount()));
+
+    // the partitions older than the maximum age are dropped
+    Timestamp expiredPeriodStart = Timestamp.from(Instant.parse("2000-01-01T00:00:00Z"));
+    querydslSupport.execute((connection, configuration) -> new SQLInsertClause(connection,
+        configuration, qAuditPartition)
+            .set(qAuditPartition.applicationId, applicationId)
+            .set(qAuditPartition.periodStart, expiredPeriodStart)
+            .set(qAuditPartition.periodEnd,
+                Timestamp.from(Instant.parse("2000-01-02T00:00:00Z")))
+            .set(qAuditPartition.tableSuffix, applicationId + "_20000101")
+            .set(qAuditPartition.expired, false)
+            .execute());
+    deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+    long expiredCount = 1;
+    while (expiredCount > 0 && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(HUNDRED);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      expiredCount = querydslSupport.execute((connection, configuration) ->
+          new SQLQuery<Void>(connection, configuration)
+              .select(qAuditPartition.periodStart)
+              .from(qAuditPartition)
+              .where(qAuditPartition.applicationId.eq(applicationId)
+                  .and(qAuditPartition.periodStart.eq(expiredPeriodStart)))
+              .fetchCount());
+    }
+    Assert.assertEquals(0, expiredCount);
 
-    long duration = Instant.now().getEpochSecond() - startAt;
-    logService.log(LogService.LOG_INFO, ">>> " + count + " event types initialized in " + duration
-        + " seconds");
+    clearAuditApplication(applicationName);
   }
 
   @Test
-  public void testInternalInitAuditEventTypes() {
-    String nonExistentApplicationName = "non-existent-application-name";
-    String existentApplicationName = "existent-application-name";
+  public void testPermissionDecisionCache() throws Exception {
 
-    clearAuditApplication(nonExistentApplicationName);
-    clearAuditApplication(existentApplicationName);
+    String applicationName = "permission-decision-cache-application";
+    String eventTypeName = "permission-et0";
 
-    // initialize application
     authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
-
-      auditApplicationManager.initAuditApplication(existentApplicationName);
+      auditApplicationManager.initAuditApplication(applicationName);
       return null;
     });
 
     long authorizedResourceId = resourceService.createResource();
+    auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
+        authorizedResourceId, applicationName);
 
-    // add permission
-    try {
-      auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
-          authorizedResourceId, nonExistentApplicationName);
-      Assert.fail();
-    } catch (UnknownAuditApplicationException e) {
-      Assert.assertEquals(nonExistentApplicationName, e.applicationName);
-    }
+    AuditCacheStatistics decisionCacheStatistics = internalAuditMetrics.getCacheStatistics()
+        .get(AuditRiComponentConstants.PERMISSION_DECISION_CACHE_NAME);
+    Assert.assertNotNull(decisionCacheStatistics);
 
     authenticationPropagator.runAs(authorizedResourceId, () -> {
+      internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+      long hitCount = decisionCacheStatistics.getHitCount();
 
-      try {
-        auditRiPermissionChecker.hasPermissionToLogToAuditApplication(nonExistentApplicationName);
-        Assert.fail();
-      } catch (UnknownAuditApplicationException e) {
-        Assert.assertEquals(nonExistentApplicationName, e.applicationName);
-      }
+      // the decision is served from the cache
+      internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+      Assert.assertTrue(decisionCacheStatistics.getHitCount() > hitCount);
       return null;
     });
+    Assert.assertEquals(2, countEvents(eventTypeName));
 
-    auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
-        authorizedResourceId, existentApplicationName);
+    // the permission change invalidates the cached decisions
+    auditRiAuthorizationManager.removePermissionLogToAuditApplication(
+        authorizedResourceId, applicationName);
 
-    // test with permission
     authenticationPropagator.runAs(authorizedResourceId, () -> {
-
-      Assert.assertTrue(auditRiPermissionChecker
-          .hasPermissionToLogToAuditApplication(existentApplicationName));
-
       try {
-        internalAuditEventTypeManager.initAuditEventTypes(nonExistentApplicationName, "et1");
+        internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
         Assert.fail();
-      } catch (UnknownAuditApplicationException e) {
-        Assert.assertEquals(nonExistentApplicationName, e.applicationName);
+      } catch (UnauthorizedException e) {
+        Assert.assertEquals(AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION, e.actions[0]);
       }
-
-      // insert and cache
-      internalAuditEventTypeManager.initAuditEventTypes(existentApplicationName, "et1");
-      assertAuditEventTypesExist(existentApplicationName, "et1");
-
-      // load from cache
-      internalAuditEventTypeManager.initAuditEventTypes(existentApplicationName, "et1");
-      assertAuditEventTypesExist(existentApplicationName, "et1");
-
       return null;
     });
+    Assert.assertEquals(2, countEvents(eventTypeName));
 
-    // remove permission
-    auditRiAuthorizationManager.removePermissionLogToAuditApplication(
-        authorizedResourceId, existentApplicationName);
-
-    // test without permission
-    authenticationPropagator.runAs(authorizedResourceId,
-        () -> {
-
-          Assert.assertFalse(auditRiPermissionChecker
-              .hasPermissionToLogToAuditApplication(existentApplicationName));
-
-          try {
-            internalAuditEventTypeManager.initAuditEventTypes(existentApplicationName, "et1");
-            Assert.fail();
-          } catch (UnauthorizedException e) {
-            Assert.assertEquals(1, e.actions.length);
-            Assert.assertEquals(AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION,
-                e.actions[0]);
-            Assert.assertEquals(1, e.authorizationScope.length);
-            Assert.assertEquals(authorizedResourceId, e.authorizationScope[0]);
-          }
-
-          return null;
-        });
+    // a decision cached concurrently with a change of an enclosing transaction is invalidated
+    // after the commit
+    auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
+        authorizedResourceId, applicationName);
+    Callable<Boolean> logEvent = () -> authenticationPropagator.runAs(authorizedResourceId, () -> {
+      try {
+        internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+        return true;
+      } catch (UnauthorizedException e) {
+        return false;
+      }
+    });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> concurrentLogEvent = transactionPropagator.required(() -> {
+        auditRiAuthorizationManager.removePermissionLogToAuditApplication(
+            authorizedResourceId, applicationName);
+        Future<Boolean> future = executor.submit(logEvent);
+        try {
+          future.get(ASYNC_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          // the database blocks the concurrent check until the commit
+        } catch (InterruptedException | ExecutionException e) {
+          throw new RuntimeException(e);
+        }
+        return future;
+      });
+      concurrentLogEvent.get();
+      Assert.assertFalse(logEvent.call());
+    } finally {
+      executor.shutdown();
+    }
 
-    clearAuditApplication(nonExistentApplicationName);
-    clearAuditApplication(existentApplicationName);
+    clearAuditApplication(applicationName);
   }
 
   @Test
-  public void testInternalInitAuditEventTypesFail() {
+  public void testRetention() {
 
-    try {
-      internalAuditEventTypeManager.initAuditEventTypes(null);
-      Assert.fail();
-    } catch (NullPointerException e) {
-      Assert.assertEquals("applicationName cannot be null", e.getMessage());
-    }
+    // the retention configuration of the tests expires the events of the application after a day
+    String applicationName = "retention-application";
+    String eventTypeName = "retention-et-" + UUID.randomUUID();
+    int expiredCount = 5;
+    Instant expiredOccuredAt = Instant.now().minusMillis(TimeUnit.DAYS.toMillis(2));
+    long deletedEventCount = auditRetentionStatistics.getDeletedEventCount();
+    long deletedChunkCount = auditRetentionStatistics.getDeletedChunkCount();
 
-    String applicationName = "non-null-application-name";
-    try {
-      internalAuditEventTypeManager.initAuditEventTypes(applicationName, (String[]) null);
-      Assert.fail();
-    } catch (NullPointerException e) {
-      Assert.assertEquals("eventTypeNames cannot be null", e.getMessage());
-    }
+    clearAuditApplication(applicationName);
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(applicationName);
+      for (int i = 0; i < expiredCount; i++) {
+        internalLoggingService.logEvent(applicationName, new AuditEvent.Builder()
+            .eventTypeName(eventTypeName)
+            .occuredAt(expiredOccuredAt.plusSeconds(i))
+            .addStringEventData(STRING_N, STRING_V + i)
+            .build());
+      }
+      internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+      return null;
+    });
 
-    try {
-      String[] eventTypeNames = new String[] { null };
-      internalAuditEventTypeManager.initAuditEventTypes(applicationName, eventTypeNames);
-      Assert.fail();
-    } catch (NullPointerException e) {
-      Assert.assertEquals("eventTypeNames cannot contain null value", e.getMessage());
+    // only the recent event stays in the database
+    assertEventCountDropped(eventTypeName, 1);
+    Assert.assertEquals(EXPECTED_EVENT_DATA_LIST_SIZE, countEventData(eventTypeName));
+
+    // the counters are updated after the commit of the chunks, wait for the next run
+    long completedRunCount = auditRetentionStatistics.getCompletedRunCount();
+    long deadline = System.currentTimeMillis() + ASYNC_WAIT_TIMEOUT;
+    while (auditRetentionStatistics.getCompletedRunCount() <= completedRunCount
+        && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(HUNDRED);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
     }
+    Assert.assertTrue(auditRetentionStatistics.getCompletedRunCount() > completedRunCount);
+    Assert.assertNotNull(auditRetentionStatistics.getLastRunFinishedAt());
 
+    // the chunk size of the test configuration is two
+    Assert.assertEquals(expiredCount,
+        auditRetentionStatistics.getDeletedEventCount() - deletedEventCount);
+    Assert.assertTrue(
+        auditRetentionStatistics.getDeletedChunkCount() - deletedChunkCount >= 3);
+
+    clearAuditApplication(applicationName);
   }
 
   @Test
-  public void testInternalLogEvent() {
+  public void testSpoolLogEvent() {
 
-    String nonExistentApplicationName = "non-existent-application-name";
-    String existentApplicationName = "existent-application-name";
-
-    clearAuditApplication(nonExistentApplicationName);
-    clearAuditApplication(existentApplicationName);
+    String eventTypeName = "spool-et0";
+    int count = HUNDRED;
 
-    // initialize application
     authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
 
-      auditApplicationManager.initAuditApplication(existentApplicationName);
+      auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+      for (int i = 0; i < count; i++) {
+        spoolLoggingService.logEvent(embeddedAuditApplicationName,
+            createTestEvent(eventTypeName));
+      }
       return null;
     });
 
-    long authorizedResourceId = resourceService.createResource();
+    assertEventCountReached(eventTypeName, count);
+  }
 
-    // add permission
-    auditRiAuthorizationManager.addPermissionToLogToAuditApplication(
-        authorizedResourceId, existentApplicationName);
+  @Test
+  public void testSpoolLogEventFail() {
 
-    // test with permission
-    authenticationPropagator.runAs(authorizedResourceId, () -> {
+    String applicationName = "spool-unknown-application";
+    String eventTypeName = "spool-fail-et0";
 
+    clearAuditApplication(applicationName);
+
+    // the unknown application is refused before the event is spooled
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
       try {
-        internalLoggingService.logEvent(nonExistentApplicationName, createTestEvent("et0"));
+        spoolLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
         Assert.fail();
       } catch (UnknownAuditApplicationException e) {
-        Assert.assertEquals(nonExistentApplicationName, e.applicationName);
+        Assert.assertEquals(applicationName, e.applicationName);
       }
-
-      internalLoggingService.logEvent(existentApplicationName, createTestEvent("et0"));
-      assertEvent("et0");
-
+      auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
       return null;
     });
 
-    // remove permission
-    auditRiAuthorizationManager.removePermissionLogToAuditApplication(
-        authorizedResourceId, existentApplicationName);
+    // the resource without permission is refused before the event is spooled
+    long unauthorizedResourceId = resourceService.createResource();
+    authenticationPropagator.runAs(unauthorizedResourceId, () -> {
+      try {
+        spoolLoggingService.logEvent(embeddedAuditApplicationName,
+            createTestEvent(eventTypeName));
+        Assert.fail();
+      } catch (UnauthorizedException e) {
+        Assert.assertEquals(AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION, e.actions[0]);
+      }
+      return null;
+    });
+  }
 
-    // test without permission
-    authenticationPropagator.runAs(authorizedResourceId,
-        () -> {
+  @Test
+  public void testStreamEvents() {
 
-          try {
-            internalLoggingService.logEvent(existentApplicationName, createTestEvent("et0"));
-            Assert.fail();
-          } catch (UnauthorizedException e) {
-            Assert.assertEquals(1, e.actions.length);
-            Assert.assertEquals(AuditRiPermissionConstants.LOG_TO_AUDIT_APPLICATION,
-                e.actions[0]);
-            Assert.assertEquals(1, e.authorizationScope.length);
-            Assert.assertEquals(authorizedResourceId, e.authorizationScope[0]);
-          }
+    String eventTypeName = "query-et0";
+    String otherEventTypeName = "query-et1";
+    int count = 10;
 
-          return null;
-        });
+    Instant from = Instant.now();
+    for (int i = 0; i < count; i++) {
+      loggingService.logEvent(createTestEvent(eventTypeName));
+      loggingService.logEvent(createTestEvent(otherEventTypeName));
+    }
 
-    clearAuditApplication(nonExistentApplicationName);
-    clearAuditApplication(existentApplicationName);
-  }
+    AuditEventQuery query = new AuditEventQuery.Builder()
+        .applicationName(embeddedAuditApplicationName)
+        .eventTypeNames(eventTypeName)
+        .occuredAtFrom(from)
+        .build();
 
-  @Test
-  public void testInternalLogEventFail() {
+    List<StoredAuditEvent> storedAuditEvents = new ArrayList<>();
+    long streamedCount = authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+        () -> auditEventQueryService.streamEvents(query, storedAuditEvents::add));
+
+    Assert.assertEquals(count, streamedCount);
+    Assert.assertEquals(count, storedAuditEvents.size());
+    long previousEventId = 0;
+    for (StoredAuditEvent storedAuditEvent : storedAuditEvents) {
+      Assert.assertTrue(storedAuditEvent.eventId > previousEventId);
+      previousEventId = storedAuditEvent.eventId;
+      Assert.assertEquals(embeddedAuditApplicationName, storedAuditEvent.applicationName);
+      Assert.assertEquals(eventTypeName, storedAuditEvent.eventTypeName);
+      Assert.assertEquals(EXPECTED_EVENT_DATA_LIST_SIZE,
+          storedAuditEvent.getAuditEvent().eventDataArray.length);
+      Assert.assertEquals(new EventData.Builder(STRING_N).buildStringValue(STRING_V),
+          storedAuditEvent.getAuditEvent().eventDataArray[STRING_INDEX]);
+      Assert.assertEquals(new EventData.Builder(NUMBER_N).buildNumberValue(NUMBER_V),
+          storedAuditEvent.getAuditEvent().eventDataArray[NUMBER_INDEX]);
+    }
 
     try {
-      internalLoggingService.logEvent(null, null);
+      auditEventQueryService.streamEvents(null, storedAuditEvents::add);
       Assert.fail();
     } catch (NullPointerException e) {
-      Assert.assertEquals("applicationName cannot be null", e.getMessage());
+      Assert.assertEquals("query cannot be null", e.getMessage());
     }
 
     try {
-      internalLoggingService.logEvent("non-null-application-name", null);
+      auditEventQueryService.streamEvents(query, null);
       Assert.fail();
     } catch (NullPointerException e) {
-      Assert.assertEquals("auditEvent cannot be null", e.getMessage());
+      Assert.assertEquals("consumer cannot be null", e.getMessage());
     }
   }
 
   @Test
-  public void testLogEvent() {
+  public void testTextCompression() {
 
-    String eventTypeName = "et0";
+    String eventTypeName = "compression-et0";
 
-    // lazy create event type
-    loggingService.logEvent(createTestEvent(eventTypeName));
-    assertEvent(eventTypeName);
+    StringBuilder payloadBuilder = new StringBuilder("[");
+    for (int i = 0; i < HUNDRED * 5; i++) {
+      payloadBuilder.append("{\"id\":").append(i)
+          .append(",\"name\":\"customer-").append(i)
+          .append("\",\"status\":\"ACTIVE\"},");
+    }
+    String payload = payloadBuilder.append("]").toString();
+    String markerText = CompressedText.MARKER + "not-compressed";
 
-    clearAuditEventData(eventTypeName);
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      auditApplicationManager.initAuditApplication(embeddedAuditApplicationName);
+      compressionLoggingService.logEvent(embeddedAuditApplicationName,
+          new AuditEvent.Builder().eventTypeName(eventTypeName)
+              .addTextEventData("payload", false, payload)
+              .addTextEventData("marker", false, markerText)
+              .addTextEventData("short", false, TEXT_V)
+              .build());
+      return null;
+    });
 
-    // load event type from cache
-    loggingService.logEvent(createTestEvent(eventTypeName));
-    assertEvent(eventTypeName);
+    // the large payload is stored compressed, the short text as it is
+    String storedPayload = readStoredTextValue(eventTypeName, "payload");
+    Assert.assertTrue(CompressedText.isCompressed(storedPayload));
+    Assert.assertTrue(storedPayload.length() < payload.length() / 2);
+    Assert.assertEquals(TEXT_V, readStoredTextValue(eventTypeName, "short"));
+    // a text that looks like a compressed value is escaped by compressing it
+    Assert.assertEquals(markerText,
+        CompressedText.decompress(readStoredTextValue(eventTypeName, "marker")));
+
+    AuditEventQuery query = new AuditEventQuery.Builder()
+        .applicationName(embeddedAuditApplicationName)
+        .eventTypeNames(eventTypeName)
+        .build();
+    List<StoredAuditEvent> storedAuditEvents = new ArrayList<>();
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+        () -> auditEventQueryService.streamEvents(query, storedAuditEvents::add));
+
+    Assert.assertEquals(1, storedAuditEvents.size());
+    EventData[] eventDataArray = storedAuditEvents.get(0).getAuditEvent().eventDataArray;
+    Assert.assertEquals(payload, eventDataArray[0].textValue);
+    Assert.assertEquals(markerText, eventDataArray[1].textValue);
+    Assert.assertEquals(TEXT_V, eventDataArray[2].textValue);
   }
 
   @Test
-  public void testLogEventFail() {
-    try {
-      loggingService.logEvent(null);
-      Assert.fail();
-    } catch (NullPointerException e) {
-      Assert.assertTrue(e.getMessage().equals("auditEvent cannot be null"));
-    }
-  }
+  public void testUnknownApplicationCache() throws Exception {
 
-  @Test
-  public void testLogEventStress() {
+    String applicationName = "unknown-application-cache-application";
+    String eventTypeName = "unknown-application-et0";
 
-    int eventTypeCount = HUNDRED;
-    int eventsPerEventType = HUNDRED;
+    clearAuditApplication(applicationName);
 
-    String[] eventTypeNames = new String[eventTypeCount];
-    List<AuditEvent> auditEvents = new ArrayList<>();
+    AuditCacheStatistics unknownApplicationCacheStatistics = internalAuditMetrics
+        .getCacheStatistics().get(AuditRiComponentConstants.UNKNOWN_APPLICATION_CACHE_NAME);
+    Assert.assertNotNull(unknownApplicationCacheStatistics);
 
-    for (int i = 0; i < eventTypeCount; i++) {
-      String eventTypeName = "e" + i;
-      eventTypeNames[i] = eventTypeName;
-      for (int j = 0; j < eventsPerEventType; j++) {
-        auditEvents.add(createTestEvent(eventTypeName));
+    authenticationPropagator.runAs(permissionChecker.getSystemResourceId(), () -> {
+      try {
+        internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+        Assert.fail();
+      } catch (UnknownAuditApplicationException e) {
+        Assert.assertEquals(applicationName, e.applicationName);
       }
-    }
-    Collections.shuffle(auditEvents);
-
-    auditEventTypeManager.initAuditEventTypes(eventTypeNames);
+      long hitCount = unknownApplicationCacheStatistics.getHitCount();
 
-    int count = eventTypeCount * eventsPerEventType;
-
-    logService.log(LogService.LOG_INFO, ">>> log " + count
-        + " events (containing 4 event data) started");
+      // the unknown application is refused from the cache
+      try {
+        internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+        Assert.fail();
+      } catch (UnknownAuditApplicationException e) {
+        Assert.assertEquals(applicationName, e.applicationName);
+      }
+      Assert.assertTrue(unknownApplicationCacheStatistics.getHitCount() > hitCount);
 
-    long startAt = Instant.now().getEpochSecond();
+      // the initialization of the application invalidates the cached name
+      auditApplicationManager.initAuditApplication(applicationName);
+      internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+      return null;
+    });
+    Assert.assertEquals(1, countEvents(eventTypeName));
 
-    for (AuditEvent auditEvent : auditEvents) {
-      loggingService.logEvent(auditEvent);
+    // a name cached concurrently with the creation in an enclosing transaction is invalidated
+    // after the commit
+    clearAuditApplication(applicationName);
+    clearAuditCaches();
+    Callable<Boolean> logEvent = () -> authenticationPropagator.runAs(
+        permissionChecker.getSystemResourceId(), () -> {
+          try {
+            internalLoggingService.logEvent(applicationName, createTestEvent(eventTypeName));
+            return true;
+          } catch (UnknownAuditApplicationException e) {
+            return false;
+          }
+        });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> concurrentLogEvent = transactionPropagator.required(() -> {
+        authenticationPropagator.runAs(permissionChecker.getSystemResourceId(),
+            () -> auditApplicationManager.initAuditApplication(applicationName));
+        Future<Boolean> future = executor.submit(logEvent);
+        try {
+          future.get(ASYNC_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          // the database blocks the concurrent lookup until the commit
+        } catch (InterruptedException | ExecutionException e) {
+          throw new RuntimeException(e);
+        }
+        return future;
+      });
+      concurrentLogEvent.get();
+      Assert.assertTrue(logEvent.call());
+    } finally {
+      executor.shutdown();
     }
 
-    long duration = Instant.now().getEpochSecond() - startAt;
-    logService.log(LogService.LOG_INFO, ">>> " + count + " events logged in " + duration
-        + " seconds");
+    clearAuditApplication(applicationName);
   }
+
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.tests;
+
+import org.everit.audit.ri.schema.qdsl.QEventData;
+
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+
+/**
+ * Querydsl listener that counts the executed statements on the event_data table. Only the
+ * statements executed by the thread that started the counting are counted.
+ */
+public class EventDataStatementCounter extends SQLBaseListener {
+
+  private final ThreadLocal<int[]> statementCount = new ThreadLocal<>();
+
+  @Override
+  public void preExecute(final SQLListenerContext context) {
+    int[] count = statementCount.get();
+    RelationalPath<?> entity = context.getEntity();
+    if (count != null && entity != null
+        && QEventData.eventData.getTableName().equals(entity.getTableName())) {
+      count[0]++;
+    }
+  }
+
+  /**
+   * Starts counting the statements on the current thread.
+   */
+  public void start() {
+    statementCount.set(new int[1]);
+  }
+
+  /**
+   * Stops counting the statements on the current thread.
+   *
+   * @return the number of statements executed on the event_data table since {@link #start()}.
+   */
+  public int stop() {
+    int[] count = statementCount.get();
+    statementCount.remove();
+    return count != null ? count[0] : 0;
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.audit.ri.ecm.tests;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+
+/**
+ * Querydsl listener that counts the executed insert statements on a table. The statements
+ * executed by any thread are counted between {@link #start()} and {@link #stop()}.
+ */
+public class InsertStatementCounter extends SQLBaseListener {
+
+  private volatile boolean counting;
+
+  private final AtomicInteger insertCount = new AtomicInteger();
+
+  private final String tableName;
+
+  /**
+   * Constructor.
+   *
+   * @param table
+   *          the table the insert statements are counted on.
+   */
+  public InsertStatementCounter(final RelationalPath<?> table) {
+    tableName = table.getTableName();
+  }
+
+  @Override
+  public void preExecute(final SQLListenerContext context) {
+    RelationalPath<?> entity = context.getEntity();
+    String sql = context.getSQL();
+    if (counting && entity != null && sql != null
+        && tableName.equals(entity.getTableName())
+        && sql.trim().toLowerCase().startsWith("insert")) {
+      insertCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Starts counting the insert statements.
+   */
+  public void start() {
+    insertCount.set(0);
+    counting = true;
+  }
+
+  /**
+   * Stops counting the insert statements.
+   *
+   * @return the number of insert statements executed on the table since {@link #start()}.
+   */
+  public int stop() {
+    counting = false;
+    return insertCount.get();
+  }
+
+}